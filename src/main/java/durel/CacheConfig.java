@@ -0,0 +1,88 @@
+package durel;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import durel.services.statistics.WUGsService;
+import durel.utils.FileManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collection;
+
+/**
+ * Configures the application-wide caches. All caches are size-bounded Caffeine caches (W-TinyLFU eviction) that
+ * record statistics, so that hit rates are exposed through the actuator metrics endpoint.
+ */
+@Configuration
+public class CacheConfig {
+
+    /**
+     * Rendered uses ({@link durel.dto.responses.UseDTO}) keyed by use id.
+     */
+    public static final String USE_DTO_CACHE = "useDTOs";
+
+    /**
+     * Annotation sequences ({@link durel.session.RandomAnnotationSequence}) keyed by lemma id, use and pair counts of the
+     * lemma and seed, see {@link durel.services.SequenceService#getRandomAnnotationSequence}.
+     */
+    public static final String ANNOTATION_SEQUENCE_CACHE = "annotationSequences";
+
+    /**
+     * Results of annotation filter queries (counts and rows) keyed by the selection, the normalized filter criteria and
+     * the annotation version of the filtered lemmas, see {@link durel.services.annotation.AnnotationFilterQueryService}.
+     * Weighted by the number of results.
+     */
+    public static final String ANNOTATION_FILTER_RESULT_CACHE = "annotationFilterResults";
+
+    /**
+     * Generated word usage graphs keyed by lemma, annotation version, use and pair counts of the lemma and parameters of
+     * the pipeline, see {@link durel.services.statistics.WUGsService}. The files of a graph are deleted when it is
+     * removed from the cache.
+     */
+    public static final String WUG_RESULT_CACHE = "wugResults";
+
+    /**
+     * Agreement summaries of lemmas ({@link durel.utils.AgreementSummary}) keyed by lemma, annotation version of the
+     * lemma and selected annotators, see {@link durel.services.statistics.AgreementStatisticsService}.
+     */
+    public static final String AGREEMENT_SUMMARY_CACHE = "agreementSummaries";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${cache.use-dtos.maximum-size:50000}") long useDTOCacheSize,
+                                     @Value("${cache.annotation-sequences.maximum-size:1000}") long annotationSequenceCacheSize,
+                                     @Value("${cache.annotation-filter-results.maximum-weight:1000000}") long annotationFilterResultCacheWeight,
+                                     @Value("${cache.wug-results.maximum-size:200}") long wugResultCacheSize,
+                                     @Value("${cache.agreement-summaries.maximum-size:10000}") long agreementSummaryCacheSize) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+        cacheManager.registerCustomCache(USE_DTO_CACHE, Caffeine.newBuilder()
+                .maximumSize(useDTOCacheSize)
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(ANNOTATION_SEQUENCE_CACHE, Caffeine.newBuilder()
+                .maximumSize(annotationSequenceCacheSize)
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(ANNOTATION_FILTER_RESULT_CACHE, Caffeine.newBuilder()
+                .maximumWeight(annotationFilterResultCacheWeight)
+                .weigher((key, value) -> value instanceof Collection<?> results ? Math.max(1, results.size()) : 1)
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(WUG_RESULT_CACHE, Caffeine.newBuilder()
+                .maximumSize(wugResultCacheSize)
+                .removalListener((key, value, cause) -> {
+                    if (value instanceof WUGsService.WUGResult result) {
+                        FileManager.deleteDirectory(result.directory());
+                    }
+                })
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(AGREEMENT_SUMMARY_CACHE, Caffeine.newBuilder()
+                .maximumSize(agreementSummaryCacheSize)
+                .recordStats()
+                .build());
+        return cacheManager;
+    }
+}
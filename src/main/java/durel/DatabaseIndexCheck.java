@@ -0,0 +1,127 @@
+package durel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Verifies at startup that the indexes needed by the hot queries exist, and reports each missing one together with the
+ * repository method that needs it. The indexes are created by the migrations in {@code db/migration}; a missing index
+ * usually means that the schema has been changed by hand or that a migration has been skipped.
+ * <p>
+ * An index is found if any index of the table (including the primary key) starts with the required columns.
+ */
+@Component
+public class DatabaseIndexCheck {
+
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseIndexCheck.class);
+
+    /**
+     * An index needed by a query.
+     *
+     * @param table   The table.
+     * @param columns The leading columns of the index.
+     * @param usedBy  The repository method(s) whose query needs the index.
+     */
+    record RequiredIndex(String table, List<String> columns, String usedBy) {
+    }
+
+    static final List<RequiredIndex> REQUIRED_INDEXES = List.of(
+            new RequiredIndex("sentence", List.of("word_id"), "SentenceDAO.findByLemma_Id, countByLemma, findIdsByLemma"),
+            new RequiredIndex("sentence", List.of("word_id", "csv_id"), "SentenceDAO.findByLemma_IdAndCsvId"),
+            new RequiredIndex("word", List.of("project_id", "word"), "LemmaDAO.findByProject_ProjectNameAndLemma"),
+            new RequiredIndex("pair", List.of("projectname", "lemma"), "InstanceDAO.findByProjectAndLemma, countByProjectAndLemma"),
+            new RequiredIndex("pair", List.of("left_sentence_id", "right_sentence_id"), "InstanceDAO.existsByUsePair"),
+            new RequiredIndex("seq", List.of("word_id", "annotator_id"), "SequenceDAO.findByLemmaAndUser, incrementIndex"),
+            new RequiredIndex("annotation", List.of("annotator_id"), "UserAnnotationDAO.findByIdOrId"),
+            new RequiredIndex("annotation", List.of("word_id", "annotator_id"), "UserAnnotationDAO.findAnnotatedUsePairs, SequenceDAO.findIdsWithDeviatingIndex"),
+            new RequiredIndex("annotation", List.of("project_name", "judgment"), "UserAnnotationDAO.countGroupedByAnnotatorAndLemma"),
+            new RequiredIndex("task", List.of("status"), "TaskDAO.findByStatus, countByStatus"),
+            new RequiredIndex("task", List.of("username"), "TaskDAO.findByCreator_UsernameOrderByIdAsc"),
+            new RequiredIndex("upload", List.of("project_name"), "UploadProgressDAO.existsByProject, getByProject"),
+            new RequiredIndex("deletion", List.of("project"), "DeletionProgressDAO.existsByEntityName, getByEntityName"),
+            new RequiredIndex("project", List.of("annotator_id"), "ProjectDAO.findByCreator_UsernameOrderByProjectNameAsc"),
+            new RequiredIndex("project_visibility", List.of("annotator_id"),
+                    "ProjectDAO.findByCreator_UsernameOrAnnotators_UsernameOrIsPublicTrueOrderByProjectNameAsc"),
+            new RequiredIndex("tutorial_sentence", List.of("tutorial_id", "pair_id"), "TutorialUseDAO.findByTutorial_LangAndPairIdOrderByIdAsc"));
+
+    private final DataSource dataSource;
+
+    @Autowired
+    public DatabaseIndexCheck(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Logs a warning for each missing index.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkIndexes() {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Map<String, List<List<String>>> indexesByTable = new HashMap<>();
+            int missing = 0;
+            for (RequiredIndex requiredIndex : REQUIRED_INDEXES) {
+                List<List<String>> indexes = indexesByTable.computeIfAbsent(requiredIndex.table(), table -> readIndexes(metaData, table));
+                if (indexes.stream().noneMatch(columns -> startsWith(columns, requiredIndex.columns()))) {
+                    logger.warn("Missing index on {}({}), needed by {}.", requiredIndex.table(),
+                            String.join(", ", requiredIndex.columns()), requiredIndex.usedBy());
+                    missing++;
+                }
+            }
+            if (missing == 0) {
+                logger.info("All {} required indexes are present.", REQUIRED_INDEXES.size());
+            }
+        } catch (SQLException | IllegalStateException e) {
+            logger.error("Unable to check the indexes of the database.", e);
+        }
+    }
+
+    /**
+     * Reads the columns of each index of the table, in index order and in lower case.
+     */
+    private static List<List<String>> readIndexes(DatabaseMetaData metaData, String table) throws IllegalStateException {
+        String tableName = storesUpperCase(metaData) ? table.toUpperCase(Locale.ROOT) : table;
+        Map<String, SortedMap<Short, String>> columnsByIndex = new HashMap<>();
+        try (ResultSet resultSet = metaData.getIndexInfo(null, null, tableName, false, true)) {
+            while (resultSet.next()) {
+                String indexName = resultSet.getString("INDEX_NAME");
+                String columnName = resultSet.getString("COLUMN_NAME");
+                if (indexName != null && columnName != null) {
+                    columnsByIndex.computeIfAbsent(indexName, name -> new TreeMap<>())
+                            .put(resultSet.getShort("ORDINAL_POSITION"), columnName.toLowerCase(Locale.ROOT));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to read the indexes of " + table, e);
+        }
+        return columnsByIndex.values().stream().map(columns -> List.copyOf(columns.values())).toList();
+    }
+
+    private static boolean storesUpperCase(DatabaseMetaData metaData) throws IllegalStateException {
+        try {
+            return metaData.storesUpperCaseIdentifiers();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean startsWith(List<String> indexColumns, List<String> requiredColumns) {
+        return indexColumns.size() >= requiredColumns.size()
+                && indexColumns.subList(0, requiredColumns.size()).equals(requiredColumns);
+    }
+}
@@ -0,0 +1,12 @@
+package durel;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables periodic background jobs, such as the reconciliation of denormalized counters.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,15 +1,31 @@
 package durel;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
 
 @Configuration
 @EnableAsync
 public class SpringAsyncConfig {
 
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SpringAsyncConfig.class);
+
+    @Primary
     @Bean(name = "lightTaskExecutor")
     public ThreadPoolTaskExecutor lightTaskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
@@ -20,4 +36,84 @@ public class SpringAsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Bounded executor for prefetching the next use pairs of the annotation loop. Prefetching is best effort: if the
+     * queue is full, the task is rejected and the pair is rendered on the request thread when it is needed.
+     */
+    @Bean(name = "prefetchTaskExecutor")
+    public ThreadPoolTaskExecutor prefetchTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(1000);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setThreadNamePrefix("Prefetch-Task-Executor-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor of the jobs of the word usage graph pipeline, which limits the number of concurrently running pipelines
+     * and the number of queued jobs. Jobs beyond the queue are rejected.
+     */
+    @Bean(name = "wugTaskExecutor")
+    public ThreadPoolTaskExecutor wugTaskExecutor(@Value("${wugs.max-concurrent-jobs:2}") int maxConcurrentJobs,
+                                                  @Value("${wugs.queue-capacity:20}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentJobs);
+        executor.setMaxPoolSize(maxConcurrentJobs);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setThreadNamePrefix("WUG-Task-Executor-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Single thread on which the statistics of lemmas are updated after writes of annotations. As the updates run one
+     * after another, they never write the statistics of a lemma concurrently, and queued updates of a lemma whose
+     * statistics are already up to date are skipped. If the queue is full, the writer waits for space in the queue, so
+     * that no update is lost; a warning is logged, as the executor does not keep up with the writes.
+     */
+    @Bean(name = "lemmaStatisticsTaskExecutor")
+    public ThreadPoolTaskExecutor lemmaStatisticsTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(100000);
+        executor.setRejectedExecutionHandler((runnable, threadPoolExecutor) -> {
+            if (threadPoolExecutor.isShutdown()) {
+                throw new RejectedExecutionException("The lemma statistics executor has been shut down.");
+            }
+            logger.warn("The queue of the lemma statistics executor is full, waiting for space.");
+            try {
+                threadPoolExecutor.getQueue().put(runnable);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for the lemma statistics executor.", e);
+            }
+        });
+        executor.setThreadNamePrefix("Lemma-Statistics-Executor-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Fork-join pool of the agreement statistics, on which the lemmas of a project are computed in parallel. The
+     * parallelism defaults to the number of processors of the host. The workers get the class loader of the
+     * application, as the default workers only see the system class loader.
+     */
+    @Bean(name = "statisticsForkJoinPool", destroyMethod = "shutdownNow")
+    public ForkJoinPool statisticsForkJoinPool(@Value("${statistics.parallelism:0}") int parallelism) {
+        ClassLoader classLoader = SpringAsyncConfig.class.getClassLoader();
+        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Statistics-ForkJoin-" + thread.getPoolIndex());
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        };
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+                threadFactory, null, false);
+    }
 }
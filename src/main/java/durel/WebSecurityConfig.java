@@ -42,6 +42,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers("/tutorial/delete").hasRole("ADMIN")
                 .antMatchers("/uploadTutorial").hasRole("ADMIN")
                 .antMatchers("/deleteTutorial").hasRole("ADMIN")
+                .antMatchers("/actuator/**").hasRole("ADMIN")
                 .antMatchers("/css/**").permitAll()
                 .antMatchers("/img/**").permitAll()
                 .antMatchers("/js/**").permitAll()
@@ -0,0 +1,13 @@
+package durel.domain;
+
+/**
+ * A pair of uses that has been annotated by an annotator, without the judgment.
+ *
+ * @param annotator   The username of the annotator.
+ * @param lemmaId     The id of the lemma of the uses.
+ * @param firstUseId  The id of the first use.
+ * @param secondUseId The id of the second use.
+ */
+public record AnnotatedUsePair(String annotator, Integer lemmaId, Integer firstUseId, Integer secondUseId) {
+
+}
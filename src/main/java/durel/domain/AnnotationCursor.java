@@ -0,0 +1,18 @@
+package durel.domain;
+
+/**
+ * Position of an annotator in the annotation sequence of a lemma, as handed to API clients in signed form.
+ * <p>
+ * The cursor carries everything that is needed to accept the judgment for the current pair and to compute the next
+ * pair, so that any node can serve the request without session state.
+ *
+ * @param lemmaId     The id of the annotated lemma.
+ * @param annotator   The username of the annotator.
+ * @param seed        The seed of the annotator's sequence of the lemma.
+ * @param index       The index of the sequence when the pair was handed out.
+ * @param firstUseId  The id of the first use of the current pair.
+ * @param secondUseId The id of the second use of the current pair.
+ */
+public record AnnotationCursor(int lemmaId, String annotator, long seed, int index, int firstUseId, int secondUseId) {
+
+}
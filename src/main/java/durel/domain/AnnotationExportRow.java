@@ -0,0 +1,20 @@
+package durel.domain;
+
+import java.util.Date;
+
+/**
+ * An annotation without its entity graph, with the columns of the annotation download.
+ *
+ * @param firstUseId     The id of the first use of the pair.
+ * @param secondUseId    The id of the second use of the pair.
+ * @param firstUseCsvId  The identifier of the first use in the uploaded data.
+ * @param secondUseCsvId The identifier of the second use in the uploaded data.
+ * @param annotator      The username of the annotator.
+ * @param judgment       The judgment value.
+ * @param comment        The comment of the annotator.
+ * @param dt             The time of the annotation.
+ */
+public record AnnotationExportRow(Integer firstUseId, Integer secondUseId, String firstUseCsvId, String secondUseCsvId,
+                                  String annotator, Float judgment, String comment, Date dt) {
+
+}
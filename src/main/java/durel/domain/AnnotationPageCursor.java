@@ -0,0 +1,14 @@
+package durel.domain;
+
+/**
+ * Position after the last annotation of a page of the annotation browser. The next page continues after this position
+ * in the order of the page (keyset pagination), so that no offset has to be skipped by the database.
+ *
+ * @param sortValue   The value of the sort column of the last annotation, null if the page is sorted by annotator.
+ * @param annotator   The username of the annotator of the last annotation.
+ * @param firstUseId  The id of the first use of the last annotation.
+ * @param secondUseId The id of the second use of the last annotation.
+ */
+public record AnnotationPageCursor(Object sortValue, String annotator, int firstUseId, int secondUseId) {
+
+}
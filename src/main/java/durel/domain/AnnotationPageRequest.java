@@ -0,0 +1,54 @@
+package durel.domain;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * A page of the annotation browser: the lemma, the optional filters, the order and the position of the page.
+ */
+@Builder
+@Getter
+public class AnnotationPageRequest {
+
+    private int lemmaId;
+
+    // The user who browses the annotations. Only the annotations of this user are shown, or all annotations if the user owns the project.
+    private String viewer;
+
+    // Optional filters, null if not set.
+    private String annotator;
+    private Float judgment;
+    private Date from;
+    private Date to;
+
+    private Sort sort;
+    private boolean descending;
+
+    // The position after which the page starts, null for the first page.
+    private AnnotationPageCursor after;
+
+    private int pageSize;
+
+    /**
+     * The columns by which the annotation browser can be sorted. Annotations with the same value are ordered by their
+     * composite id, so that the order is total and each page can continue after the last annotation of the previous one.
+     */
+    public enum Sort {
+        ANNOTATOR(null),
+        JUDGMENT("a.judgment"),
+        DATE("a.dt");
+
+        // The JPQL path of the sort column, null if the order is the composite id alone.
+        private final String path;
+
+        Sort(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package durel.domain;
+
+import java.util.Date;
+
+/**
+ * An annotation without its entity graph, as returned by projection queries for statistics.
+ *
+ * @param lemmaId     The id of the lemma of the pair.
+ * @param firstUseId  The id of the first use of the pair.
+ * @param secondUseId The id of the second use of the pair.
+ * @param annotator   The username of the annotator.
+ * @param judgment    The judgment value.
+ * @param dt          The time of the annotation.
+ */
+public record AnnotationRow(Integer lemmaId, Integer firstUseId, Integer secondUseId, String annotator, Float judgment, Date dt) {
+
+}
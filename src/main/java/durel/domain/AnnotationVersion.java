@@ -0,0 +1,17 @@
+package durel.domain;
+
+/**
+ * The combined annotation version of a set of lemmas. The sum of the versions grows with every write of annotations of
+ * the lemmas, the number of lemmas drops when a lemma is deleted, and the largest id grows when a lemma is added (ids
+ * are never reused). The combination therefore changes whenever the annotations of the set may have changed.
+ *
+ * @param maxLemmaId The largest id of the lemmas, null if there are none.
+ * @param lemmaCount The number of lemmas.
+ * @param versionSum The sum of the annotation versions of the lemmas, null if there are none.
+ */
+public record AnnotationVersion(Integer maxLemmaId, Long lemmaCount, Long versionSum) {
+
+    public boolean isEmpty() {
+        return lemmaCount == null || lemmaCount == 0;
+    }
+}
@@ -0,0 +1,17 @@
+package durel.domain;
+
+import java.util.Date;
+
+/**
+ * An annotation as shown in the annotation browser, read by a projection query without loading the entity graph.
+ *
+ * @param firstUseId  The id of the first use of the pair.
+ * @param secondUseId The id of the second use of the pair.
+ * @param annotator   The username of the annotator.
+ * @param judgment    The judgment value.
+ * @param comment     The comment of the annotator, may be null.
+ * @param dt          The time of the annotation.
+ */
+public record AnnotationViewRow(Integer firstUseId, Integer secondUseId, String annotator, Float judgment, String comment, Date dt) {
+
+}
@@ -0,0 +1,36 @@
+package durel.domain;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Published when annotations of lemmas have been written, after the annotation versions of the lemmas have been
+ * incremented (see {@link durel.services.WordService#lockForAnnotationWrite(durel.domain.model.Lemma, String, List)}).
+ * Listeners that depend on the annotations should handle it after the commit of the transaction.
+ * <p>
+ * A write of judgments of one annotator for one lemma carries the changed judgments and the annotation version that it
+ * produced, so that listeners can apply the changes to statistics computed from the previous version. Other writes,
+ * e.g., uploads, only carry the lemmas.
+ *
+ * @param lemmaIds          The ids of the lemmas whose annotations have changed.
+ * @param annotationVersion The annotation version of the lemma after the write, null if the changes are unknown.
+ * @param annotator         The annotator of the changed judgments, null if the changes are unknown.
+ * @param judgmentChanges   The changed judgments in the order in which they were saved, null if the changes are unknown.
+ */
+public record AnnotationsChangedEvent(Collection<Integer> lemmaIds, Long annotationVersion, String annotator,
+                                      List<JudgmentChange> judgmentChanges) {
+
+    /**
+     * Creates an event of a write whose changes are unknown.
+     */
+    public AnnotationsChangedEvent(Collection<Integer> lemmaIds) {
+        this(lemmaIds, null, null, null);
+    }
+
+    /**
+     * @return Whether the event carries the changed judgments.
+     */
+    public boolean hasJudgmentChanges() {
+        return annotationVersion != null && judgmentChanges != null;
+    }
+}
@@ -0,0 +1,13 @@
+package durel.domain;
+
+/**
+ * A judgment of an annotator that was saved, for updating the statistics that depend on it.
+ *
+ * @param firstUseId        The id of the first use of the pair.
+ * @param secondUseId       The id of the second use of the pair.
+ * @param previousJudgment  The judgment before, null if the pair had not been annotated by the annotator.
+ * @param judgment          The saved judgment.
+ */
+public record JudgmentChange(int firstUseId, int secondUseId, Float previousJudgment, float judgment) {
+
+}
@@ -0,0 +1,13 @@
+package durel.domain;
+
+/**
+ * A judgment of an annotator for a pair of uses, as submitted in a batch.
+ *
+ * @param firstUseId  The id of the first use of the pair.
+ * @param secondUseId The id of the second use of the pair.
+ * @param judgment    The judgment value.
+ * @param comment     The comment, may be empty.
+ */
+public record PairJudgment(int firstUseId, int secondUseId, float judgment, String comment) {
+
+}
@@ -0,0 +1,13 @@
+package durel.domain;
+
+/**
+ * A use as a node of a word usage graph, as returned by projection queries.
+ *
+ * @param id       The id of the use.
+ * @param csvId    The identifier of the use in the uploaded data.
+ * @param context  The context of the use.
+ * @param grouping The grouping of the use, may be null.
+ */
+public record UseNodeRow(Integer id, String csvId, String context, String grouping) {
+
+}
@@ -0,0 +1,55 @@
+package durel.domain;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * A page of the uses browser: the lemma, the optional filters, the order and the position of the page.
+ */
+@Builder
+@Getter
+public class UsePageRequest {
+
+    private int lemmaId;
+
+    // Optional filters, null or empty if not set. Dates are compared as strings, as in the annotation filters.
+    private String dateFrom;
+    private String dateTo;
+    private Collection<String> groupings;
+    private Collection<String> pos;
+
+    private Sort sort;
+    private boolean descending;
+
+    // The sort value and id of the last use of the previous page, null for the first page.
+    private String afterSortValue;
+    private Integer afterId;
+
+    private int pageSize;
+
+    /**
+     * The columns by which the uses browser can be sorted. Uses with the same value are ordered by their id, so that the
+     * order is total and each page can continue after the last use of the previous one. Missing values sort as empty
+     * strings.
+     */
+    @Getter
+    public enum Sort {
+        ID(null, row -> ""),
+        DATE("coalesce(u.useDate, '')", UseViewRow::useDate),
+        GROUPING("coalesce(u.grouping, '')", UseViewRow::grouping),
+        POS("u.pos", UseViewRow::pos);
+
+        // The JPQL expression of the sort column, null if the order is the id alone.
+        private final String expression;
+
+        private final Function<UseViewRow, String> valueOf;
+
+        Sort(String expression, Function<UseViewRow, String> valueOf) {
+            this.expression = expression;
+            this.valueOf = valueOf;
+        }
+    }
+}
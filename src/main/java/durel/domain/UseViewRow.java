@@ -0,0 +1,14 @@
+package durel.domain;
+
+/**
+ * The id and the sortable columns of a use, as read for a page of the uses browser. The uses themselves are rendered
+ * only for the ids of the page.
+ *
+ * @param id       The id of the use.
+ * @param useDate  The date of the use, may be null.
+ * @param grouping The grouping of the use, may be null.
+ * @param pos      The part of speech of the target.
+ */
+public record UseViewRow(Integer id, String useDate, String grouping, String pos) {
+
+}
@@ -98,6 +98,16 @@ public class AnnotationSequence implements Serializable {
 	@Column(name = "idx", nullable = false)
 	private int index;
 
+	/**
+	 * The pairs of the sequence that the annotator has already annotated.
+	 * <p>
+	 * This value is a serialized Roaring bitmap over the keys of the pairs
+	 * (see {@link durel.session.RandomAnnotationSequence#keyAt(int)}). It is null for sequences created before the
+	 * bitmap was introduced, and is then rebuilt from the annotations on first access.
+	 */
+	@Column(name = "annotated_pairs", length = 16777216)
+	private byte[] annotatedPairs;
+
 	public AnnotationSequence(AnnotationSequenceId id, User user, Lemma lemma, int index, long seed) {
 		this.id = id;
 		this.user = user;
@@ -0,0 +1,77 @@
+package durel.domain.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+
+import javax.persistence.*;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Represents a cell of the confusion matrix of two annotators on a lemma: the number of pairs of uses of the lemma that
+ * the first annotator judged with {@code judgment1} and the second with {@code judgment2}.
+ * <p>
+ * The cells are maintained on every write of a judgment (see
+ * {@link durel.services.statistics.AnnotatorPairStatisticsService}), so that the pairwise agreement statistics are
+ * computed from them instead of from the annotations (see {@link durel.utils.ConfusionMatrix}).
+ * <p>
+ * Lombok Annotations:
+ * <ul>
+ *   <li>{@code @NoArgsConstructor} - Generates a no-argument constructor.</li>
+ *   <li>{@code @AllArgsConstructor} - Generates a constructor with all fields.</li>
+ *   <li>{@code @Getter} - Generates getters for all fields.</li>
+ *   <li>{@code @Setter} - Generates setters for all fields.</li>
+ *   <li>{@code @Slf4j} - Provides a logger field named 'log' in the class.</li>
+ * </ul>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Slf4j
+@Entity
+@Table(name = "annotator_pair_judgment_count", schema = "public")
+public class AnnotatorPairJudgmentCount implements Serializable {
+
+	@Serial
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The composite primary key, see {@link AnnotatorPairJudgmentCountId}.
+	 */
+	@Setter(AccessLevel.NONE)
+	@EmbeddedId
+	private AnnotatorPairJudgmentCountId id;
+
+	/**
+	 * The number of pairs of uses with these judgments.
+	 */
+	@Column(name = "pair_count", nullable = false)
+	private long pairCount;
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+		AnnotatorPairJudgmentCount other = (AnnotatorPairJudgmentCount) o;
+		return getId() != null && Objects.equals(getId(), other.getId());
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(id);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" +
+				"EmbeddedId = " + id + ", " +
+				"pairCount = " + pairCount + ")";
+	}
+}
@@ -0,0 +1,94 @@
+package durel.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Represents the composite primary key for the {@link AnnotatorPairJudgmentCount} entity, i.e., a cell of the confusion
+ * matrix of two annotators on a lemma.
+ * <p>
+ * Lombok Annotations:
+ * <ul>
+ *   <li>{@code @NoArgsConstructor} - Generates a no-argument constructor.</li>
+ *   <li>{@code @AllArgsConstructor} - Generates a constructor with all fields.</li>
+ *   <li>{@code @Getter} - Generates getters for all fields.</li>
+ *   <li>{@code @Setter} - Generates setters for all fields.</li>
+ *   <li>{@code @Slf4j} - Provides a logger field named 'log' in the class.</li>
+ * </ul>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Slf4j
+@Embeddable
+public class AnnotatorPairJudgmentCountId implements Serializable {
+
+	@Serial
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The unique {@link Lemma#getId()} of the lemma.
+	 */
+	@Column(name = "word_id", nullable = false)
+	private int lemmaId;
+
+	/**
+	 * The username of the first annotator, which is smaller than the username of the second annotator.
+	 */
+	@Column(name = "annotator1_id", length = 20, nullable = false)
+	private String annotator1;
+
+	/**
+	 * The username of the second annotator.
+	 */
+	@Column(name = "annotator2_id", length = 20, nullable = false)
+	private String annotator2;
+
+	/**
+	 * The judgment of the first annotator.
+	 */
+	@Column(name = "judgment1", nullable = false)
+	private float judgment1;
+
+	/**
+	 * The judgment of the second annotator.
+	 */
+	@Column(name = "judgment2", nullable = false)
+	private float judgment2;
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+		AnnotatorPairJudgmentCountId other = (AnnotatorPairJudgmentCountId) o;
+		return lemmaId == other.lemmaId && Float.compare(judgment1, other.judgment1) == 0
+				&& Float.compare(judgment2, other.judgment2) == 0
+				&& Objects.equals(annotator1, other.annotator1) && Objects.equals(annotator2, other.annotator2);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(lemmaId, annotator1, annotator2, judgment1, judgment2);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" +
+				"wordId = " + lemmaId + ", " +
+				"annotator1Id = " + annotator1 + ", " +
+				"annotator2Id = " + annotator2 + ", " +
+				"judgment1 = " + judgment1 + ", " +
+				"judgment2 = " + judgment2 + ")";
+	}
+}
@@ -6,6 +6,7 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Hibernate;
 import org.hibernate.annotations.Cascade;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
 import java.io.Serial;
@@ -17,6 +18,8 @@ import java.util.Set;
  * Represents a Lemma (word) entity.
  * <p>
  * Holds information about a lemma, its associated {@link Project}, and its {@link Use}s and {@link AnnotationSequence}.
+ * Also holds denormalized counters of uses, pairs and annotations. As they are updated with bulk statements,
+ * {@code @DynamicUpdate} ensures that saving the entity only writes the columns that actually changed.
  * <p>
  * Lombok Annotations:
  * <ul>
@@ -31,6 +34,7 @@ import java.util.Set;
 @Setter
 @Slf4j
 @Entity
+@DynamicUpdate
 @Table(name = "word", schema = "public")
 public class Lemma implements Serializable {
 	
@@ -96,6 +100,34 @@ public class Lemma implements Serializable {
 	@Cascade(org.hibernate.annotations.CascadeType.ALL)
 	private Set<AnnotationSequence> annotationSequences = new HashSet<>();
 
+	/**
+	 * The number of {@link Use uses} of the lemma.
+	 * <p>
+	 * This counter is denormalized, so that the size of the lemma is known without touching the sentence table. It is
+	 * set when the lemma is uploaded.
+	 */
+	@Column(name = "use_count", nullable = false)
+	private int useCount;
+
+	/**
+	 * The number of uploaded {@link Instance instances} (pairs) of the lemma.
+	 * <p>
+	 * This counter is denormalized, so that the length of annotation sequences is known without touching the pair
+	 * table. It is zero for projects with all possible pairs, and updated after each instance upload.
+	 */
+	@Column(name = "pair_count", nullable = false)
+	private int pairCount;
+
+	/**
+	 * The version of the annotations of the lemma, incremented by every statement that writes annotations of the lemma,
+	 * see {@link durel.services.WordService#lockForAnnotationWrite(Lemma, String, java.util.List)}.
+	 * <p>
+	 * Cached results of annotation filter queries are keyed by the versions of the lemmas they cover, so that they are
+	 * never served after a write, see {@link durel.services.annotation.AnnotationFilterQueryService}.
+	 */
+	@Column(name = "annotation_version", nullable = false)
+	private long annotationVersion;
+
 	/**
 	 * Adds a {@link Use} instance to the lemma's set of uses.
 	 *
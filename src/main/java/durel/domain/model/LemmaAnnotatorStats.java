@@ -0,0 +1,116 @@
+package durel.domain.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+
+import javax.persistence.*;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Represents the statistics of the annotations of an annotator on a lemma: the number of annotations with each
+ * judgment, and the number of pairs of uses that other annotators judged as well.
+ * <p>
+ * The statistics are recomputed together with the {@link LemmaStats} of the lemma (see
+ * {@link durel.services.statistics.LemmaStatisticsService}).
+ * <p>
+ * Lombok Annotations:
+ * <ul>
+ *   <li>{@code @NoArgsConstructor} - Generates a no-argument constructor.</li>
+ *   <li>{@code @AllArgsConstructor} - Generates a constructor with all fields.</li>
+ *   <li>{@code @Getter} - Generates getters for all fields.</li>
+ *   <li>{@code @Setter} - Generates setters for all fields.</li>
+ *   <li>{@code @Slf4j} - Provides a logger field named 'log' in the class.</li>
+ * </ul>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Slf4j
+@Entity
+@Table(name = "lemma_annotator_stats", schema = "public")
+public class LemmaAnnotatorStats implements Serializable {
+
+	@Serial
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The composite primary key, see {@link LemmaAnnotatorStatsId}.
+	 */
+	@Setter(AccessLevel.NONE)
+	@EmbeddedId
+	private LemmaAnnotatorStatsId id;
+
+	/**
+	 * The numbers of annotations with judgment 0 to 4.
+	 */
+	@Column(name = "judgment0_count", nullable = false)
+	private long judgment0Count;
+
+	@Column(name = "judgment1_count", nullable = false)
+	private long judgment1Count;
+
+	@Column(name = "judgment2_count", nullable = false)
+	private long judgment2Count;
+
+	@Column(name = "judgment3_count", nullable = false)
+	private long judgment3Count;
+
+	@Column(name = "judgment4_count", nullable = false)
+	private long judgment4Count;
+
+	/**
+	 * The number of annotations with a judgment that is not a whole number from 0 to 4, e.g., an uploaded mean.
+	 */
+	@Column(name = "other_judgment_count", nullable = false)
+	private long otherJudgmentCount;
+
+	/**
+	 * The sum of all judgments of the annotator.
+	 */
+	@Column(name = "judgment_sum", nullable = false)
+	private double judgmentSum;
+
+	/**
+	 * The number of pairs of uses of the annotator that at least one other annotator judged as well.
+	 */
+	@Column(name = "shared_pair_count", nullable = false)
+	private long sharedPairCount;
+
+	/**
+	 * @return The numbers of annotations with judgment 0 to 4.
+	 */
+	public long[] getJudgmentCounts() {
+		return new long[]{judgment0Count, judgment1Count, judgment2Count, judgment3Count, judgment4Count};
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+		LemmaAnnotatorStats other = (LemmaAnnotatorStats) o;
+		return getId() != null && Objects.equals(getId(), other.getId());
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(id);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" +
+				"EmbeddedId = " + id + ", " +
+				"judgmentCounts = " + Arrays.toString(getJudgmentCounts()) + ", " +
+				"otherJudgmentCount = " + otherJudgmentCount + ", " +
+				"sharedPairCount = " + sharedPairCount + ")";
+	}
+}
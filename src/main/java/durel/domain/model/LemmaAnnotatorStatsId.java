@@ -0,0 +1,70 @@
+package durel.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Represents the composite primary key for the {@link LemmaAnnotatorStats} entity, i.e., an annotator of a lemma.
+ * <p>
+ * Lombok Annotations:
+ * <ul>
+ *   <li>{@code @NoArgsConstructor} - Generates a no-argument constructor.</li>
+ *   <li>{@code @AllArgsConstructor} - Generates a constructor with all fields.</li>
+ *   <li>{@code @Getter} - Generates getters for all fields.</li>
+ *   <li>{@code @Setter} - Generates setters for all fields.</li>
+ *   <li>{@code @Slf4j} - Provides a logger field named 'log' in the class.</li>
+ * </ul>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Slf4j
+@Embeddable
+public class LemmaAnnotatorStatsId implements Serializable {
+
+	@Serial
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The unique {@link Lemma#getId()} of the lemma.
+	 */
+	@Column(name = "word_id", nullable = false)
+	private int lemmaId;
+
+	/**
+	 * The username of the annotator.
+	 */
+	@Column(name = "annotator_id", length = 20, nullable = false)
+	private String annotator;
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+		LemmaAnnotatorStatsId other = (LemmaAnnotatorStatsId) o;
+		return lemmaId == other.lemmaId && Objects.equals(annotator, other.annotator);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(lemmaId, annotator);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" +
+				"wordId = " + lemmaId + ", " +
+				"annotatorId = " + annotator + ")";
+	}
+}
@@ -0,0 +1,120 @@
+package durel.domain.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+
+import javax.persistence.*;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Represents the statistics of the annotations of a lemma: the number of annotations, their mean judgment and the
+ * number of pairs of uses covered by them. The statistics of each annotator of the lemma are held by
+ * {@link LemmaAnnotatorStats}.
+ * <p>
+ * The statistics are recomputed asynchronously after each write of annotations of the lemma (see
+ * {@link durel.services.statistics.LemmaStatisticsService}), so that the statistics pages read them instead of the
+ * annotations. They may lag behind the annotations for a moment; the annotation version tells which annotations they
+ * were computed from.
+ * <p>
+ * Lombok Annotations:
+ * <ul>
+ *   <li>{@code @NoArgsConstructor} - Generates a no-argument constructor.</li>
+ *   <li>{@code @AllArgsConstructor} - Generates a constructor with all fields.</li>
+ *   <li>{@code @Getter} - Generates getters for all fields.</li>
+ *   <li>{@code @Setter} - Generates setters for all fields.</li>
+ *   <li>{@code @Slf4j} - Provides a logger field named 'log' in the class.</li>
+ * </ul>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Slf4j
+@Entity
+@Table(name = "lemma_stats", schema = "public")
+public class LemmaStats implements Serializable {
+
+	@Serial
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The unique {@link Lemma#getId()} of the lemma.
+	 */
+	@Setter(AccessLevel.NONE)
+	@Id
+	@Column(name = "word_id", nullable = false)
+	private int lemmaId;
+
+	/**
+	 * The {@link Lemma#getAnnotationVersion()} of the annotations from which the statistics were computed.
+	 */
+	@Column(name = "annotation_version", nullable = false)
+	private long annotationVersion;
+
+	/**
+	 * The number of annotations of the lemma.
+	 */
+	@Column(name = "annotation_count", nullable = false)
+	private long annotationCount;
+
+	/**
+	 * The number of annotations with a judgment other than 0 (cannot decide), which make up the mean judgment.
+	 */
+	@Column(name = "judged_annotation_count", nullable = false)
+	private long judgedAnnotationCount;
+
+	/**
+	 * The sum of all judgments of the lemma.
+	 */
+	@Column(name = "judgment_sum", nullable = false)
+	private double judgmentSum;
+
+	/**
+	 * The number of pairs of uses judged by at least one annotator.
+	 */
+	@Column(name = "annotated_pair_count", nullable = false)
+	private long annotatedPairCount;
+
+	/**
+	 * The number of pairs of uses judged by at least two annotators.
+	 */
+	@Column(name = "shared_pair_count", nullable = false)
+	private long sharedPairCount;
+
+	/**
+	 * @return The mean of the judgments other than 0, NaN if there are none.
+	 */
+	public double getMeanJudgment() {
+		return judgedAnnotationCount == 0 ? Double.NaN : judgmentSum / judgedAnnotationCount;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+		LemmaStats other = (LemmaStats) o;
+		return lemmaId == other.lemmaId;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(lemmaId);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" +
+				"wordId = " + lemmaId + ", " +
+				"annotationVersion = " + annotationVersion + ", " +
+				"annotationCount = " + annotationCount + ", " +
+				"annotatedPairCount = " + annotatedPairCount + ", " +
+				"sharedPairCount = " + sharedPairCount + ")";
+	}
+}
@@ -51,6 +51,14 @@ public class UsePair<U1 extends BaseUse> implements Serializable {
         this.use2 = use2;
     }
 
+    public U1 getUse1() {
+        return use1;
+    }
+
+    public U1 getUse2() {
+        return use2;
+    }
+
     public Set<U1> getUses() {
         return Set.of(use1, use2);
     }
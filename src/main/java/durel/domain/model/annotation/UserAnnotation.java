@@ -42,7 +42,9 @@ import java.util.Set;
 @Setter
 @Slf4j
 @Entity
-@Table(name = "annotation", schema = "public")
+@Table(name = "annotation", schema = "public", indexes = {
+		@Index(name = "annotation_word_annotator_idx", columnList = "word_id, annotator_id"),
+		@Index(name = "annotation_project_judgment_idx", columnList = "project_name, judgment")})
 public class UserAnnotation implements Serializable, DefaultAnnotation<Use, UsePairAndAnnotator> {
 	
 	@Serial
@@ -78,8 +80,26 @@ public class UserAnnotation implements Serializable, DefaultAnnotation<Use, UseP
 	@Column(name = "judgment", nullable = false)
 	private Float judgment;
 
+	/**
+	 * The {@link Lemma} of the annotated uses.
+	 * <p>
+	 * This value is derived from the first use and stored redundantly, so that filters on the lemma do not have to join
+	 * the uses. It is set when the annotation is created and never changes.
+	 * Fetch type is set to LAZY, as usually only its id is needed.
+	 */
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "word_id")
 	private Lemma lemma;
 
+	/**
+	 * The name of the project of the annotated uses.
+	 * <p>
+	 * This value is derived from the lemma and stored redundantly, so that filters on the project do not have to join
+	 * the uses and lemmas. It is set when the annotation is created and never changes.
+	 */
+	@Column(name = "project_name", length = 40)
+	private String projectName;
+
 	/**
 	 * Additional comments provided by the annotator.
 	 * <p>
@@ -0,0 +1,51 @@
+package durel.domain.repository;
+
+import durel.domain.model.AnnotatorPairJudgmentCount;
+import durel.domain.model.AnnotatorPairJudgmentCountId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AnnotatorPairJudgmentCountDAO extends JpaRepository<AnnotatorPairJudgmentCount, AnnotatorPairJudgmentCountId> {
+
+    @Modifying
+    @Query("update AnnotatorPairJudgmentCount c set c.pairCount = c.pairCount + :delta where c.id = :id")
+    int addToPairCount(@Param("id") AnnotatorPairJudgmentCountId id, @Param("delta") long delta);
+
+    @Query("select c from AnnotatorPairJudgmentCount c where c.id.lemmaId in :lemmaIds " +
+            "and c.id.annotator1 in :usernames and c.id.annotator2 in :usernames and c.pairCount > 0")
+    List<AnnotatorPairJudgmentCount> findByLemmasAndAnnotators(@Param("lemmaIds") Collection<Integer> lemmaIds,
+                                                               @Param("usernames") Collection<String> usernames);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "delete from annotator_pair_judgment_count where word_id in (select id from word where project_id = :projectName)",
+            nativeQuery = true)
+    int deleteByProject(@Param("projectName") String projectName);
+
+    /**
+     * Counts the cells of all lemmas of the project from the annotations, see the migration that created the table.
+     * An annotator who judged a pair of uses in both orders has no judgment of the pair, as in
+     * {@link durel.utils.JudgmentMatrix}.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "insert into annotator_pair_judgment_count (word_id, annotator1_id, annotator2_id, judgment1, judgment2, pair_count) " +
+            "select a1.word_id, a1.annotator_id, a2.annotator_id, a1.judgment, a2.judgment, count(*) " +
+            "from annotation a1 join annotation a2 on a2.word_id = a1.word_id and a2.annotator_id > a1.annotator_id " +
+            "and ((a2.left_sentence_id = a1.left_sentence_id and a2.right_sentence_id = a1.right_sentence_id) " +
+            "or (a2.left_sentence_id = a1.right_sentence_id and a2.right_sentence_id = a1.left_sentence_id)) " +
+            "where a1.project_name = :projectName " +
+            "and not exists (select 1 from annotation r1 where r1.annotator_id = a1.annotator_id " +
+            "and r1.left_sentence_id = a1.right_sentence_id and r1.right_sentence_id = a1.left_sentence_id " +
+            "and r1.left_sentence_id <> r1.right_sentence_id) " +
+            "and not exists (select 1 from annotation r2 where r2.annotator_id = a2.annotator_id " +
+            "and r2.left_sentence_id = a2.right_sentence_id and r2.right_sentence_id = a2.left_sentence_id " +
+            "and r2.left_sentence_id <> r2.right_sentence_id) " +
+            "group by a1.word_id, a1.annotator_id, a2.annotator_id, a1.judgment, a2.judgment", nativeQuery = true)
+    int insertCountsOfProject(@Param("projectName") String projectName);
+}
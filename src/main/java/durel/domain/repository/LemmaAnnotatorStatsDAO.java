@@ -0,0 +1,27 @@
+package durel.domain.repository;
+
+import durel.domain.model.LemmaAnnotatorStats;
+import durel.domain.model.LemmaAnnotatorStatsId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LemmaAnnotatorStatsDAO extends JpaRepository<LemmaAnnotatorStats, LemmaAnnotatorStatsId> {
+
+    List<LemmaAnnotatorStats> findById_LemmaId(int lemmaId);
+
+    @Query("select s from LemmaAnnotatorStats s where s.id.annotator in :usernames " +
+            "and s.id.lemmaId in (select l.id from Lemma l where l.project.projectName = :projectName)")
+    List<LemmaAnnotatorStats> findByProjectNameAndAnnotators(@Param("projectName") String projectName,
+                                                             @Param("usernames") Collection<String> usernames);
+
+    @Modifying(flushAutomatically = true)
+    @Query("delete from LemmaAnnotatorStats s where s.id.lemmaId = :lemmaId")
+    int deleteByLemmaId(@Param("lemmaId") int lemmaId);
+}
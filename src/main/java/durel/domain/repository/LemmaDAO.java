@@ -1,10 +1,15 @@
 package durel.domain.repository;
 
+import durel.domain.AnnotationVersion;
 import durel.domain.model.Project;
 import durel.domain.model.Lemma;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,4 +21,40 @@ public interface LemmaDAO extends JpaRepository<Lemma, Integer> {
     Optional<Lemma> findByProject_ProjectNameAndLemma(String projectName, String word);
 
     List<Lemma> findByProject_ProjectNameOrderByLemmaAsc(String projectName);
+
+    /**
+     * Increments the annotation version of the lemma, which locks its row until the end of the transaction.
+     */
+    @Modifying
+    @Query("update Lemma l set l.annotationVersion = l.annotationVersion + 1 where l.id = :lemmaId")
+    int incrementAnnotationVersion(@Param("lemmaId") int lemmaId);
+
+    /**
+     * Increments the annotation versions of all lemmas of the project, which locks their rows until the end of the
+     * transaction.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Lemma l set l.annotationVersion = l.annotationVersion + 1 where l.project = :project")
+    int incrementAnnotationVersions(@Param("project") Project project);
+
+    @Query("select l.annotationVersion from Lemma l where l.id = :lemmaId")
+    Optional<Long> findAnnotationVersionById(@Param("lemmaId") int lemmaId);
+
+    @Query("select l.id from Lemma l where l.project.projectName = :projectName")
+    List<Integer> findIdsByProjectName(@Param("projectName") String projectName);
+
+    @Query("select l.id from Lemma l order by l.id")
+    List<Integer> findAllIds();
+
+    @Query("select new durel.domain.AnnotationVersion(max(l.id), count(l), sum(l.annotationVersion)) from Lemma l where l.id in :lemmaIds")
+    AnnotationVersion findAnnotationVersionOfLemmas(@Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    @Query("select new durel.domain.AnnotationVersion(max(l.id), count(l), sum(l.annotationVersion)) from Lemma l " +
+            "where l.project.projectName in :projectNames")
+    AnnotationVersion findAnnotationVersionOfProjects(@Param("projectNames") Collection<String> projectNames);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update Lemma l set l.pairCount = (select count(i) from Instance i where i.project = l.project and i.lemma = l.lemma) " +
+            "where l.project = :project")
+    int recountPairCounts(@Param("project") Project project);
 }
@@ -0,0 +1,16 @@
+package durel.domain.repository;
+
+import durel.domain.model.LemmaStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface LemmaStatsDAO extends JpaRepository<LemmaStats, Integer> {
+
+    @Query("select s from LemmaStats s where s.lemmaId in (select l.id from Lemma l where l.project.projectName = :projectName)")
+    List<LemmaStats> findByProjectName(@Param("projectName") String projectName);
+}
@@ -1,9 +1,12 @@
 package durel.domain.repository;
 
+import durel.domain.UseNodeRow;
 import durel.domain.model.Project;
 import durel.domain.model.Use;
 import durel.domain.model.Lemma;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -20,6 +23,12 @@ public interface SentenceDAO extends JpaRepository<Use,Integer> {
 
     List<Use> findByLemmaOrderByIdAsc(Lemma lemma);
 
+    @Query("select u.id from Use u where u.lemma = ?1 order by u.id asc")
+    List<Integer> findIdsByLemma(Lemma lemma);
+
+    @Query("select new durel.domain.UseNodeRow(u.id, u.csvId, u.context, u.grouping) from Use u where u.lemma.id = :lemmaId order by u.id asc")
+    List<UseNodeRow> findNodeRowsByLemmaId(@Param("lemmaId") int lemmaId);
+
     int countByLemma_Project(Project project);
 
     Stream<Use> findByLemma_Project(Project project);
@@ -2,6 +2,9 @@ package durel.domain.repository;
 
 import durel.domain.model.*;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -13,4 +16,40 @@ public interface SequenceDAO extends JpaRepository<AnnotationSequence, Annotatio
     Optional<AnnotationSequence> findByLemmaAndUser(Lemma lemma, User username);
 
     List<AnnotationSequence> findAllByLemma_Project(Project project);
+
+    @Modifying
+    @Query("update AnnotationSequence s set s.index = s.index + :delta where s.id.lemmaId = :lemmaId and s.id.username = :username")
+    int incrementIndex(@Param("lemmaId") int lemmaId, @Param("username") String username, @Param("delta") int delta);
+
+    @Query("select s.index from AnnotationSequence s where s.id.lemmaId = :lemmaId and s.id.username = :username")
+    int findIndexById(@Param("lemmaId") int lemmaId, @Param("username") String username);
+
+    @Query("select s.annotatedPairs from AnnotationSequence s where s.id.lemmaId = :lemmaId and s.id.username = :username")
+    byte[] findAnnotatedPairsById(@Param("lemmaId") int lemmaId, @Param("username") String username);
+
+    @Modifying
+    @Query("update AnnotationSequence s set s.annotatedPairs = :annotatedPairs where s.id.lemmaId = :lemmaId and s.id.username = :username")
+    int updateAnnotatedPairs(@Param("lemmaId") int lemmaId, @Param("username") String username,
+                             @Param("annotatedPairs") byte[] annotatedPairs);
+
+    /**
+     * Finds the sequences whose index deviates from the number of annotations of their annotator and lemma, without
+     * loading their rows.
+     */
+    @Query("select new durel.domain.model.AnnotationSequenceId(s.id.lemmaId, s.id.username) from AnnotationSequence s " +
+            "where s.index <> (select count(a) from UserAnnotation a where a.lemma.id = s.id.lemmaId " +
+            "and a.id.annotator.username = s.id.username)")
+    List<AnnotationSequenceId> findIdsWithDeviatingIndex();
+
+    /**
+     * Sets the index of a sequence to the number of annotations of its annotator and lemma and drops its bitmap of
+     * annotated pairs, if the index deviates. The row has to be locked before (see {@link #incrementIndex}), so that
+     * the count includes the annotations of writers that held the lock.
+     */
+    @Modifying
+    @Query(value = "update seq set idx = (select count(*) from annotation a where a.word_id = seq.word_id and a.annotator_id = seq.annotator_id), " +
+            "annotated_pairs = null where word_id = :lemmaId and annotator_id = :username " +
+            "and idx <> (select count(*) from annotation a where a.word_id = seq.word_id and a.annotator_id = seq.annotator_id)",
+            nativeQuery = true)
+    int reconcileIndex(@Param("lemmaId") int lemmaId, @Param("username") String username);
 }
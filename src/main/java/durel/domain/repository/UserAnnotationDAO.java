@@ -1,10 +1,17 @@
 package durel.domain.repository;
 
+import durel.domain.AnnotatedUsePair;
+import durel.domain.AnnotationRow;
 import durel.domain.model.annotation.UserAnnotation;
 import durel.domain.model.UsePairAndAnnotator;
+import durel.dto.responses.statistics.AnnotatorLemmaCount;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +19,25 @@ public interface UserAnnotationDAO extends JpaRepository<UserAnnotation, UsePair
 
     Optional<UserAnnotation> findByIdOrId(UsePairAndAnnotator id1, UsePairAndAnnotator id2);
 
+    @Query("select a from UserAnnotation a where a.id.annotator.username = :username " +
+            "and a.id.pair.use1.id in :useIds and a.id.pair.use2.id in :useIds")
+    List<UserAnnotation> findByAnnotatorAndUses(@Param("username") String username, @Param("useIds") Collection<Integer> useIds);
+
+    @Query("select new durel.dto.responses.statistics.AnnotatorLemmaCount(a.id.annotator.username, a.lemma.id, count(a)) " +
+            "from UserAnnotation a where a.projectName = :projectName " +
+            "group by a.id.annotator.username, a.lemma.id")
+    List<AnnotatorLemmaCount> countGroupedByAnnotatorAndLemma(@Param("projectName") String projectName);
+
+    @Query("select new durel.domain.AnnotatedUsePair(a.id.annotator.username, a.lemma.id, a.id.pair.use1.id, a.id.pair.use2.id) " +
+            "from UserAnnotation a where a.lemma.id = :lemmaId and a.id.annotator.username = :username")
+    List<AnnotatedUsePair> findAnnotatedUsePairs(@Param("username") String username, @Param("lemmaId") int lemmaId);
+
+    @Query("select new durel.domain.AnnotationRow(a.lemma.id, a.id.pair.use1.id, a.id.pair.use2.id, a.id.annotator.username, a.judgment, a.dt) " +
+            "from UserAnnotation a where a.lemma.id = :lemmaId")
+    List<AnnotationRow> findAnnotationRowsOfLemma(@Param("lemmaId") int lemmaId);
+
+    @Query("select new durel.domain.AnnotationRow(a.lemma.id, a.id.pair.use1.id, a.id.pair.use2.id, a.id.annotator.username, a.judgment, a.dt) " +
+            "from UserAnnotation a where a.id.pair.use1.id in :useIds and a.id.pair.use2.id in :useIds")
+    List<AnnotationRow> findAnnotationRowsOfUses(@Param("useIds") Collection<Integer> useIds);
+
 }
@@ -0,0 +1,23 @@
+package durel.dto.requests.annotation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Judgments for several pairs of one annotation sequence, together with the number of pairs to be returned next.
+ * Each judgment is identified by the cursor of its pair, which also serves as idempotency key: resubmitting a judgment
+ * modifies the annotation instead of creating a new one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchJudgmentRequest implements Serializable {
+
+    private List<JudgmentRequest> judgments = new ArrayList<>();
+    private int pageSize = 10;
+}
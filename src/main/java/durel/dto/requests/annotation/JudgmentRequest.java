@@ -0,0 +1,20 @@
+package durel.dto.requests.annotation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Judgment for the current pair of the annotation API, identified by the cursor that has been handed out with it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JudgmentRequest implements Serializable {
+
+    private String cursor;
+    private int judgment;
+    private String comment = "";
+}
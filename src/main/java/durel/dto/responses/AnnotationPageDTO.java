@@ -0,0 +1,19 @@
+package durel.dto.responses;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Response of the annotation browser: one page of annotations, together with the cursor of the next page.
+ */
+@Builder
+@Getter
+public class AnnotationPageDTO {
+
+    private List<AnnotationDTO> annotations;
+
+    // Cursor to be sent back for the next page, null if this is the last page.
+    private String nextCursor;
+}
@@ -0,0 +1,28 @@
+package durel.dto.responses;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Response of the annotation API: the next pair of uses to be judged, together with the signed cursor that has to be
+ * sent back with the judgment.
+ */
+@Builder
+@Getter
+public class AnnotationStepDTO {
+
+    // Signed cursor of the current pair, null if the sequence is finished.
+    private String cursor;
+
+    // The number of the current pair (1-based), or the number of annotated pairs if the sequence is finished.
+    private int currentPair;
+
+    private int sequenceLength;
+
+    private boolean finished;
+
+    // The two uses of the current pair in random order, empty if the sequence is finished.
+    private List<UseDTO> uses;
+}
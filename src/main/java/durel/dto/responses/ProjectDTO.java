@@ -22,4 +22,7 @@ public class ProjectDTO {
     private final String lastEdited;
     private final Integer noOfWords;
     private final Integer noOfAnnotators;
+    private final Long noOfAnnotations;
+    private final Long noOfAnnotatedPairs;
+    private final Double meanJudgment;
 }
@@ -32,4 +32,7 @@ public class UseDTO {
 
     private String pos;
     private String sentenceDate;
+
+    // The unsplit context, as uploaded.
+    private String context;
 }
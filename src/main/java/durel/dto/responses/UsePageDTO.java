@@ -0,0 +1,19 @@
+package durel.dto.responses;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Response of the uses browser: one page of rendered uses, together with the cursor of the next page.
+ */
+@Builder
+@Getter
+public class UsePageDTO {
+
+    private List<UseDTO> uses;
+
+    // Cursor to be sent back for the next page, null if this is the last page.
+    private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package durel.dto.responses.statistics;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Response of the agreement table with confidence intervals: the values of a metric for a lemma, in the layout of
+ * {@link AgreementStatisticsData#getAgreementData()}, with the bounds of their bootstrap confidence intervals.
+ */
+@Builder
+@Getter
+public class AgreementTableDTO {
+
+    private double[][] values;
+
+    // The confidence level of the intervals, null if no intervals were computed (e.g., for a lemma without annotations).
+    private Double confidenceLevel;
+
+    private double[][] lowerBounds;
+
+    private double[][] upperBounds;
+}
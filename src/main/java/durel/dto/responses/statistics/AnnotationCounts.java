@@ -15,6 +15,9 @@ public class AnnotationCounts {
 
     private int noOfPairs;
 
+    // The number of pairs judged by at least one annotator (of all annotators, not only the selected ones).
+    private int noOfAnnotatedPairs;
+
     private int noOfAnnotations;
 
     private int noOfAnnotators;
@@ -0,0 +1,24 @@
+package durel.dto.responses.statistics;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class AnnotatorLemmaCount {
+
+    private String annotator;
+    private Integer lemmaId;
+    private Long count;
+
+    public AnnotatorLemmaCount(String annotator, Integer lemmaId, Long count) {
+        this.annotator = annotator;
+        this.lemmaId = lemmaId;
+        this.count = count;
+    }
+
+    @Override
+    public String toString() {
+        return annotator + "," + lemmaId + ":" + count + " ";
+    }
+}
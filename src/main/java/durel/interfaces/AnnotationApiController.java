@@ -0,0 +1,100 @@
+package durel.interfaces;
+
+import durel.dto.requests.annotation.BatchJudgmentRequest;
+import durel.dto.requests.annotation.JudgmentRequest;
+import durel.dto.responses.AnnotationStepDTO;
+import durel.exceptions.SystemErrorException;
+import durel.exceptions.UserErrorException;
+import durel.services.annotationProcess.StatelessAnnotationProcessService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * JSON counterpart of the {@link AnnotationProcessController}. The annotation state is not kept in the session but
+ * passed back and forth as a signed cursor, so that requests of one annotator can be served by different nodes.
+ * <ul>
+ *   <li>{@code POST /api/annotation/start} starts or continues the annotation of a lemma and returns the first pair.</li>
+ *   <li>{@code POST /api/annotation/judgment} saves the judgment for the pair of the cursor and returns the next pair.</li>
+ *   <li>{@code POST /api/annotation/judgments} saves the judgments for several pairs in one transaction and returns the
+ *   next page of pairs.</li>
+ * </ul>
+ * If the same new pair is judged by two concurrent requests of the annotator, the request that saves it second fails on
+ * the primary key of the annotation and is answered with 409 (Conflict). Judgments are idempotent by their cursors, so
+ * the client can resend it, which then modifies the annotation.
+ */
+@Controller
+@RequestMapping("/api/annotation")
+@Slf4j
+public class AnnotationApiController {
+
+    private final StatelessAnnotationProcessService statelessAnnotationProcessService;
+
+    @Autowired
+    public AnnotationApiController(StatelessAnnotationProcessService statelessAnnotationProcessService) {
+        this.statelessAnnotationProcessService = statelessAnnotationProcessService;
+    }
+
+    @PostMapping("/start")
+    @ResponseBody
+    public ResponseEntity<AnnotationStepDTO> startAnnotation(@RequestParam("projectName") String projectName,
+                                                             @RequestParam("lemma") String lemma, Principal principal) {
+        try {
+            return ResponseEntity.ok(statelessAnnotationProcessService.startAnnotation(principal.getName(), projectName, lemma));
+        } catch (UserErrorException e) {
+            log.warn("{}: {}", principal.getName(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/judgment")
+    @ResponseBody
+    public ResponseEntity<AnnotationStepDTO> saveJudgment(@RequestBody JudgmentRequest judgmentRequest, Principal principal) {
+        if (isInvalidJudgment(judgmentRequest)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(statelessAnnotationProcessService.saveJudgment(principal.getName(),
+                    judgmentRequest.getCursor(), judgmentRequest.getJudgment(), judgmentRequest.getComment()));
+        } catch (UserErrorException e) {
+            log.warn("{}: {}", principal.getName(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (DataIntegrityViolationException e) {
+            log.warn("{}: Concurrent judgment of the same pair: {}", principal.getName(), e.getMostSpecificCause().getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (SystemErrorException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/judgments")
+    @ResponseBody
+    public ResponseEntity<List<AnnotationStepDTO>> saveJudgments(@RequestBody BatchJudgmentRequest batchJudgmentRequest, Principal principal) {
+        if (batchJudgmentRequest.getJudgments() == null || batchJudgmentRequest.getJudgments().stream().anyMatch(this::isInvalidJudgment)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(statelessAnnotationProcessService.saveJudgments(principal.getName(),
+                    batchJudgmentRequest.getJudgments(), batchJudgmentRequest.getPageSize()));
+        } catch (UserErrorException e) {
+            log.warn("{}: {}", principal.getName(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (DataIntegrityViolationException e) {
+            log.warn("{}: Concurrent judgment of the same pair: {}", principal.getName(), e.getMostSpecificCause().getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (SystemErrorException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    private boolean isInvalidJudgment(JudgmentRequest judgmentRequest) {
+        return judgmentRequest == null || judgmentRequest.getJudgment() < 0 || judgmentRequest.getJudgment() > 4;
+    }
+}
@@ -0,0 +1,126 @@
+package durel.interfaces;
+
+import durel.domain.AnnotationPageRequest;
+import durel.domain.UsePageRequest;
+import durel.domain.model.Lemma;
+import durel.dto.responses.AnnotationPageDTO;
+import durel.dto.responses.UsePageDTO;
+import durel.exceptions.UserErrorException;
+import durel.services.UseBrowserService;
+import durel.services.WordService;
+import durel.services.annotation.AnnotationBrowserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * JSON endpoints of the data pages, which load their content page by page instead of holding it in the session.
+ * <ul>
+ *   <li>{@code GET /api/data/annotations} returns a page of the annotations of a lemma that are visible to the user,
+ *   optionally filtered by annotator, judgment and date, and sorted by annotator, judgment or date. The
+ *   {@code nextCursor} of the response is passed as {@code cursor} to get the next page.</li>
+ *   <li>{@code GET /api/data/uses} returns a page of the rendered uses of a lemma, optionally filtered by date,
+ *   grouping and part of speech, and sorted by id, date, grouping or part of speech. Paged like the annotations.</li>
+ * </ul>
+ */
+@Controller
+@RequestMapping("/api/data")
+@Slf4j
+public class DataApiController {
+
+    private final WordService wordService;
+
+    private final AnnotationBrowserService annotationBrowserService;
+
+    private final UseBrowserService useBrowserService;
+
+    @Autowired
+    public DataApiController(WordService wordService, AnnotationBrowserService annotationBrowserService, UseBrowserService useBrowserService) {
+        this.wordService = wordService;
+        this.annotationBrowserService = annotationBrowserService;
+        this.useBrowserService = useBrowserService;
+    }
+
+    @GetMapping("/annotations")
+    @ResponseBody
+    public ResponseEntity<AnnotationPageDTO> getAnnotations(@RequestParam("projectName") String projectName,
+                                                            @RequestParam("lemma") String lemmaName,
+                                                            @RequestParam(value = "annotator", required = false) String annotator,
+                                                            @RequestParam(value = "judgment", required = false) Float judgment,
+                                                            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to,
+                                                            @RequestParam(value = "sort", defaultValue = "ANNOTATOR") AnnotationPageRequest.Sort sort,
+                                                            @RequestParam(value = "descending", defaultValue = "false") boolean descending,
+                                                            @RequestParam(value = "cursor", required = false) String cursor,
+                                                            @RequestParam(value = "pageSize", defaultValue = "50") int pageSize,
+                                                            Principal principal) {
+        Lemma lemma = wordService.getLemmaObjectByProjectNameAndLemma(projectName, lemmaName);
+        if (lemma == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            AnnotationPageRequest annotationPageRequest = AnnotationPageRequest.builder()
+                    .lemmaId(lemma.getId())
+                    .viewer(principal.getName())
+                    .annotator(annotator)
+                    .judgment(judgment)
+                    .from(from)
+                    // The end date is inclusive, i.e., the annotations of the whole day are included.
+                    .to(to != null ? Date.from(to.toInstant().plus(1, ChronoUnit.DAYS)) : null)
+                    .sort(sort)
+                    .descending(descending)
+                    .after(cursor != null ? annotationBrowserService.decodeCursor(cursor, sort, descending) : null)
+                    .pageSize(pageSize)
+                    .build();
+            return ResponseEntity.ok(annotationBrowserService.getPage(annotationPageRequest));
+        } catch (UserErrorException e) {
+            log.warn("{}: {}", principal.getName(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/uses")
+    @ResponseBody
+    public ResponseEntity<UsePageDTO> getUses(@RequestParam("projectName") String projectName,
+                                              @RequestParam("lemma") String lemmaName,
+                                              @RequestParam(value = "dateFrom", required = false) String dateFrom,
+                                              @RequestParam(value = "dateTo", required = false) String dateTo,
+                                              @RequestParam(value = "grouping", required = false) List<String> groupings,
+                                              @RequestParam(value = "pos", required = false) List<String> pos,
+                                              @RequestParam(value = "sort", defaultValue = "ID") UsePageRequest.Sort sort,
+                                              @RequestParam(value = "descending", defaultValue = "false") boolean descending,
+                                              @RequestParam(value = "cursor", required = false) String cursor,
+                                              @RequestParam(value = "pageSize", defaultValue = "50") int pageSize,
+                                              Principal principal) {
+        Lemma lemma = wordService.getLemmaObjectByProjectNameAndLemma(projectName, lemmaName);
+        if (lemma == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            UsePageRequest.UsePageRequestBuilder usePageRequest = UsePageRequest.builder()
+                    .lemmaId(lemma.getId())
+                    .dateFrom(dateFrom)
+                    .dateTo(dateTo)
+                    .groupings(groupings)
+                    .pos(pos)
+                    .sort(sort)
+                    .descending(descending)
+                    .pageSize(pageSize);
+            if (cursor != null) {
+                useBrowserService.after(usePageRequest, cursor, sort, descending);
+            }
+            return ResponseEntity.ok(useBrowserService.getPage(usePageRequest.build()));
+        } catch (UserErrorException e) {
+            log.warn("{}: {}", principal.getName(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -2,9 +2,7 @@ package durel.interfaces;
 
 import durel.dto.requests.common.SelectLemmaRequest;
 import durel.domain.model.Lemma;
-import durel.services.UseService;
 import durel.services.WordService;
-import durel.services.annotation.AnnotationQueryService;
 import durel.services.LanguageService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,24 +16,17 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.servlet.ModelAndView;
 
 import javax.validation.Valid;
-import java.security.Principal;
 
 @Slf4j
 @Controller
 public class DataController {
     
-    private final UseService useService;
-
-    private final AnnotationQueryService annotationQueryService;
-
     private final LanguageService languageService;
 
     private final WordService wordService;
 
     @Autowired
-    public DataController(UseService useService, AnnotationQueryService annotationQueryService, LanguageService languageService, WordService wordService) {
-        this.useService = useService;
-        this.annotationQueryService = annotationQueryService;
+    public DataController(LanguageService languageService, WordService wordService) {
         this.languageService = languageService;
         this.wordService = wordService;
     }
@@ -60,47 +51,41 @@ public class DataController {
         return new ModelAndView("redirect:/data", model);
     }
 
+    /**
+     * Sets up the uses browser of a lemma. The uses themselves are loaded page by page from {@code /api/data/uses}
+     * (see {@link DataApiController}).
+     */
     @RequestMapping(value = "/uses", method = {RequestMethod.POST, RequestMethod.GET}, params = {"project-select", "word-select"})
     public String setUpUsesPage(final @Valid @ModelAttribute("project-select") String selectedProject,
                                 final @Valid @ModelAttribute("word-select") String selectedLemma,
                                 final Model model) {
-        try {
-            Lemma lemma = wordService.getLemmaObjectByProjectNameAndLemma(selectedProject, selectedLemma);
-            useService.setCurrentUseDTOs(lemma);
-        }
-        catch (Exception e) {
+        Lemma lemma = wordService.getLemmaObjectByProjectNameAndLemma(selectedProject, selectedLemma);
+        if (lemma == null) {
             model.addAttribute("languages", languageService.getLanguages());
-            model.addAttribute("error", e);
+            model.addAttribute("error", new IllegalArgumentException("The word " + selectedLemma + " does not exist in the project " + selectedProject + "."));
             return "pages/data/info";
         }
-        return setUpUsesPage(model);
-    }
-
-    @RequestMapping(value = "/uses", method = {RequestMethod.POST, RequestMethod.GET})
-    public String setUpUsesPage(final Model model) {
-        model.addAttribute("uses", useService.getCurrentUseDTOs());
+        model.addAttribute("projectName", selectedProject);
+        model.addAttribute("lemma", selectedLemma);
         return "pages/data/uses";
     }
 
+    /**
+     * Sets up the annotation browser of a lemma. The annotations themselves are loaded page by page from
+     * {@code /api/data/annotations} (see {@link DataApiController}).
+     */
     @RequestMapping(value = "/annotations", method = {RequestMethod.POST, RequestMethod.GET}, params = {"project-select", "word-select"})
     public String setUpAnnotationsPage(final @Valid @ModelAttribute("project-select") String projectSelect,
                                        final @Valid @ModelAttribute("word-select") String wordSelect,
-                                       final Model model, final Principal principal) {
-        try {
-            Lemma lemma = wordService.getLemmaObjectByProjectNameAndLemma(projectSelect, wordSelect);
-            annotationQueryService.updateAnnotationViewDataList(lemma, principal.getName());
-        }
-        catch (Exception e) {
+                                       final Model model) {
+        Lemma lemma = wordService.getLemmaObjectByProjectNameAndLemma(projectSelect, wordSelect);
+        if (lemma == null) {
             model.addAttribute("languages", languageService.getLanguages());
-            model.addAttribute("error", e);
+            model.addAttribute("error", new IllegalArgumentException("The word " + wordSelect + " does not exist in the project " + projectSelect + "."));
             return "pages/data/uses";
         }
-        return setUpAnnotationsPage(model);
-    }
-
-    @RequestMapping(value = "/annotations", method = {RequestMethod.POST, RequestMethod.GET})
-    public String setUpAnnotationsPage(final Model model) {
-        model.addAttribute("annotations", annotationQueryService.getCurrentAnnotations());
+        model.addAttribute("projectName", projectSelect);
+        model.addAttribute("lemma", wordSelect);
         return "pages/data/annotations";
     }
 }
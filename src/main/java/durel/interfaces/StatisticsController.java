@@ -1,5 +1,7 @@
 package durel.interfaces;
 
+import durel.dto.responses.statistics.AgreementStatisticsData;
+import durel.dto.responses.statistics.AgreementTableDTO;
 import durel.dto.responses.statistics.AnnotationCounts;
 import durel.services.ProjectService;
 import durel.services.dataManagement.download.DownloadProcessService;
@@ -10,14 +12,18 @@ import durel.services.user.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
-import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.ModelAndView;
 
 import java.io.File;
 import java.io.IOException;
@@ -26,6 +32,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.Principal;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 @Controller
 @RequestMapping("/statistics")
@@ -45,87 +54,166 @@ public class StatisticsController {
 
     private final DownloadProcessService downloadProcessService;
 
+    private final long agreementTimeout;
+
+    private final long wugRequestTimeout;
+
     @Autowired
-    public StatisticsController(UserService userService, ProjectService projectService, DatabaseCountsStatisticsService databaseCountsStatisticsService, AgreementStatisticsService agreementStatisticsService, durel.services.statistics.WUGsService wuGsService, DownloadProcessService downloadProcessService) {
+    public StatisticsController(UserService userService, ProjectService projectService, DatabaseCountsStatisticsService databaseCountsStatisticsService, AgreementStatisticsService agreementStatisticsService, durel.services.statistics.WUGsService wuGsService, DownloadProcessService downloadProcessService,
+                                @Value("${statistics.agreement-timeout-ms:300000}") long agreementTimeout,
+                                @Value("${wugs.request-timeout-ms:120000}") long wugRequestTimeout) {
         this.userService = userService;
         this.projectService = projectService;
         this.databaseCountsStatisticsService = databaseCountsStatisticsService;
         this.agreementStatisticsService = agreementStatisticsService;
         this.WUGsService = wuGsService;
         this.downloadProcessService = downloadProcessService;
+        this.agreementTimeout = agreementTimeout;
+        this.wugRequestTimeout = wugRequestTimeout;
     }
 
     /**
-     * Triggers the Graph visualization
+     * Triggers the Graph visualization. The graph is generated by a background job, or served from the cache of
+     * generated graphs; if the job takes longer than the request, the job keeps running and a reload waits for it.
      */
     @RequestMapping(value = "/WUG")
-    public String getWUG(final @RequestParam(value = "project-select") String project,
-                         final @RequestParam(value = "word-select") String word,
-                         final @RequestParam(value = "algorithm") String algorithm,
-                         final @RequestParam(value = "position") String position,
-                         final @RequestParam(value = "threshold", required = false, defaultValue = "") String threshold,
-                         final Model model) {
-        List<String> jsonPathAndHtmlPage = WUGsService.executeWUGsPipeline(algorithm, position, threshold, project, word);
-        //String scriptToLoad = WUGsService.createJSScript(jsonPathAndHtmlPage.get(0));
-        //String html = jsonPathAndHtmlPage.get(1);
-        //model.addAttribute("graphPath", jsonPathAndHtmlPage.get(0));
-        // Return the html document.
-        String nodes = jsonPathAndHtmlPage.get(1);
-        String edges = jsonPathAndHtmlPage.get(0);
-        System.out.println(nodes);
-        System.out.println(edges);
-        model.addAttribute("nodes", nodes);
-        model.addAttribute("edges", edges);
-        model.addAttribute("users", userService.getAllUsernames());
-        return "graphs/new_template";
+    public DeferredResult<Object> getWUG(final @RequestParam(value = "project-select") String project,
+                                         final @RequestParam(value = "word-select") String word,
+                                         final @RequestParam(value = "algorithm") String algorithm,
+                                         final @RequestParam(value = "position") String position,
+                                         final @RequestParam(value = "threshold", required = false, defaultValue = "") String threshold) {
+        return deferWUG(algorithm, position, threshold, project, word, wugResult -> {
+            ModelAndView modelAndView = new ModelAndView("graphs/new_template");
+            modelAndView.addObject("nodes", wugResult.nodes());
+            modelAndView.addObject("edges", wugResult.edges());
+            modelAndView.addObject("users", userService.getAllUsernames());
+            return modelAndView;
+        });
     }
 
     @GetMapping(value = "/WUGdownload", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
-    public ResponseEntity<Resource> downloadFiles(@RequestParam String project,
-                                                  @RequestParam String word, @RequestParam String algorithm,
-                                                  @RequestParam String position, @RequestParam String threshold) {
-
-        List<String> jsonPathAndHtmlPage = WUGsService.executeWUGsPipeline(algorithm, position, threshold, project, word);
-
-        // Set up headers of the response so that the browser can download the content.
-        HttpHeaders header = new HttpHeaders();
-        header.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=WUG_" + project + ".zip");
-        header.add("Cache-Control", "no-cache, no-store, must-revalidate");
-        header.add("Pragma", "no-cache");
-        header.add("Expires", "0");
-
-        String zipPath = downloadProcessService.downloadWUGs(jsonPathAndHtmlPage.get(2));
-        // Set up the file to be transferred.
-        File file = new File(zipPath);
-        Path path = Paths.get(file.getAbsolutePath());
-        //file.delete();
-        ByteArrayResource resource = null;
-        try {
-            resource = new ByteArrayResource(Files.readAllBytes(path));
-        } catch (IOException e) {
-            logger.error(e.getMessage(), e);
-        }
+    public DeferredResult<Object> downloadFiles(@RequestParam String project,
+                                                @RequestParam String word, @RequestParam String algorithm,
+                                                @RequestParam String position, @RequestParam String threshold) {
+        return deferWUG(algorithm, position, threshold, project, word, wugResult -> {
+            // Set up headers of the response so that the browser can download the content.
+            HttpHeaders header = new HttpHeaders();
+            header.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=WUG_" + project + ".zip");
+            header.add("Cache-Control", "no-cache, no-store, must-revalidate");
+            header.add("Pragma", "no-cache");
+            header.add("Expires", "0");
+
+            String zipPath = WUGsService.getArchive(wugResult);
+            // Set up the file to be transferred.
+            File file = new File(zipPath);
+            Path path = Paths.get(file.getAbsolutePath());
+            ByteArrayResource resource = null;
+            try {
+                resource = new ByteArrayResource(Files.readAllBytes(path));
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+
+            // Send the file to be downloader by the user.
+            return ResponseEntity.ok()
+                    .headers(header)
+                    .contentLength(file.length())
+                    .contentType(MediaType.parseMediaType("application/octet-stream"))
+                    .body(resource);
+        });
+    }
 
-        // Send the file to be downloader by the user.
-        return ResponseEntity.ok()
-                .headers(header)
-                .contentLength(file.length())
-                .contentType(MediaType.parseMediaType("application/octet-stream"))
-                .body(resource);
+    /**
+     * Cancels the job that generates a graph, see {@link #getWUG(String, String, String, String, String)}.
+     */
+    @PostMapping("/WUGcancel")
+    @ResponseBody
+    public ResponseEntity<Void> cancelWUG(final @RequestParam(value = "project-select") String project,
+                                          final @RequestParam(value = "word-select") String word,
+                                          final @RequestParam(value = "algorithm") String algorithm,
+                                          final @RequestParam(value = "position") String position,
+                                          final @RequestParam(value = "threshold", required = false, defaultValue = "") String threshold) {
+        if (WUGsService.cancelWUG(algorithm, position, threshold, project, word)) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
 
+    private DeferredResult<Object> deferWUG(String algorithm, String position, String threshold, String project, String word,
+                                            Function<WUGsService.WUGResult, Object> respond) {
+        DeferredResult<Object> response = new DeferredResult<>(wugRequestTimeout);
+        // The job is not cancelled when the request times out, so that a reload is served by the job or the cache.
+        response.onTimeout(() -> response.setErrorResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "10").build()));
+        WUGsService.getWUG(algorithm, position, threshold, project, word).whenComplete((wugResult, e) -> {
+            if (e == null) {
+                response.setResult(respond.apply(wugResult));
+            } else if (e instanceof TaskRejectedException) {
+                response.setErrorResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+            } else {
+                response.setErrorResult(e);
+            }
+        });
+        return response;
     }
 
+    /**
+     * Returns the table of a metric of the agreement statistics. The statistics are computed in the background and
+     * shared by the requests of the session; the computation is cancelled if the last request waiting for it times
+     * out or fails, e.g. because the client went away.
+     */
     @GetMapping("/agreementTable")
     @ResponseBody
-    public double[][] getAgreementStatistics(final @RequestParam(value = "project-select") String projectSelect,
-                                               final @RequestParam(value = "word-select") String wordSelect,
-                                               final @RequestParam(value = "metric-select") String metricSelect,
-                                               final @RequestParam String annotators, final Principal principal) {
-        if (projectService.userIsOwnerOrAdmin(projectSelect, principal)) {
-            return agreementStatisticsService.getAllAgreementStatistics(projectSelect, wordSelect, annotators, metricSelect);
+    public DeferredResult<double[][]> getAgreementStatistics(final @RequestParam(value = "project-select") String projectSelect,
+                                                             final @RequestParam(value = "word-select") String wordSelect,
+                                                             final @RequestParam(value = "metric-select") String metricSelect,
+                                                             final @RequestParam String annotators, final Principal principal) {
+        return deferAgreementStatistics(projectSelect, annotators, null, principal,
+                agreementStatisticsDataMap -> agreementStatisticsService.getAgreementData(agreementStatisticsDataMap, wordSelect, metricSelect));
+    }
+
+    /**
+     * Returns the table of a metric of the agreement statistics with bootstrap confidence intervals at the given
+     * confidence level (e.g., 0.95), see {@link #getAgreementStatistics(String, String, String, String, Principal)}.
+     */
+    @GetMapping(value = "/agreementTable", params = "confidence-level")
+    @ResponseBody
+    public DeferredResult<AgreementTableDTO> getAgreementStatisticsWithConfidenceIntervals(final @RequestParam(value = "project-select") String projectSelect,
+                                                                                          final @RequestParam(value = "word-select") String wordSelect,
+                                                                                          final @RequestParam(value = "metric-select") String metricSelect,
+                                                                                          final @RequestParam(value = "confidence-level") double confidenceLevel,
+                                                                                          final @RequestParam String annotators, final Principal principal) {
+        if (!(confidenceLevel > 0.0 && confidenceLevel < 1.0)) {
+            DeferredResult<AgreementTableDTO> badRequest = new DeferredResult<>();
+            badRequest.setErrorResult(ResponseEntity.badRequest().build());
+            return badRequest;
         }
-        return null;
+        return deferAgreementStatistics(projectSelect, annotators, confidenceLevel, principal,
+                agreementStatisticsDataMap -> agreementStatisticsService.getAgreementTable(agreementStatisticsDataMap, wordSelect, metricSelect));
+    }
+
+    private <T> DeferredResult<T> deferAgreementStatistics(String projectSelect, String annotators, Double confidenceLevel, Principal principal,
+                                                           Function<Map<String, AgreementStatisticsData>, T> select) {
+        DeferredResult<T> agreementTable = new DeferredResult<>(agreementTimeout);
+        if (!projectService.userIsOwnerOrAdmin(projectSelect, principal)) {
+            agreementTable.setResult(null);
+            return agreementTable;
+        }
+        CompletableFuture<Map<String, AgreementStatisticsData>> agreementStatistics = agreementStatisticsService.getAllAgreementStatistics(projectSelect, annotators, confidenceLevel);
+        agreementTable.onTimeout(() -> {
+            logger.warn("Agreement statistics of project {} timed out.", projectSelect);
+            agreementStatistics.cancel(false);
+        });
+        agreementTable.onError(e -> agreementStatistics.cancel(false));
+        agreementStatistics.whenComplete((agreementStatisticsDataMap, e) -> {
+            if (e == null) {
+                agreementTable.setResult(select.apply(agreementStatisticsDataMap));
+            } else {
+                agreementTable.setErrorResult(e);
+            }
+        });
+        return agreementTable;
     }
 
     @GetMapping("/database")
@@ -1,6 +1,8 @@
 package durel.services;
 
 import durel.domain.AnnotationFilterCriteria;
+import durel.domain.JudgmentChange;
+import durel.domain.PairJudgment;
 import durel.domain.model.annotation.UserAnnotation;
 import durel.services.dataManagement.uploadData.AnnotationData;
 import durel.services.dataManagement.uploadData.PairedUploadData;
@@ -11,6 +13,7 @@ import durel.exceptions.LongVarcharException;
 import durel.exceptions.SystemErrorException;
 import durel.exceptions.UserErrorException;
 import durel.services.annotation.AnnotationQueryService;
+import durel.services.statistics.AnnotatorPairStatisticsService;
 import durel.services.user.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +22,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.UnexpectedRollbackException;
 
 import javax.management.InstanceNotFoundException;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import javax.transaction.Transactional;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDateTime;
@@ -72,14 +77,25 @@ public class AnnotationService {
 
     private final SequenceService sequenceService;
 
+    private final WordService wordService;
+
+    private final AnnotatorPairStatisticsService annotatorPairStatisticsService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Autowired
-    public AnnotationService(UserAnnotationDAO userAnnotationDAO, UseService useService, FilterDataService filterDataService, SequenceService sequenceService, AnnotationQueryService annotationQueryService, UserService userService) {
+    public AnnotationService(UserAnnotationDAO userAnnotationDAO, UseService useService, FilterDataService filterDataService, SequenceService sequenceService,
+                             WordService wordService, AnnotationQueryService annotationQueryService, UserService userService,
+                             AnnotatorPairStatisticsService annotatorPairStatisticsService) {
         this.userAnnotationDAO = userAnnotationDAO;
         this.useService = useService;
         this.filterDataService = filterDataService;
         this.sequenceService = sequenceService;
+        this.wordService = wordService;
         this.annotationQueryService = annotationQueryService;
         this.userService = userService;
+        this.annotatorPairStatisticsService = annotatorPairStatisticsService;
     }
 
     // Access point single annotation upload -----------------------------------------------------------------------
@@ -105,9 +121,19 @@ public class AnnotationService {
             Use use1 = useService.getSentence(sentence1_id);
             Use use2 = useService.getSentence(sentence2_id);
             useService.checkSentencePairing(lemma, use1, use2);
-            UserAnnotation userAnnotation = createOrModifyAnnotation(annotator, judgment, use1, use2, comment, null);
+            UserAnnotation existingAnnotation = findExistingAnnotation(annotator, use1, use2, null);
+            Float previousJudgment = existingAnnotation != null ? existingAnnotation.getJudgment() : null;
+            UserAnnotation userAnnotation = createOrModifyAnnotation(existingAnnotation, annotator, judgment, use1, use2, comment);
             userAnnotationDAO.save(userAnnotation);
-            sequenceService.updateSequence(annotationSequence);
+            // Only a new annotation advances the sequence, a modified one has already been counted.
+            if (existingAnnotation == null) {
+                sequenceService.recordNewAnnotations(lemma, annotationSequence, List.of(new int[]{sentence1_id, sentence2_id}));
+            }
+            List<JudgmentChange> judgmentChanges = List.of(new JudgmentChange(sentence1_id, sentence2_id, previousJudgment,
+                    userAnnotation.getJudgment()));
+            // Locks the lemma, so the pair statistics are updated after it.
+            wordService.lockForAnnotationWrite(lemma, annotator.getUsername(), judgmentChanges);
+            annotatorPairStatisticsService.recordJudgmentChanges(lemma, annotator.getUsername(), judgmentChanges);
         } catch (UnexpectedRollbackException e) {
             logger.error("An unexpected error occurred while trying to save the annotation and update the sequence.", e);
             throw new SystemErrorException(ERROR_MESSAGE + "UnexpectedRollbackException " + LocalDateTime.now());
@@ -119,6 +145,75 @@ public class AnnotationService {
         }
     }
 
+    /**
+     * Saves the judgments of an annotator for several pairs of one lemma in one transaction and advances the sequence
+     * by the number of newly annotated pairs. The uses are loaded with a single query, and new annotations are
+     * persisted directly, so that Hibernate sends them as one JDBC batch instead of merging them one by one. The existing
+     * annotations of the annotator among the uses are loaded with a single query as well, instead of one per pair.
+     * <p>
+     * Submitting a judgment for an already annotated pair (e.g., a retried request) modifies the annotation and does
+     * not advance the sequence, so batches can safely be resubmitted. If a pair occurs several times in the batch, the
+     * last judgment wins.
+     *
+     * @param lemma              The lemma of all pairs.
+     * @param annotator          The annotator.
+     * @param annotationSequence The annotator's sequence of the lemma.
+     * @param judgments          The judgments to be saved.
+     * @return The number of newly annotated pairs.
+     * @throws SystemErrorException if an unexpected error occurs while saving the annotations and updating the sequence.
+     * @throws UserErrorException   if there is an error with the user input, e.g., a pair of another lemma.
+     */
+    @Transactional
+    public int saveAnnotationsAndUpdateSequence(@NotNull Lemma lemma, @NotNull User annotator, @NotNull AnnotationSequence annotationSequence,
+                                                @NotNull List<PairJudgment> judgments) throws SystemErrorException, UserErrorException {
+        try {
+            Set<Integer> useIds = new HashSet<>();
+            for (PairJudgment judgment : judgments) {
+                useIds.add(judgment.firstUseId());
+                useIds.add(judgment.secondUseId());
+            }
+            Map<Integer, Use> uses = useService.getSentencesById(useIds);
+            Map<UsePairAndAnnotator, UserAnnotation> annotationsOfBatch = new HashMap<>();
+            for (UserAnnotation userAnnotation : userAnnotationDAO.findByAnnotatorAndUses(annotator.getUsername(), useIds)) {
+                annotationsOfBatch.put(userAnnotation.getId(), userAnnotation);
+            }
+            List<UserAnnotation> newUserAnnotations = new ArrayList<>();
+            List<JudgmentChange> judgmentChanges = new ArrayList<>();
+            for (PairJudgment judgment : judgments) {
+                Use use1 = uses.get(judgment.firstUseId());
+                Use use2 = uses.get(judgment.secondUseId());
+                useService.checkSentencePairing(lemma, use1, use2);
+                UserAnnotation existingAnnotation = annotationsOfBatch.get(new UsePairAndAnnotator(annotator, use1, use2));
+                Float previousJudgment = existingAnnotation != null ? existingAnnotation.getJudgment() : null;
+                UserAnnotation userAnnotation = createOrModifyAnnotation(existingAnnotation, annotator, judgment.judgment(),
+                        use1, use2, judgment.comment() == null ? "" : judgment.comment());
+                judgmentChanges.add(new JudgmentChange(use1.getId(), use2.getId(), previousJudgment, userAnnotation.getJudgment()));
+                if (existingAnnotation == null) {
+                    annotationsOfBatch.put(userAnnotation.getId(), userAnnotation);
+                    newUserAnnotations.add(userAnnotation);
+                }
+            }
+            // Existing annotations are managed and flushed on commit, new ones are persisted without a prior select.
+            newUserAnnotations.forEach(entityManager::persist);
+            sequenceService.recordNewAnnotations(lemma, annotationSequence, newUserAnnotations.stream()
+                    .map(userAnnotation -> new int[]{userAnnotation.getId().getPair().getUse1().getId(),
+                            userAnnotation.getId().getPair().getUse2().getId()})
+                    .toList());
+            // Locks the lemma, so the pair statistics are updated after it.
+            wordService.lockForAnnotationWrite(lemma, annotator.getUsername(), judgmentChanges);
+            annotatorPairStatisticsService.recordJudgmentChanges(lemma, annotator.getUsername(), judgmentChanges);
+            return newUserAnnotations.size();
+        } catch (UnexpectedRollbackException e) {
+            logger.error("An unexpected error occurred while trying to save the annotations and update the sequence.", e);
+            throw new SystemErrorException(ERROR_MESSAGE + "UnexpectedRollbackException " + LocalDateTime.now());
+        } catch (IllegalArgumentException | InstanceNotFoundException e) {
+            logger.error("{}: {}", annotator.getUsername(), e.getMessage());
+            throw new UserErrorException(USER_INFO_MESSAGE + e.getMessage());
+        } catch (LongVarcharException e) {
+            throw new UserErrorException(USER_INFO_MESSAGE + e.getMessage());
+        }
+    }
+
     // Access point multi annotation upload ------------------------------------------------------------------------------
 
     /**
@@ -142,7 +237,9 @@ public class AnnotationService {
                             .stream().collect(Collectors.toMap(UserAnnotation::getId, Function.identity())));
             Set<UserAnnotation> newUserAnnotations = mapPairedDataToAnnotations(pairedDataList, idToSentence, sequencesOfProject, existingAnnotations);
             userAnnotationDAO.saveAll(newUserAnnotations);
-            sequenceService.updateSequencesAndSave(sequencesOfProject);
+            sequenceService.updateSequencesAndSave(project, sequencesOfProject);
+            wordService.lockProjectForAnnotationWrite(project);
+            annotatorPairStatisticsService.rebuild(project);
         }  catch (UnexpectedRollbackException e) {
             logger.error("An unexpected error occurred while trying to save the annotation and update the sequence.", e);
             throw new SystemErrorException(ERROR_MESSAGE + "UnexpectedRollbackException " + LocalDateTime.now());
@@ -208,7 +305,8 @@ public class AnnotationService {
         useService.checkSentencePairing(null, use1, use2);
         User annotator = userService.getUserByUsername(annotationData.getAnnotator());
         sequenceService.createMissingSequence(sequences, annotator, use1.getLemma());
-        return createOrModifyAnnotation(annotator, annotationData.getJudgment(), use1, use2, annotationData.getComment(), annotationsInDatabase);
+        UserAnnotation existingAnnotation = findExistingAnnotation(annotator, use1, use2, annotationsInDatabase);
+        return createOrModifyAnnotation(existingAnnotation, annotator, annotationData.getJudgment(), use1, use2, annotationData.getComment());
     }
 
     // Create or modify an annotation ---------------------------------------------------------------------------
@@ -216,20 +314,18 @@ public class AnnotationService {
     /**
      * Creates a new annotation if it does not exist, or modifies an existing annotation if it does, based on the provided parameters.
      *
+     * @param userAnnotation       The existing annotation of the annotator for the pair, or null if there is none.
      * @param annotator            The Annotator object responsible for creating or modifying the annotation.
      * @param judgment             The judgment value for the annotation.
      * @param firstUse        The first Sentence object associated with the annotation.
      * @param secondUse       The second Sentence object associated with the annotation.
      * @param comment              The comment for the annotation.
-     * @param annotationsInDatabase The existing annotations in the database.
      * @return The created or modified Annotation object.
      * @throws LongVarcharException If the comment exceeds the maximum length of 255 characters.
      */
-    private UserAnnotation createOrModifyAnnotation(User annotator, float judgment, Use firstUse,
-                                                    Use secondUse, String comment,
-                                                    ConcurrentHashMap<UsePairAndAnnotator, UserAnnotation> annotationsInDatabase)
+    private UserAnnotation createOrModifyAnnotation(UserAnnotation userAnnotation, User annotator, float judgment, Use firstUse,
+                                                    Use secondUse, String comment)
             throws LongVarcharException{
-        UserAnnotation userAnnotation = findExistingAnnotation(annotator, firstUse, secondUse, annotationsInDatabase);
         if (comment.length() > 255) {
             throw new LongVarcharException("Comments must not be longer than 255 characters.");
         }
@@ -276,6 +372,9 @@ public class AnnotationService {
         UserAnnotation newUserAnnotation = new UserAnnotation(new UsePairAndAnnotator(annotator, firstUse,
                 secondUse), judgment);
         newUserAnnotation.setComment(comment);
+        // Both uses belong to the same lemma, see UseService#checkSentencePairing.
+        newUserAnnotation.setLemma(firstUse.getLemma());
+        newUserAnnotation.setProjectName(firstUse.getLemma().getProject().getProjectName());
         return newUserAnnotation;
     }
 
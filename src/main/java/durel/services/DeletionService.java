@@ -4,6 +4,7 @@ import durel.domain.model.DeletionProgress;
 import durel.domain.model.Language;
 import durel.domain.model.Lemma;
 import durel.domain.repository.DeletionProgressDAO;
+import durel.services.dtoServices.UseDTOCacheService;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
@@ -22,18 +23,23 @@ public class DeletionService {
 
     private final DeletionProgressDAO deletionProgressDAO;
 
-    public DeletionService(WordService wordService, ProjectService projectService, PairService pairService, TutorialService tutorialService, DeletionProgressDAO deletionProgressDAO) {
+    private final UseDTOCacheService useDTOCacheService;
+
+    public DeletionService(WordService wordService, ProjectService projectService, PairService pairService, TutorialService tutorialService,
+                           DeletionProgressDAO deletionProgressDAO, UseDTOCacheService useDTOCacheService) {
         this.wordService = wordService;
         this.projectService = projectService;
         this.pairService = pairService;
         this.tutorialService = tutorialService;
         this.deletionProgressDAO = deletionProgressDAO;
+        this.useDTOCacheService = useDTOCacheService;
     }
 
 
     @Async
     @Transactional
     public void deleteProject(String projectName) {
+        wordService.getWordsOfProject(projectName).forEach(useDTOCacheService::evictUsesOfLemma);
         projectService.deleteProjectByProjectName(projectName);
         DeletionProgress deletionProgress = deletionProgressDAO.getByEntityName(projectName);
         deletionProgress.setProgress("Deletion succeeded.");
@@ -44,6 +50,7 @@ public class DeletionService {
     public void deleteWord(String projectName, String lemma) {
         Lemma word = wordService.getLemmaObjectByProjectNameAndLemma(projectName, lemma);
         if (word != null) {
+            useDTOCacheService.evictUsesOfLemma(word);
             pairService.deleteByProjectNameAndLemma(word.getProject(), word.getLemma());
             wordService.deleteWordByProjectAndLemma(word.getProject(), word.getLemma());
             DeletionProgress deletionProgress = deletionProgressDAO.getByEntityName(projectName + "," + lemma);
@@ -18,9 +18,12 @@ public class PairService {
 
     private final InstanceDAO instanceDAO;
 
+    private final WordService wordService;
+
     @Autowired
-    public PairService(InstanceDAO instanceDAO) {
+    public PairService(InstanceDAO instanceDAO, WordService wordService) {
         this.instanceDAO = instanceDAO;
+        this.wordService = wordService;
     }
 
     public List<Instance> getPairsByProjectAndLemma(Project project, String word) {
@@ -53,6 +56,7 @@ public class PairService {
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
         instanceDAO.saveAll(instances);
+        wordService.recountPairCounts(project);
     }
 
     private Instance createPair(PairedUploadData pairData, Map<String, Use> idToSentence, Project project) {
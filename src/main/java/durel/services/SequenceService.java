@@ -1,14 +1,26 @@
 package durel.services;
 
-import durel.domain.AnnotationFilterCriteria;
+import durel.CacheConfig;
+import durel.domain.AnnotatedUsePair;
 import durel.domain.model.*;
 import durel.domain.repository.SequenceDAO;
-import durel.services.annotation.AnnotationQueryService;
+import durel.domain.repository.UserAnnotationDAO;
+import durel.dto.responses.statistics.AnnotatorLemmaCount;
+import durel.session.RandomAnnotationSequence;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
@@ -17,17 +29,37 @@ import java.util.stream.Collectors;
 @Service
 public class SequenceService {
 
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SequenceService.class);
+
     private final SequenceDAO sequenceDAO;
 
-    private final FilterDataService filterDataService;
+    private final UserAnnotationDAO userAnnotationDAO;
+
+    private final UseService useService;
+
+    private final PairService pairService;
 
-    private final AnnotationQueryService annotationQueryService;
+    private final Cache annotationSequenceCache;
+
+    /**
+     * Identifies the order of pairs of an annotation sequence: the lemma, its numbers of uses and uploaded pairs, which
+     * change with an upload, and the seed.
+     */
+    private record RandomAnnotationSequenceKey(int lemmaId, int useCount, int pairCount, long seed) {
+    }
 
     @Autowired
-    public SequenceService(SequenceDAO sequenceDAO, FilterDataService filterDataService, AnnotationQueryService annotationQueryService) {
+    public SequenceService(SequenceDAO sequenceDAO, UserAnnotationDAO userAnnotationDAO, UseService useService, PairService pairService,
+                           CacheManager cacheManager) {
         this.sequenceDAO = sequenceDAO;
-        this.filterDataService = filterDataService;
-        this.annotationQueryService = annotationQueryService;
+        this.userAnnotationDAO = userAnnotationDAO;
+        this.useService = useService;
+        this.pairService = pairService;
+        this.annotationSequenceCache = Objects.requireNonNull(cacheManager.getCache(CacheConfig.ANNOTATION_SEQUENCE_CACHE));
     }
 
     /**
@@ -66,32 +98,254 @@ public class SequenceService {
         long seed = ThreadLocalRandom.current().nextLong(0, 9223372036854775806L);
         // Set up the sequence object and save it to the database.
         AnnotationSequence annotationSequence = new AnnotationSequence(new AnnotationSequenceId(lemma.getId(), user.getUsername()), user, lemma, idx, seed);
+        // A new sequence starts without annotated pairs, unless its index is set by an upload, which rebuilds the bitmap.
+        annotationSequence.setAnnotatedPairs(idx == 0 ? serialize(new RoaringBitmap()) : null);
         sequenceDAO.save(annotationSequence);
         return annotationSequence;
     }
 
+    /**
+     * Returns the order of pairs of an annotation sequence, recreating it from its seed on a cache miss.
+     * If the project is random, the sequence is based on the list of sentence IDs of the word.
+     * If the project is not random, the sequence is based on the pairs of sentences in the project.
+     * <p>
+     * The order only depends on the uses or uploaded pairs of the lemma and the seed, so it is shared by all sessions and
+     * requests of the annotator. It is cached by the numbers of uses and pairs of the lemma as well, so that an upload
+     * of pairs is never served the order of the pairs before it.
+     *
+     * @param lemma              The word to be annotated.
+     * @param annotationSequence The stored sequence providing the seed.
+     * @return The annotation sequence.
+     */
     @Transactional
-    public void updateSequence(AnnotationSequence annotationSequence) {
-        updateSequenceIndex(annotationSequence);
-        saveSeq(annotationSequence);
+    public RandomAnnotationSequence getRandomAnnotationSequence(@NotNull Lemma lemma, @NotNull AnnotationSequence annotationSequence) {
+        RandomAnnotationSequenceKey key = new RandomAnnotationSequenceKey(lemma.getId(), lemma.getUseCount(), lemma.getPairCount(),
+                annotationSequence.getSeed());
+        return annotationSequenceCache.get(key,
+                () -> createRandomAnnotationSequence(lemma, annotationSequence.getSeed()));
     }
 
-    private void updateSequences(Collection<AnnotationSequence> annotationSequences) {
-        for (AnnotationSequence annotationSequence : annotationSequences) {
-            updateSequenceIndex(annotationSequence);
+    private RandomAnnotationSequence createRandomAnnotationSequence(Lemma lemma, long seed) {
+        if (lemma.getProject().isAllPossiblePairs()) {
+            List<Integer> sentenceIDsOfWord = useService.getSentenceIDsOfWord(lemma);
+            return new RandomAnnotationSequence(sentenceIDsOfWord, seed);
+        } else {
+            List<Instance> instances = pairService.getPairsByProjectAndLemma(lemma.getProject(), lemma.getLemma());
+            return new RandomAnnotationSequence(seed, instances);
+        }
+    }
+
+    /**
+     * Returns the positions of up to {@code count} pairs that the annotator has not annotated yet, starting at the
+     * sequence index. Pairs the annotator has already annotated (e.g., after an annotation upload) are skipped, wrapping
+     * around at the end of the sequence; without this, re-annotating such a pair would not advance the index. The
+     * pairs are looked up in the bitmap of annotated pairs, which is read once, so probing does not query the
+     * annotations.
+     *
+     * @param randomAnnotationSequence The annotation sequence.
+     * @param annotationSequence       The stored sequence of the annotator.
+     * @param count                    The maximum number of positions.
+     * @return The positions in sequence order, fewer than {@code count} if not enough pairs are left.
+     */
+    @Transactional
+    public List<Integer> findNextUnannotatedPositions(@NotNull RandomAnnotationSequence randomAnnotationSequence,
+                                                      @NotNull AnnotationSequence annotationSequence, int count) {
+        RoaringBitmap annotatedPairs = getAnnotatedPairs(randomAnnotationSequence, annotationSequence);
+        List<Integer> positions = new ArrayList<>();
+        int size = randomAnnotationSequence.size();
+        int index = annotationSequence.getIndex();
+        for (int offset = 0; offset < size && positions.size() < count; offset++) {
+            int position = (index + offset) % size;
+            if (!annotatedPairs.contains(randomAnnotationSequence.keyAt(position))) {
+                positions.add(position);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Returns whether the annotator of the sequence has already annotated the pair of uses, looked up in the bitmap of
+     * annotated pairs.
+     *
+     * @param randomAnnotationSequence The annotation sequence.
+     * @param annotationSequence       The stored sequence of the annotator.
+     * @param firstUseId               The id of the first use of the pair.
+     * @param secondUseId              The id of the second use of the pair.
+     * @return False if the pair has not been annotated or is not part of the sequence.
+     */
+    @Transactional
+    public boolean isAnnotated(@NotNull RandomAnnotationSequence randomAnnotationSequence, @NotNull AnnotationSequence annotationSequence,
+                               int firstUseId, int secondUseId) {
+        int key = randomAnnotationSequence.keyOf(firstUseId, secondUseId);
+        return key >= 0 && getAnnotatedPairs(randomAnnotationSequence, annotationSequence).contains(key);
+    }
+
+    /**
+     * Records newly created annotations of the sequence's user and lemma: advances the index by their number and adds
+     * their pairs to the bitmap of annotated pairs. Has to be called exactly once for each new annotation, but not for
+     * modified annotations.
+     * <p>
+     * The index is incremented in the database first, which locks the row until the transaction commits. The bitmap is
+     * then read, extended and written back under this lock, so that concurrent sessions of the same user do not lose
+     * updates. Both values are copied into the given object.
+     *
+     * @param lemma              The lemma of the sequence.
+     * @param annotationSequence The sequence to advance.
+     * @param usePairs           The use ids of the newly annotated pairs.
+     */
+    @Transactional
+    public void recordNewAnnotations(@NotNull Lemma lemma, @NotNull AnnotationSequence annotationSequence, @NotNull List<int[]> usePairs) {
+        if (usePairs.isEmpty()) {
+            return;
+        }
+        AnnotationSequenceId id = annotationSequence.getId();
+        sequenceDAO.incrementIndex(id.getLemmaId(), id.getUsername(), usePairs.size());
+        annotationSequence.setIndex(sequenceDAO.findIndexById(id.getLemmaId(), id.getUsername()));
+
+        RandomAnnotationSequence randomAnnotationSequence = getRandomAnnotationSequence(lemma, annotationSequence);
+        byte[] storedPairs = sequenceDAO.findAnnotatedPairsById(id.getLemmaId(), id.getUsername());
+        // Without a stored bitmap, the rebuilt one already contains the new annotations.
+        RoaringBitmap annotatedPairs = storedPairs == null
+                ? buildAnnotatedPairs(randomAnnotationSequence, id)
+                : deserialize(storedPairs);
+        for (int[] usePair : usePairs) {
+            int key = randomAnnotationSequence.keyOf(usePair[0], usePair[1]);
+            if (key >= 0) {
+                annotatedPairs.add(key);
+            }
+        }
+        saveAnnotatedPairs(annotationSequence, annotatedPairs);
+    }
+
+    /**
+     * Returns the stored bitmap of annotated pairs of the sequence. It is read from the database rather than taken from
+     * the given object, which may be held by a session while other sessions of the user annotate.
+     * <p>
+     * Sequences without a stored bitmap (after an annotation upload or a reconciliation) get it rebuilt from the
+     * annotations and written back, although this is the read path. The row is locked for this as by a writer in
+     * {@link #recordNewAnnotations}, and the bitmap is read again under the lock: a concurrent writer has either stored
+     * its bitmap before, which is then used, or waits until the rebuilt one is committed and adds its pairs to it. An
+     * outdated rebuild can therefore not overwrite the pairs of a writer. As in {@link #recordNewAnnotations}, the index
+     * read under the lock is copied into the given object along with the bitmap, so that a managed object does not write
+     * back an outdated index on commit.
+     */
+    private RoaringBitmap getAnnotatedPairs(RandomAnnotationSequence randomAnnotationSequence, AnnotationSequence annotationSequence) {
+        AnnotationSequenceId id = annotationSequence.getId();
+        byte[] storedPairs = sequenceDAO.findAnnotatedPairsById(id.getLemmaId(), id.getUsername());
+        if (storedPairs != null) {
+            return deserialize(storedPairs);
+        }
+        sequenceDAO.incrementIndex(id.getLemmaId(), id.getUsername(), 0);
+        annotationSequence.setIndex(sequenceDAO.findIndexById(id.getLemmaId(), id.getUsername()));
+        storedPairs = sequenceDAO.findAnnotatedPairsById(id.getLemmaId(), id.getUsername());
+        if (storedPairs != null) {
+            annotationSequence.setAnnotatedPairs(storedPairs);
+            return deserialize(storedPairs);
+        }
+        RoaringBitmap annotatedPairs = buildAnnotatedPairs(randomAnnotationSequence, annotationSequence.getId());
+        saveAnnotatedPairs(annotationSequence, annotatedPairs);
+        return annotatedPairs;
+    }
+
+    private RoaringBitmap buildAnnotatedPairs(RandomAnnotationSequence randomAnnotationSequence, AnnotationSequenceId id) {
+        RoaringBitmap annotatedPairs = new RoaringBitmap();
+        for (AnnotatedUsePair usePair : userAnnotationDAO.findAnnotatedUsePairs(id.getUsername(), id.getLemmaId())) {
+            int key = randomAnnotationSequence.keyOf(usePair.firstUseId(), usePair.secondUseId());
+            if (key >= 0) {
+                annotatedPairs.add(key);
+            }
+        }
+        logger.info("Rebuilt the annotated pairs of {} for lemma {} ({} pairs).", id.getUsername(), id.getLemmaId(),
+                annotatedPairs.getCardinality());
+        return annotatedPairs;
+    }
+
+    private void saveAnnotatedPairs(AnnotationSequence annotationSequence, RoaringBitmap annotatedPairs) {
+        byte[] serialized = serialize(annotatedPairs);
+        AnnotationSequenceId id = annotationSequence.getId();
+        sequenceDAO.updateAnnotatedPairs(id.getLemmaId(), id.getUsername(), serialized);
+        annotationSequence.setAnnotatedPairs(serialized);
+    }
+
+    private static byte[] serialize(RoaringBitmap bitmap) {
+        bitmap.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+
+    private static RoaringBitmap deserialize(byte[] serialized) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try {
+            bitmap.deserialize(ByteBuffer.wrap(serialized));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return bitmap;
     }
 
     /**
-     * Updates the sequences of a project and saves the changes.
+     * Verifies the incrementally maintained sequence indexes against the actual annotation counts and repairs the
+     * deviating ones. The deviating sequences are found with a single query that compares the indexes with the counts
+     * in the database, without loading the rows and their bitmaps. Each one is then locked, as by a writer that
+     * increments it, and recounted in the same statement that repairs it, so that increments of concurrent writers are
+     * not overwritten with an outdated count.
+     */
+    @Scheduled(initialDelayString = "${annotation.sequence-reconcile-interval-ms:3600000}",
+            fixedDelayString = "${annotation.sequence-reconcile-interval-ms:3600000}")
+    @Transactional
+    public void reconcileSequenceIndexes() {
+        int repaired = 0;
+        for (AnnotationSequenceId id : sequenceDAO.findIdsWithDeviatingIndex()) {
+            // Locks the row until the end of the transaction and waits for the writers that hold it.
+            sequenceDAO.incrementIndex(id.getLemmaId(), id.getUsername(), 0);
+            repaired += sequenceDAO.reconcileIndex(id.getLemmaId(), id.getUsername());
+        }
+        if (repaired > 0) {
+            logger.warn("Repaired {} sequence indexes that deviated from the annotation counts.", repaired);
+        }
+    }
+
+    /**
+     * Re-indexes all sequences of a project after a bulk upload and saves the changes. The annotation counts of all
+     * annotators and lemmas are computed with a single grouped query, and only the sequences whose index changed are
+     * written back (in JDBC batches).
      *
-     * @param sequencesOfProject  A map of users to word sequences.
+     * @param project             The project whose annotations have been uploaded.
+     * @param sequencesOfProject  A map of users to word sequences of the project.
      */
-    public void updateSequencesAndSave(@NotNull Map<User, Map<Lemma, AnnotationSequence>> sequencesOfProject) {
-        for (User user : sequencesOfProject.keySet()) {
-            updateSequences(sequencesOfProject.get(user).values());
-            saveSeqs(sequencesOfProject.get(user).values());
+    @Transactional
+    public void updateSequencesAndSave(@NotNull Project project, @NotNull Map<User, Map<Lemma, AnnotationSequence>> sequencesOfProject) {
+        List<AnnotationSequence> annotationSequences = sequencesOfProject.values().stream()
+                .flatMap(sequencesOfUser -> sequencesOfUser.values().stream())
+                .toList();
+        updateSequenceIndexes(userAnnotationDAO.countGroupedByAnnotatorAndLemma(project.getProjectName()), annotationSequences);
+        saveSeqs(annotationSequences);
+    }
+
+    /**
+     * Sets the index of each sequence to the annotation count of its annotator and lemma. The bitmap of annotated
+     * pairs of a changed sequence is dropped, so that it is rebuilt from the annotations on next access.
+     *
+     * @param annotationCounts    The annotation counts grouped by annotator and lemma.
+     * @param annotationSequences The sequences to update.
+     * @return The number of sequences whose index changed.
+     */
+    private int updateSequenceIndexes(List<AnnotatorLemmaCount> annotationCounts, Iterable<AnnotationSequence> annotationSequences) {
+        Map<AnnotationSequenceId, Integer> countsById = new HashMap<>();
+        for (AnnotatorLemmaCount count : annotationCounts) {
+            countsById.put(new AnnotationSequenceId(count.getLemmaId(), count.getAnnotator()), Math.toIntExact(count.getCount()));
         }
+        int updated = 0;
+        for (AnnotationSequence annotationSequence : annotationSequences) {
+            int count = countsById.getOrDefault(annotationSequence.getId(), 0);
+            if (annotationSequence.getIndex() != count) {
+                annotationSequence.setIndex(count);
+                annotationSequence.setAnnotatedPairs(null);
+                updated++;
+            }
+        }
+        return updated;
     }
 
     /**
@@ -117,9 +371,4 @@ public class SequenceService {
     private void saveSeqs(Collection<AnnotationSequence> annotationSequences) {
         sequenceDAO.saveAll(annotationSequences);
     }
-
-    private void updateSequenceIndex(AnnotationSequence annotationSequence) {
-        AnnotationFilterCriteria annotationFilterCriteria = filterDataService.createAnnotationFilterData(annotationSequence.getLemma(), null, null, null, annotationSequence.getUser(), null, null, null);
-        annotationSequence.setIndex(annotationQueryService.getAnnotationCountWithFilterOptions(annotationFilterCriteria));
-    }
 }
@@ -0,0 +1,187 @@
+package durel.services;
+
+import durel.domain.UsePageRequest;
+import durel.domain.UseViewRow;
+import durel.dto.responses.UsePageDTO;
+import durel.exceptions.UserErrorException;
+import durel.services.dtoServices.UseDTOCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.transaction.Transactional;
+import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the pages of the uses browser.
+ * <p>
+ * A page is read in two steps: the ids of the page are selected by a query that applies the filters and continues
+ * after the last use of the previous page (keyset pagination), and only the uses of these ids are rendered, taken from
+ * the shared use cache where possible. Nothing is kept in the session.
+ */
+@Service
+public class UseBrowserService {
+
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(UseBrowserService.class);
+
+    private static final String SELECT = "select new durel.domain.UseViewRow(u.id, u.useDate, u.grouping, u.pos) " +
+            "from Use u where u.lemma.id = :lemmaId";
+
+    private static final String CURSOR_SEPARATOR = "|";
+
+    private final UseDTOCacheService useDTOCacheService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Map<String, String> queriesByShape = new ConcurrentHashMap<>();
+
+    private final int maxPageSize;
+
+    @Autowired
+    public UseBrowserService(UseDTOCacheService useDTOCacheService, @Value("${use.browser-max-page-size:100}") int maxPageSize) {
+        this.useDTOCacheService = useDTOCacheService;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Reads and renders a page of uses.
+     *
+     * @param usePageRequest The lemma, filters, order and position of the page. The page size is limited to
+     *                       {@code use.browser-max-page-size}.
+     * @return The rendered uses of the page and the cursor of the next page.
+     */
+    @Transactional
+    public UsePageDTO getPage(@NotNull UsePageRequest usePageRequest) {
+        int pageSize = Math.max(1, Math.min(usePageRequest.getPageSize(), maxPageSize));
+        String jpql = queriesByShape.computeIfAbsent(shapeOf(usePageRequest), key -> buildQuery(usePageRequest));
+        TypedQuery<UseViewRow> query = entityManager.createQuery(jpql, UseViewRow.class)
+                .setParameter("lemmaId", usePageRequest.getLemmaId());
+        if (usePageRequest.getDateFrom() != null) {
+            query.setParameter("dateFrom", usePageRequest.getDateFrom());
+        }
+        if (usePageRequest.getDateTo() != null) {
+            query.setParameter("dateTo", usePageRequest.getDateTo());
+        }
+        if (isSet(usePageRequest.getGroupings())) {
+            query.setParameter("groupings", usePageRequest.getGroupings());
+        }
+        if (isSet(usePageRequest.getPos())) {
+            query.setParameter("pos", usePageRequest.getPos());
+        }
+        if (usePageRequest.getAfterId() != null) {
+            if (usePageRequest.getSort().getExpression() != null) {
+                query.setParameter("lastSortValue", usePageRequest.getAfterSortValue());
+            }
+            query.setParameter("lastId", usePageRequest.getAfterId());
+        }
+        // One more row than needed tells whether there is a next page.
+        List<UseViewRow> rows = query.setMaxResults(pageSize + 1).getResultList();
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = encodeCursor(usePageRequest, rows.get(pageSize - 1));
+        }
+        return UsePageDTO.builder()
+                .uses(useDTOCacheService.getUseDTOs(rows.stream().map(UseViewRow::id).toList()))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Decodes a cursor of {@link #getPage(UsePageRequest)} and sets the position of the page.
+     *
+     * @param builder    The builder of the requested page.
+     * @param cursor     The cursor as handed to the client.
+     * @param sort       The sort column of the requested page.
+     * @param descending Whether the requested page is sorted in descending order.
+     * @return The builder.
+     * @throws UserErrorException If the cursor is malformed or belongs to a differently sorted page.
+     */
+    public UsePageRequest.UsePageRequestBuilder after(@NotNull UsePageRequest.UsePageRequestBuilder builder, @NotNull String cursor,
+                                                      @NotNull UsePageRequest.Sort sort, boolean descending) throws UserErrorException {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // The sort value comes last, so that it may contain the separator.
+            String[] parts = decoded.split(Pattern.quote(CURSOR_SEPARATOR), 4);
+            if (parts.length != 4 || !parts[0].equals(sort.name()) || Boolean.parseBoolean(parts[1]) != descending) {
+                throw new IllegalArgumentException("The cursor does not belong to the requested order.");
+            }
+            return builder.afterId(Integer.parseInt(parts[2])).afterSortValue(parts[3]);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected use page cursor: {}", e.getMessage());
+            throw new UserErrorException("The page cursor is invalid. Please reload the uses.", e);
+        }
+    }
+
+    private static String encodeCursor(UsePageRequest usePageRequest, UseViewRow last) {
+        String sortValue = usePageRequest.getSort().getValueOf().apply(last);
+        String cursor = String.join(CURSOR_SEPARATOR, usePageRequest.getSort().name(), String.valueOf(usePageRequest.isDescending()),
+                String.valueOf(last.id()), sortValue != null ? sortValue : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The JPQL of a page only depends on the order and on which filters are set, so it is built once per shape.
+     */
+    private static String shapeOf(UsePageRequest usePageRequest) {
+        return usePageRequest.getSort().name() + "/" + usePageRequest.isDescending() + "/"
+                + (usePageRequest.getDateFrom() != null) + (usePageRequest.getDateTo() != null)
+                + isSet(usePageRequest.getGroupings()) + isSet(usePageRequest.getPos())
+                + (usePageRequest.getAfterId() != null);
+    }
+
+    private static String buildQuery(UsePageRequest usePageRequest) {
+        String direction = usePageRequest.isDescending() ? " desc" : " asc";
+        String comparison = usePageRequest.isDescending() ? " < " : " > ";
+        String sortExpression = usePageRequest.getSort().getExpression();
+
+        StringBuilder jpql = new StringBuilder(SELECT);
+        if (usePageRequest.getDateFrom() != null) {
+            jpql.append(" and u.useDate >= :dateFrom");
+        }
+        if (usePageRequest.getDateTo() != null) {
+            jpql.append(" and u.useDate <= :dateTo");
+        }
+        if (isSet(usePageRequest.getGroupings())) {
+            jpql.append(" and u.grouping in :groupings");
+        }
+        if (isSet(usePageRequest.getPos())) {
+            jpql.append(" and u.pos in :pos");
+        }
+        if (usePageRequest.getAfterId() != null) {
+            String afterId = "u.id" + comparison + ":lastId";
+            if (sortExpression != null) {
+                afterId = "(" + sortExpression + comparison + ":lastSortValue or (" + sortExpression + " = :lastSortValue and " + afterId + "))";
+            }
+            jpql.append(" and ").append(afterId);
+        }
+        jpql.append(" order by ");
+        if (sortExpression != null) {
+            jpql.append(sortExpression).append(direction).append(", ");
+        }
+        jpql.append("u.id").append(direction);
+        logger.debug("Built uses browser query {}", jpql);
+        return jpql.toString();
+    }
+
+    private static boolean isSet(Collection<String> values) {
+        return values != null && !values.isEmpty();
+    }
+}
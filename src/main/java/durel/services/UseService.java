@@ -1,8 +1,7 @@
 package durel.services;
 
 import durel.dto.responses.UseDTO;
-import durel.services.dtoServices.UseDTOService;
-import durel.session.DataSessionData;
+import durel.services.dtoServices.UseDTOCacheService;
 import durel.domain.model.Project;
 import durel.domain.model.Use;
 import durel.domain.model.Lemma;
@@ -14,8 +13,10 @@ import org.springframework.stereotype.Service;
 import javax.management.InstanceNotFoundException;
 import javax.transaction.Transactional;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -24,15 +25,12 @@ public class UseService {
 
     private final SentenceDAO sentenceDAO;
 
-    private final UseDTOService useDTOService;
-
-    private final DataSessionData dataSessionData;
+    private final UseDTOCacheService useDTOCacheService;
 
     @Autowired
-    public UseService(SentenceDAO sentenceDAO, UseDTOService useDTOService, DataSessionData dataSessionData) {
+    public UseService(SentenceDAO sentenceDAO, UseDTOCacheService useDTOCacheService) {
         this.sentenceDAO = sentenceDAO;
-        this.useDTOService = useDTOService;
-        this.dataSessionData = dataSessionData;
+        this.useDTOCacheService = useDTOCacheService;
     }
 
     /**
@@ -53,12 +51,7 @@ public class UseService {
      */
     @Transactional
     public List<Integer> getSentenceIDsOfWord(Lemma lemma) {
-        List<Integer> ids = new ArrayList<>();
-        for (Use use : sentenceDAO.findByLemmaOrderByIdAsc(lemma))
-        {
-            ids.add(use.getId());
-        }
-        return ids;
+        return sentenceDAO.findIdsByLemma(lemma);
     }
 
     @Transactional
@@ -74,6 +67,14 @@ public class UseService {
         return sentenceDAO.findById(sentenceID).orElse(null) ;
     }
 
+    /**
+     * Fetches the sentence entities with the given ids with a single query, mapped by id.
+     */
+    @Transactional
+    public Map<Integer, Use> getSentencesById(Collection<Integer> sentenceIDs) {
+        return sentenceDAO.findAllById(sentenceIDs).stream().collect(Collectors.toMap(Use::getId, Function.identity()));
+    }
+
     @Transactional
     public int getNoOfSentencesOfWord(Lemma lemma) { return sentenceDAO.countByLemma(lemma); }
 
@@ -81,30 +82,17 @@ public class UseService {
     public int getNoOfSentencesOfProject(Project project) { return sentenceDAO.countByLemma_Project(project); }
 
     /**
-     * Returns the list of view sentences for the concordance table
+     * Fetches a view sentence from given an id.
      */
-    @Transactional
-    public void setCurrentUseDTOs(Lemma lemma) throws InstanceNotFoundException {
-        ArrayList<UseDTO> useDTOS = new ArrayList<>();
-        List<Use> uses = sentenceDAO.findByLemma_Id(lemma.getId());
-        if (uses.isEmpty()) {
-            throw new InstanceNotFoundException();
-        }
-        for (Use use : uses) {
-            useDTOS.add(getSentenceDTO(use));
-        }
-        this.dataSessionData.setUseDTOs(useDTOS);
-    }
-
-    public List<UseDTO> getCurrentUseDTOs() {
-        return dataSessionData.getUseDTOs();
+    public UseDTO getSentenceDTO(Use use) {
+        return useDTOCacheService.getUseDTO(use);
     }
 
     /**
-     * Fetches a view sentence from given an id.
+     * Fetches a view sentence given an id, without loading the sentence entity if it is cached.
      */
-    public UseDTO getSentenceDTO(Use use) {
-        return useDTOService.constructSentenceDTOfromAnnotationSentence(use);
+    public UseDTO getSentenceDTO(Integer sentenceID) {
+        return useDTOCacheService.getUseDTO(sentenceID);
     }
 
     /**
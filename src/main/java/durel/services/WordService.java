@@ -1,13 +1,19 @@
 package durel.services;
 
+import durel.domain.AnnotationVersion;
+import durel.domain.AnnotationsChangedEvent;
+import durel.domain.JudgmentChange;
 import durel.services.dataManagement.uploadData.UseData;
 import durel.domain.model.Project;
 import durel.domain.model.Use;
 import durel.domain.model.Lemma;
 import durel.domain.repository.LemmaDAO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
@@ -22,9 +28,25 @@ public class WordService {
 
     private final LemmaDAO lemmaDAO;
 
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    // Counts the increments of annotation versions, each of which invalidates the cached filter results of a lemma.
+    private final Counter lemmaInvalidations;
+
+    private final Counter projectInvalidations;
+
     @Autowired
-    public WordService(LemmaDAO lemmaDAO) {
+    public WordService(LemmaDAO lemmaDAO, ApplicationEventPublisher applicationEventPublisher, MeterRegistry meterRegistry) {
         this.lemmaDAO = lemmaDAO;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.lemmaInvalidations = Counter.builder("annotation.filter.cache.invalidations")
+                .description("Writes of annotations that invalidate cached annotation filter results")
+                .tag("scope", "lemma")
+                .register(meterRegistry);
+        this.projectInvalidations = Counter.builder("annotation.filter.cache.invalidations")
+                .description("Writes of annotations that invalidate cached annotation filter results")
+                .tag("scope", "project")
+                .register(meterRegistry);
     }
 
     /**
@@ -42,6 +64,13 @@ public class WordService {
         return word.orElse(null);
     }
 
+    /**
+     * Fetches a word entity from the database given its id.
+     */
+    public Lemma getLemmaById(int lemmaId) {
+        return lemmaDAO.findById(lemmaId).orElse(null);
+    }
+
     /**
      * Converts a list of words into a list of strings (with the name of the words).
      */
@@ -66,6 +95,66 @@ public class WordService {
         lemmaDAO.save(lemma);
     }
 
+    /**
+     * Returns the number of pairs of the lemma from the denormalized counters, i.e., n*(n-1)/2 for n uses if the
+     * project uses all possible pairs, and the number of uploaded instances otherwise.
+     */
+    public int getNoOfPairs(Project project, Lemma lemma) {
+        if (project.isAllPossiblePairs()) {
+            return (lemma.getUseCount() * (lemma.getUseCount() - 1)) / 2;
+        }
+        return lemma.getPairCount();
+    }
+
+    /**
+     * Locks the row of the lemma and increments its annotation version. Has to be called in the transaction of every
+     * write of annotations of the lemma (e.g., also for a modified comment), so that writers of the same lemma wait for
+     * each other, cached filter results are invalidated and the statistics of the lemma are updated (see
+     * {@link AnnotationsChangedEvent}).
+     *
+     * @param lemma           The lemma.
+     * @param annotator       The annotator whose judgments are written.
+     * @param judgmentChanges The written judgments, with which the statistics of the lemma are updated instead of
+     *                        recomputed.
+     */
+    @Transactional
+    public void lockForAnnotationWrite(Lemma lemma, String annotator, List<JudgmentChange> judgmentChanges) {
+        lemmaDAO.incrementAnnotationVersion(lemma.getId());
+        lemmaInvalidations.increment();
+        // The row is locked, so the version is the one produced by this write.
+        Long annotationVersion = lemmaDAO.findAnnotationVersionById(lemma.getId()).orElse(null);
+        applicationEventPublisher.publishEvent(new AnnotationsChangedEvent(List.of(lemma.getId()), annotationVersion, annotator,
+                List.copyOf(judgmentChanges)));
+    }
+
+    /**
+     * Locks the rows of all lemmas of the project and increments their annotation versions with a single statement,
+     * e.g., after a bulk upload of annotations.
+     */
+    @Transactional
+    public void lockProjectForAnnotationWrite(Project project) {
+        lemmaDAO.incrementAnnotationVersions(project);
+        projectInvalidations.increment();
+        applicationEventPublisher.publishEvent(new AnnotationsChangedEvent(lemmaDAO.findIdsByProjectName(project.getProjectName())));
+    }
+
+    /**
+     * @return The annotation version of the lemmas of the project, which changes with every write of annotations of
+     * the project.
+     */
+    public AnnotationVersion getAnnotationVersionOfProject(String projectName) {
+        return lemmaDAO.findAnnotationVersionOfProjects(List.of(projectName));
+    }
+
+    /**
+     * Recomputes the pair counters of all lemmas of the project with a single statement, e.g., after an upload of
+     * instances.
+     */
+    @Transactional
+    public void recountPairCounts(Project project) {
+        lemmaDAO.recountPairCounts(project);
+    }
+
     @Transactional
     public Lemma createAndSaveSentencesAndWord(Project project, List<UseData> usesFile) {
         Lemma lemma = createWord(project, usesFile);
@@ -79,6 +168,7 @@ public class WordService {
                 logger.warn("A null UseData was found when creating sentences for the word");
             }
         }
+        lemma.setUseCount(lemma.getUses().size());
         saveWord(lemma);
         logger.info("Word saved: {}", lemma.getLemma());
         return lemma;
@@ -0,0 +1,203 @@
+package durel.services.annotation;
+
+import durel.domain.AnnotationPageCursor;
+import durel.domain.AnnotationPageRequest;
+import durel.domain.AnnotationViewRow;
+import durel.dto.responses.AnnotationPageDTO;
+import durel.exceptions.UserErrorException;
+import durel.services.dtoServices.AnnotationDTOService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.transaction.Transactional;
+import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the pages of the annotation browser.
+ * <p>
+ * The visibility rule (annotators see their own annotations, project owners see all annotations of their project) and
+ * the filters are applied by the query, and each page is read by keyset pagination: the page is ordered by the sort
+ * column and the composite id, and continues after the position of the last annotation of the previous page. Nothing
+ * is kept in the session, so the memory needed per user does not depend on the size of the lemma.
+ */
+@Service
+public class AnnotationBrowserService {
+
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationBrowserService.class);
+
+    private static final String SELECT = "select new durel.domain.AnnotationViewRow(a.id.pair.use1.id, a.id.pair.use2.id, " +
+            "a.id.annotator.username, a.judgment, a.comment, a.dt) from UserAnnotation a where a.lemma.id = :lemmaId";
+
+    private static final String VISIBILITY_CONDITION = "(a.id.annotator.username = :viewer or exists (select p from Project p " +
+            "where p.projectName = a.projectName and p.creator.username = :viewer))";
+
+    private static final String CURSOR_SEPARATOR = "|";
+
+    private final AnnotationDTOService annotationDTOService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Map<String, String> queriesByShape = new ConcurrentHashMap<>();
+
+    private final int maxPageSize;
+
+    @Autowired
+    public AnnotationBrowserService(AnnotationDTOService annotationDTOService,
+                                    @Value("${annotation.browser-max-page-size:100}") int maxPageSize) {
+        this.annotationDTOService = annotationDTOService;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Reads a page of annotations.
+     *
+     * @param annotationPageRequest The lemma, filters, order and position of the page. The page size is limited to
+     *                              {@code annotation.browser-max-page-size}.
+     * @return The annotations of the page and the cursor of the next page.
+     */
+    @Transactional
+    public AnnotationPageDTO getPage(@NotNull AnnotationPageRequest annotationPageRequest) {
+        int pageSize = Math.max(1, Math.min(annotationPageRequest.getPageSize(), maxPageSize));
+        String jpql = queriesByShape.computeIfAbsent(shapeOf(annotationPageRequest), key -> buildQuery(annotationPageRequest));
+        TypedQuery<AnnotationViewRow> query = entityManager.createQuery(jpql, AnnotationViewRow.class)
+                .setParameter("lemmaId", annotationPageRequest.getLemmaId())
+                .setParameter("viewer", annotationPageRequest.getViewer());
+        if (annotationPageRequest.getAnnotator() != null) {
+            query.setParameter("annotator", annotationPageRequest.getAnnotator());
+        }
+        if (annotationPageRequest.getJudgment() != null) {
+            query.setParameter("judgment", annotationPageRequest.getJudgment());
+        }
+        if (annotationPageRequest.getFrom() != null) {
+            query.setParameter("from", annotationPageRequest.getFrom());
+        }
+        if (annotationPageRequest.getTo() != null) {
+            query.setParameter("to", annotationPageRequest.getTo());
+        }
+        AnnotationPageCursor after = annotationPageRequest.getAfter();
+        if (after != null) {
+            if (annotationPageRequest.getSort().getPath() != null) {
+                query.setParameter("lastSortValue", after.sortValue());
+            }
+            query.setParameter("lastAnnotator", after.annotator())
+                    .setParameter("lastFirstUseId", after.firstUseId())
+                    .setParameter("lastSecondUseId", after.secondUseId());
+        }
+        // One more row than needed tells whether there is a next page.
+        List<AnnotationViewRow> rows = query.setMaxResults(pageSize + 1).getResultList();
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = encodeCursor(annotationPageRequest, rows.get(pageSize - 1));
+        }
+        return AnnotationPageDTO.builder()
+                .annotations(annotationDTOService.constructAnnotationDTOsFromRows(rows))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Decodes a cursor of {@link #getPage(AnnotationPageRequest)}.
+     *
+     * @param cursor     The cursor as handed to the client.
+     * @param sort       The sort column of the requested page.
+     * @param descending Whether the requested page is sorted in descending order.
+     * @return The decoded cursor.
+     * @throws UserErrorException If the cursor is malformed or belongs to a differently sorted page.
+     */
+    public AnnotationPageCursor decodeCursor(@NotNull String cursor, @NotNull AnnotationPageRequest.Sort sort, boolean descending)
+            throws UserErrorException {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // The username comes last, so that it may contain the separator.
+            String[] parts = decoded.split(Pattern.quote(CURSOR_SEPARATOR), 6);
+            if (parts.length != 6 || !parts[0].equals(sort.name()) || Boolean.parseBoolean(parts[1]) != descending) {
+                throw new IllegalArgumentException("The cursor does not belong to the requested order.");
+            }
+            Object sortValue = switch (sort) {
+                case ANNOTATOR -> null;
+                case JUDGMENT -> Float.valueOf(parts[2]);
+                case DATE -> new Date(Long.parseLong(parts[2]));
+            };
+            return new AnnotationPageCursor(sortValue, parts[5], Integer.parseInt(parts[3]), Integer.parseInt(parts[4]));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected annotation page cursor: {}", e.getMessage());
+            throw new UserErrorException("The page cursor is invalid. Please reload the annotations.", e);
+        }
+    }
+
+    private static String encodeCursor(AnnotationPageRequest annotationPageRequest, AnnotationViewRow last) {
+        String sortValue = switch (annotationPageRequest.getSort()) {
+            case ANNOTATOR -> "";
+            case JUDGMENT -> String.valueOf(last.judgment());
+            case DATE -> String.valueOf(last.dt().getTime());
+        };
+        String cursor = String.join(CURSOR_SEPARATOR, annotationPageRequest.getSort().name(),
+                String.valueOf(annotationPageRequest.isDescending()), sortValue, String.valueOf(last.firstUseId()),
+                String.valueOf(last.secondUseId()), last.annotator());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The JPQL of a page only depends on the order and on which filters are set, so it is built once per shape.
+     */
+    private static String shapeOf(AnnotationPageRequest annotationPageRequest) {
+        return annotationPageRequest.getSort().name() + "/" + annotationPageRequest.isDescending() + "/"
+                + (annotationPageRequest.getAnnotator() != null) + (annotationPageRequest.getJudgment() != null)
+                + (annotationPageRequest.getFrom() != null) + (annotationPageRequest.getTo() != null)
+                + (annotationPageRequest.getAfter() != null);
+    }
+
+    private static String buildQuery(AnnotationPageRequest annotationPageRequest) {
+        String direction = annotationPageRequest.isDescending() ? " desc" : " asc";
+        String comparison = annotationPageRequest.isDescending() ? " < " : " > ";
+        String sortPath = annotationPageRequest.getSort().getPath();
+
+        StringBuilder jpql = new StringBuilder(SELECT).append(" and ").append(VISIBILITY_CONDITION);
+        if (annotationPageRequest.getAnnotator() != null) {
+            jpql.append(" and a.id.annotator.username = :annotator");
+        }
+        if (annotationPageRequest.getJudgment() != null) {
+            jpql.append(" and a.judgment = :judgment");
+        }
+        if (annotationPageRequest.getFrom() != null) {
+            jpql.append(" and a.dt >= :from");
+        }
+        if (annotationPageRequest.getTo() != null) {
+            jpql.append(" and a.dt < :to");
+        }
+        if (annotationPageRequest.getAfter() != null) {
+            String afterKey = "(a.id.annotator.username" + comparison + ":lastAnnotator or (a.id.annotator.username = :lastAnnotator " +
+                    "and (a.id.pair.use1.id" + comparison + ":lastFirstUseId or (a.id.pair.use1.id = :lastFirstUseId " +
+                    "and a.id.pair.use2.id" + comparison + ":lastSecondUseId))))";
+            if (sortPath != null) {
+                afterKey = "(" + sortPath + comparison + ":lastSortValue or (" + sortPath + " = :lastSortValue and " + afterKey + "))";
+            }
+            jpql.append(" and ").append(afterKey);
+        }
+        jpql.append(" order by ");
+        if (sortPath != null) {
+            jpql.append(sortPath).append(direction).append(", ");
+        }
+        jpql.append("a.id.annotator.username").append(direction)
+                .append(", a.id.pair.use1.id").append(direction)
+                .append(", a.id.pair.use2.id").append(direction);
+        logger.debug("Built annotation browser query {}", jpql);
+        return jpql.toString();
+    }
+}
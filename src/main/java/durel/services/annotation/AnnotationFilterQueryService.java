@@ -0,0 +1,346 @@
+package durel.services.annotation;
+
+import durel.CacheConfig;
+import durel.domain.AnnotationExportRow;
+import durel.domain.AnnotationFilterCriteria;
+import durel.domain.AnnotationRow;
+import durel.domain.AnnotationVersion;
+import durel.domain.model.annotation.UserAnnotation;
+import durel.domain.repository.LemmaDAO;
+import durel.dto.responses.statistics.JudgmentCount;
+import durel.dto.responses.statistics.StringCount;
+import org.hibernate.jpa.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.transaction.Transactional;
+import javax.validation.constraints.NotNull;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs queries on the annotations that are restricted by an {@link AnnotationFilterCriteria}.
+ * <p>
+ * The JPQL of a query only depends on its {@link Selection} and on which filter fields are set, not on their values.
+ * It is therefore built once per shape and cached, and the values are bound as parameters. Since Hibernate caches the
+ * translation of a JPQL string, each shape is also compiled only once.
+ * <p>
+ * Besides the entities, the queries can return projections ({@link AnnotationRow}, {@link AnnotationExportRow} and
+ * counts) that are built by constructor expressions, so that the annotators and uses are not loaded.
+ * <p>
+ * Large results can be streamed: {@link #stream(Selection, AnnotationFilterCriteria)} reads them in chunks ordered by
+ * the composite id, and each chunk continues after the id of the last row of the previous one (keyset pagination).
+ * Only one chunk is held at a time, and each chunk is a separate query, so the stream does not need an open
+ * transaction or cursor.
+ * <p>
+ * Counts and rows can be served from a cache ({@link #getCachedResultList(Selection, AnnotationFilterCriteria)}).
+ * The cache key contains the normalized criteria and the {@link AnnotationVersion} of the filtered lemmas, which
+ * changes with every write of their annotations. A write therefore never needs to find and evict the affected entries:
+ * they are simply no longer looked up, and are evicted by the size bound. Hits and misses are exposed as
+ * {@code cache.gets} metrics of the cache, the writes as {@code annotation.filter.cache.invalidations}.
+ */
+@Service
+public class AnnotationFilterQueryService {
+
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationFilterQueryService.class);
+
+    /**
+     * The result of a filter query.
+     *
+     * @param name          The name of the selection, part of the cache key.
+     * @param resultType    The type of the results.
+     * @param selectClause  The select clause.
+     * @param groupByClause The group by clause, may be empty.
+     * @param joinsUses     Whether the select clause needs the uses of the pair.
+     * @param keyOf         Extracts the composite id of a result, null if the selection cannot be streamed.
+     */
+    public record Selection<T>(String name, Class<T> resultType, String selectClause, String groupByClause, boolean joinsUses,
+                               Function<T, Key> keyOf) {
+
+        public static final Selection<UserAnnotation> ENTITIES = new Selection<>("entities", UserAnnotation.class,
+                "select a", "", false,
+                annotation -> new Key(annotation.getId().getAnnotator().getUsername(),
+                        annotation.getId().getPair().getUse1().getId(), annotation.getId().getPair().getUse2().getId()));
+
+        public static final Selection<AnnotationRow> ROWS = new Selection<>("rows", AnnotationRow.class,
+                "select new durel.domain.AnnotationRow(a.lemma.id, a.id.pair.use1.id, a.id.pair.use2.id, a.id.annotator.username, a.judgment, a.dt)",
+                "", false, row -> new Key(row.annotator(), row.firstUseId(), row.secondUseId()));
+
+        public static final Selection<AnnotationExportRow> EXPORT_ROWS = new Selection<>("exportRows", AnnotationExportRow.class,
+                "select new durel.domain.AnnotationExportRow(u1.id, u2.id, u1.csvId, u2.csvId, a.id.annotator.username, a.judgment, a.comment, a.dt)",
+                "", true, row -> new Key(row.annotator(), row.firstUseId(), row.secondUseId()));
+
+        public static final Selection<Long> COUNT = new Selection<>("count", Long.class,
+                "select count(a)", "", false, null);
+
+        public static final Selection<JudgmentCount> JUDGMENT_COUNTS = new Selection<>("judgmentCounts", JudgmentCount.class,
+                "select new durel.dto.responses.statistics.JudgmentCount(a.judgment, count(a))", " group by a.judgment", false, null);
+
+        public static final Selection<StringCount> ANNOTATOR_COUNTS = new Selection<>("annotatorCounts", StringCount.class,
+                "select new durel.dto.responses.statistics.StringCount(a.id.annotator.username, count(a))",
+                " group by a.id.annotator.username", false, null);
+    }
+
+    /**
+     * The composite id of an annotation, by which streamed results are ordered.
+     */
+    public record Key(String annotator, Integer firstUseId, Integer secondUseId) {
+    }
+
+    private static final String KEY_ORDER = " order by a.id.annotator.username, a.id.pair.use1.id, a.id.pair.use2.id";
+
+    private static final String AFTER_KEY_CONDITION = "(a.id.annotator.username > :lastAnnotator or (a.id.annotator.username = :lastAnnotator " +
+            "and (a.id.pair.use1.id > :lastFirstUseId or (a.id.pair.use1.id = :lastFirstUseId and a.id.pair.use2.id > :lastSecondUseId))))";
+
+    /**
+     * The key of a cached result: the selection, the criteria with sorted and de-duplicated collections, and the
+     * version of the filtered lemmas.
+     */
+    private record ResultKey(String selection, List<Integer> words, List<String> projects, String sentenceDate1,
+                             String sentenceDate2, List<String> annotators, List<String> groupings, List<String> pos,
+                             List<Float> judgments, AnnotationVersion version) {
+    }
+
+    /**
+     * A filter field of {@link AnnotationFilterCriteria}.
+     *
+     * @param condition  The condition added to the where clause if the filter is set.
+     * @param joinsUses  Whether the condition needs the uses of the pair.
+     * @param parameters Extracts the parameters of the condition, empty if the filter is not set.
+     */
+    private record Filter(String condition, boolean joinsUses, Function<AnnotationFilterCriteria, Map<String, Object>> parameters) {
+    }
+
+    /* Note: The lemma and project are stored on the annotation, so that the most common filters do not join the uses
+        and can be answered from the indexes on (word_id, annotator_id) and (project_name, judgment). */
+    private static final List<Filter> FILTERS = List.of(
+            new Filter("a.lemma.id in :words", false,
+                    criteria -> inParameter("words", criteria.getWords())),
+            new Filter("a.projectName in :projects", false,
+                    criteria -> inParameter("projects", criteria.getProjects())),
+            new Filter("u1.useDate between :sentenceDate1 and :sentenceDate2 and u2.useDate between :sentenceDate1 and :sentenceDate2", true,
+                    criteria -> criteria.getSentenceDate1() == null || criteria.getSentenceDate2() == null ? Map.of() :
+                            Map.of("sentenceDate1", criteria.getSentenceDate1(), "sentenceDate2", criteria.getSentenceDate2())),
+            new Filter("u1.grouping in :groupings and u2.grouping in :groupings", true,
+                    criteria -> inParameter("groupings", criteria.getGroupings())),
+            new Filter("a.id.annotator.username in :annotators", false,
+                    criteria -> inParameter("annotators", criteria.getAnnotators())),
+            new Filter("u1.pos in :pos and u2.pos in :pos", true,
+                    criteria -> inParameter("pos", criteria.getPos())),
+            new Filter("a.judgment in :judgments", false,
+                    criteria -> inParameter("judgments", criteria.getJudgments())));
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Map<String, String> queriesByShape = new ConcurrentHashMap<>();
+
+    private final int chunkSize;
+
+    private final LemmaDAO lemmaDAO;
+
+    private final Cache resultCache;
+
+    @Autowired
+    public AnnotationFilterQueryService(@Value("${annotation.stream-chunk-size:1000}") int chunkSize, LemmaDAO lemmaDAO,
+                                        CacheManager cacheManager) {
+        this.chunkSize = chunkSize;
+        this.lemmaDAO = lemmaDAO;
+        this.resultCache = cacheManager.getCache(CacheConfig.ANNOTATION_FILTER_RESULT_CACHE);
+    }
+
+    /**
+     * Returns the results of the selection for all annotations matching the filter criteria.
+     *
+     * @param selection                The result to be selected.
+     * @param annotationFilterCriteria The filter criteria, unset fields do not restrict the annotations.
+     * @return The results of the query.
+     */
+    @Transactional
+    public <T> List<T> getResultList(@NotNull Selection<T> selection, @NotNull AnnotationFilterCriteria annotationFilterCriteria) {
+        Map<String, Object> parameters = new HashMap<>();
+        int activeFilters = bindFilters(annotationFilterCriteria, parameters);
+        String jpql = queriesByShape.computeIfAbsent(selection.name() + "/" + activeFilters,
+                key -> buildQuery(selection, activeFilters, false));
+        TypedQuery<T> query = entityManager.createQuery(jpql, selection.resultType());
+        parameters.forEach(query::setParameter);
+        return query.getResultList();
+    }
+
+    /**
+     * Returns the results of the selection for all annotations matching the filter criteria, served from the cache if
+     * the annotations of the filtered lemmas have not been written since. Criteria that restrict neither the lemmas
+     * nor the projects, or that match no lemma, are not cached.
+     * <p>
+     * The version is read before the query, so that a concurrent write can at worst store a newer result under the
+     * older version, which is then no longer looked up.
+     *
+     * @param selection                The result to be selected, must not select entities.
+     * @param annotationFilterCriteria The filter criteria, unset fields do not restrict the annotations.
+     * @return The unmodifiable results of the query.
+     * @throws IllegalArgumentException If the selection selects entities, which cannot be shared between transactions.
+     */
+    @Transactional
+    public <T> List<T> getCachedResultList(@NotNull Selection<T> selection, @NotNull AnnotationFilterCriteria annotationFilterCriteria)
+            throws IllegalArgumentException {
+        if (selection.resultType() == UserAnnotation.class) {
+            throw new IllegalArgumentException("The selection " + selection.name() + " cannot be cached.");
+        }
+        AnnotationVersion version;
+        if (isSet(annotationFilterCriteria.getWords())) {
+            version = lemmaDAO.findAnnotationVersionOfLemmas(annotationFilterCriteria.getWords());
+        } else if (isSet(annotationFilterCriteria.getProjects())) {
+            version = lemmaDAO.findAnnotationVersionOfProjects(annotationFilterCriteria.getProjects());
+        } else {
+            return getResultList(selection, annotationFilterCriteria);
+        }
+        if (version.isEmpty()) {
+            return getResultList(selection, annotationFilterCriteria);
+        }
+        ResultKey key = new ResultKey(selection.name(), normalize(annotationFilterCriteria.getWords()),
+                normalize(annotationFilterCriteria.getProjects()), annotationFilterCriteria.getSentenceDate1(),
+                annotationFilterCriteria.getSentenceDate2(), normalize(annotationFilterCriteria.getAnnotators()),
+                normalize(annotationFilterCriteria.getGroupings()), normalize(annotationFilterCriteria.getPos()),
+                normalize(annotationFilterCriteria.getJudgments()), version);
+        return resultCache.get(key, () -> List.copyOf(getResultList(selection, annotationFilterCriteria)));
+    }
+
+    /**
+     * Streams the results of the selection for all annotations matching the filter criteria, ordered by their
+     * composite id. The results are read in chunks of {@code annotation.stream-chunk-size}, and entities of a chunk
+     * are detached before the next chunk is read.
+     *
+     * @param selection                The result to be selected, must have a key.
+     * @param annotationFilterCriteria The filter criteria, unset fields do not restrict the annotations.
+     * @return The lazily read results of the query.
+     * @throws IllegalArgumentException If the selection cannot be streamed.
+     */
+    public <T> Stream<T> stream(@NotNull Selection<T> selection, @NotNull AnnotationFilterCriteria annotationFilterCriteria)
+            throws IllegalArgumentException {
+        if (selection.keyOf() == null) {
+            throw new IllegalArgumentException("The selection " + selection.name() + " cannot be streamed.");
+        }
+        Map<String, Object> parameters = new HashMap<>();
+        int activeFilters = bindFilters(annotationFilterCriteria, parameters);
+        String firstChunkJpql = queriesByShape.computeIfAbsent(selection.name() + "/" + activeFilters + "/first",
+                key -> buildQuery(selection, activeFilters, false) + KEY_ORDER);
+        String nextChunkJpql = queriesByShape.computeIfAbsent(selection.name() + "/" + activeFilters + "/next",
+                key -> buildQuery(selection, activeFilters, true) + KEY_ORDER);
+
+        Iterator<List<T>> chunks = new Iterator<>() {
+
+            private List<T> chunk = null;
+
+            @Override
+            public boolean hasNext() {
+                return chunk == null || chunk.size() == chunkSize;
+            }
+
+            @Override
+            public List<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TypedQuery<T> query;
+                if (chunk == null) {
+                    query = entityManager.createQuery(firstChunkJpql, selection.resultType());
+                } else {
+                    detach(chunk);
+                    Key lastKey = selection.keyOf().apply(chunk.get(chunk.size() - 1));
+                    query = entityManager.createQuery(nextChunkJpql, selection.resultType())
+                            .setParameter("lastAnnotator", lastKey.annotator())
+                            .setParameter("lastFirstUseId", lastKey.firstUseId())
+                            .setParameter("lastSecondUseId", lastKey.secondUseId());
+                }
+                parameters.forEach(query::setParameter);
+                chunk = query.setMaxResults(chunkSize)
+                        .setHint(QueryHints.HINT_FETCH_SIZE, chunkSize)
+                        .getResultList();
+                return chunk;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED), false)
+                .flatMap(List::stream);
+    }
+
+    /**
+     * Detaches the entities of a streamed chunk, so that they can be garbage collected if the stream is read within a
+     * transaction. Projections are not managed and are left alone.
+     */
+    private void detach(List<?> chunk) {
+        for (Object result : chunk) {
+            if (result instanceof UserAnnotation && entityManager.contains(result)) {
+                entityManager.detach(result);
+            }
+        }
+    }
+
+    /**
+     * Collects the parameters of the set filter fields.
+     *
+     * @return The bit set of the set filter fields, i.e., the shape of the query.
+     */
+    private static int bindFilters(AnnotationFilterCriteria annotationFilterCriteria, Map<String, Object> parameters) {
+        int activeFilters = 0;
+        for (int i = 0; i < FILTERS.size(); i++) {
+            Map<String, Object> filterParameters = FILTERS.get(i).parameters().apply(annotationFilterCriteria);
+            if (!filterParameters.isEmpty()) {
+                activeFilters |= 1 << i;
+                parameters.putAll(filterParameters);
+            }
+        }
+        return activeFilters;
+    }
+
+    private static String buildQuery(Selection<?> selection, int activeFilters, boolean afterKey) {
+        List<String> conditions = new ArrayList<>();
+        boolean joinsUses = selection.joinsUses();
+        for (int i = 0; i < FILTERS.size(); i++) {
+            if ((activeFilters & (1 << i)) != 0) {
+                conditions.add(FILTERS.get(i).condition());
+                joinsUses |= FILTERS.get(i).joinsUses();
+            }
+        }
+        StringBuilder jpql = new StringBuilder(selection.selectClause()).append(" from UserAnnotation a");
+        if (joinsUses) {
+            jpql.append(", Use u1, Use u2");
+            conditions.add(0, "u1.id = a.id.pair.use1.id and u2.id = a.id.pair.use2.id");
+        }
+        if (afterKey) {
+            conditions.add(AFTER_KEY_CONDITION);
+        }
+        if (!conditions.isEmpty()) {
+            jpql.append(" where ").append(String.join(" and ", conditions));
+        }
+        jpql.append(selection.groupByClause());
+        logger.debug("Built annotation filter query {}", jpql);
+        return jpql.toString();
+    }
+
+    private static boolean isSet(Collection<?> values) {
+        return values != null && !values.isEmpty();
+    }
+
+    private static <T extends Comparable<T>> List<T> normalize(Collection<T> values) {
+        return values == null ? List.of() : values.stream().distinct().sorted().toList();
+    }
+
+    private static Map<String, Object> inParameter(String name, Collection<?> values) {
+        return values == null || values.isEmpty() ? Map.of() : Map.of(name, values);
+    }
+}
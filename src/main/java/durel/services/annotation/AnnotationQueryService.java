@@ -1,34 +1,25 @@
 package durel.services.annotation;
 
+import durel.domain.AnnotationExportRow;
 import durel.domain.AnnotationFilterCriteria;
+import durel.domain.AnnotationRow;
 import durel.domain.model.*;
 import durel.domain.model.annotation.UserAnnotation;
-import durel.dto.responses.AnnotationDTO;
-import durel.services.dtoServices.AnnotationDTOService;
-import durel.session.DataSessionData;
 import durel.dto.responses.statistics.JudgmentCount;
 import durel.dto.responses.statistics.StringCount;
 import durel.domain.repository.UserAnnotationDAO;
 import durel.exceptions.DatabaseAccessException;
-import durel.services.FilterDataService;
-import durel.services.PredicateBuilderService;
-import durel.utils.TriFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Predicate;
-import javax.persistence.criteria.Root;
 import javax.transaction.Transactional;
 import javax.validation.constraints.NotNull;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 @Service
 public class AnnotationQueryService {
@@ -39,41 +30,16 @@ public class AnnotationQueryService {
      */
     private static final Logger logger = LoggerFactory.getLogger(AnnotationQueryService.class);
 
-
-    /* Note: This works because the word of the left sentence and the word of thr right sentence are identical.
-        Therefore, we only have to search for the left side. */
-    private static final String[] WORD_ID_PATH = {"id", "pair", "use1", "lemma", "id"};
-    private static final String[] PROJECT_NAME_PATH = {"id", "pair", "use1", "lemma", "project", "projectName"};
-    private static final String[] ANNOTATOR_PATH = {"id", "annotator", "username"};
-    private static final String[] JUDGMENT_PATH = {"judgment"};
-    private static final String[] LEFT_GROUPINGS_PATH = {"id", "pair", "use1", "groupings"};
-    private static final String[] RIGHT_GROUPINGS_PATH = {"id", "pair", "use2", "groupings"};
-    private static final String[] LEFT_POS_PATH = {"id", "pair", "use1", "pos"};
-    private static final String[] RIGHT_POS_PATH = {"id", "pair", "use2", "pos"};
-
     public static final List<Float> WHOLE_NUMBER_JUDGMENT_VALUES = List.of(0.0F, 1.0F, 2.0F, 3.0F, 4.0F);
 
-    @PersistenceContext
-    private EntityManager entityManager;
-
     private final UserAnnotationDAO userAnnotationDAO;
 
-    private final AnnotationDTOService annotationDTOService;
-
-    private final FilterDataService filterDataService;
-
-    private final PredicateBuilderService predicateBuilderService;
-
-    private final DataSessionData dataSessionData;
+    private final AnnotationFilterQueryService annotationFilterQueryService;
 
     @Autowired
-    public AnnotationQueryService(UserAnnotationDAO userAnnotationDAO, AnnotationDTOService annotationDTOService, FilterDataService filterDataService,
-                                  PredicateBuilderService predicateBuilderService, DataSessionData dataSessionData) {
+    public AnnotationQueryService(UserAnnotationDAO userAnnotationDAO, AnnotationFilterQueryService annotationFilterQueryService) {
         this.userAnnotationDAO = userAnnotationDAO;
-        this.annotationDTOService = annotationDTOService;
-        this.filterDataService = filterDataService;
-        this.predicateBuilderService = predicateBuilderService;
-        this.dataSessionData = dataSessionData;
+        this.annotationFilterQueryService = annotationFilterQueryService;
     }
 
 
@@ -146,29 +112,61 @@ public class AnnotationQueryService {
     }
 
     /**
-     * Returns a set of annotations based on the provided filter options.
+     * Returns a set of annotations based on the provided filter options. Loads the full entities, use
+     * {@link #getAnnotationRowsWithFilterOptions(AnnotationFilterCriteria)} if only ids and judgments are needed.
      *
      * @param annotationFilterCriteria The filter data used to retrieve the annotations.
      * @return A set of annotations matching the filter options.
-     * @throws IllegalStateException If the entity manager is not initialized.
      */
     @Transactional
-    public Set<UserAnnotation> getAnnotationsWithFilterOptions(AnnotationFilterCriteria annotationFilterCriteria) throws IllegalStateException {
+    public Set<UserAnnotation> getAnnotationsWithFilterOptions(AnnotationFilterCriteria annotationFilterCriteria) {
+        return new HashSet<>(annotationFilterQueryService.getResultList(AnnotationFilterQueryService.Selection.ENTITIES, annotationFilterCriteria));
+    }
+
+    /**
+     * Returns the ids, annotators, judgments and timestamps of the annotations matching the filter options, without
+     * loading the entities. The result is cached until the annotations of the filtered lemmas are written.
+     *
+     * @param annotationFilterCriteria The filter data used to retrieve the annotations.
+     * @return The annotations matching the filter options.
+     */
+    @Transactional
+    public List<AnnotationRow> getAnnotationRowsWithFilterOptions(AnnotationFilterCriteria annotationFilterCriteria) {
+        return annotationFilterQueryService.getCachedResultList(AnnotationFilterQueryService.Selection.ROWS, annotationFilterCriteria);
+    }
+
+    /**
+     * Streams the rows of {@link #getAnnotationRowsWithFilterOptions(AnnotationFilterCriteria)} in chunks, so that
+     * only one chunk is held in memory at a time.
+     *
+     * @param annotationFilterCriteria The filter data used to retrieve the annotations.
+     * @return The lazily read annotations matching the filter options.
+     */
+    public Stream<AnnotationRow> streamAnnotationRowsWithFilterOptions(AnnotationFilterCriteria annotationFilterCriteria) {
+        return annotationFilterQueryService.stream(AnnotationFilterQueryService.Selection.ROWS, annotationFilterCriteria);
+    }
 
-        List<UserAnnotation> userAnnotations = createQueryWithFilterOptions(UserAnnotation.class, (root, cb, query) -> query.orderBy(cb.asc(root.get("id"))), annotationFilterCriteria);
-        return new HashSet<>(userAnnotations);
+    /**
+     * Streams the columns of the annotation download for the annotations matching the filter options, without loading
+     * the entities. The rows are read in chunks, so that only one chunk is held in memory at a time.
+     *
+     * @param annotationFilterCriteria The filter data used to retrieve the annotations.
+     * @return The lazily read annotations matching the filter options.
+     */
+    public Stream<AnnotationExportRow> streamAnnotationExportRowsWithFilterOptions(AnnotationFilterCriteria annotationFilterCriteria) {
+        return annotationFilterQueryService.stream(AnnotationFilterQueryService.Selection.EXPORT_ROWS, annotationFilterCriteria);
     }
 
     @Transactional
-    public int getAnnotationCountWithFilterOptions(AnnotationFilterCriteria annotationFilterCriteria) throws IllegalStateException {
+    public int getAnnotationCountWithFilterOptions(AnnotationFilterCriteria annotationFilterCriteria) {
 
-        List<Long> counts = createQueryWithFilterOptions(Long.class, (root, cb, query) -> query.select(cb.count(root)), annotationFilterCriteria);
+        List<Long> counts = annotationFilterQueryService.getCachedResultList(AnnotationFilterQueryService.Selection.COUNT, annotationFilterCriteria);
         return counts.isEmpty() ? 0 : Math.toIntExact(counts.get(0));
     }
 
-    private Map<Float, Integer> getAnnotationCountByJudgmentWithFilterOptions(AnnotationFilterCriteria annotationFilterCriteria) throws IllegalStateException {
+    private Map<Float, Integer> getAnnotationCountByJudgmentWithFilterOptions(AnnotationFilterCriteria annotationFilterCriteria) {
 
-        List<JudgmentCount> judgmentCounts = createQueryWithFilterOptions(JudgmentCount.class, (root, cb, query) -> query.multiselect(root.get("judgment"), cb.count(root)).groupBy(root.get("judgment"), root.get("annotator").get("username")), annotationFilterCriteria);
+        List<JudgmentCount> judgmentCounts = annotationFilterQueryService.getCachedResultList(AnnotationFilterQueryService.Selection.JUDGMENT_COUNTS, annotationFilterCriteria);
         Map<Float, Integer> judgmentMap = new HashMap<>();
         for (JudgmentCount judgmentCount : judgmentCounts) {
             judgmentMap.put(judgmentCount.getJudgment(), Math.toIntExact(judgmentCount.getCount()));
@@ -177,84 +175,13 @@ public class AnnotationQueryService {
     }
 
     @Transactional
-    public Map<String, Integer> getAnnotationCountByAnnotatorWithFilterOptions(AnnotationFilterCriteria annotationFilterCriteria) throws IllegalStateException {
+    public Map<String, Integer> getAnnotationCountByAnnotatorWithFilterOptions(AnnotationFilterCriteria annotationFilterCriteria) {
 
-        List<StringCount> stringCounts = createQueryWithFilterOptions(StringCount.class, (root, cb, query) -> query.multiselect(root.get("annotator").get("username"), cb.count(root)).groupBy(root.get("annotator").get("username")), annotationFilterCriteria);
+        List<StringCount> stringCounts = annotationFilterQueryService.getCachedResultList(AnnotationFilterQueryService.Selection.ANNOTATOR_COUNTS, annotationFilterCriteria);
         Map<String, Integer> stringMap = new HashMap<>();
         for (StringCount stringCount : stringCounts) {
             stringMap.put(stringCount.getIdentifier(), Math.toIntExact(stringCount.getCount()));
         }
         return stringMap;
     }
-
-    /**
-     * Executes a query to the AnnotationDAO with filter options. This can be a count query but also a find query.
-     *
-     * @param <T>                  The result type.
-     * @param resultType           The class of the result type.
-     * @param selectFunction       The function that applies additional criteria to the query.
-     * @param annotationFilterCriteria The filter data used to retrieve the annotations.
-     * @return A list of objects of type T matching the filter options.
-     * @throws IllegalStateException If the entity manager is not initialized.
-     */
-    private <T> List<T> createQueryWithFilterOptions(Class<T> resultType,
-                                                     TriFunction<Root<UserAnnotation>, CriteriaBuilder, CriteriaQuery<T>, CriteriaQuery<T>> selectFunction,
-                                                     AnnotationFilterCriteria annotationFilterCriteria) {
-
-        if (entityManager == null) {
-            throw new IllegalStateException("Entity manager is not initialized");
-        }
-
-        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<T> query = cb.createQuery(resultType);
-        Root<UserAnnotation> annotationRoot = query.from(UserAnnotation.class);
-        List<Predicate> predicates = buildAnnotationPredicates(annotationRoot, cb, annotationFilterCriteria);
-
-        selectFunction.apply(annotationRoot, cb, query);
-        query.where(predicates.toArray(new Predicate[0]));
-        return entityManager.createQuery(query).getResultList();
-    }
-
-    /**
-     * Builds a list of predicates based on the annotation filter data.
-     *
-     * @param annotationRoot        The root of the annotation entity.
-     * @param cb                    The criteria builder.
-     * @param annotationFilterCriteria  The filter data used to build the predicates.
-     * @return The list of predicates.
-     */
-    private List<Predicate> buildAnnotationPredicates(Root<UserAnnotation> annotationRoot, CriteriaBuilder cb,
-                                                      AnnotationFilterCriteria annotationFilterCriteria) {
-        List<Predicate> predicates = new ArrayList<>();
-
-        predicateBuilderService.checkAndAddInPredicate(predicates, annotationRoot, cb, WORD_ID_PATH, annotationFilterCriteria.getWords());
-        predicateBuilderService.checkAndAddInPredicate(predicates, annotationRoot, cb, PROJECT_NAME_PATH, annotationFilterCriteria.getProjects());
-        predicateBuilderService.checkAndAddSentenceDatePredicate(predicates, annotationRoot, cb, annotationFilterCriteria.getSentenceDate1(), annotationFilterCriteria.getSentenceDate2());
-        predicateBuilderService.checkAndAddInPredicate(predicates, annotationRoot, cb, LEFT_GROUPINGS_PATH, annotationFilterCriteria.getGroupings());
-        predicateBuilderService.checkAndAddInPredicate(predicates, annotationRoot, cb, RIGHT_GROUPINGS_PATH, annotationFilterCriteria.getGroupings());
-        predicateBuilderService.checkAndAddInPredicate(predicates, annotationRoot, cb, ANNOTATOR_PATH, annotationFilterCriteria.getAnnotators());
-        predicateBuilderService.checkAndAddInPredicate(predicates, annotationRoot, cb, LEFT_POS_PATH, annotationFilterCriteria.getPos());
-        predicateBuilderService.checkAndAddInPredicate(predicates, annotationRoot, cb, RIGHT_POS_PATH, annotationFilterCriteria.getPos());
-        predicateBuilderService.checkAndAddInPredicate(predicates, annotationRoot, cb, JUDGMENT_PATH, annotationFilterCriteria.getJudgments());
-        return predicates;
-    }
-
-    @Transactional
-    public void updateAnnotationViewDataList(Lemma lemma, String username) {
-        AnnotationFilterCriteria annotationFilterCriteria = filterDataService.createAnnotationFilterData(lemma,null,null, null,(User)null,null,null,null);
-        Set<UserAnnotation> userAnnotations = getAnnotationsWithFilterOptions(annotationFilterCriteria);
-        ArrayList<AnnotationDTO> annotationsArrayList = new ArrayList<>();
-        for (UserAnnotation userAnnotation : userAnnotations) {
-            // Ensure that annotations can only be seen by project owner, or the annotator himself.
-            if (userAnnotation.getAnnotator().getUsername().equals(username) ||
-                    userAnnotation.getUses().stream().toList().get(0).getLemma().getProject().getCreator().getUsername().equals(username)) {
-                annotationsArrayList.add(annotationDTOService.constructAnnotationDTOfromAnnotation(userAnnotation));
-            }
-        }
-        this.dataSessionData.setAnnotationViewData(annotationsArrayList);
-    }
-
-    public ArrayList<AnnotationDTO> getCurrentAnnotations() {
-        return dataSessionData.getAnnotationViewData();
-    }
 }
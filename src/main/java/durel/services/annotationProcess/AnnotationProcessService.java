@@ -4,6 +4,7 @@ import durel.dto.responses.UseDTO;
 import durel.services.user.UserService;
 import durel.session.AnnotationSessionData;
 import durel.session.RandomAnnotationSequence;
+import durel.session.UsePairPrefetchBuffer;
 import durel.domain.model.*;
 import durel.exceptions.SystemErrorException;
 import durel.exceptions.UserErrorException;
@@ -33,29 +34,26 @@ public class AnnotationProcessService implements DefaultAnnotationProcessService
     // Services
     private final AnnotationService annotationService;
 
-    private final UseService useService;
-
-    private final PairService pairService;
-
     private final WordService wordService;
 
     private final UserService userService;
 
     private final SequenceService sequenceService;
 
+    private final UsePairPrefetchService usePairPrefetchService;
+
     // SessionData
     private final AnnotationSessionData annotationSessionData;
 
     @Autowired
-    public AnnotationProcessService(AnnotationService annotationService, UseService useService,
-                                    PairService pairService, WordService wordService, UserService userService,
-                                    SequenceService sequenceService, AnnotationSessionData annotationSessionData) {
+    public AnnotationProcessService(AnnotationService annotationService, WordService wordService, UserService userService,
+                                    SequenceService sequenceService,
+                                    UsePairPrefetchService usePairPrefetchService, AnnotationSessionData annotationSessionData) {
         this.annotationService = annotationService;
-        this.useService = useService;
-        this.pairService = pairService;
         this.wordService = wordService;
         this.userService = userService;
         this.sequenceService = sequenceService;
+        this.usePairPrefetchService = usePairPrefetchService;
         this.annotationSessionData = annotationSessionData;
     }
 
@@ -78,19 +76,13 @@ public class AnnotationProcessService implements DefaultAnnotationProcessService
     /**
      * Calculate the number of sentence pairs based on the current project and word. If the current project in the
      * annotationSessionData is random, this is n*(n-1)/2 (n being the number of sentences). If the current project is not
-     * random, we count the number of pairs in the pairs table.
+     * random, this is the number of uploaded pairs. Both are read from the counters of the word.
      *
      * @return The number of sentence pairs.
      */
     @Override
     public int noOfSentencePairs() {
-        if (annotationSessionData.getCurrentProject().isAllPossiblePairs()) {
-            int noSentencesOfWord = useService.getNoOfSentencesOfWord(annotationSessionData.getCurrentLemma());
-            return (noSentencesOfWord*(noSentencesOfWord-1))/2;
-        }
-        else {
-            return pairService.getPairsByProjectAndLemma(annotationSessionData.getCurrentProject(), annotationSessionData.getCurrentLemma().getLemma()).size();
-        }
+        return wordService.getNoOfPairs(annotationSessionData.getCurrentProject(), annotationSessionData.getCurrentLemma());
     }
 
     // Business logic for human annotation tasks -----------------------------------------------------------------------
@@ -128,20 +120,16 @@ public class AnnotationProcessService implements DefaultAnnotationProcessService
     }
 
     /**
-     * Sets the session annotation sequence for a given word.
-     * If the project is random, it creates a new random annotation sequence based on the list of sentence IDs of the word.
-     * If the project is not random, it creates a new random annotation sequence based on the pairs of sentences in the project.
+     * Sets the session annotation sequence for a given word. Pairs prefetched for a previous sequence are discarded.
      *
      * @param lemma The Word object representing the word to be annotated.
      */
     private void setSessionAnnotationSequence(Lemma lemma, AnnotationSequence annotationSequence) {
-        if (lemma.getProject().isAllPossiblePairs()) {
-            List<Integer> sentenceIDsOfWord = useService.getSentenceIDsOfWord(lemma);
-            annotationSessionData.setRandomAnnotationSequence(new RandomAnnotationSequence(sentenceIDsOfWord, annotationSequence.getSeed()));
-        } else {
-            List<Instance> instances = pairService.getPairsByProjectAndLemma(lemma.getProject(), lemma.getLemma());
-            annotationSessionData.setRandomAnnotationSequence(new RandomAnnotationSequence(annotationSequence.getSeed(), instances));
+        if (annotationSessionData.getUsePairPrefetchBuffer() != null) {
+            annotationSessionData.getUsePairPrefetchBuffer().clear();
         }
+        annotationSessionData.setUsePairPrefetchBuffer(new UsePairPrefetchBuffer());
+        annotationSessionData.setRandomAnnotationSequence(sequenceService.getRandomAnnotationSequence(lemma, annotationSequence));
     }
 
     @Override
@@ -168,44 +156,47 @@ public class AnnotationProcessService implements DefaultAnnotationProcessService
     private boolean isAllPairsAnnotated(@NotNull AnnotationSequence annotationSequence) {
         RandomAnnotationSequence randomAnnotationSequence = annotationSessionData.getRandomAnnotationSequence();
         // Check whether we have annotated all pairs of sentences
-        return annotationSequence.getIndex() >= randomAnnotationSequence.getAnnotations().size();
+        return annotationSequence.getIndex() >= randomAnnotationSequence.size();
     }
 
     /**
-     * Retrieves the next pair of VSentences based on the given Seq.
+     * Retrieves the next pair of VSentences based on the given Seq. The pair is taken from the prefetch buffer if it
+     * has already been rendered, and the rendering of the following pairs is scheduled. A single probe of the
+     * annotated pairs finds both the next pair and the unannotated pairs after it, so that only pairs that will
+     * actually be shown are prefetched.
      *
      * @param annotationSequence The Seq object used to determine the next pair of sentences.
      * @return The List of VSentence objects representing the next pair of sentences.
+     * @throws DataIntegrityViolationException If all pairs have been annotated although the index says otherwise.
      */
-    private List<UseDTO> getNextVSentences(@NotNull AnnotationSequence annotationSequence) {
-        // Create VSentences from the next pair of sentences
+    private List<UseDTO> getNextVSentences(@NotNull AnnotationSequence annotationSequence) throws DataIntegrityViolationException {
         RandomAnnotationSequence randomAnnotationSequence = annotationSessionData.getRandomAnnotationSequence();
-        Integer[] annotationIds = shuffleIds(randomAnnotationSequence.next(annotationSequence.getIndex()));
-        UseDTO leftUseDTO = getVSentence(annotationIds[0]);
-        UseDTO rightUseDTO = getVSentence(annotationIds[1]);
-        return Arrays.asList(leftUseDTO, rightUseDTO);
-    }
-
-    /**
-     * Retrieves a VSentence object based on the provided annotation ID.
-     *
-     * @param annotationId The ID of the annotation.
-     * @return The VSentence object.
-     */
-    private UseDTO getVSentence(@NotNull Integer annotationId) {
-        Use use = useService.getSentence(annotationId);
-        return useService.getSentenceDTO(use);
+        UsePairPrefetchBuffer usePairPrefetchBuffer = annotationSessionData.getUsePairPrefetchBuffer();
+        List<Integer> positions = sequenceService.findNextUnannotatedPositions(randomAnnotationSequence, annotationSequence,
+                1 + usePairPrefetchService.getPrefetchSize());
+        if (positions.isEmpty()) {
+            DataIntegrityViolationException e = new DataIntegrityViolationException("No unannotated pair left for "
+                    + annotationSequence.getId().getUsername() + " at index " + annotationSequence.getIndex());
+            logger.error(e.getMessage(), e);
+            throw e;
+        }
+        int position = positions.get(0);
+        List<UseDTO> usePair = usePairPrefetchService.getUsePair(usePairPrefetchBuffer, position, randomAnnotationSequence.next(position));
+        usePairPrefetchService.prefetch(usePairPrefetchBuffer, randomAnnotationSequence, positions);
+        // Create VSentences from the next pair of sentences
+        return shuffleUses(usePair);
     }
 
     /**
-     * Shuffle the array of annotation IDs randomly.
+     * Shuffle the pair of uses randomly, so that the order of the uses on the page does not follow the sequence.
      *
-     * @param annotationIds The array of annotation IDs to be shuffled.
-     * @return The shuffled array of annotation IDs.
+     * @param usePair The pair of uses to be shuffled.
+     * @return A shuffled copy of the pair of uses.
      */
-    private Integer[] shuffleIds(@NotNull Integer[] annotationIds) {
-        Collections.shuffle(Arrays.asList(annotationIds));
-        return annotationIds;
+    private List<UseDTO> shuffleUses(@NotNull List<UseDTO> usePair) {
+        List<UseDTO> shuffled = new ArrayList<>(usePair);
+        Collections.shuffle(shuffled);
+        return shuffled;
     }
 
     /**
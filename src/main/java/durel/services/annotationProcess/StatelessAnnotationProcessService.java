@@ -0,0 +1,240 @@
+package durel.services.annotationProcess;
+
+import durel.domain.AnnotationCursor;
+import durel.domain.PairJudgment;
+import durel.domain.model.AnnotationSequence;
+import durel.domain.model.Lemma;
+import durel.domain.model.User;
+import durel.dto.requests.annotation.JudgmentRequest;
+import durel.dto.responses.AnnotationStepDTO;
+import durel.dto.responses.UseDTO;
+import durel.exceptions.SystemErrorException;
+import durel.exceptions.UserErrorException;
+import durel.services.AnnotationService;
+import durel.services.SequenceService;
+import durel.services.UseService;
+import durel.services.WordService;
+import durel.services.user.UserService;
+import durel.session.RandomAnnotationSequence;
+import durel.utils.AnnotationCursorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Annotation process of the annotation API. In contrast to {@link AnnotationProcessService}, no state is kept in the
+ * session: the position of the annotator is handed to the client as a signed {@link AnnotationCursor}, and the
+ * annotation sequence is recreated from its seed on every request. Any node can therefore serve any request.
+ */
+@Service
+public class StatelessAnnotationProcessService {
+
+    /**
+     * StatelessAnnotationProcessService logger.
+     *
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(StatelessAnnotationProcessService.class);
+
+    private final AnnotationService annotationService;
+
+    private final UseService useService;
+
+    private final WordService wordService;
+
+    private final UserService userService;
+
+    private final SequenceService sequenceService;
+
+    private final AnnotationCursorService annotationCursorService;
+
+    private final int maxPageSize;
+
+    private final int maxBatchSize;
+
+    @Autowired
+    public StatelessAnnotationProcessService(AnnotationService annotationService, UseService useService, WordService wordService,
+                                             UserService userService, SequenceService sequenceService,
+                                             AnnotationCursorService annotationCursorService,
+                                             @Value("${annotation.max-page-size:50}") int maxPageSize,
+                                             @Value("${annotation.max-batch-size:100}") int maxBatchSize) {
+        this.annotationService = annotationService;
+        this.useService = useService;
+        this.wordService = wordService;
+        this.userService = userService;
+        this.sequenceService = sequenceService;
+        this.annotationCursorService = annotationCursorService;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Starts/continues the annotation of a lemma. If the lemma is annotated for the first time, a new annotation
+     * sequence is created.
+     *
+     * @param username    The username of the annotator.
+     * @param projectName The name of the project.
+     * @param lemmaName   The lemma to be annotated.
+     * @return The next pair to be judged.
+     * @throws UserErrorException If the lemma does not exist.
+     */
+    @Transactional
+    public AnnotationStepDTO startAnnotation(@NotNull String username, String projectName, String lemmaName) throws UserErrorException {
+        Lemma lemma = wordService.getLemmaObjectByProjectNameAndLemma(projectName, lemmaName);
+        if (lemma == null) {
+            throw new UserErrorException("The lemma " + lemmaName + " does not exist in project " + projectName + ".");
+        }
+        User annotator = userService.getUserByUsername(username);
+        AnnotationSequence annotationSequence = sequenceService.getExistingOrNewSeq(annotator, lemma);
+        return createAnnotationSteps(lemma, annotator, annotationSequence, 1).get(0);
+    }
+
+    /**
+     * Saves the judgment for the pair of the cursor and returns the next pair.
+     *
+     * @param username The username of the authenticated annotator.
+     * @param token    The signed cursor that has been handed out with the pair.
+     * @param judgment The judgment value to be saved.
+     * @param comment  The comment to be saved.
+     * @return The next pair to be judged.
+     * @throws UserErrorException   If the cursor is invalid, belongs to another annotator or to a sequence that no
+     *                              longer exists, has been handed out at another index for a pair that has not been
+     *                              judged, or if the comment is too long.
+     * @throws SystemErrorException If there is an error in the system.
+     */
+    @Transactional
+    public AnnotationStepDTO saveJudgment(@NotNull String username, String token, float judgment, String comment)
+            throws UserErrorException, SystemErrorException {
+        AnnotationCursor cursor = parseCursor(username, token);
+        User annotator = userService.getUserByUsername(username);
+        Lemma lemma = wordService.getLemmaById(cursor.lemmaId());
+        AnnotationSequence annotationSequence = getSequenceOfCursor(annotator, lemma, cursor);
+        checkIndexOfCursor(lemma, annotationSequence, cursor);
+        annotationService.saveSingleAnnotationAndUpdateSequence(lemma, annotator, annotationSequence, judgment,
+                cursor.firstUseId(), cursor.secondUseId(), comment == null ? "" : comment);
+        return createAnnotationSteps(lemma, annotator, annotationSequence, 1).get(0);
+    }
+
+    /**
+     * Saves the judgments for several pairs of one sequence in one transaction and returns the next page of pairs.
+     * The number of judgments is capped by {@code annotation.max-batch-size}, since the transaction holds the lock on
+     * the row of the lemma until all of them are saved.
+     *
+     * @param username         The username of the authenticated annotator.
+     * @param judgmentRequests The judgments, each with the cursor of its pair. All cursors must belong to one sequence.
+     * @param pageSize         The number of pairs to be returned, capped by {@code annotation.max-page-size}.
+     * @return The next pairs to be judged, or a single finished step if the sequence is finished.
+     * @throws UserErrorException   If there are no or too many judgments, if a cursor is invalid, belongs to another
+     *                              annotator or sequence, or if a comment is too long.
+     * @throws SystemErrorException If there is an error in the system.
+     */
+    @Transactional
+    public List<AnnotationStepDTO> saveJudgments(@NotNull String username, @NotNull List<JudgmentRequest> judgmentRequests, int pageSize)
+            throws UserErrorException, SystemErrorException {
+        if (judgmentRequests.isEmpty()) {
+            throw new UserErrorException("No judgments have been submitted.");
+        }
+        if (judgmentRequests.size() > maxBatchSize) {
+            throw new UserErrorException("At most " + maxBatchSize + " judgments can be submitted at once.");
+        }
+        List<PairJudgment> judgments = new ArrayList<>();
+        List<AnnotationCursor> cursors = new ArrayList<>();
+        AnnotationCursor firstCursor = null;
+        for (JudgmentRequest judgmentRequest : judgmentRequests) {
+            AnnotationCursor cursor = parseCursor(username, judgmentRequest.getCursor());
+            if (firstCursor == null) {
+                firstCursor = cursor;
+            } else if (cursor.lemmaId() != firstCursor.lemmaId() || cursor.seed() != firstCursor.seed()) {
+                throw new UserErrorException("All judgments of a batch must belong to the same annotation sequence.");
+            }
+            cursors.add(cursor);
+            judgments.add(new PairJudgment(cursor.firstUseId(), cursor.secondUseId(), judgmentRequest.getJudgment(), judgmentRequest.getComment()));
+        }
+        User annotator = userService.getUserByUsername(username);
+        Lemma lemma = wordService.getLemmaById(firstCursor.lemmaId());
+        AnnotationSequence annotationSequence = getSequenceOfCursor(annotator, lemma, firstCursor);
+        for (AnnotationCursor cursor : cursors) {
+            checkIndexOfCursor(lemma, annotationSequence, cursor);
+        }
+        annotationService.saveAnnotationsAndUpdateSequence(lemma, annotator, annotationSequence, judgments);
+        return createAnnotationSteps(lemma, annotator, annotationSequence, Math.max(1, Math.min(pageSize, maxPageSize)));
+    }
+
+    private AnnotationCursor parseCursor(String username, String token) throws UserErrorException {
+        AnnotationCursor cursor = annotationCursorService.parse(token);
+        if (!username.equals(cursor.annotator())) {
+            logger.warn("{} sent an annotation cursor of {}.", username, cursor.annotator());
+            throw new UserErrorException("The annotation cursor belongs to another annotator.");
+        }
+        return cursor;
+    }
+
+    private AnnotationSequence getSequenceOfCursor(User annotator, Lemma lemma, AnnotationCursor cursor) throws UserErrorException {
+        AnnotationSequence annotationSequence = lemma == null ? null : sequenceService.getSeq(annotator, lemma);
+        if (annotationSequence == null || annotationSequence.getSeed() != cursor.seed()) {
+            throw new UserErrorException("The annotation cursor is outdated. Please restart the annotation.");
+        }
+        return annotationSequence;
+    }
+
+    /**
+     * Rejects a cursor that has been handed out at another index of the sequence than the current one, unless its pair
+     * has already been judged: a new judgment is only accepted for the pairs handed out at the current position, while a
+     * judgment of an annotated pair (e.g., a retried request) only modifies the annotation.
+     */
+    private void checkIndexOfCursor(Lemma lemma, AnnotationSequence annotationSequence, AnnotationCursor cursor) throws UserErrorException {
+        if (cursor.index() != annotationSequence.getIndex() && !sequenceService.isAnnotated(
+                sequenceService.getRandomAnnotationSequence(lemma, annotationSequence), annotationSequence,
+                cursor.firstUseId(), cursor.secondUseId())) {
+            logger.warn("{} sent an annotation cursor of index {} at index {}.", cursor.annotator(), cursor.index(),
+                    annotationSequence.getIndex());
+            throw new UserErrorException("The annotation cursor is outdated. Please restart the annotation.");
+        }
+    }
+
+    /**
+     * Determines the next pairs of the sequence and signs a cursor for each of them.
+     *
+     * @return Up to {@code count} steps, or a single finished step if no pair is left.
+     */
+    private List<AnnotationStepDTO> createAnnotationSteps(Lemma lemma, User annotator, AnnotationSequence annotationSequence, int count) {
+        RandomAnnotationSequence randomAnnotationSequence = sequenceService.getRandomAnnotationSequence(lemma, annotationSequence);
+        int index = annotationSequence.getIndex();
+        List<Integer> positions = index >= randomAnnotationSequence.size() ? List.of() :
+                sequenceService.findNextUnannotatedPositions(randomAnnotationSequence, annotationSequence, count);
+        if (positions.isEmpty()) {
+            return List.of(AnnotationStepDTO.builder()
+                    .currentPair(index)
+                    .sequenceLength(randomAnnotationSequence.size())
+                    .finished(true)
+                    .uses(List.of())
+                    .build());
+        }
+        List<AnnotationStepDTO> steps = new ArrayList<>();
+        for (int position : positions) {
+            Integer[] annotationIds = randomAnnotationSequence.next(position);
+            AnnotationCursor cursor = new AnnotationCursor(lemma.getId(), annotator.getUsername(), annotationSequence.getSeed(),
+                    index, annotationIds[0], annotationIds[1]);
+            // Shuffle the uses, so that the order on the page does not follow the sequence.
+            List<UseDTO> uses = new ArrayList<>(List.of(useService.getSentenceDTO(annotationIds[0]), useService.getSentenceDTO(annotationIds[1])));
+            Collections.shuffle(uses);
+            steps.add(AnnotationStepDTO.builder()
+                    .cursor(annotationCursorService.sign(cursor))
+                    .currentPair(index + steps.size() + 1)
+                    .sequenceLength(randomAnnotationSequence.size())
+                    .finished(false)
+                    .uses(uses)
+                    .build());
+        }
+        return steps;
+    }
+}
@@ -0,0 +1,116 @@
+package durel.services.annotationProcess;
+
+import durel.dto.responses.UseDTO;
+import durel.services.UseService;
+import durel.session.RandomAnnotationSequence;
+import durel.session.UsePairPrefetchBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Loads and renders the use pairs of the upcoming positions of an annotation sequence ahead of time, so that the
+ * next pair is already available when the annotator submits a judgment.
+ * <p>
+ * Only sentence ids are passed to the prefetch tasks, as session scoped beans are not accessible outside the request
+ * thread.
+ */
+@Service
+public class UsePairPrefetchService {
+
+    /**
+     * UsePairPrefetchService logger.
+     *
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(UsePairPrefetchService.class);
+
+    private final UseService useService;
+
+    private final ThreadPoolTaskExecutor prefetchTaskExecutor;
+
+    private final int prefetchSize;
+
+    @Autowired
+    public UsePairPrefetchService(UseService useService,
+                                  @Qualifier("prefetchTaskExecutor") ThreadPoolTaskExecutor prefetchTaskExecutor,
+                                  @Value("${annotation.prefetch-size:3}") int prefetchSize) {
+        this.useService = useService;
+        this.prefetchTaskExecutor = prefetchTaskExecutor;
+        this.prefetchSize = prefetchSize;
+    }
+
+    /**
+     * Returns the rendered use pair at the given position. Takes the pair from the buffer if it has been prefetched,
+     * otherwise (or if prefetching failed) renders it on the calling thread.
+     *
+     * @param buffer          The prefetch buffer of the current session.
+     * @param position        The position of the pair in the annotation sequence.
+     * @param annotationIds   The sentence ids of the pair at this position.
+     * @return The two rendered uses, in the order of the given ids.
+     */
+    public List<UseDTO> getUsePair(@NotNull UsePairPrefetchBuffer buffer, int position, @NotNull Integer[] annotationIds) {
+        CompletableFuture<List<UseDTO>> prefetched = buffer.get(position);
+        if (prefetched != null) {
+            try {
+                return prefetched.join();
+            } catch (CompletionException | CancellationException e) {
+                logger.warn("Prefetching use pair {} failed, rendering it again.", Arrays.toString(annotationIds), e);
+            }
+        }
+        return renderUsePair(annotationIds);
+    }
+
+    /**
+     * @return The number of pairs that are rendered ahead of the current one.
+     */
+    public int getPrefetchSize() {
+        return prefetchSize;
+    }
+
+    /**
+     * Schedules the rendering of the upcoming pairs and evicts all other pairs.
+     *
+     * @param buffer                    The prefetch buffer of the current session.
+     * @param randomAnnotationSequence  The annotation sequence of the current session.
+     * @param positions                 The position of the pair that is currently shown, followed by the positions of
+     *                                  the upcoming pairs that have not been annotated yet.
+     */
+    public void prefetch(@NotNull UsePairPrefetchBuffer buffer, @NotNull RandomAnnotationSequence randomAnnotationSequence,
+                         @NotNull List<Integer> positions) {
+        buffer.retainPositions(positions);
+        for (int next : positions.subList(Math.min(1, positions.size()), positions.size())) {
+            if (!buffer.contains(next)) {
+                Integer[] annotationIds = randomAnnotationSequence.next(next);
+                try {
+                    buffer.put(next, CompletableFuture.supplyAsync(() -> renderUsePair(annotationIds), prefetchTaskExecutor));
+                } catch (TaskRejectedException e) {
+                    // The executor is saturated. The pair will be rendered when it is needed.
+                    logger.debug("Prefetch queue is full, skipping position {}.", next);
+                    return;
+                }
+            }
+        }
+    }
+
+    private List<UseDTO> renderUsePair(Integer[] annotationIds) {
+        return List.of(renderUse(annotationIds[0]), renderUse(annotationIds[1]));
+    }
+
+    private UseDTO renderUse(Integer annotationId) {
+        return useService.getSentenceDTO(annotationId);
+    }
+}
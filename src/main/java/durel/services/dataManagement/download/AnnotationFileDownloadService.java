@@ -1,7 +1,7 @@
 package durel.services.dataManagement.download;
 
+import durel.domain.AnnotationExportRow;
 import durel.domain.AnnotationFilterCriteria;
-import durel.domain.model.annotation.UserAnnotation;
 import durel.domain.model.User;
 import durel.domain.model.Lemma;
 import durel.services.FilterDataService;
@@ -13,12 +13,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.validation.constraints.NotNull;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
-public class AnnotationFileDownloadService extends AnnotationFileType implements DefaultFileDownload<UserAnnotation> {
+public class AnnotationFileDownloadService extends AnnotationFileType implements DefaultFileDownload<AnnotationExportRow> {
 
     /**
      * @see Logger
@@ -47,17 +51,51 @@ public class AnnotationFileDownloadService extends AnnotationFileType implements
         return getFullHeader();
     }
 
+    /**
+     * Writes the annotations of the word to a file. In contrast to the default implementation, the annotations are
+     * streamed from the database and written line by line, so that the annotations of large words are never held in
+     * memory at once.
+     *
+     * @param path  the path of the file exclusion filename
+     * @param lemma the Word to be written
+     */
+    @Override
+    public void writeFile(String path, Lemma lemma) {
+        String filePath = path + getFileName();
+        try (FileWriter fileWriter = DefaultFileDownload.createAndOpenFile(filePath);
+             Stream<AnnotationExportRow> annotations = streamDataForDownload(lemma)) {
+            fileWriter.write(getHeader());
+            Iterator<AnnotationExportRow> iterator = annotations.iterator();
+            while (iterator.hasNext()) {
+                String line = dataToString(iterator.next(), lemma);
+                try {
+                    writeData(line, fileWriter);
+                } catch (IOException e) {
+                    logger.error("Error when writing line to file: {}.", line);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error occurred while writing to the file: {}", filePath, e);
+        }
+    }
+
     /**
      * Retrieves a set of annotations for download based on the given word.
      *
      * @param lemma The Word object.
-     * @return A set of Annotation objects that match the given word. The set is filtered to exclude annotations with a judgment value of -1.
+     * @return A set of annotation rows that match the given word. The set is filtered to exclude annotations with a judgment value of -1.
      */
     @Override
-    public Set<UserAnnotation> getDataForDownload(@NotNull Lemma lemma) {
+    public Set<AnnotationExportRow> getDataForDownload(@NotNull Lemma lemma) {
+        try (Stream<AnnotationExportRow> annotations = streamDataForDownload(lemma)) {
+            return annotations.collect(Collectors.toSet());
+        }
+    }
+
+    private Stream<AnnotationExportRow> streamDataForDownload(Lemma lemma) {
         AnnotationFilterCriteria annotationFilterCriteria = filterDataService.createAnnotationFilterData(lemma, null, null, null, (User) null, null, null, null);
-        return annotationService.getAnnotationsWithFilterOptions(annotationFilterCriteria)
-                .stream().filter(annotation -> annotation.getJudgment() != -1).collect(Collectors.toSet());
+        return annotationService.streamAnnotationExportRowsWithFilterOptions(annotationFilterCriteria)
+                .filter(annotation -> annotation.judgment() != -1);
         // We filter -1 Judgments because they only exist for system purposes. TODO make -1 judgments superfluous
     }
 
@@ -2,16 +2,19 @@ package durel.services.dataManagement.download;
 
 import durel.domain.model.Project;
 import durel.domain.model.Lemma;
+import durel.domain.repository.LemmaDAO;
 import durel.utils.FileManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.transaction.Transactional;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.zip.ZipEntry;
@@ -26,18 +29,28 @@ public class DownloadProcessService {
     UseFileDownloadService useFileDownloadService;
     InstanceFileDownloadService instancesFileDownloadService;
     AnnotationFileDownloadService annotationFileDownloadService;
+    LemmaDAO lemmaDAO;
 
     @Autowired
     public DownloadProcessService(UseFileDownloadService useFileDownloadService,
                                   InstanceFileDownloadService instancesFileDownloadService,
-                                  AnnotationFileDownloadService annotationFileDownloadService) {
+                                  AnnotationFileDownloadService annotationFileDownloadService, LemmaDAO lemmaDAO) {
         this.useFileDownloadService = useFileDownloadService;
         this.instancesFileDownloadService = instancesFileDownloadService;
         this.annotationFileDownloadService = annotationFileDownloadService;
+        this.lemmaDAO = lemmaDAO;
     }
 
-    public String prepareFilesForVisualization(Lemma lemma) {
-        String targetDir = generateDirectoryPath("visualization", lemma.getLemma(), System.currentTimeMillis());
+    /**
+     * Writes the uses and annotations of a lemma into a new directory, the input of the WUG pipeline. The lemma is
+     * loaded in the transaction of the method, so that it can be called by a background job.
+     *
+     * @return The path of the directory.
+     */
+    @Transactional
+    public String prepareFilesForVisualization(int lemmaId) {
+        Lemma lemma = lemmaDAO.findById(lemmaId).orElseThrow(() -> new IllegalArgumentException("There is no lemma " + lemmaId + "."));
+        String targetDir = createDirectoryForVisualization(lemma.getLemma());
         String dataDir = targetDir + DATAFOLDER_STRING + File.separator + lemma.getLemma() + File.separator;
         FileManager.createDirectory(dataDir);
         useFileDownloadService.writeFile(dataDir, lemma);
@@ -45,6 +58,22 @@ public class DownloadProcessService {
         return targetDir;
     }
 
+    /**
+     * Creates a new directory for the files of a word usage graph of a lemma. The name is unique, so that concurrent
+     * jobs of the lemma never share a directory, which each of them deletes when it is no longer needed.
+     *
+     * @return The path of the directory.
+     */
+    public String createDirectoryForVisualization(String lemma) {
+        try {
+            Path parent = Paths.get(TEMP_DIR, "visualization");
+            Files.createDirectories(parent);
+            return Files.createTempDirectory(parent, lemma).toString() + File.separator;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create the directory of the WUG of " + lemma + ".", e);
+        }
+    }
+
     public String downloadProject(Project project) {
         // Prepare for zip file.
         String baseDirectoryPath = generateDirectoryPath("download", project.getProjectName(), System.currentTimeMillis());
@@ -66,10 +95,15 @@ public class DownloadProcessService {
         annotationFileDownloadService.writeFile(resourcesPath  + lemma.getLemma() + "_", lemma);
     }
 
-    public String downloadWUGs(String path) {
+    /**
+     * Zips the files of a word usage graph pipeline, once per directory, as the files do not change.
+     */
+    public synchronized String downloadWUGs(String path) {
         Path input = Paths.get(path);
         Path output = Paths.get(path + "WUGs.zip");
-        zipFolder(input, output);
+        if (!Files.exists(output)) {
+            zipFolder(input, output);
+        }
         return path + "WUGs.zip";
     }
 
@@ -1,8 +1,7 @@
 package durel.services.dataManagement.fileTypeSpecifications;
 
-import durel.domain.model.Use;
+import durel.domain.AnnotationExportRow;
 import durel.services.dataManagement.uploadData.AnnotationData;
-import durel.domain.model.annotation.UserAnnotation;
 import durel.domain.model.Lemma;
 import durel.services.dataManagement.upload.DefaultFileUpload;
 import org.slf4j.Logger;
@@ -10,7 +9,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 
-public abstract class AnnotationFileType extends DefaultFileType<UserAnnotation, AnnotationData> {
+public abstract class AnnotationFileType extends DefaultFileType<AnnotationExportRow, AnnotationData> {
 
     private static final Logger annotationLogger = LoggerFactory.getLogger(AnnotationFileType.class);
     private static final String annotationFileName = "annotations.csv";
@@ -25,27 +24,25 @@ public abstract class AnnotationFileType extends DefaultFileType<UserAnnotation,
     // METHODS --------------------------------------------------------------------------------------
 
     /**
-     * Retrieves the content data from an Annotation and Word object.
+     * Retrieves the content data from an annotation row and Word object.
      *
-     * @param userAnnotation the Annotation object
+     * @param annotation the annotation row
      * @param lemma the Word object
      * @return an array of strings containing the content data
      * @throws NullPointerException if the annotation or word is null, or if any of the required fields in the annotation are null
      */
     @Override
-    protected String[] getDataContent(UserAnnotation userAnnotation, Lemma lemma) throws NullPointerException {
-        super.getDataContent(userAnnotation, lemma);
-        Use use1 = userAnnotation.getUses().stream().toList().get(0);
-        Use use2 = userAnnotation.getUses().stream().toList().get(1);
-        return new String[]{use1.getCsvId(),
-                use2.getCsvId(),
-                userAnnotation.getAnnotator().getUsername(),
-                String.valueOf(userAnnotation.getJudgment()),
-                userAnnotation.getComment(),
+    protected String[] getDataContent(AnnotationExportRow annotation, Lemma lemma) throws NullPointerException {
+        super.getDataContent(annotation, lemma);
+        return new String[]{annotation.firstUseCsvId(),
+                annotation.secondUseCsvId(),
+                annotation.annotator(),
+                String.valueOf(annotation.judgment()),
+                annotation.comment(),
                 lemma.getLemma(),
-                String.valueOf(userAnnotation.getDt()),
-                String.valueOf(use1.getId()),
-                String.valueOf(use2.getId())};
+                String.valueOf(annotation.dt()),
+                String.valueOf(annotation.firstUseId()),
+                String.valueOf(annotation.secondUseId())};
     }
 
     /**
@@ -68,15 +65,15 @@ public abstract class AnnotationFileType extends DefaultFileType<UserAnnotation,
     /**
      * Validates an annotation by checking if it is complete.
      *
-     * @param userAnnotation the Annotation object to validate
+     * @param annotation the annotation row to validate
      * @param lemma the Word object associated with the annotation
      * @throws NullPointerException if the annotation or word is null, or if any of the required fields in the annotation are null
      */
     @Override
-    protected void validateData(UserAnnotation userAnnotation, Lemma lemma) throws NullPointerException {
-        if (lemma == null || userAnnotation == null ||
-                userAnnotation.getAnnotator() == null ||
-                userAnnotation.getUses().stream().toList().get(0) == null || userAnnotation.getUses().stream().toList().get(1) == null) {
+    protected void validateData(AnnotationExportRow annotation, Lemma lemma) throws NullPointerException {
+        if (lemma == null || annotation == null ||
+                annotation.annotator() == null ||
+                annotation.firstUseId() == null || annotation.secondUseId() == null) {
             throw new NullPointerException("Encountered an incomplete annotation!");
         }
     }
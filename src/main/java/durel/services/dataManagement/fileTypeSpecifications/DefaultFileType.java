@@ -80,7 +80,7 @@ public abstract class DefaultFileType<T,U> {
      * @param lemma The word to include in the content data.
      * @return A string representing the object and word data in a file format.
      */
-    private String dataToString(T t, Lemma lemma) {
+    protected String dataToString(T t, Lemma lemma) {
         try {
             String[] content = getDataContent(t, lemma);
             return createLine(content);
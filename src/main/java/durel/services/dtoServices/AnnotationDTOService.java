@@ -1,32 +1,58 @@
 package durel.services.dtoServices;
 
-import durel.domain.model.annotation.UserAnnotation;
-import durel.domain.model.Use;
+import durel.domain.AnnotationViewRow;
 import durel.dto.responses.AnnotationDTO;
+import durel.dto.responses.UseDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class AnnotationDTOService {
 
-    public AnnotationDTO constructAnnotationDTOfromAnnotation(@NotNull UserAnnotation userAnnotation) {
-
-        Use use1 = userAnnotation.getUses().stream().toList().get(0);
-        Use use2 = userAnnotation.getUses().stream().toList().get(1);
-        return AnnotationDTO.builder()
-                .lemma(determineLemma(use1))
-                .identifierUse1(determineUseIdentifier(use1))
-                .contextUse1(determineUseContext(use1))
-                .identifierUse2(determineUseIdentifier(use2))
-                .contextUse2(determineUseContext(use2))
-                .annotator(determineUsername(userAnnotation))
-                .timestamp(userAnnotation.getDt())
-                .judgment(userAnnotation.getJudgment())
-                .comment(userAnnotation.getComment())
-                .build();
+    private final UseDTOCacheService useDTOCacheService;
+
+    public AnnotationDTOService(UseDTOCacheService useDTOCacheService) {
+        this.useDTOCacheService = useDTOCacheService;
+    }
+
+    /**
+     * Creates the AnnotationDTOs of the given annotation rows. The uses of all rows are taken from the shared use cache,
+     * and the missing ones are loaded with a single query.
+     *
+     * @param annotationViewRows The annotation rows. Must not be null.
+     * @return The created AnnotationDTOs, in the order of the rows.
+     */
+    public List<AnnotationDTO> constructAnnotationDTOsFromRows(@NotNull List<AnnotationViewRow> annotationViewRows) {
+        List<Integer> useIds = new ArrayList<>();
+        for (AnnotationViewRow annotationViewRow : annotationViewRows) {
+            useIds.add(annotationViewRow.firstUseId());
+            useIds.add(annotationViewRow.secondUseId());
+        }
+        Map<Integer, UseDTO> useDTOs = useDTOCacheService.getUseDTOs(useIds).stream()
+                .collect(Collectors.toMap(UseDTO::getId, Function.identity(), (first, second) -> first));
+        return annotationViewRows.stream().map(annotationViewRow -> {
+            UseDTO use1 = useDTOs.get(annotationViewRow.firstUseId());
+            UseDTO use2 = useDTOs.get(annotationViewRow.secondUseId());
+            return AnnotationDTO.builder()
+                    .lemma(determineLemma(use1))
+                    .identifierUse1(determineUseIdentifier(use1))
+                    .contextUse1(determineUseContext(use1))
+                    .identifierUse2(determineUseIdentifier(use2))
+                    .contextUse2(determineUseContext(use2))
+                    .annotator(annotationViewRow.annotator())
+                    .timestamp(annotationViewRow.dt())
+                    .judgment(annotationViewRow.judgment())
+                    .comment(annotationViewRow.comment())
+                    .build();
+        }).toList();
     }
 
     private String encounteredNull(String methodName){
@@ -34,21 +60,16 @@ public class AnnotationDTOService {
         return "";
     }
 
-    private String determineUseIdentifier(Use use) {
+    private String determineUseIdentifier(UseDTO use) {
         return  use != null ? String.valueOf(use.getId()) : encounteredNull("determineUseIdentifier");
     }
 
-    private String determineUseContext(Use use) {
+    private String determineUseContext(UseDTO use) {
         return use != null ? use.getContext() : encounteredNull("determineUseContext");
     }
 
-    private String determineUsername(@NotNull UserAnnotation userAnnotation) {
-        return userAnnotation.getAnnotator() != null ?
-                userAnnotation.getAnnotator().getUsername() : encounteredNull("determineUsername");
-    }
-
-    private String determineLemma(Use use) {
-        return use != null && use.getLemma() != null ?
-                use.getLemma().getLemma() : encounteredNull("determineLemma");
+    private String determineLemma(UseDTO use) {
+        return use != null && use.getWord() != null ?
+                use.getWord() : encounteredNull("determineLemma");
     }
-}
\ No newline at end of file
+}
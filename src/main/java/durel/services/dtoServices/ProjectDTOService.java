@@ -1,13 +1,16 @@
 package durel.services.dtoServices;
 
+import durel.domain.model.LemmaStats;
 import durel.domain.model.Project;
 import durel.dto.responses.ProjectDTO;
+import durel.services.statistics.LemmaStatisticsService;
 import durel.services.user.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 @Service
@@ -16,18 +19,25 @@ public class ProjectDTOService {
 
     private final UserService userService;
 
-    public ProjectDTOService(UserService userService) {
+    private final LemmaStatisticsService lemmaStatisticsService;
+
+    public ProjectDTOService(UserService userService, LemmaStatisticsService lemmaStatisticsService) {
         this.userService = userService;
+        this.lemmaStatisticsService = lemmaStatisticsService;
     }
 
     /**
-     * Creates a ProjectDTO with settings information based on the given Project.
+     * Creates a ProjectDTO with settings information based on the given Project. The annotation statistics are read
+     * from the materialized statistics of the lemmas, see {@link LemmaStatisticsService}.
      *
      * @param project The Project object to create the DTO from. Must not be null.
      * @return The created ProjectDTO object.
      */
     public ProjectDTO constructProjectStatisticsDTO(@NotNull Project project) {
         List<String> activeAnnotators = determineActiveAnnotators(project);
+        Collection<LemmaStats> lemmaStatistics = lemmaStatisticsService.getLemmaStatistics(project.getProjectName()).values();
+        long noOfJudgedAnnotations = lemmaStatistics.stream().mapToLong(LemmaStats::getJudgedAnnotationCount).sum();
+        double judgmentSum = lemmaStatistics.stream().mapToDouble(LemmaStats::getJudgmentSum).sum();
         return ProjectDTO.builder()
                 .name(determineProjectName(project))
                 .lang(determineLanguage(project))
@@ -37,6 +47,9 @@ public class ProjectDTOService {
                 .lastEdited(determineLastEdited(project))
                 .noOfAnnotators(activeAnnotators.size())
                 .noOfWords(determineNumberOfWords(project))
+                .noOfAnnotations(lemmaStatistics.stream().mapToLong(LemmaStats::getAnnotationCount).sum())
+                .noOfAnnotatedPairs(lemmaStatistics.stream().mapToLong(LemmaStats::getAnnotatedPairCount).sum())
+                .meanJudgment(noOfJudgedAnnotations == 0 ? null : judgmentSum / noOfJudgedAnnotations)
                 .random(project.isAllPossiblePairs())
                 .build();
     }
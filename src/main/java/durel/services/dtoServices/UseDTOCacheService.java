@@ -0,0 +1,111 @@
+package durel.services.dtoServices;
+
+import durel.CacheConfig;
+import durel.domain.model.Lemma;
+import durel.domain.model.Use;
+import durel.domain.repository.SentenceDAO;
+import durel.dto.responses.UseDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import javax.validation.constraints.NotNull;
+import java.util.*;
+
+/**
+ * Read-through cache of rendered uses, shared by all sessions.
+ * <p>
+ * Uses never change after upload, so a rendered {@link UseDTO} stays valid until its lemma is deleted. Cached DTOs are
+ * immutable and can be handed out to all callers.
+ */
+@Service
+@Slf4j
+public class UseDTOCacheService {
+
+    private final SentenceDAO sentenceDAO;
+
+    private final UseDTOService useDTOService;
+
+    private final Cache useDTOCache;
+
+    @Autowired
+    public UseDTOCacheService(SentenceDAO sentenceDAO, UseDTOService useDTOService, CacheManager cacheManager) {
+        this.sentenceDAO = sentenceDAO;
+        this.useDTOService = useDTOService;
+        this.useDTOCache = Objects.requireNonNull(cacheManager.getCache(CacheConfig.USE_DTO_CACHE));
+    }
+
+    /**
+     * Returns the rendered use with the given id, loading it from the database on a cache miss.
+     *
+     * @param useId The id of the use.
+     * @return The rendered use, or null if the use does not exist.
+     */
+    @Transactional
+    public UseDTO getUseDTO(int useId) {
+        UseDTO useDTO = useDTOCache.get(useId, UseDTO.class);
+        if (useDTO == null) {
+            useDTO = sentenceDAO.findById(useId).map(this::render).orElse(null);
+        }
+        return useDTO;
+    }
+
+    /**
+     * Returns the rendered use of an already loaded entity, rendering it only on a cache miss.
+     *
+     * @param use The use entity.
+     * @return The rendered use.
+     */
+    public UseDTO getUseDTO(@NotNull Use use) {
+        UseDTO useDTO = useDTOCache.get(use.getId(), UseDTO.class);
+        return useDTO != null ? useDTO : render(use);
+    }
+
+    /**
+     * Returns the rendered uses with the given ids in the given order. All cache misses are loaded with a single query.
+     * Ids of uses that do not exist are skipped.
+     *
+     * @param useIds The ids of the uses.
+     * @return The rendered uses.
+     */
+    @Transactional
+    public List<UseDTO> getUseDTOs(@NotNull List<Integer> useIds) {
+        Map<Integer, UseDTO> useDTOs = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer useId : useIds) {
+            UseDTO useDTO = useDTOCache.get(useId, UseDTO.class);
+            if (useDTO != null) {
+                useDTOs.put(useId, useDTO);
+            } else {
+                missing.add(useId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Use use : sentenceDAO.findAllById(missing)) {
+                useDTOs.put(use.getId(), render(use));
+            }
+        }
+        return useIds.stream().map(useDTOs::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Removes all uses of the lemma from the cache. Has to be called before the lemma is deleted.
+     *
+     * @param lemma The lemma whose uses are evicted.
+     */
+    @Transactional
+    public void evictUsesOfLemma(@NotNull Lemma lemma) {
+        for (Integer useId : sentenceDAO.findIdsByLemma(lemma)) {
+            useDTOCache.evict(useId);
+        }
+    }
+
+    private UseDTO render(Use use) {
+        UseDTO useDTO = useDTOService.constructSentenceDTOfromAnnotationSentence(use);
+        useDTOCache.put(use.getId(), useDTO);
+        return useDTO;
+    }
+}
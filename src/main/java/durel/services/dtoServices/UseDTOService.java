@@ -40,6 +40,7 @@ public class UseDTOService {
                 .id(use.getId())
                 .pos(use.getPos())
                 .sentenceDate(use.getUseDate())
+                .context(use.getContext())
                 .word(use.getLemma().getLemma())
                 .previousSentence(sentenceParts[0])
                 .leftSentenceContext(sentenceParts[1])
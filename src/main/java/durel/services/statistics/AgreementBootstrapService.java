@@ -0,0 +1,161 @@
+package durel.services.statistics;
+
+import durel.dto.responses.statistics.AgreementStatisticsData;
+import durel.utils.ConfusionMatrix;
+import durel.utils.JudgmentMatrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.validation.constraints.NotNull;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Computes percentile bootstrap confidence intervals of the agreement statistics of a lemma (or the whole project).
+ * <p>
+ * Each resample draws the items (pairs of uses) of the judgment matrix with replacement, as a weight per item, so the
+ * matrix is shared by all resamples instead of being copied. The seed of a resample only depends on the configured
+ * seed, the lemma and the number of the resample, so that the intervals do not depend on the scheduling of the
+ * resamples. The resamples are split into forked tasks and have to be computed on a fork-join pool.
+ * <p>
+ * Intervals are computed for the metrics of the pairs of annotators and for Krippendorff's alpha of all annotators,
+ * both from the matrices of the resample ({@link JudgmentMatrix#toConfusionMatrix} and
+ * {@link JudgmentMatrix#toCoincidenceMatrix}), with the same missing judgments as the statistics. The agreement with
+ * the mean of the annotators has no intervals (NaN).
+ */
+@Service
+public class AgreementBootstrapService {
+
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(AgreementBootstrapService.class);
+
+    private static final int RESAMPLES_PER_TASK = 50;
+
+    // Spreads the seeds of consecutive resamples (the golden ratio increment of SplittableRandom).
+    private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+    private final int resamples;
+
+    private final long seed;
+
+    @Autowired
+    public AgreementBootstrapService(@Value("${statistics.bootstrap-resamples:1000}") int resamples,
+                                     @Value("${statistics.bootstrap-seed:0}") long seed) {
+        this.resamples = resamples;
+        this.seed = seed;
+    }
+
+    /**
+     * Adds the confidence intervals of all metrics to the statistics of a lemma.
+     *
+     * @param judgmentMatrix          The judgments of the lemma from which the statistics were computed.
+     * @param agreementStatisticsData The statistics of the lemma, which get the lower and upper bounds.
+     * @param confidenceLevel         The confidence level of the intervals, e.g., 0.95.
+     * @param cancelled               Whether the result is no longer needed, checked before each resample.
+     * @throws CancellationException If the computation was cancelled.
+     */
+    public void addConfidenceIntervals(@NotNull JudgmentMatrix judgmentMatrix, @NotNull AgreementStatisticsData agreementStatisticsData,
+                                       double confidenceLevel, @NotNull BooleanSupplier cancelled) throws CancellationException {
+        int raterCount = judgmentMatrix.getRaterCount();
+        String[] metrics = AgreementStatisticsService.METRICS;
+        // The value of each metric and pair of annotators (i < j) in each resample.
+        double[][][][] samples = new double[metrics.length][raterCount][raterCount][];
+        for (int metric = 0; metric < metrics.length; metric++) {
+            for (int i = 0; i < raterCount; i++) {
+                for (int j = i+1; j < raterCount; j++) {
+                    samples[metric][i][j] = new double[resamples];
+                }
+            }
+        }
+        double[] fullSamples = new double[resamples];
+        long lemmaSeed = seed ^ (agreementStatisticsData.getLemma().hashCode() * SEED_INCREMENT);
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int from = 0; from < resamples; from += RESAMPLES_PER_TASK) {
+            int first = from;
+            int last = Math.min(from + RESAMPLES_PER_TASK, resamples);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                for (int resample = first; resample < last; resample++) {
+                    if (cancelled.getAsBoolean()) {
+                        throw new CancellationException();
+                    }
+                    computeResample(judgmentMatrix, lemmaSeed, resample, samples, fullSamples);
+                }
+            }));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        double alpha = 1.0 - confidenceLevel;
+        Map<String, double[][]> lowerBounds = new HashMap<>();
+        Map<String, double[][]> upperBounds = new HashMap<>();
+        for (int metric = 0; metric < metrics.length; metric++) {
+            double[][] lower = new double[raterCount][raterCount+1];
+            double[][] upper = new double[raterCount][raterCount+1];
+            for (int i = 0; i < raterCount; i++) {
+                Arrays.fill(lower[i], Double.NaN);
+                Arrays.fill(upper[i], Double.NaN);
+                for (int j = i+1; j < raterCount; j++) {
+                    double[] sorted = sortedWithoutNaN(samples[metric][i][j]);
+                    lower[i][j] = quantile(sorted, alpha / 2.0);
+                    upper[i][j] = quantile(sorted, 1.0 - alpha / 2.0);
+                }
+            }
+            lowerBounds.put(metrics[metric], lower);
+            upperBounds.put(metrics[metric], upper);
+        }
+        double[] sorted = sortedWithoutNaN(fullSamples);
+        lowerBounds.put(AgreementStatisticsService.KRIPPENDORFF_FULL, new double[][]{{quantile(sorted, alpha / 2.0)}});
+        upperBounds.put(AgreementStatisticsService.KRIPPENDORFF_FULL, new double[][]{{quantile(sorted, 1.0 - alpha / 2.0)}});
+
+        agreementStatisticsData.setConfidenceLevel(confidenceLevel);
+        agreementStatisticsData.setLowerBounds(lowerBounds);
+        agreementStatisticsData.setUpperBounds(upperBounds);
+        logger.debug("Computed {} bootstrap resamples of {}.", resamples, agreementStatisticsData.getLemma());
+    }
+
+    private static void computeResample(JudgmentMatrix judgmentMatrix, long lemmaSeed, int resample, double[][][][] samples, double[] fullSamples) {
+        int itemCount = judgmentMatrix.getItemCount();
+        int raterCount = judgmentMatrix.getRaterCount();
+        SplittableRandom random = new SplittableRandom(lemmaSeed + resample * SEED_INCREMENT);
+        int[] weights = new int[itemCount];
+        for (int draw = 0; draw < itemCount; draw++) {
+            weights[random.nextInt(itemCount)]++;
+        }
+        for (int i = 0; i < raterCount; i++) {
+            for (int j = i+1; j < raterCount; j++) {
+                ConfusionMatrix confusionMatrix = judgmentMatrix.toConfusionMatrix(i, j, weights);
+                for (int metric = 0; metric < samples.length; metric++) {
+                    samples[metric][i][j][resample] = AgreementStatisticsService.PAIR_METRICS.get(metric).applyAsDouble(confusionMatrix);
+                }
+            }
+        }
+        fullSamples[resample] = judgmentMatrix.toCoincidenceMatrix(weights).krippendorffAlpha();
+    }
+
+    private static double[] sortedWithoutNaN(double[] values) {
+        double[] sorted = Arrays.stream(values).filter(value -> !Double.isNaN(value)).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * The quantile of sorted values, interpolated between the closest ranks, NaN if there are no values.
+     */
+    private static double quantile(double[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        double position = p * (sorted.length - 1);
+        int below = (int) Math.floor(position);
+        int above = Math.min(below + 1, sorted.length - 1);
+        return sorted[below] + (position - below) * (sorted[above] - sorted[below]);
+    }
+}
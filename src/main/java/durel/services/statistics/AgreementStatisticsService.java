@@ -1,35 +1,56 @@
 package durel.services.statistics;
 
+import durel.CacheConfig;
 import durel.domain.AnnotationFilterCriteria;
 import durel.dto.responses.statistics.AgreementStatisticsData;
-import durel.domain.model.annotation.UserAnnotation;
+import durel.dto.responses.statistics.AgreementTableDTO;
+import durel.domain.AnnotationRow;
+import durel.domain.AnnotationVersion;
 import durel.domain.model.User;
 import durel.domain.model.Project;
 import durel.domain.model.Lemma;
 import durel.services.FilterDataService;
 import durel.services.ProjectService;
+import durel.services.WordService;
 import durel.services.annotation.AnnotationQueryService;
 import durel.services.user.UserService;
-import durel.utils.OrdinalDistanceFunctionWithDoubles;
-import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
-import org.dkpro.statistics.agreement.coding.CohenKappaAgreement;
-import org.dkpro.statistics.agreement.coding.KrippendorffAlphaAgreement;
-import org.dkpro.statistics.agreement.distance.OrdinalDistanceFunction;
-import org.dkpro.statistics.correlation.PearsonCorrelation;
-import org.dkpro.statistics.correlation.SpearmansRankCorrelation;
+import durel.utils.AgreementSummary;
+import durel.utils.ConfusionMatrix;
+import durel.utils.JudgmentMatrix;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 import javax.management.InstanceNotFoundException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
 
 @Service
 public class AgreementStatisticsService {
 
     private static final Logger logger = LoggerFactory.getLogger(AgreementStatisticsService.class);
 
+    static final String[] METRICS = {"KrippendorffAlphaAgreement", "CohenKappaAgreement", "PearsonCorrelation", "SpearmansRankCorrelation", "HammingLoss"};
+
+    // How each metric is computed for a pair of annotators, in the order of METRICS.
+    static final List<ToDoubleFunction<ConfusionMatrix>> PAIR_METRICS = List.of(ConfusionMatrix::krippendorffAlpha,
+            ConfusionMatrix::cohenKappa, ConfusionMatrix::pearsonCorrelation, ConfusionMatrix::spearmansRankCorrelation,
+            ConfusionMatrix::hammingLoss);
+
+    static final String KRIPPENDORFF_FULL = "Krippendorff_full";
+
+    private static final String WHOLE_PROJECT = "wholeProject";
+
     private final AnnotationQueryService annotationService;
 
     private final UserService userService;
@@ -40,135 +61,273 @@ public class AgreementStatisticsService {
 
     private final AgreementStatisticsSessionDataService agreementStatisticsSessionDataService;
 
+    private final AnnotatorPairStatisticsService annotatorPairStatisticsService;
+
+    private final WordService wordService;
+
+    private final AgreementBootstrapService agreementBootstrapService;
+
+    private final ForkJoinPool statisticsForkJoinPool;
+
+    private final Cache agreementSummaryCache;
+
+    /**
+     * Identifies the summary of a lemma: the lemma, the annotation version of the lemma, which changes with every write
+     * of its annotations, and the selected annotators in the order of the columns.
+     */
+    private record AgreementSummaryKey(int lemmaId, long annotationVersion, List<String> usernames) {
+    }
+
     @Autowired
-    public AgreementStatisticsService(AnnotationQueryService annotationService, UserService userService, FilterDataService filterDataService, ProjectService projectService, AgreementStatisticsSessionDataService agreementStatisticsSessionDataService) {
+    public AgreementStatisticsService(AnnotationQueryService annotationService, UserService userService, FilterDataService filterDataService, ProjectService projectService, AgreementStatisticsSessionDataService agreementStatisticsSessionDataService,
+                                      AnnotatorPairStatisticsService annotatorPairStatisticsService, WordService wordService,
+                                      AgreementBootstrapService agreementBootstrapService,
+                                      @Qualifier("statisticsForkJoinPool") ForkJoinPool statisticsForkJoinPool,
+                                      CacheManager cacheManager) {
         this.annotationService = annotationService;
         this.userService = userService;
         this.filterDataService = filterDataService;
         this.projectService = projectService;
         this.agreementStatisticsSessionDataService = agreementStatisticsSessionDataService;
+        this.annotatorPairStatisticsService = annotatorPairStatisticsService;
+        this.wordService = wordService;
+        this.agreementBootstrapService = agreementBootstrapService;
+        this.statisticsForkJoinPool = statisticsForkJoinPool;
+        this.agreementSummaryCache = Objects.requireNonNull(cacheManager.getCache(CacheConfig.AGREEMENT_SUMMARY_CACHE));
     }
 
-    public double[][] getAllAgreementStatistics(String projectSelect, String wordSelect, String annotatorsList, String metricSelect) {
+    /**
+     * Returns the agreement statistics of the selected annotators for all lemmas of the project. The statistics are
+     * kept in the session; if they have to be computed, the computation is started in the background.
+     *
+     * @param confidenceLevel The confidence level of the bootstrap confidence intervals, null for no intervals.
+     * @return The statistics by lemma, with the statistics of the whole project under "wholeProject". The future
+     * completes with null if the project does not exist. Cancelling it stops the computation, unless another request
+     * of the session still waits for it.
+     */
+    public CompletableFuture<Map<String, AgreementStatisticsData>> getAllAgreementStatistics(String projectSelect, String annotatorsList,
+                                                                                             Double confidenceLevel) {
         try {
             Project project = projectService.getProject(projectSelect);
             List<User> annotators = userService.stringOfUsernamesToListOfUsers(annotatorsList);
-            // Todo somehow this check does not work
-            if (agreementStatisticsSessionDataService.checkSessionData(annotators, project)) {
-                Map<String, AgreementStatisticsData> agreementStatisticsDataMap = calculateAgreementStatistics(annotators, project);
-                agreementStatisticsSessionDataService.updateSessionData(annotators, project, agreementStatisticsDataMap);
-            }
-            return agreementStatisticsSessionDataService.getAgreementStatisticsDataMap(wordSelect, metricSelect);
+            // The version is read first, so that statistics that miss a concurrent write are computed again.
+            AnnotationVersion annotationVersion = wordService.getAnnotationVersionOfProject(project.getProjectName());
+            return agreementStatisticsSessionDataService.getOrStartComputation(annotators, project, annotationVersion, confidenceLevel,
+                    () -> calculateAgreementStatistics(annotators, project, confidenceLevel));
         } catch (InstanceNotFoundException e) {
             logger.error(e.getMessage(), e);
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
     }
 
-    public Map<String, AgreementStatisticsData> calculateAgreementStatistics(List<User> annotators, Project project) {
-        // TODO Nan-Value Setting
-        String[] metrics = {"KrippendorffAlphaAgreement", "CohenKappaAgreement", "PearsonCorrelation", "SpearmansRankCorrelation", "HammingLoss"};
-
-        Map<String, AgreementStatisticsData> agreementStatisticsDataMap = new HashMap<>();
-        List<UserAnnotation> allUserAnnotations = new ArrayList<>();
-
-        for (Lemma lemma :project.getLemmas()) {
-            AnnotationFilterCriteria annotationFilterCriteria = filterDataService.createAnnotationFilterDataLists(List.of(new Lemma[]{lemma}), null, null, null, annotators, null, null, null);
-            List<UserAnnotation> userAnnotations = new ArrayList<>(annotationService.getAnnotationsWithFilterOptions(annotationFilterCriteria));
-            allUserAnnotations.addAll(userAnnotations);
-            addAgreementStatisticsData(userAnnotations, agreementStatisticsDataMap, metrics, annotators, lemma.getLemma());
+    /**
+     * @return The table of the metric for the lemma (or "wholeProject"), null if there is none.
+     */
+    public double[][] getAgreementData(Map<String, AgreementStatisticsData> agreementStatisticsDataMap, String word, String metric) {
+        if (agreementStatisticsDataMap == null || !agreementStatisticsDataMap.containsKey(word)) {
+            return null;
         }
-        addAgreementStatisticsData(allUserAnnotations, agreementStatisticsDataMap, metrics, annotators, "wholeProject");
-
-        return agreementStatisticsDataMap;
+        return agreementStatisticsDataMap.get(word).getAgreementData().get(metric);
     }
 
-    private void addAgreementStatisticsData(List<UserAnnotation> userAnnotations, Map<String, AgreementStatisticsData> agreementStatisticsDataMap, String[] metrics, List<User> annotators, String word) {
-        if (!userAnnotations.isEmpty()) {
-            agreementStatisticsDataMap.put(word, new AgreementStatisticsData(word, metrics, userAnnotations, annotators));
-            getAgreements(agreementStatisticsDataMap.get(word));
+    /**
+     * @return The table of the metric for the lemma (or "wholeProject") with its confidence intervals, null if there
+     * is none.
+     */
+    public AgreementTableDTO getAgreementTable(Map<String, AgreementStatisticsData> agreementStatisticsDataMap, String word, String metric) {
+        double[][] values = getAgreementData(agreementStatisticsDataMap, word, metric);
+        if (values == null) {
+            return null;
         }
-        else {
-            agreementStatisticsDataMap.put(word, new AgreementStatisticsData());
+        AgreementStatisticsData agreementStatisticsData = agreementStatisticsDataMap.get(word);
+        AgreementTableDTO.AgreementTableDTOBuilder agreementTable = AgreementTableDTO.builder()
+                .values(values)
+                .confidenceLevel(agreementStatisticsData.getConfidenceLevel());
+        if (agreementStatisticsData.getLowerBounds() != null) {
+            agreementTable.lowerBounds(agreementStatisticsData.getLowerBounds().get(metric))
+                    .upperBounds(agreementStatisticsData.getUpperBounds().get(metric));
         }
+        return agreementTable.build();
     }
 
-    private void getAgreements(AgreementStatisticsData agreementStatisticsData) {
-        for (int i = 0; i< agreementStatisticsData.getAnnotators().size(); i++) {
-            try {
-                for (int j = i+1; j< agreementStatisticsData.getAnnotators().size(); j++) {
-                    calculateAgreementForPairOfAnnotators(i, j, agreementStatisticsData);
-                }
-                calculateAgreementForPairOfAnnotators(i, agreementStatisticsData.getAnnotators().size(), agreementStatisticsData);
-            }
-            catch (IndexOutOfBoundsException ignored) {
-            }
+    /**
+     * Computes the agreement statistics of the selected annotators for all lemmas of the project and for the whole
+     * project. The statistics of the pairs of annotators are computed from their confusion matrices (see
+     * {@link AnnotatorPairStatisticsService}), the matrices of the project are the sums of the matrices of its lemmas.
+     * <p>
+     * The agreement with the mean of the annotators and Krippendorff's alpha of all annotators depend on the judgments
+     * of each pair of uses. They are computed from a summary of each lemma ({@link AgreementSummary}), which is cached
+     * by the annotation version of the lemma, and the summary of the project is the sum of the summaries of its lemmas.
+     * Only the annotations of the lemmas without a cached summary are read, once, and partitioned by lemma. The
+     * bootstrap needs the judgments themselves, so with a confidence level all annotations of the project are read.
+     * The lemmas are computed in parallel on the statistics pool.
+     *
+     * @param confidenceLevel The confidence level of the bootstrap confidence intervals, null for no intervals. The
+     *                        resamples of each lemma are computed in parallel as well.
+     * @return The statistics by lemma, with the statistics of the whole project under "wholeProject". Cancelling the
+     * future stops the reading of the annotations and skips the lemmas that have not been started yet.
+     */
+    public CompletableFuture<Map<String, AgreementStatisticsData>> calculateAgreementStatistics(List<User> annotators, Project project,
+                                                                                                Double confidenceLevel) {
+        List<String> usernames = annotators.stream().map(User::getUsername).toList();
+        // The lemmas are resolved on the calling thread, as the pool cannot load the entities.
+        Map<Integer, String> lemmaNames = new HashMap<>();
+        Map<Integer, Long> lemmaVersions = new HashMap<>();
+        for (Lemma lemma : project.getLemmas()) {
+            lemmaNames.put(lemma.getId(), lemma.getLemma());
+            lemmaVersions.put(lemma.getId(), lemma.getAnnotationVersion());
         }
-        KrippendorffAlphaAgreement krippendorffAlphaAgreement = new KrippendorffAlphaAgreement(agreementStatisticsData.getCodingAnnotationStudy(), new OrdinalDistanceFunction());
-        agreementStatisticsData.getAgreementData().put("Krippendorff_full", new double[1][1]);
-        agreementStatisticsData.getAgreementData().get("Krippendorff_full")[0][0] = krippendorffAlphaAgreement.calculateAgreement();
-    }
+        String projectName = project.getProjectName();
+        AnnotationFilterCriteria annotationFilterCriteria = filterDataService.createAnnotationFilterDataLists(null, List.of(project), null, null, annotators, null, null, null);
 
-    private CodingAnnotationStudy createCodingAnnotationStudyFor2(List<Double> list1, List<Double> list2) {
-        CodingAnnotationStudy codingAnnotationStudy = new CodingAnnotationStudy(2);
-        for (int j=0;j<list1.size();j++) {
-            codingAnnotationStudy.addItem(list1.get(j), list2.get(j));
-        }
-        return codingAnnotationStudy;
+        CompletableFuture<Map<String, AgreementStatisticsData>> agreementStatisticsDataMap = new CompletableFuture<>();
+        statisticsForkJoinPool.execute(() -> {
+            try {
+                agreementStatisticsDataMap.complete(calculateAgreementStatistics(usernames, lemmaNames, lemmaVersions, annotationFilterCriteria,
+                        confidenceLevel, agreementStatisticsDataMap::isDone));
+            } catch (CancellationException e) {
+                logger.info("Cancelled the agreement statistics of project {}.", projectName);
+            } catch (RuntimeException e) {
+                logger.error(e.getMessage(), e);
+                agreementStatisticsDataMap.completeExceptionally(e);
+            }
+        });
+        return agreementStatisticsDataMap;
     }
 
-    private void calculateAgreementForPairOfAnnotators(int i, int j, AgreementStatisticsData agreementStatisticsData) {
-        if (i >= agreementStatisticsData.getAnnotators().size() || j > agreementStatisticsData.getAnnotators().size()) {
-            throw new IndexOutOfBoundsException("Trying to calculate agreement for nonexistent annotators.");
+    /**
+     * Runs on the statistics pool: reads the annotations of the lemmas without a cached summary into one judgment
+     * matrix per lemma (and one for the whole project if there is a confidence level), and the confusion matrices of
+     * the pairs of annotators, then computes the lemmas as forked tasks and the project from their summaries.
+     *
+     * @param cancelled Whether the result is no longer needed, checked for each annotation and before each lemma.
+     * @throws CancellationException If the computation was cancelled.
+     */
+    private Map<String, AgreementStatisticsData> calculateAgreementStatistics(List<String> usernames, Map<Integer, String> lemmaNames,
+                                                                              Map<Integer, Long> lemmaVersions,
+                                                                              AnnotationFilterCriteria annotationFilterCriteria, Double confidenceLevel,
+                                                                              BooleanSupplier cancelled) throws CancellationException {
+        Map<Integer, AgreementSummary> cachedSummaries = new HashMap<>();
+        if (confidenceLevel == null) {
+            lemmaVersions.forEach((lemmaId, annotationVersion) -> {
+                AgreementSummary agreementSummary = agreementSummaryCache.get(new AgreementSummaryKey(lemmaId, annotationVersion, usernames),
+                        AgreementSummary.class);
+                if (agreementSummary != null) {
+                    cachedSummaries.put(lemmaId, agreementSummary);
+                }
+            });
         }
-        CodingAnnotationStudy codingAnnotationStudy;
-        List<Double> list1 = new ArrayList<>(agreementStatisticsData.getAnnotator2Judgment().get(i));
-        List<Double> list2;
-        if (j < agreementStatisticsData.getAnnotators().size()) {
-            list2 = new ArrayList<>(agreementStatisticsData.getAnnotator2Judgment().get(j));
-            codingAnnotationStudy = agreementStatisticsData.getCodingAnnotationStudy().extractRaters(i,j);
+        Map<Integer, JudgmentMatrix> lemmaJudgments = new HashMap<>();
+        JudgmentMatrix projectJudgments = confidenceLevel != null ? new JudgmentMatrix(usernames) : null;
+        if (cachedSummaries.size() < lemmaNames.size()) {
+            if (!cachedSummaries.isEmpty()) {
+                annotationFilterCriteria.setWords(lemmaNames.keySet().stream().filter(lemmaId -> !cachedSummaries.containsKey(lemmaId)).toList());
+            }
+            try (Stream<AnnotationRow> annotationRows = annotationService.streamAnnotationRowsWithFilterOptions(annotationFilterCriteria)) {
+                Iterator<AnnotationRow> iterator = annotationRows.iterator();
+                while (iterator.hasNext()) {
+                    checkCancelled(cancelled);
+                    AnnotationRow annotationRow = iterator.next();
+                    lemmaJudgments.computeIfAbsent(annotationRow.lemmaId(), lemmaId -> new JudgmentMatrix(usernames)).add(annotationRow);
+                    if (projectJudgments != null) {
+                        projectJudgments.add(annotationRow);
+                    }
+                }
+            }
         }
-        else {
-            list2 = new ArrayList<>(agreementStatisticsData.getAnnotator2MeanOther().get(i));
-            codingAnnotationStudy = createCodingAnnotationStudyFor2(list1, list2);
+        Map<Integer, ConfusionMatrix[][]> lemmaConfusionMatrices = annotatorPairStatisticsService.getConfusionMatrices(lemmaNames.keySet(), usernames);
+        ConfusionMatrix[][] projectConfusionMatrices = new ConfusionMatrix[usernames.size()][usernames.size()];
+        for (ConfusionMatrix[][] confusionMatrices : lemmaConfusionMatrices.values()) {
+            for (int i = 0; i < usernames.size(); i++) {
+                for (int j = i+1; j < usernames.size(); j++) {
+                    if (confusionMatrices[i][j] != null) {
+                        if (projectConfusionMatrices[i][j] == null) {
+                            projectConfusionMatrices[i][j] = new ConfusionMatrix();
+                        }
+                        projectConfusionMatrices[i][j].merge(confusionMatrices[i][j]);
+                    }
+                }
+            }
         }
 
-        KrippendorffAlphaAgreement krippendorffAlphaAgreement = new KrippendorffAlphaAgreement(codingAnnotationStudy, new OrdinalDistanceFunctionWithDoubles());
-        agreementStatisticsData.getAgreementData().getOrDefault("KrippendorffAlphaAgreement", new double[i][j])[i][j] = krippendorffAlphaAgreement.calculateAgreement();
+        List<String> words = new ArrayList<>();
+        AgreementSummary[] lemmaSummaries = new AgreementSummary[lemmaNames.size()];
+        List<ForkJoinTask<AgreementStatisticsData>> tasks = new ArrayList<>();
+        lemmaNames.forEach((lemmaId, word) -> {
+            int task = tasks.size();
+            ConfusionMatrix[][] confusionMatrices = lemmaConfusionMatrices.getOrDefault(lemmaId,
+                    new ConfusionMatrix[usernames.size()][usernames.size()]);
+            words.add(word);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                checkCancelled(cancelled);
+                AgreementSummary agreementSummary = cachedSummaries.get(lemmaId);
+                JudgmentMatrix judgmentMatrix = null;
+                if (agreementSummary == null) {
+                    judgmentMatrix = lemmaJudgments.getOrDefault(lemmaId, new JudgmentMatrix(usernames));
+                    agreementSummary = AgreementSummary.of(judgmentMatrix);
+                    agreementSummaryCache.put(new AgreementSummaryKey(lemmaId, lemmaVersions.get(lemmaId), usernames), agreementSummary);
+                }
+                lemmaSummaries[task] = agreementSummary;
+                return calculateAgreementStatistics(agreementSummary, judgmentMatrix, confusionMatrices, word, confidenceLevel, cancelled);
+            }));
+        });
+        ForkJoinTask.invokeAll(tasks);
 
-        List<List<Double>> removedNaN= removeNaN(list1, list2);
-        list1 = removedNaN.get(0);
-        list2 = removedNaN.get(1);
-        agreementStatisticsData.getOverlap()[i][j] = list1.size();
+        Map<String, AgreementStatisticsData> agreementStatisticsDataMap = new HashMap<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            agreementStatisticsDataMap.put(words.get(i), tasks.get(i).join());
+        }
+        checkCancelled(cancelled);
+        agreementStatisticsDataMap.put(WHOLE_PROJECT, calculateAgreementStatistics(AgreementSummary.merge(usernames.size(), lemmaSummaries),
+                projectJudgments, projectConfusionMatrices, WHOLE_PROJECT, confidenceLevel, cancelled));
+        return agreementStatisticsDataMap;
+    }
 
-        CohenKappaAgreement cohenKappaAgreement = new CohenKappaAgreement(codingAnnotationStudy);
-        agreementStatisticsData.getAgreementData().getOrDefault("CohenKappaAgreement", new double[i][j])[i][j] = cohenKappaAgreement.calculateAgreement();
-        agreementStatisticsData.getAgreementData().getOrDefault("SpearmansRankCorrelation", new double[i][j])[i][j] = SpearmansRankCorrelation.computeCorrelation(list1, list2);
-        agreementStatisticsData.getAgreementData().getOrDefault("PearsonCorrelation", new double[i][j])[i][j] = PearsonCorrelation.computeCorrelation(list1, list2);
-        agreementStatisticsData.getAgreementData().getOrDefault("HammingLoss", new double[i][j])[i][j] = hammingLoss(list1, list2);
+    private static void checkCancelled(BooleanSupplier cancelled) throws CancellationException {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException();
+        }
     }
 
-    private List<List<Double>> removeNaN(List<Double> list1, List<Double> list2) {
-        assert list1.size() == list2.size();
-        for (int j = 0; j < list1.size(); j++) {
-            if (list1.get(j).isNaN() || list2.get(j).isNaN()) {
-                list1.set(j, Double.NaN);
-                list2.set(j, Double.NaN);
+    /**
+     * @param judgmentMatrix The judgments from which the summary was computed, needed for the confidence intervals; null
+     *                       if there is no confidence level.
+     */
+    private AgreementStatisticsData calculateAgreementStatistics(AgreementSummary agreementSummary, JudgmentMatrix judgmentMatrix,
+                                                                 ConfusionMatrix[][] confusionMatrices, String word,
+                                                                 Double confidenceLevel, BooleanSupplier cancelled) {
+        if (agreementSummary.itemCount() == 0) {
+            return new AgreementStatisticsData();
+        }
+        int raterCount = agreementSummary.meanMatrices().length;
+        AgreementStatisticsData agreementStatisticsData = new AgreementStatisticsData(word, METRICS, raterCount,
+                agreementSummary.getAverageAnnotationNumber());
+        for (int i = 0; i < raterCount; i++) {
+            for (int j = i+1; j < raterCount; j++) {
+                calculateAgreementForPair(i, j, confusionMatrices[i][j] != null ? confusionMatrices[i][j] : new ConfusionMatrix(), agreementStatisticsData);
+            }
+            // The agreement with the mean of all annotators needs at least two annotators.
+            if (raterCount > 1) {
+                calculateAgreementForPair(i, raterCount, agreementSummary.meanMatrices()[i], agreementStatisticsData);
             }
         }
-        List<List<Double>> result = new ArrayList<>();
-        result.add(list1.stream().filter(value -> !value.isNaN()).toList());
-        result.add(list2.stream().filter(value -> !value.isNaN()).toList());
-        return result;
+        agreementStatisticsData.getAgreementData().put(KRIPPENDORFF_FULL, new double[1][1]);
+        agreementStatisticsData.getAgreementData().get(KRIPPENDORFF_FULL)[0][0] = agreementSummary.coincidenceMatrix().krippendorffAlpha();
+        if (confidenceLevel != null) {
+            agreementBootstrapService.addConfidenceIntervals(judgmentMatrix, agreementStatisticsData, confidenceLevel, cancelled);
+        }
+        return agreementStatisticsData;
     }
 
-    private double hammingLoss(List<Double> list1, List<Double> list2) {
-        int count=0;
-        if(list1.size()==list2.size()) {
-            for(int i=0;i<list1.size();i++) {
-                if(!Objects.equals(list1.get(i), list2.get(i))) count++;
-            }
+    /**
+     * Calculates all metrics for a pair of annotators (or an annotator and the mean of the annotators) from their
+     * confusion matrix and stores them at (i, j). Only the pairs of uses judged by both are taken into account.
+     */
+    private void calculateAgreementForPair(int i, int j, ConfusionMatrix confusionMatrix, AgreementStatisticsData agreementStatisticsData) {
+        Map<String, double[][]> agreementData = agreementStatisticsData.getAgreementData();
+        for (int metric = 0; metric < METRICS.length; metric++) {
+            agreementData.get(METRICS[metric])[i][j] = PAIR_METRICS.get(metric).applyAsDouble(confusionMatrix);
         }
-        return count/(double)list1.size();
+        agreementStatisticsData.getOverlap()[i][j] = confusionMatrix.getPairCount();
     }
 }
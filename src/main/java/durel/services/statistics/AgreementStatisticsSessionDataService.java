@@ -1,6 +1,8 @@
 package durel.services.statistics;
 
+import durel.domain.AnnotationVersion;
 import durel.session.AgreementStatisticsSessionData;
+import durel.session.SharedComputation;
 import durel.dto.responses.statistics.AgreementStatisticsData;
 import durel.domain.model.User;
 import durel.domain.model.Project;
@@ -9,6 +11,9 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 @Service
 public class AgreementStatisticsSessionDataService {
@@ -20,19 +25,47 @@ public class AgreementStatisticsSessionDataService {
         this.agreementStatisticsSessionData = agreementStatisticsSessionData;
     }
 
-    public boolean checkSessionData(List<User> annotators, Project project) {
-        return agreementStatisticsSessionData.getAnnotators() != annotators
-                || agreementStatisticsSessionData.getProject() != project
-                || agreementStatisticsSessionData.getAgreementStatisticsDataMap() == null;
+    /**
+     * Returns the computation of the statistics of the session, and first starts a new one if the statistics have to be
+     * (re)computed. Checking and starting are atomic for the session.
+     *
+     * @param computation Starts the computation.
+     * @return A future of the statistics for this request. Cancelling it cancels the computation only if no other
+     * request of the session waits for it, see {@link SharedComputation}.
+     */
+    public CompletableFuture<Map<String, AgreementStatisticsData>> getOrStartComputation(List<User> annotators, Project project,
+                                                                                        AnnotationVersion annotationVersion, Double confidenceLevel,
+                                                                                        Supplier<CompletableFuture<Map<String, AgreementStatisticsData>>> computation) {
+        SharedComputation<Map<String, AgreementStatisticsData>> sharedComputation = agreementStatisticsSessionData.withLock(() -> {
+            if (checkSessionData(annotators, project, annotationVersion, confidenceLevel)) {
+                updateSessionData(annotators, project, annotationVersion, confidenceLevel, new SharedComputation<>(computation.get()));
+            }
+            return agreementStatisticsSessionData.getAgreementStatisticsDataMap();
+        });
+        return sharedComputation.join();
     }
 
-    public void updateSessionData(List<User> annotators, Project project, Map<String, AgreementStatisticsData> agreementStatisticsDataMap) {
+    /**
+     * @return Whether the statistics have to be (re)computed, i.e., other annotators or another project are selected,
+     * or annotations of the project have been written since, or confidence intervals are requested at another
+     * confidence level. A computation that failed or was cancelled, e.g. because its request was abandoned, is
+     * computed again.
+     */
+    private boolean checkSessionData(List<User> annotators, Project project, AnnotationVersion annotationVersion, Double confidenceLevel) {
+        return !Objects.equals(agreementStatisticsSessionData.getAnnotators(), annotators)
+                || (confidenceLevel != null && !confidenceLevel.equals(agreementStatisticsSessionData.getConfidenceLevel()))
+                || !Objects.equals(agreementStatisticsSessionData.getProject(), project)
+                || !Objects.equals(agreementStatisticsSessionData.getAnnotationVersion(), annotationVersion)
+                || agreementStatisticsSessionData.getAgreementStatisticsDataMap() == null
+                || agreementStatisticsSessionData.getAgreementStatisticsDataMap().getComputation().isCompletedExceptionally();
+    }
+
+    private void updateSessionData(List<User> annotators, Project project, AnnotationVersion annotationVersion, Double confidenceLevel,
+                                  SharedComputation<Map<String, AgreementStatisticsData>> agreementStatisticsDataMap) {
         this.agreementStatisticsSessionData.setAgreementStatisticsDataMap(agreementStatisticsDataMap);
         this.agreementStatisticsSessionData.setProject(project);
+        this.agreementStatisticsSessionData.setAnnotationVersion(annotationVersion);
+        this.agreementStatisticsSessionData.setConfidenceLevel(confidenceLevel);
         this.agreementStatisticsSessionData.setAnnotators(annotators);
     }
-
-    public double[][] getAgreementStatisticsDataMap(String word, String metric) {
-        return agreementStatisticsSessionData.getAgreementStatisticsDataMap().get(word).getAgreementData().get(metric);
-    }
 }
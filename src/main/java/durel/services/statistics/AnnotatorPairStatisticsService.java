@@ -0,0 +1,216 @@
+package durel.services.statistics;
+
+import durel.domain.AnnotationRow;
+import durel.domain.JudgmentChange;
+import durel.domain.model.AnnotatorPairJudgmentCount;
+import durel.domain.model.AnnotatorPairJudgmentCountId;
+import durel.domain.model.Lemma;
+import durel.domain.model.Project;
+import durel.domain.repository.AnnotatorPairJudgmentCountDAO;
+import durel.domain.repository.UserAnnotationDAO;
+import durel.utils.ConfusionMatrix;
+import durel.utils.JudgmentMatrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import javax.validation.constraints.NotNull;
+import java.util.*;
+
+/**
+ * Maintains the confusion matrices of the judgments of each pair of annotators on each lemma (see
+ * {@link AnnotatorPairJudgmentCount}), from which the pairwise agreement statistics are computed.
+ * <p>
+ * The matrices are updated in the transaction that writes the judgments. For a pair of uses, the judgment of the
+ * annotator is paired with the judgments of all other annotators of the pair, in either order of the uses.
+ */
+@Service
+public class AnnotatorPairStatisticsService {
+
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(AnnotatorPairStatisticsService.class);
+
+    private final AnnotatorPairJudgmentCountDAO annotatorPairJudgmentCountDAO;
+
+    private final UserAnnotationDAO userAnnotationDAO;
+
+    @Autowired
+    public AnnotatorPairStatisticsService(AnnotatorPairJudgmentCountDAO annotatorPairJudgmentCountDAO, UserAnnotationDAO userAnnotationDAO) {
+        this.annotatorPairJudgmentCountDAO = annotatorPairJudgmentCountDAO;
+        this.userAnnotationDAO = userAnnotationDAO;
+    }
+
+    /**
+     * Updates the confusion matrices of the annotator with all other annotators of the lemma for saved judgments.
+     * <p>
+     * Has to be called after the row of the lemma has been locked in the same transaction (see
+     * {@link durel.services.WordService#lockForAnnotationWrite(Lemma, String, List)}). Writers of the same lemma then wait for
+     * each other, and each one sees the committed judgments of the others.
+     * <p>
+     * An annotator who judged a pair of uses in both orders has no judgment of the pair, as in the recount of
+     * {@link #rebuild(Project)}. So the judgment of the annotator before and after the changes is derived from all of
+     * the annotator's annotations of the pair, and only the judgments of the others that count are paired with it.
+     *
+     * @param lemma    The lemma of all pairs.
+     * @param username The annotator.
+     * @param changes  The saved judgments, in the order in which they were saved.
+     */
+    @Transactional
+    public void recordJudgmentChanges(@NotNull Lemma lemma, @NotNull String username, @NotNull List<JudgmentChange> changes) {
+        Set<Long> changedPairs = new HashSet<>();
+        Set<Integer> useIds = new HashSet<>();
+        for (JudgmentChange change : changes) {
+            if (!Objects.equals(change.previousJudgment(), change.judgment())) {
+                changedPairs.add(JudgmentMatrix.itemKey(change.firstUseId(), change.secondUseId()));
+                useIds.add(change.firstUseId());
+                useIds.add(change.secondUseId());
+            }
+        }
+        if (changedPairs.isEmpty()) {
+            return;
+        }
+        // The annotations of the changed pairs after the changes, by pair and annotator.
+        Map<Long, Map<String, List<AnnotationRow>>> annotationsByPair = new HashMap<>();
+        for (AnnotationRow annotationRow : userAnnotationDAO.findAnnotationRowsOfUses(useIds)) {
+            long pair = JudgmentMatrix.itemKey(annotationRow.firstUseId(), annotationRow.secondUseId());
+            if (changedPairs.contains(pair)) {
+                annotationsByPair.computeIfAbsent(pair, key -> new HashMap<>())
+                        .computeIfAbsent(annotationRow.annotator(), key -> new ArrayList<>()).add(annotationRow);
+            }
+        }
+        Map<Long, List<JudgmentChange>> changesByPair = new HashMap<>();
+        for (JudgmentChange change : changes) {
+            long pair = JudgmentMatrix.itemKey(change.firstUseId(), change.secondUseId());
+            if (changedPairs.contains(pair)) {
+                changesByPair.computeIfAbsent(pair, key -> new ArrayList<>()).add(change);
+            }
+        }
+
+        Map<AnnotatorPairJudgmentCountId, Long> deltas = new HashMap<>();
+        changesByPair.forEach((pair, pairChanges) -> {
+            Map<String, List<AnnotationRow>> annotationsOfPair = annotationsByPair.getOrDefault(pair, Map.of());
+            List<AnnotationRow> ownAnnotations = annotationsOfPair.getOrDefault(username, List.of());
+            Float after = judgmentOf(ownAnnotations);
+            Float before = judgmentBefore(ownAnnotations, pairChanges);
+            if (Objects.equals(before, after)) {
+                return;
+            }
+            annotationsOfPair.forEach((otherAnnotator, otherAnnotations) -> {
+                Float other = judgmentOf(otherAnnotations);
+                if (otherAnnotator.equals(username) || other == null) {
+                    return;
+                }
+                if (before != null) {
+                    deltas.merge(cell(lemma.getId(), username, before, otherAnnotator, other), -1L, Long::sum);
+                }
+                if (after != null) {
+                    deltas.merge(cell(lemma.getId(), username, after, otherAnnotator, other), 1L, Long::sum);
+                }
+            });
+        });
+        deltas.forEach((id, delta) -> {
+            if (delta != 0 && annotatorPairJudgmentCountDAO.addToPairCount(id, delta) == 0) {
+                annotatorPairJudgmentCountDAO.save(new AnnotatorPairJudgmentCount(id, delta));
+            }
+        });
+        logger.debug("Updated {} confusion matrix cells of lemma {} for {}.", deltas.size(), lemma.getId(), username);
+    }
+
+    /**
+     * @return The judgment of an annotator for a pair of uses, given all of the annotator's annotations of the pair:
+     * null if there is none, or several (i.e., both orders of the uses).
+     */
+    private static Float judgmentOf(List<AnnotationRow> annotations) {
+        return annotations.size() == 1 ? annotations.get(0).judgment() : null;
+    }
+
+    /**
+     * The judgment of the annotator for a pair of uses before the changes, see {@link #judgmentOf(List)}. The changes
+     * are undone in reverse order on the annotations after them: a change without a previous judgment created an
+     * annotation, any other one modified an annotation of the pair in either order of the uses.
+     */
+    private static Float judgmentBefore(List<AnnotationRow> annotationsAfter, List<JudgmentChange> changes) {
+        Map<Long, Float> annotations = new HashMap<>();
+        for (AnnotationRow annotationRow : annotationsAfter) {
+            annotations.put(orderedKey(annotationRow.firstUseId(), annotationRow.secondUseId()), annotationRow.judgment());
+        }
+        for (int change = changes.size() - 1; change >= 0; change--) {
+            JudgmentChange judgmentChange = changes.get(change);
+            long key = orderedKey(judgmentChange.firstUseId(), judgmentChange.secondUseId());
+            if (!annotations.containsKey(key)) {
+                key = orderedKey(judgmentChange.secondUseId(), judgmentChange.firstUseId());
+            }
+            if (judgmentChange.previousJudgment() == null) {
+                annotations.remove(key);
+            } else {
+                annotations.put(key, judgmentChange.previousJudgment());
+            }
+        }
+        return annotations.size() == 1 ? annotations.values().iterator().next() : null;
+    }
+
+    private static long orderedKey(int firstUseId, int secondUseId) {
+        return ((long) firstUseId << 32) | (secondUseId & 0xffffffffL);
+    }
+
+    /**
+     * The cell of the judgments of two annotators, with the annotator with the smaller username first.
+     */
+    private static AnnotatorPairJudgmentCountId cell(int lemmaId, String annotator, float judgment, String otherAnnotator, float otherJudgment) {
+        if (annotator.compareTo(otherAnnotator) < 0) {
+            return new AnnotatorPairJudgmentCountId(lemmaId, annotator, otherAnnotator, judgment, otherJudgment);
+        }
+        return new AnnotatorPairJudgmentCountId(lemmaId, otherAnnotator, annotator, otherJudgment, judgment);
+    }
+
+    /**
+     * Recounts the confusion matrices of all lemmas of the project from the annotations, e.g., after a bulk upload of
+     * annotations.
+     */
+    @Transactional
+    public void rebuild(@NotNull Project project) {
+        annotatorPairJudgmentCountDAO.deleteByProject(project.getProjectName());
+        int cells = annotatorPairJudgmentCountDAO.insertCountsOfProject(project.getProjectName());
+        logger.info("Recounted {} confusion matrix cells of project {}.", cells, project.getProjectName());
+    }
+
+    /**
+     * Reads the confusion matrices of the selected annotators on the lemmas.
+     *
+     * @param lemmaIds  The lemmas.
+     * @param usernames The selected annotators.
+     * @return For each lemma with judgments of at least two of the annotators, the confusion matrix of the annotators
+     * at index i and j (i &lt; j) of the usernames at [i][j], null if they have no pair of uses in common. The judgments
+     * of the annotator with the smaller username are always the first ones, so that the matrices of several lemmas
+     * can be merged.
+     */
+    public Map<Integer, ConfusionMatrix[][]> getConfusionMatrices(@NotNull Collection<Integer> lemmaIds, @NotNull List<String> usernames) {
+        Map<Integer, ConfusionMatrix[][]> confusionMatrices = new HashMap<>();
+        if (lemmaIds.isEmpty() || usernames.size() < 2) {
+            return confusionMatrices;
+        }
+        Map<String, Integer> raterIndexes = new HashMap<>();
+        for (int rater = 0; rater < usernames.size(); rater++) {
+            raterIndexes.put(usernames.get(rater), rater);
+        }
+        for (AnnotatorPairJudgmentCount count : annotatorPairJudgmentCountDAO.findByLemmasAndAnnotators(lemmaIds, usernames)) {
+            AnnotatorPairJudgmentCountId id = count.getId();
+            int first = raterIndexes.get(id.getAnnotator1());
+            int second = raterIndexes.get(id.getAnnotator2());
+            ConfusionMatrix[][] lemmaMatrices = confusionMatrices.computeIfAbsent(id.getLemmaId(),
+                    lemmaId -> new ConfusionMatrix[usernames.size()][usernames.size()]);
+            int i = Math.min(first, second);
+            int j = Math.max(first, second);
+            if (lemmaMatrices[i][j] == null) {
+                lemmaMatrices[i][j] = new ConfusionMatrix();
+            }
+            lemmaMatrices[i][j].add(id.getJudgment1(), id.getJudgment2(), count.getPairCount());
+        }
+        return confusionMatrices;
+    }
+}
@@ -1,12 +1,12 @@
 package durel.services.statistics;
 
-import durel.domain.AnnotationFilterCriteria;
+import durel.domain.model.LemmaAnnotatorStats;
+import durel.domain.model.LemmaStats;
 import durel.dto.responses.statistics.AnnotationCounts;
 import durel.domain.model.User;
 import durel.domain.model.Project;
 import durel.domain.model.Lemma;
 import durel.services.*;
-import durel.services.annotation.AnnotationQueryService;
 import durel.services.user.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,9 +14,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.management.InstanceNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
-
+import java.util.*;
+
+/**
+ * Computes the table of the annotation counts of the selected annotators: a row for all words, followed by a row for
+ * each lemma of the project.
+ * <p>
+ * The annotations are counted from the materialized statistics of the lemmas and their annotators (see
+ * {@link LemmaStatisticsService}), which may lag behind the latest annotations for a moment; the rows of all words
+ * are summed up from them in a single pass. The numbers of uses and pairs are read from the counters of the lemmas.
+ */
 @Service
 public class DatabaseCountsStatisticsService {
 
@@ -26,34 +33,50 @@ public class DatabaseCountsStatisticsService {
 
     private final ProjectService projectService;
 
-    private final AnnotationQueryService annotationQueryService;
-
-    private final UseService useService;
-
-    private final FilterDataService filterDataService;
+    private final WordService wordService;
 
-    private final PairService pairService;
+    private final LemmaStatisticsService lemmaStatisticsService;
 
     @Autowired
-    public DatabaseCountsStatisticsService(UserService userService, ProjectService projectService, AnnotationQueryService annotationQueryService, UseService useService, FilterDataService filterDataService, PairService pairService) {
+    public DatabaseCountsStatisticsService(UserService userService, ProjectService projectService, WordService wordService, LemmaStatisticsService lemmaStatisticsService) {
         this.userService = userService;
         this.projectService = projectService;
-        this.annotationQueryService = annotationQueryService;
-        this.useService = useService;
-        this.filterDataService = filterDataService;
-        this.pairService = pairService;
+        this.wordService = wordService;
+        this.lemmaStatisticsService = lemmaStatisticsService;
     }
 
     public List<AnnotationCounts> getAllAnnotationCounts (String projectName, String usernames) {
         try {
             Project project = projectService.getProject(projectName);
+            List<String> annotators = userService.stringOfUsernamesToListOfUsers(usernames).stream().map(User::getUsername).toList();
+            List<Lemma> lemmas = wordService.getWordsOfProject(projectName);
+            Map<Integer, LemmaStats> lemmaStatistics = lemmaStatisticsService.getLemmaStatistics(projectName);
+
+            // The counts of judgment 0 to 4 of each annotator on each lemma and on all words.
+            Map<Integer, Map<String, long[]>> judgmentCounts = new HashMap<>();
+            Map<String, long[]> allWordsJudgmentCounts = new HashMap<>();
+            for (LemmaAnnotatorStats stats : lemmaStatisticsService.getAnnotatorStatistics(projectName, annotators)) {
+                long[] counts = stats.getJudgmentCounts();
+                judgmentCounts.computeIfAbsent(stats.getId().getLemmaId(), lemmaId -> new HashMap<>()).put(stats.getId().getAnnotator(), counts);
+                long[] allWordsCounts = allWordsJudgmentCounts.computeIfAbsent(stats.getId().getAnnotator(), annotator -> new long[counts.length]);
+                for (int judgment = 0; judgment < counts.length; judgment++) {
+                    allWordsCounts[judgment] += counts[judgment];
+                }
+            }
+
             List<AnnotationCounts> allAnnotationCounts = new ArrayList<>();
-            List<User> annotatorsList = userService.stringOfUsernamesToListOfUsers(usernames);
-            allAnnotationCounts.add(getAnnotationCounts(project, null, annotatorsList, false));
-            for (Lemma lemma : project.getLemmas()) {
-                allAnnotationCounts.add(getAnnotationCounts(project, lemma, annotatorsList, true));
+            AnnotationCounts allWordsCounts = createCounts("All Words", 0, 0, 0, allWordsJudgmentCounts, annotators);
+            allAnnotationCounts.add(allWordsCounts);
+            for (Lemma lemma : lemmas) {
+                LemmaStats stats = lemmaStatistics.get(lemma.getId());
+                int noOfAnnotatedPairs = stats == null ? 0 : Math.toIntExact(stats.getAnnotatedPairCount());
+                AnnotationCounts lemmaCounts = createCounts(lemma.getLemma(), lemma.getUseCount(), wordService.getNoOfPairs(project, lemma),
+                        noOfAnnotatedPairs, judgmentCounts.get(lemma.getId()), annotators);
+                allWordsCounts.setNoOfUses(allWordsCounts.getNoOfUses() + lemmaCounts.getNoOfUses());
+                allWordsCounts.setNoOfPairs(allWordsCounts.getNoOfPairs() + lemmaCounts.getNoOfPairs());
+                allWordsCounts.setNoOfAnnotatedPairs(allWordsCounts.getNoOfAnnotatedPairs() + lemmaCounts.getNoOfAnnotatedPairs());
+                allAnnotationCounts.add(lemmaCounts);
             }
-            setAllWordsPairCounts(allAnnotationCounts);
             return allAnnotationCounts;
         } catch (InstanceNotFoundException e) {
             logger.error("Did not find project {}", projectName);
@@ -61,55 +84,29 @@ public class DatabaseCountsStatisticsService {
         }
     }
 
-    private AnnotationCounts getAnnotationCounts (Project project, Lemma lemma, List<User> annotatorsList, boolean isWord) {
-        AnnotationCounts annotationCounts = initializeCounts(project, lemma, isWord);
-        setPairCounts(annotationCounts, project, lemma, isWord);
-        calculateAnnotatorCounts(annotationCounts, project, lemma, annotatorsList);
-        finishCounts(annotationCounts);
-        return annotationCounts;
-    }
-
-    private AnnotationCounts initializeCounts(Project project, Lemma lemma, boolean isWord){
+    /**
+     * Creates a row of the table.
+     *
+     * @param judgmentCounts The counts of judgment 0 to 4 of each annotator, null if there are none.
+     * @param annotators     The selected annotators, in the order in which they are listed.
+     */
+    private AnnotationCounts createCounts(String word, int noOfUses, int noOfPairs, int noOfAnnotatedPairs, Map<String, long[]> judgmentCounts,
+                                          List<String> annotators) {
         AnnotationCounts annotationCounts = new AnnotationCounts();
-        if (isWord) {
-            annotationCounts.setWord(lemma.getLemma());
-            annotationCounts.setNoOfUses(lemma.getUses().size());
-        } else {
-            annotationCounts.setWord("All Words");
-            annotationCounts.setNoOfUses(useService.getNoOfSentencesOfProject(project));
-        }
-        return annotationCounts;
-    }
-
-    private void setPairCounts(AnnotationCounts annotationCounts, Project project, Lemma lemma, boolean isWord){
-        if (isWord) {
-            int count = pairService.countByProjectAndLemma(project, lemma.getLemma());
-            if (count != 0) {
-                annotationCounts.setNoOfPairs(count);
-            } else {
-                annotationCounts.setNoOfPairs((annotationCounts.getNoOfUses()*(annotationCounts.getNoOfUses()-1))/2);
-            }
-        }
-    }
-
-    private void setAllWordsPairCounts(List<AnnotationCounts> annotationCounts) {
-        if (annotationCounts.get(0).getNoOfPairs() == 0) {
-            int noOfPairs = 0;
-            for (AnnotationCounts annotationCount : annotationCounts) {
-                noOfPairs += annotationCount.getNoOfPairs();
-            }
-            annotationCounts.get(0).setNoOfPairs(noOfPairs);
-        }
-    }
-
-    private void calculateAnnotatorCounts(AnnotationCounts annotationCounts, Project project, Lemma lemma, List<User> annotatorsList){
-        for (User annotator : annotatorsList) {
-            AnnotationFilterCriteria annotationFilterCriteria = filterDataService.createAnnotationFilterData(lemma, project, null, null, annotator, null, null, null);
-            List<Integer> annotatorCounts = annotationQueryService.getAnnotationCounts(annotationFilterCriteria);
-            if (annotatorCounts.get(0) > 0) {
-                increaseAnnotationCounts(annotationCounts, annotatorCounts, annotator.getUsername());
+        annotationCounts.setWord(word);
+        annotationCounts.setNoOfUses(noOfUses);
+        annotationCounts.setNoOfPairs(noOfPairs);
+        annotationCounts.setNoOfAnnotatedPairs(noOfAnnotatedPairs);
+        if (judgmentCounts != null) {
+            for (String annotator : annotators) {
+                long[] counts = judgmentCounts.get(annotator);
+                if (counts != null && Arrays.stream(counts).sum() > 0) {
+                    increaseAnnotationCounts(annotationCounts, counts, annotator);
+                }
             }
         }
+        finishCounts(annotationCounts);
+        return annotationCounts;
     }
 
     private void finishCounts(AnnotationCounts annotationCounts){
@@ -119,13 +116,13 @@ public class DatabaseCountsStatisticsService {
         annotationCounts.calculateAverage();
     }
 
-    private void increaseAnnotationCounts(AnnotationCounts annotationCounts, List<Integer> counts, String username) {
-        annotationCounts.increaseNoOfAnnotations(counts.get(0));
-        annotationCounts.increaseNoOf0(counts.get(1));
-        annotationCounts.increaseNoOf1(counts.get(2));
-        annotationCounts.increaseNoOf2(counts.get(3));
-        annotationCounts.increaseNoOf3(counts.get(4));
-        annotationCounts.increaseNoOf4(counts.get(5));
+    private void increaseAnnotationCounts(AnnotationCounts annotationCounts, long[] counts, String username) {
+        annotationCounts.increaseNoOfAnnotations(Math.toIntExact(Arrays.stream(counts).sum()));
+        annotationCounts.increaseNoOf0(Math.toIntExact(counts[0]));
+        annotationCounts.increaseNoOf1(Math.toIntExact(counts[1]));
+        annotationCounts.increaseNoOf2(Math.toIntExact(counts[2]));
+        annotationCounts.increaseNoOf3(Math.toIntExact(counts[3]));
+        annotationCounts.increaseNoOf4(Math.toIntExact(counts[4]));
         annotationCounts.increaseNoOfAnnotators();
         annotationCounts.setNamesOfAnnotators(annotationCounts.getNamesOfAnnotators() + ", " + username);
     }
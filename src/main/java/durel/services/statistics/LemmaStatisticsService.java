@@ -0,0 +1,291 @@
+package durel.services.statistics;
+
+import durel.domain.AnnotationRow;
+import durel.domain.AnnotationsChangedEvent;
+import durel.domain.JudgmentChange;
+import durel.domain.model.LemmaAnnotatorStats;
+import durel.domain.model.LemmaAnnotatorStatsId;
+import durel.domain.model.LemmaStats;
+import durel.domain.repository.LemmaAnnotatorStatsDAO;
+import durel.domain.repository.LemmaDAO;
+import durel.domain.repository.LemmaStatsDAO;
+import durel.domain.repository.UserAnnotationDAO;
+import durel.services.annotation.AnnotationQueryService;
+import durel.utils.JudgmentMatrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.transaction.Transactional;
+import javax.validation.constraints.NotNull;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the materialized statistics of the lemmas ({@link LemmaStats}) and of their annotators
+ * ({@link LemmaAnnotatorStats}), from which the statistics pages are served without reading the annotations.
+ * <p>
+ * After the commit of each write of annotations (see {@link AnnotationsChangedEvent}), the statistics of the lemma are
+ * updated on the lemma statistics executor. The updates run one after another on a single thread. The changed
+ * judgments of a write are applied to the stored statistics if these are those of the annotation version before the
+ * write, which is the case for the writes of annotators that are not interleaved with others. Otherwise, the lemma is
+ * recomputed from its annotations, unless its statistics have already been computed from the current annotation
+ * version, so that a burst of writes of a lemma is recomputed only once or twice. A periodic consistency
+ * check recomputes all lemmas, which fills the statistics after the migration and repairs recomputations that were
+ * lost, e.g., by a restart.
+ */
+@Service
+public class LemmaStatisticsService {
+
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(LemmaStatisticsService.class);
+
+    private final LemmaStatsDAO lemmaStatsDAO;
+
+    private final LemmaAnnotatorStatsDAO lemmaAnnotatorStatsDAO;
+
+    private final LemmaDAO lemmaDAO;
+
+    private final UserAnnotationDAO userAnnotationDAO;
+
+    @Autowired
+    public LemmaStatisticsService(LemmaStatsDAO lemmaStatsDAO, LemmaAnnotatorStatsDAO lemmaAnnotatorStatsDAO, LemmaDAO lemmaDAO,
+                                  UserAnnotationDAO userAnnotationDAO) {
+        this.lemmaStatsDAO = lemmaStatsDAO;
+        this.lemmaAnnotatorStatsDAO = lemmaAnnotatorStatsDAO;
+        this.lemmaDAO = lemmaDAO;
+        this.userAnnotationDAO = userAnnotationDAO;
+    }
+
+    /**
+     * Updates the statistics of the lemmas whose annotations have changed, after the commit of the write (or
+     * immediately if it was written without a transaction).
+     */
+    @Async("lemmaStatisticsTaskExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional
+    public void onAnnotationsChanged(@NotNull AnnotationsChangedEvent event) {
+        update(event);
+    }
+
+    /**
+     * Updates the statistics of the lemmas of a write of annotations. If the event carries the changed judgments, the
+     * stored statistics were computed from the version before the write and no other write has followed, the changes
+     * are applied to the stored statistics. Otherwise, the lemmas are recomputed if their statistics are outdated.
+     */
+    @Transactional
+    public void update(@NotNull AnnotationsChangedEvent event) {
+        if (event.hasJudgmentChanges() && event.lemmaIds().size() == 1) {
+            int lemmaId = event.lemmaIds().iterator().next();
+            if (applyJudgmentChanges(lemmaId, event)) {
+                logger.debug("Applied {} changed judgments to the statistics of lemma {}.", event.judgmentChanges().size(), lemmaId);
+                return;
+            }
+        }
+        int recomputed = 0;
+        for (int lemmaId : event.lemmaIds()) {
+            if (recompute(lemmaId, false)) {
+                recomputed++;
+            }
+        }
+        logger.debug("Recomputed the statistics of {} of {} changed lemmas.", recomputed, event.lemmaIds().size());
+    }
+
+    /**
+     * Recomputes the statistics of all lemmas from scratch and reports the lemmas whose statistics were missing or
+     * outdated, i.e., whose recomputation after a write has been lost. Runs on the lemma statistics executor, so that
+     * it does not write concurrently with the recomputations after writes.
+     */
+    @Async("lemmaStatisticsTaskExecutor")
+    @Scheduled(initialDelayString = "${statistics.lemma-stats-check-initial-delay-ms:60000}",
+            fixedDelayString = "${statistics.lemma-stats-check-interval-ms:86400000}")
+    @Transactional
+    public void checkConsistency() {
+        List<Integer> lemmaIds = lemmaDAO.findAllIds();
+        int outdated = 0;
+        for (int lemmaId : lemmaIds) {
+            if (recompute(lemmaId, true)) {
+                outdated++;
+            }
+        }
+        if (outdated > 0) {
+            logger.warn("Repaired the missing or outdated statistics of {} of {} lemmas.", outdated, lemmaIds.size());
+        } else {
+            logger.info("Verified the statistics of {} lemmas.", lemmaIds.size());
+        }
+    }
+
+    /**
+     * Recomputes the statistics of a lemma from its annotations.
+     *
+     * @param lemmaId The lemma.
+     * @param force   Whether to recompute the statistics even if they are up to date.
+     * @return Whether the statistics were missing or outdated.
+     */
+    private boolean recompute(int lemmaId, boolean force) {
+        // The version is read before the annotations, so that the annotations are at least as recent as the version.
+        Optional<Long> annotationVersion = lemmaDAO.findAnnotationVersionById(lemmaId);
+        if (annotationVersion.isEmpty()) {
+            // The lemma has been deleted, together with its statistics.
+            return false;
+        }
+        Optional<LemmaStats> storedLemmaStats = lemmaStatsDAO.findById(lemmaId);
+        boolean outdated = storedLemmaStats.isEmpty() || storedLemmaStats.get().getAnnotationVersion() != annotationVersion.get();
+        if (!outdated && !force) {
+            return false;
+        }
+
+        List<AnnotationRow> annotationRows = userAnnotationDAO.findAnnotationRowsOfLemma(lemmaId);
+        Map<Long, Integer> annotatorsPerPair = new HashMap<>();
+        for (AnnotationRow annotationRow : annotationRows) {
+            annotatorsPerPair.merge(JudgmentMatrix.itemKey(annotationRow.firstUseId(), annotationRow.secondUseId()), 1, Integer::sum);
+        }
+        LemmaStats lemmaStats = new LemmaStats(lemmaId, annotationVersion.get(), 0, 0, 0.0, annotatorsPerPair.size(),
+                annotatorsPerPair.values().stream().filter(annotators -> annotators > 1).count());
+        Map<String, LemmaAnnotatorStats> annotatorStats = new HashMap<>();
+        for (AnnotationRow annotationRow : annotationRows) {
+            LemmaAnnotatorStats stats = annotatorStats.computeIfAbsent(annotationRow.annotator(),
+                    annotator -> new LemmaAnnotatorStats(new LemmaAnnotatorStatsId(lemmaId, annotator), 0, 0, 0, 0, 0, 0, 0.0, 0));
+            float judgment = annotationRow.judgment();
+            countJudgment(stats, judgment, 1);
+            if (annotatorsPerPair.get(JudgmentMatrix.itemKey(annotationRow.firstUseId(), annotationRow.secondUseId())) > 1) {
+                stats.setSharedPairCount(stats.getSharedPairCount() + 1);
+            }
+            lemmaStats.setAnnotationCount(lemmaStats.getAnnotationCount() + 1);
+            lemmaStats.setJudgmentSum(lemmaStats.getJudgmentSum() + judgment);
+            if (judgment != 0.0F) {
+                lemmaStats.setJudgedAnnotationCount(lemmaStats.getJudgedAnnotationCount() + 1);
+            }
+        }
+
+        lemmaStatsDAO.save(lemmaStats);
+        lemmaAnnotatorStatsDAO.deleteByLemmaId(lemmaId);
+        lemmaAnnotatorStatsDAO.saveAll(annotatorStats.values());
+        return outdated;
+    }
+
+    /**
+     * Applies the changed judgments of a write to the stored statistics of the lemma, if they were computed from the
+     * annotation version before the write and the annotations have not been written since, i.e., the annotations are
+     * those right after the write. Only the annotations of the changed pairs of uses are read, for the coverage.
+     *
+     * @return Whether the changes were applied, false if the lemma has to be recomputed.
+     */
+    private boolean applyJudgmentChanges(int lemmaId, AnnotationsChangedEvent event) {
+        long annotationVersion = event.annotationVersion();
+        Optional<Long> currentAnnotationVersion = lemmaDAO.findAnnotationVersionById(lemmaId);
+        Optional<LemmaStats> storedLemmaStats = lemmaStatsDAO.findById(lemmaId);
+        if (currentAnnotationVersion.isEmpty() || currentAnnotationVersion.get() != annotationVersion
+                || storedLemmaStats.isEmpty() || storedLemmaStats.get().getAnnotationVersion() != annotationVersion - 1) {
+            return false;
+        }
+        LemmaStats lemmaStats = storedLemmaStats.get();
+        String annotator = event.annotator();
+        Map<String, LemmaAnnotatorStats> annotatorStats = new HashMap<>();
+        Function<String, LemmaAnnotatorStats> statsOfAnnotator = username -> annotatorStats.computeIfAbsent(username,
+                name -> lemmaAnnotatorStatsDAO.findById(new LemmaAnnotatorStatsId(lemmaId, name))
+                        .orElseGet(() -> new LemmaAnnotatorStats(new LemmaAnnotatorStatsId(lemmaId, name), 0, 0, 0, 0, 0, 0, 0.0, 0)));
+
+        // The judgments, and the number of annotations of the annotator added to each pair of uses.
+        Map<Long, Integer> addedAnnotations = new HashMap<>();
+        Set<Integer> useIds = new HashSet<>();
+        for (JudgmentChange judgmentChange : event.judgmentChanges()) {
+            LemmaAnnotatorStats stats = statsOfAnnotator.apply(annotator);
+            Float previousJudgment = judgmentChange.previousJudgment();
+            if (previousJudgment == null) {
+                addedAnnotations.merge(JudgmentMatrix.itemKey(judgmentChange.firstUseId(), judgmentChange.secondUseId()), 1, Integer::sum);
+                lemmaStats.setAnnotationCount(lemmaStats.getAnnotationCount() + 1);
+            } else {
+                countJudgment(stats, previousJudgment, -1);
+                lemmaStats.setJudgmentSum(lemmaStats.getJudgmentSum() - previousJudgment);
+                if (previousJudgment != 0.0F) {
+                    lemmaStats.setJudgedAnnotationCount(lemmaStats.getJudgedAnnotationCount() - 1);
+                }
+            }
+            countJudgment(stats, judgmentChange.judgment(), 1);
+            lemmaStats.setJudgmentSum(lemmaStats.getJudgmentSum() + judgmentChange.judgment());
+            if (judgmentChange.judgment() != 0.0F) {
+                lemmaStats.setJudgedAnnotationCount(lemmaStats.getJudgedAnnotationCount() + 1);
+            }
+            useIds.add(judgmentChange.firstUseId());
+            useIds.add(judgmentChange.secondUseId());
+        }
+
+        // The coverage only changes with added annotations: compare the annotations of each of their pairs of uses after
+        // the write with those before it.
+        if (!addedAnnotations.isEmpty()) {
+            Map<Long, Map<String, Integer>> annotationsPerPair = new HashMap<>();
+            for (AnnotationRow annotationRow : userAnnotationDAO.findAnnotationRowsOfUses(useIds)) {
+                long pair = JudgmentMatrix.itemKey(annotationRow.firstUseId(), annotationRow.secondUseId());
+                if (addedAnnotations.containsKey(pair)) {
+                    annotationsPerPair.computeIfAbsent(pair, key -> new HashMap<>()).merge(annotationRow.annotator(), 1, Integer::sum);
+                }
+            }
+            addedAnnotations.forEach((pair, added) -> {
+                Map<String, Integer> annotationsAfter = annotationsPerPair.getOrDefault(pair, Map.of());
+                int after = annotationsAfter.values().stream().mapToInt(Integer::intValue).sum();
+                int before = after - added;
+                lemmaStats.setAnnotatedPairCount(lemmaStats.getAnnotatedPairCount() + (after > 0 ? 1 : 0) - (before > 0 ? 1 : 0));
+                lemmaStats.setSharedPairCount(lemmaStats.getSharedPairCount() + (after > 1 ? 1 : 0) - (before > 1 ? 1 : 0));
+                annotationsAfter.forEach((username, annotationsOfAnnotatorAfter) -> {
+                    int annotationsOfAnnotatorBefore = annotationsOfAnnotatorAfter - (username.equals(annotator) ? added : 0);
+                    long sharedAfter = after > 1 ? annotationsOfAnnotatorAfter : 0;
+                    long sharedBefore = before > 1 ? annotationsOfAnnotatorBefore : 0;
+                    if (sharedAfter != sharedBefore) {
+                        LemmaAnnotatorStats stats = statsOfAnnotator.apply(username);
+                        stats.setSharedPairCount(stats.getSharedPairCount() + sharedAfter - sharedBefore);
+                    }
+                });
+            });
+        }
+
+        lemmaStats.setAnnotationVersion(annotationVersion);
+        lemmaStatsDAO.save(lemmaStats);
+        lemmaAnnotatorStatsDAO.saveAll(annotatorStats.values());
+        return true;
+    }
+
+    /**
+     * Adds a judgment to the counts and the sum of the annotator, or removes it.
+     *
+     * @param sign 1 to add the judgment, -1 to remove it.
+     */
+    private static void countJudgment(LemmaAnnotatorStats stats, float judgment, int sign) {
+        stats.setJudgmentSum(stats.getJudgmentSum() + sign * judgment);
+        switch (AnnotationQueryService.WHOLE_NUMBER_JUDGMENT_VALUES.indexOf(judgment)) {
+            case 0 -> stats.setJudgment0Count(stats.getJudgment0Count() + sign);
+            case 1 -> stats.setJudgment1Count(stats.getJudgment1Count() + sign);
+            case 2 -> stats.setJudgment2Count(stats.getJudgment2Count() + sign);
+            case 3 -> stats.setJudgment3Count(stats.getJudgment3Count() + sign);
+            case 4 -> stats.setJudgment4Count(stats.getJudgment4Count() + sign);
+            default -> stats.setOtherJudgmentCount(stats.getOtherJudgmentCount() + sign);
+        }
+    }
+
+    /**
+     * @return The statistics of the lemmas of the project by lemma id. Lemmas whose statistics have not been computed
+     * yet are missing.
+     */
+    public Map<Integer, LemmaStats> getLemmaStatistics(@NotNull String projectName) {
+        return lemmaStatsDAO.findByProjectName(projectName).stream()
+                .collect(Collectors.toMap(LemmaStats::getLemmaId, Function.identity()));
+    }
+
+    /**
+     * @return The statistics of the selected annotators on the lemmas of the project.
+     */
+    public List<LemmaAnnotatorStats> getAnnotatorStatistics(@NotNull String projectName, @NotNull Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return List.of();
+        }
+        return lemmaAnnotatorStatsDAO.findByProjectNameAndAnnotators(projectName, usernames);
+    }
+}
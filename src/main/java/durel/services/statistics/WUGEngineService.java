@@ -0,0 +1,158 @@
+package durel.services.statistics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import durel.domain.AnnotationRow;
+import durel.domain.UseNodeRow;
+import durel.domain.repository.SentenceDAO;
+import durel.domain.repository.UserAnnotationDAO;
+import durel.utils.CorrelationClustering;
+import durel.utils.UsageGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Generates the word usage graph of a lemma in the JVM, as an alternative to the external WUG pipeline for correlation
+ * clustering: builds the {@link UsageGraph} from the annotations of the lemma, clusters it with
+ * {@link CorrelationClustering} on the statistics fork-join pool, and writes the nodes and edges as the JSON arrays
+ * that the pipeline writes to {@code _nodes.txt} and {@code _edges.txt}.
+ */
+@Service
+public class WUGEngineService {
+
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(WUGEngineService.class);
+
+    // The threshold of the pipeline if none is given.
+    private static final double DEFAULT_THRESHOLD = 2.5;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final SentenceDAO sentenceDAO;
+
+    private final UserAnnotationDAO userAnnotationDAO;
+
+    private final ForkJoinPool statisticsForkJoinPool;
+
+    private final UsageGraph.Aggregation aggregation;
+
+    private final int restarts;
+
+    private final long seed;
+
+    private final int maxPasses;
+
+    @Autowired
+    public WUGEngineService(SentenceDAO sentenceDAO, UserAnnotationDAO userAnnotationDAO,
+                            @Qualifier("statisticsForkJoinPool") ForkJoinPool statisticsForkJoinPool,
+                            @Value("${wugs.engine.aggregation:median}") String aggregation,
+                            @Value("${wugs.engine.restarts:64}") int restarts,
+                            @Value("${wugs.engine.seed:0}") long seed,
+                            @Value("${wugs.engine.max-passes:100}") int maxPasses) {
+        this.sentenceDAO = sentenceDAO;
+        this.userAnnotationDAO = userAnnotationDAO;
+        this.statisticsForkJoinPool = statisticsForkJoinPool;
+        this.aggregation = UsageGraph.Aggregation.valueOf(aggregation.toUpperCase(Locale.ROOT));
+        this.restarts = restarts;
+        this.seed = seed;
+        this.maxPasses = maxPasses;
+    }
+
+    /**
+     * @return Whether the engine implements the clustering algorithm of the pipeline.
+     */
+    public boolean supports(String algorithm) {
+        return algorithm != null && algorithm.toLowerCase(Locale.ROOT).startsWith("correlation");
+    }
+
+    /**
+     * Generates the graph of a lemma and writes its nodes and edges.
+     *
+     * @param lemmaId     The lemma.
+     * @param threshold   The threshold of the clustering, the default of the pipeline if blank.
+     * @param cancelled   Whether the graph is no longer needed, checked during the clustering.
+     * @param nodesWriter The writer of the JSON array of the nodes.
+     * @param edgesWriter The writer of the JSON array of the edges.
+     * @throws CancellationException If the generation was cancelled.
+     * @throws NumberFormatException If the threshold is not a number.
+     */
+    public void generate(int lemmaId, String threshold, @NotNull BooleanSupplier cancelled, @NotNull Writer nodesWriter,
+                         @NotNull Writer edgesWriter) throws IOException, CancellationException, NumberFormatException {
+        double clusteringThreshold = threshold == null || threshold.isBlank() ? DEFAULT_THRESHOLD : Double.parseDouble(threshold);
+        long start = System.currentTimeMillis();
+        List<UseNodeRow> uses = sentenceDAO.findNodeRowsByLemmaId(lemmaId);
+        List<AnnotationRow> annotationRows = userAnnotationDAO.findAnnotationRowsOfLemma(lemmaId);
+        UsageGraph graph = UsageGraph.build(uses.stream().map(UseNodeRow::id).toList(), annotationRows, aggregation);
+        CorrelationClustering.Result clustering = statisticsForkJoinPool.invoke(ForkJoinTask.adapt(
+                () -> CorrelationClustering.cluster(graph, clusteringThreshold, restarts, seed, maxPasses, cancelled)));
+        writeNodes(uses, clustering.clusters(), nodesWriter);
+        writeEdges(graph, uses, edgesWriter);
+        logger.info("Generated the graph of lemma {} with {} nodes, {} edges and {} clusters (loss {}) in {} ms.", lemmaId,
+                graph.getNodeCount(), graph.getEdgeCount(), Arrays.stream(clustering.clusters()).max().orElse(-1) + 1,
+                clustering.loss(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Writes the nodes: the identifier of the use as id and label, the cluster as group, the grouping, and the context
+     * as title.
+     */
+    static void writeNodes(List<UseNodeRow> uses, int[] clusters, Writer writer) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            for (int node = 0; node < uses.size(); node++) {
+                UseNodeRow use = uses.get(node);
+                generator.writeStartObject();
+                generator.writeStringField("id", use.csvId());
+                generator.writeStringField("label", use.csvId());
+                generator.writeNumberField("group", clusters[node]);
+                generator.writeStringField("grouping", use.grouping());
+                generator.writeStringField("title", use.context());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Writes the edges: the identifiers of the uses as from and to, the aggregated judgments as weight, and the
+     * judgments.
+     */
+    static void writeEdges(UsageGraph graph, List<UseNodeRow> uses, Writer writer) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+                generator.writeStartObject();
+                generator.writeStringField("from", uses.get(graph.getEdgeSource(edge)).csvId());
+                generator.writeStringField("to", uses.get(graph.getEdgeTarget(edge)).csvId());
+                generator.writeNumberField("weight", graph.getEdgeWeight(edge));
+                generator.writeArrayFieldStart("judgments");
+                for (float judgment : graph.getEdgeJudgments(edge)) {
+                    generator.writeNumber(judgment);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+}
@@ -1,115 +1,294 @@
 package durel.services.statistics;
 
+import durel.CacheConfig;
 import durel.domain.model.Lemma;
 import durel.services.WordService;
 import durel.services.dataManagement.download.DownloadProcessService;
+import durel.utils.FileManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
 
+import javax.validation.constraints.NotNull;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 import java.util.stream.Stream;
 
+/**
+ * Generates the word usage graphs (WUGs) of lemmas with the external pipeline ({@code WUGs/scripts/run_system2.sh}), or,
+ * if configured ({@code wugs.engine=jvm}), for correlation clustering with the {@link WUGEngineService} in the JVM.
+ * <p>
+ * The pipeline runs as a background job on the WUG executor, which limits the number of concurrent jobs and queues the
+ * others. The job writes the uses and annotations of the lemma into its directory, the input of the pipeline, and the
+ * pipeline with all processes it started is killed when the job exceeds its timeout or is cancelled. The results are
+ * cached by lemma, annotation version and numbers of uses and pairs of the lemma, algorithm, threshold and position,
+ * so that a graph is only generated again after the annotations or uses of the lemma have changed; requests for a
+ * graph that is being generated share the running job.
+ * <p>
+ * The directory of a job is deleted when the job fails, and otherwise when its result is evicted from the cache (see
+ * {@link CacheConfig}), together with the archive of the files.
+ */
 @Service
 public class WUGsService {
 
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(WUGsService.class);
+
+    /**
+     * Identifies a graph: the annotations of the lemma, by their version, the uses and uploaded pairs of the lemma, by
+     * their numbers, and the parameters of the pipeline.
+     */
+    public record WUGKey(int lemmaId, long annotationVersion, int useCount, int pairCount, String algorithm, String threshold,
+                         String position) {
+
+        public WUGKey(Lemma lemma, String algorithm, String threshold, String position) {
+            this(lemma.getId(), lemma.getAnnotationVersion(), lemma.getUseCount(), lemma.getPairCount(), algorithm, threshold, position);
+        }
+    }
+
+    /**
+     * A generated graph.
+     *
+     * @param edges     The edges of the graph as JSON.
+     * @param nodes     The nodes of the graph as JSON.
+     * @param directory The directory of the files of the pipeline, which are downloaded as an archive. It is deleted when
+     *                  the result is evicted from the cache.
+     */
+    public record WUGResult(String edges, String nodes, String directory) {
+    }
+
     private final WordService wordService;
 
     private final DownloadProcessService downloadProcessService;
 
+    private final WUGEngineService wugEngineService;
+
+    private final boolean useEngine;
+
+    private final TaskExecutor wugTaskExecutor;
+
+    private final Cache resultCache;
+
+    private final long jobTimeout;
+
+    // The running and queued jobs.
+    private final Map<WUGKey, CompletableFuture<WUGResult>> jobs = new ConcurrentHashMap<>();
+
     @Autowired
-    public WUGsService(WordService wordService, DownloadProcessService downloadProcessService) {
+    public WUGsService(WordService wordService, DownloadProcessService downloadProcessService, WUGEngineService wugEngineService,
+                       @Qualifier("wugTaskExecutor") TaskExecutor wugTaskExecutor, CacheManager cacheManager,
+                       @Value("${wugs.engine:pipeline}") String engine,
+                       @Value("${wugs.job-timeout-ms:600000}") long jobTimeout) {
         this.wordService = wordService;
         this.downloadProcessService = downloadProcessService;
+        this.wugEngineService = wugEngineService;
+        this.useEngine = "jvm".equalsIgnoreCase(engine);
+        this.wugTaskExecutor = wugTaskExecutor;
+        this.resultCache = cacheManager.getCache(CacheConfig.WUG_RESULT_CACHE);
+        this.jobTimeout = jobTimeout;
     }
 
-    public List<String> executeWUGsPipeline(String algorithm, String position, String threshold, String project, String word) {
-        System.out.println("The algorithm is: " + algorithm);
-        System.out.println("The position is: " + position);
-        System.out.println("The threshold is: " + threshold);
-
-        // Fetch word from database.
-        Lemma w = wordService.getLemmaObjectByProjectNameAndLemma(project, word);
-        // Dump word into file, so that it can be read by the python routine that
-        // generates the graph.
-        String path = downloadProcessService.prepareFilesForVisualization(w);
+    /**
+     * Returns the graph of a lemma from the cache, or from a running job, or starts a job that generates it.
+     *
+     * @return The graph, completed exceptionally with a {@link TimeoutException} if the job exceeded its timeout, with
+     * a {@link CancellationException} if it was cancelled, or with a {@link TaskRejectedException} if the queue of
+     * jobs is full.
+     */
+    public CompletableFuture<WUGResult> getWUG(String algorithm, String position, String threshold, String project, String word) {
+        Lemma lemma = wordService.getLemmaObjectByProjectNameAndLemma(project, word);
+        WUGKey key = new WUGKey(lemma, algorithm, threshold, position);
+        WUGResult cachedResult = resultCache.get(key, WUGResult.class);
+        if (cachedResult != null) {
+            return CompletableFuture.completedFuture(cachedResult);
+        }
+        CompletableFuture<WUGResult> runningJob = jobs.get(key);
+        if (runningJob != null) {
+            return runningJob;
+        }
 
-        // Get the graph in HTML format
-        CommandLineRunner commandLineRunner = new CommandLineRunner();
-        return commandLineRunner.runVisualizationRoutine(path, word, algorithm, threshold, position);
+        CompletableFuture<WUGResult> job = new CompletableFuture<>();
+        runningJob = jobs.putIfAbsent(key, job);
+        if (runningJob != null) {
+            return runningJob;
+        }
+        job.whenComplete((result, e) -> jobs.remove(key, job));
+        try {
+            if (useEngine && wugEngineService.supports(algorithm)) {
+                wugTaskExecutor.execute(() -> runEngine(key, word, job));
+            } else {
+                wugTaskExecutor.execute(() -> runPipeline(key, word, job));
+            }
+            logger.info("Queued the WUG of {} ({}, threshold {}, position {}).", word, algorithm, threshold, position);
+        } catch (TaskRejectedException e) {
+            logger.warn("Rejected the WUG of {}, too many queued jobs.", word);
+            job.completeExceptionally(e);
+        }
+        return job;
     }
 
-    public String createJSScript(String jsonPath) {
-        return String.format("<script type=\"text/javascript\">%s</script>", CommandLineRunner.readLineByLineJava8(jsonPath + "stats.js")) + System.lineSeparator() +
-                String.format("<script type=\"text/javascript\">%s</script>", CommandLineRunner.readLineByLineJava8(jsonPath + "stats_agreement.js")) + System.lineSeparator() +
-                String.format("<script type=\"text/javascript\">%s</script>", CommandLineRunner.readLineByLineJava8(jsonPath + "stats_groupings.js")) + System.lineSeparator() +
-                String.format("<script type=\"text/javascript\">%s</script>", CommandLineRunner.readLineByLineJava8(jsonPath + "stats_plotting.js")) + System.lineSeparator() +
-                String.format("<script type=\"text/javascript\">%s</script>", CommandLineRunner.readLineByLineJava8(jsonPath + "data_joint.js"));
+    /**
+     * Cancels the running or queued job that generates the graph of a lemma, which kills the pipeline.
+     *
+     * @return Whether a job was cancelled.
+     */
+    public boolean cancelWUG(String algorithm, String position, String threshold, String project, String word) {
+        Lemma lemma = wordService.getLemmaObjectByProjectNameAndLemma(project, word);
+        CompletableFuture<WUGResult> job = jobs.get(new WUGKey(lemma, algorithm, threshold, position));
+        return job != null && job.cancel(false);
     }
 
     /**
-     * It allows to run programs in the command-line.
+     * @return The path of the archive of the files of the pipeline of a graph.
      */
-    public static class CommandLineRunner {
-
-        public List<String> runVisualizationRoutine(String path, String word, String algorithm, String threshold, String position) {
-            ProcessBuilder processBuilder = new ProcessBuilder("scripts/run_system2.sh", path, algorithm, threshold, position, "scripts/parameters_system2.sh") ;
-            processBuilder.directory(new File("WUGs"));
-
-            try {
-                Process process = processBuilder.start();
-
-                Reader rdr = new InputStreamReader(process.getErrorStream());
-                StringBuilder sb = new StringBuilder();
-                for(int i; (i = rdr.read()) !=-1;) {
-                    sb.append((char)i);
-                }
-                String var = sb.toString();
-
-                System.out.println(var);
-                int ret = process.waitFor();
-                System.out.printf("Program exited with code: %d", ret);
+    public String getArchive(@NotNull WUGResult result) {
+        return downloadProcessService.downloadWUGs(result.directory());
+    }
 
-            } catch (IOException | InterruptedException e) {
-                e.printStackTrace();
+    private void runEngine(WUGKey key, String word, CompletableFuture<WUGResult> job) {
+        if (job.isDone()) {
+            // Cancelled while queued.
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long deadline = start + jobTimeout;
+        // The engine reads the lemma itself, so the directory only receives its output.
+        String path;
+        try {
+            path = downloadProcessService.createDirectoryForVisualization(word);
+        } catch (RuntimeException e) {
+            logger.error("Unable to generate the WUG of {}.", word, e);
+            job.completeExceptionally(e);
+            return;
+        }
+        String nodesPath = path + word + "_nodes.txt";
+        String edgesPath = path + word + "_edges.txt";
+        try (Writer nodesWriter = Files.newBufferedWriter(Paths.get(nodesPath), StandardCharsets.UTF_8);
+             Writer edgesWriter = Files.newBufferedWriter(Paths.get(edgesPath), StandardCharsets.UTF_8)) {
+            wugEngineService.generate(key.lemmaId(), key.threshold(), () -> job.isDone() || System.currentTimeMillis() > deadline,
+                    nodesWriter, edgesWriter);
+        } catch (CancellationException e) {
+            if (!job.isCancelled()) {
+                logger.warn("Stopped the WUG engine of {} after {} ms.", word, jobTimeout);
+                job.completeExceptionally(new TimeoutException("The WUG engine exceeded " + jobTimeout + " ms."));
             }
-
-
-            System.out.println("Finished");
-
-            String htmlPath = path+ "plots/interactive/full/colorful/weight/full/" + word;
-            // String jsonPath = path+ "plots/interactive/full/colorful/weight/";
-            List<String> jsonPathAndHtmlPage = new ArrayList<>();
-            // jsonPathAndHtmlPage.add(htmlPath);
-            // jsonPathAndHtmlPage.add(jsonPath);
-            jsonPathAndHtmlPage.add(readLineByLineJava8(htmlPath + "_edges.txt"));
-            jsonPathAndHtmlPage.add(readLineByLineJava8(htmlPath + "_nodes.txt"));
-            //jsonPathAndHtmlPage.add(path);
-            return jsonPathAndHtmlPage;
+            FileManager.deleteDirectory(path);
+            return;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to generate the WUG of {}.", word, e);
+            job.completeExceptionally(e);
+            FileManager.deleteDirectory(path);
+            return;
         }
+        WUGResult result = new WUGResult(readFile(edgesPath), readFile(nodesPath), path);
+        resultCache.put(key, result);
+        logger.info("Generated the WUG of {} in the JVM in {} ms.", word, System.currentTimeMillis() - start);
+        job.complete(result);
+    }
 
-        public static String readLineByLineJava8(String filePath)
-        {
-            StringBuilder contentBuilder = new StringBuilder();
-
-            try (Stream<String> stream = Files.lines( Paths.get(filePath), StandardCharsets.UTF_8))
-            {
-                stream.forEach(s -> contentBuilder.append(s).append("\n"));
+    private void runPipeline(WUGKey key, String word, CompletableFuture<WUGResult> job) {
+        if (job.isDone()) {
+            // Cancelled while queued.
+            return;
+        }
+        // Dump the lemma into files that are read by the pipeline.
+        String path;
+        try {
+            path = downloadProcessService.prepareFilesForVisualization(key.lemmaId());
+        } catch (RuntimeException e) {
+            logger.error("Unable to write the files of the WUG of {}.", word, e);
+            job.completeExceptionally(e);
+            return;
+        }
+        if (job.isDone()) {
+            // Cancelled while the files were written.
+            FileManager.deleteDirectory(path);
+            return;
+        }
+        ProcessBuilder processBuilder = new ProcessBuilder("scripts/run_system2.sh", path, key.algorithm(), key.threshold(), key.position(),
+                "scripts/parameters_system2.sh");
+        processBuilder.directory(new File("WUGs"));
+        // The output is written to a file instead of a pipe, so that the pipeline never blocks on a full pipe.
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(new File(path + "pipeline.log"));
+        try {
+            Process process = processBuilder.start();
+            job.whenComplete((result, e) -> {
+                if (job.isCancelled()) {
+                    destroyProcessTree(process);
+                }
+            });
+            long start = System.currentTimeMillis();
+            if (!process.waitFor(jobTimeout, TimeUnit.MILLISECONDS)) {
+                destroyProcessTree(process);
+                logger.warn("Killed the WUG pipeline of {} after {} ms.", word, jobTimeout);
+                job.completeExceptionally(new TimeoutException("The WUG pipeline exceeded " + jobTimeout + " ms."));
+                FileManager.deleteDirectory(path);
+                return;
             }
-            catch (IOException e)
-            {
-                e.printStackTrace();
+            if (job.isCancelled()) {
+                logger.info("Cancelled the WUG pipeline of {}.", word);
+                FileManager.deleteDirectory(path);
+                return;
             }
-
-            return contentBuilder.toString();
+            int exitCode = process.exitValue();
+            String htmlPath = path + "plots/interactive/full/colorful/weight/full/" + word;
+            WUGResult result = new WUGResult(readFile(htmlPath + "_edges.txt"), readFile(htmlPath + "_nodes.txt"), path);
+            if (exitCode == 0) {
+                resultCache.put(key, result);
+                logger.info("Generated the WUG of {} in {} ms.", word, System.currentTimeMillis() - start);
+                job.complete(result);
+            } else {
+                // The partial result is shown to the requests waiting for it, but not cached. They are served while the
+                // job completes, so that the directory can be deleted afterwards.
+                logger.warn("The WUG pipeline of {} exited with code {}:\n{}", word, exitCode, readFile(path + "pipeline.log"));
+                job.complete(result);
+                FileManager.deleteDirectory(path);
+            }
+        } catch (IOException e) {
+            logger.error("Unable to run the WUG pipeline of {}.", word, e);
+            job.completeExceptionally(e);
+            FileManager.deleteDirectory(path);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.completeExceptionally(e);
+            FileManager.deleteDirectory(path);
         }
+    }
+
+    /**
+     * Kills the pipeline and all processes it started, e.g., the Python scripts of the shell script, which would keep
+     * running otherwise. The descendants are collected before the pipeline is killed, as they are no longer its
+     * descendants afterwards.
+     */
+    private static void destroyProcessTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
 
+    private static String readFile(String filePath) {
+        StringBuilder contentBuilder = new StringBuilder();
+        try (Stream<String> stream = Files.lines(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            stream.forEach(s -> contentBuilder.append(s).append("\n"));
+        } catch (IOException e) {
+            logger.error("Unable to read the output {} of the WUG pipeline.", filePath, e);
+        }
+        return contentBuilder.toString();
     }
 }
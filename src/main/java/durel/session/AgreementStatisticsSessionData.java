@@ -1,5 +1,6 @@
 package durel.session;
 
+import durel.domain.AnnotationVersion;
 import durel.dto.responses.statistics.AgreementStatisticsData;
 import durel.domain.model.User;
 import durel.domain.model.Project;
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 @NoArgsConstructor
 @Getter
@@ -21,5 +23,19 @@ import java.util.Map;
 public class AgreementStatisticsSessionData {
     private List<User> annotators;
     private Project project;
-    private Map<String, AgreementStatisticsData> agreementStatisticsDataMap = null;
+    // The annotation version of the project when the computation was started.
+    private AnnotationVersion annotationVersion;
+    // The confidence level of the bootstrap confidence intervals, null if they are not computed.
+    private Double confidenceLevel;
+    // The running or finished computation, so that the requests for the metrics of one table share it.
+    private SharedComputation<Map<String, AgreementStatisticsData>> agreementStatisticsDataMap = null;
+
+    /**
+     * Runs the action under the lock of the data of this session, so that concurrent requests of the session do not
+     * both find the data outdated and start a computation each. The lock is the target object, not the scoped proxy
+     * that is shared by all sessions.
+     */
+    public synchronized <T> T withLock(Supplier<T> action) {
+        return action.get();
+    }
 }
@@ -31,4 +31,6 @@ public class AnnotationSessionData {
     private int currentSecondSentenceID;
 
     private RandomAnnotationSequence randomAnnotationSequence;
+
+    private UsePairPrefetchBuffer usePairPrefetchBuffer;
 }
@@ -1,41 +1,44 @@
 package durel.session;
 
 import durel.domain.model.Instance;
-import lombok.Getter;
+import durel.utils.PairIndexPermutation;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Random;
+import java.util.*;
 
 /**
  * Defines the sequence of annotations of a given word (base).
+ * <p>
+ * For projects with all possible pairs, the pairs are not materialized. Instead, a seeded {@link PairIndexPermutation}
+ * computes the pair at a given position on demand, so that only the sentence ids of the word are held in memory.
+ * For projects with uploaded instances, the (bounded) list of instances is shuffled.
+ * <p>
+ * Each pair has a key that does not depend on the seed: the colexicographic rank of the pair among the sorted sentence
+ * ids, or the id of the instance, respectively. The keys are used to record the annotated pairs of an annotator.
  */
-@Getter
 public class RandomAnnotationSequence {
 
-    ArrayList<Integer[]> annotations;
+    private final int[] ids;
+
+    private final PairIndexPermutation permutation;
+
+    private final List<Integer[]> annotations;
+
+    private final int[] instanceIds;
+
+    private final Map<Long, Integer> instanceIdsByPair;
 
     /**
      * Creates the annotation sequence given a list of sentence ids.
      * @param ids list of sentence ids.
      */
     public RandomAnnotationSequence(List<Integer> ids, long seed) {
-        this.annotations = new ArrayList<>();
-
-        // create the annotation sequence. Basically, find all the combinations of sentence pairs.
-        for ( int i = 0 ; i < ids.size() - 1 ; ++i ) {
-            for ( int j = i + 1 ; j < ids.size(); j++ ) {
-                this.annotations.add(new Integer[]{ids.get(i), ids.get(j)});
-            }
-        }
-
+        this.ids = ids.stream().mapToInt(Integer::intValue).sorted().toArray();
         // Using always the same seed we are able to recreate always the same annotation sequence, which enables resuming
         // the annotation process.
-        Random random = new Random(seed);
-
-        // Shuffle the list.
-        Collections.shuffle(this.annotations,random ) ;
+        this.permutation = new PairIndexPermutation(this.ids.length, seed);
+        this.annotations = null;
+        this.instanceIds = null;
+        this.instanceIdsByPair = null;
     }
 
     /**
@@ -43,26 +46,81 @@ public class RandomAnnotationSequence {
      * @param instances list of instances.
      */
     public RandomAnnotationSequence(long seed, List<Instance> instances) {
+        this.ids = null;
+        this.permutation = null;
         this.annotations = new ArrayList<>();
+        this.instanceIdsByPair = new HashMap<>();
 
-        // create the annotation sequence. Basically, find all the combinations of sentence pairs.
-        for (Instance instance : instances) {
-            final Integer[] array = instance.getUsePair().getSentenceIDs().toArray(Integer[]::new);
-            this.annotations.add(array);
-        }
+        // Order the instances by id first, so that the shuffled order does not depend on the order of the query result.
+        List<Instance> sortedInstances = new ArrayList<>(instances);
+        sortedInstances.sort(Comparator.comparingInt(Instance::getId));
 
         // Using always the same seed we are able to recreate always the same annotation sequence, which enables resuming
         // the annotation process.
         Random random = new Random(seed);
 
         // Shuffle the list.
-        Collections.shuffle(this.annotations,random) ;
+        Collections.shuffle(sortedInstances, random);
+
+        this.instanceIds = new int[sortedInstances.size()];
+        for (Instance instance : sortedInstances) {
+            final Integer[] array = instance.getUsePair().getSentenceIDs().toArray(Integer[]::new);
+            this.instanceIds[this.annotations.size()] = instance.getId();
+            this.annotations.add(array);
+            this.instanceIdsByPair.put(pairOf(array[0], array[1]), instance.getId());
+        }
     }
 
     /**
-     * Returns next sentence ids that should be annotated by the user.
+     * Returns the number of pairs in the sequence.
+     */
+    public int size() {
+        if (permutation != null) {
+            return Math.toIntExact(permutation.size());
+        }
+        return annotations.size();
+    }
+
+    /**
+     * Returns next sentence ids that should be annotated by the user. The returned array is a fresh copy and may be
+     * modified by the caller.
      */
     public Integer[] next (int currentIndex) {
-        return this.annotations.get(currentIndex);
+        if (permutation != null) {
+            int[] pair = permutation.pairAt(currentIndex);
+            return new Integer[]{ids[pair[0]], ids[pair[1]]};
+        }
+        return this.annotations.get(currentIndex).clone();
+    }
+
+    /**
+     * Returns the key of the pair at the given position.
+     */
+    public int keyAt(int currentIndex) {
+        if (permutation != null) {
+            return Math.toIntExact(permutation.pairIndexAt(currentIndex));
+        }
+        return instanceIds[currentIndex];
+    }
+
+    /**
+     * Returns the key of the pair of the given sentences, in either order.
+     *
+     * @return The key, or -1 if the pair is not part of the sequence.
+     */
+    public int keyOf(int firstSentenceId, int secondSentenceId) {
+        if (permutation != null) {
+            int first = Arrays.binarySearch(ids, Math.min(firstSentenceId, secondSentenceId));
+            int second = Arrays.binarySearch(ids, Math.max(firstSentenceId, secondSentenceId));
+            if (first < 0 || second < 0 || first == second) {
+                return -1;
+            }
+            return Math.toIntExact(PairIndexPermutation.rank(first, second));
+        }
+        return instanceIdsByPair.getOrDefault(pairOf(firstSentenceId, secondSentenceId), -1);
+    }
+
+    private static long pairOf(int firstSentenceId, int secondSentenceId) {
+        return ((long) Math.min(firstSentenceId, secondSentenceId) << 32) | (Math.max(firstSentenceId, secondSentenceId) & 0xffffffffL);
     }
 }
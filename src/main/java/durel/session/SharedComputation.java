@@ -0,0 +1,61 @@
+package durel.session;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A computation that is shared by the requests of a session, e.g., for the tables of one agreement statistics page.
+ * Each request waits for its own future from {@link #join()}, so that a request that is abandoned does not cancel the
+ * computation for the others: the computation is cancelled only when the last request waiting for it is cancelled.
+ *
+ * @param <T> The type of the result.
+ */
+public class SharedComputation<T> {
+
+    private final CompletableFuture<T> computation;
+
+    // The number of requests that wait for the computation, guarded by this.
+    private int waiters;
+
+    public SharedComputation(CompletableFuture<T> computation) {
+        this.computation = computation;
+    }
+
+    /**
+     * @return The computation itself, e.g., to check whether it failed.
+     */
+    public CompletableFuture<T> getComputation() {
+        return computation;
+    }
+
+    /**
+     * Registers a request that waits for the result.
+     *
+     * @return The future of the request, completed with the result of the computation. Cancelling it cancels the
+     * computation if no other request waits for it.
+     */
+    public CompletableFuture<T> join() {
+        synchronized (this) {
+            waiters++;
+        }
+        CompletableFuture<T> waiter = new CompletableFuture<>();
+        waiter.whenComplete((result, e) -> leave(waiter.isCancelled()));
+        computation.whenComplete((result, e) -> {
+            if (e == null) {
+                waiter.complete(result);
+            } else {
+                waiter.completeExceptionally(e);
+            }
+        });
+        return waiter;
+    }
+
+    private void leave(boolean cancelled) {
+        boolean last;
+        synchronized (this) {
+            last = --waiters == 0;
+        }
+        if (cancelled && last) {
+            computation.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package durel.session;
+
+import durel.dto.responses.UseDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the rendered use pairs of the upcoming positions of a {@link RandomAnnotationSequence}. Entries are futures,
+ * as the pairs are loaded and rendered asynchronously while the annotator judges the current pair.
+ * <p>
+ * Positions map to fixed pairs for a given sequence, so the buffer only has to be cleared when the sequence changes
+ * and trimmed to the upcoming unannotated positions when the sequence index moves.
+ */
+public class UsePairPrefetchBuffer {
+
+    private final Map<Integer, CompletableFuture<List<UseDTO>>> usePairs = new ConcurrentHashMap<>();
+
+    public CompletableFuture<List<UseDTO>> get(int position) {
+        return usePairs.get(position);
+    }
+
+    public boolean contains(int position) {
+        return usePairs.containsKey(position);
+    }
+
+    public void put(int position, CompletableFuture<List<UseDTO>> usePair) {
+        usePairs.put(position, usePair);
+    }
+
+    /**
+     * Removes all positions except the given ones and cancels their pending renders.
+     */
+    public void retainPositions(Collection<Integer> positions) {
+        usePairs.entrySet().removeIf(entry -> {
+            boolean outside = !positions.contains(entry.getKey());
+            if (outside) {
+                entry.getValue().cancel(false);
+            }
+            return outside;
+        });
+    }
+
+    /**
+     * Removes all positions and cancels their pending renders.
+     */
+    public void clear() {
+        retainPositions(List.of());
+    }
+}
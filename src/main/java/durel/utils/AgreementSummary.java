@@ -0,0 +1,60 @@
+package durel.utils;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+
+/**
+ * The agreement statistics of a lemma that depend on the judgments of each pair of uses, in the form of matrices that
+ * are merged by adding them: the confusion matrix of each rater and the mean of the raters, and the coincidence matrix
+ * of all raters. The summary of a project is the sum of the summaries of its lemmas, since a pair of uses belongs to a
+ * single lemma. The matrices must not be modified.
+ *
+ * @param meanMatrices      The confusion matrix of each rater and the mean of the raters, see
+ *                          {@link JudgmentMatrix#toMeanConfusionMatrices()}.
+ * @param coincidenceMatrix The coincidence matrix of all raters, see {@link JudgmentMatrix#toCoincidenceMatrix(int[])}.
+ * @param itemCount         The number of pairs of uses judged by the raters.
+ * @param annotationCount   The number of annotations of the raters.
+ */
+public record AgreementSummary(ConfusionMatrix[] meanMatrices, ConfusionMatrix coincidenceMatrix, int itemCount, long annotationCount) {
+
+    /**
+     * Summarizes the judgments of a lemma.
+     */
+    public static AgreementSummary of(@NotNull JudgmentMatrix judgmentMatrix) {
+        int[] weights = new int[judgmentMatrix.getItemCount()];
+        Arrays.fill(weights, 1);
+        return new AgreementSummary(judgmentMatrix.toMeanConfusionMatrices(), judgmentMatrix.toCoincidenceMatrix(weights), judgmentMatrix.getItemCount(),
+                judgmentMatrix.getAnnotationCount());
+    }
+
+    /**
+     * Adds the summaries of several lemmas.
+     *
+     * @param raterCount The number of raters of the summaries.
+     */
+    public static AgreementSummary merge(int raterCount, @NotNull AgreementSummary... agreementSummaries) {
+        ConfusionMatrix[] meanMatrices = new ConfusionMatrix[raterCount];
+        for (int rater = 0; rater < raterCount; rater++) {
+            meanMatrices[rater] = new ConfusionMatrix();
+        }
+        ConfusionMatrix coincidenceMatrix = new ConfusionMatrix();
+        int itemCount = 0;
+        long annotationCount = 0;
+        for (AgreementSummary agreementSummary : agreementSummaries) {
+            for (int rater = 0; rater < raterCount; rater++) {
+                meanMatrices[rater].merge(agreementSummary.meanMatrices[rater]);
+            }
+            coincidenceMatrix.merge(agreementSummary.coincidenceMatrix);
+            itemCount += agreementSummary.itemCount;
+            annotationCount += agreementSummary.annotationCount;
+        }
+        return new AgreementSummary(meanMatrices, coincidenceMatrix, itemCount, annotationCount);
+    }
+
+    /**
+     * @return The average number of annotations per pair of uses, 0 if there are none.
+     */
+    public double getAverageAnnotationNumber() {
+        return itemCount == 0 ? 0.0 : annotationCount / (double) itemCount;
+    }
+}
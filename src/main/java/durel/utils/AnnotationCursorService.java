@@ -0,0 +1,78 @@
+package durel.utils;
+
+import durel.domain.AnnotationCursor;
+import durel.exceptions.UserErrorException;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.validation.constraints.NotNull;
+import java.util.Date;
+
+/**
+ * Signs and verifies the {@link AnnotationCursor annotation cursors} of the annotation API.
+ * <p>
+ * Cursors are compact JWTs signed with the application key. They carry no subject, so that they are never accepted
+ * as authentication tokens by the {@link JwtRequestFilter}.
+ */
+@Service
+@Slf4j
+public class AnnotationCursorService {
+
+    private static final String AUDIENCE = "annotation-cursor";
+
+    private static final String LEMMA_ID = "lid";
+    private static final String ANNOTATOR = "ann";
+    private static final String SEED = "seed";
+    private static final String INDEX = "idx";
+    private static final String FIRST_USE_ID = "u1";
+    private static final String SECOND_USE_ID = "u2";
+
+    @Value("${jwt.secret-key}")
+    private String SECRET_KEY;
+
+    @Value("${annotation.cursor-validity-ms:86400000}")
+    private long validityMs;
+
+    public String sign(@NotNull AnnotationCursor cursor) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setAudience(AUDIENCE)
+                .claim(LEMMA_ID, cursor.lemmaId())
+                .claim(ANNOTATOR, cursor.annotator())
+                .claim(SEED, cursor.seed())
+                .claim(INDEX, cursor.index())
+                .claim(FIRST_USE_ID, cursor.firstUseId())
+                .claim(SECOND_USE_ID, cursor.secondUseId())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + validityMs))
+                .signWith(SignatureAlgorithm.HS256, SECRET_KEY).compact();
+    }
+
+    /**
+     * Verifies the signature and expiration of the cursor and decodes it.
+     *
+     * @param token The signed cursor.
+     * @return The decoded cursor.
+     * @throws UserErrorException If the cursor is malformed, has been tampered with, or has expired.
+     */
+    public AnnotationCursor parse(String token) throws UserErrorException {
+        try {
+            Claims claims = Jwts.parser().setSigningKey(SECRET_KEY).requireAudience(AUDIENCE).parseClaimsJws(token).getBody();
+            return new AnnotationCursor(
+                    claims.get(LEMMA_ID, Integer.class),
+                    claims.get(ANNOTATOR, String.class),
+                    claims.get(SEED, Long.class),
+                    claims.get(INDEX, Integer.class),
+                    claims.get(FIRST_USE_ID, Integer.class),
+                    claims.get(SECOND_USE_ID, Integer.class));
+        } catch (JwtException | IllegalArgumentException | NullPointerException e) {
+            log.warn("Rejected annotation cursor: {}", e.getMessage());
+            throw new UserErrorException("The annotation cursor is invalid or has expired. Please restart the annotation.", e);
+        }
+    }
+}
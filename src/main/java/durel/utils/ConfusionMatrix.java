@@ -0,0 +1,261 @@
+package durel.utils;
+
+import java.util.Arrays;
+
+/**
+ * Confusion matrix of the judgments of two annotators, i.e., the number of pairs of uses that the first annotator
+ * judged with one value and the second annotator with another. The matrix contains only the pairs judged by both.
+ * <p>
+ * Since the judgments are discrete, the matrix is a sufficient statistic of the pairwise agreement: Krippendorff's
+ * &alpha; (from the coincidence matrix, the matrix plus its transpose), Cohen's &kappa;, Pearson's and Spearman's
+ * correlation (from the co-moments of the cells) and the Hamming loss are computed from it without the annotations.
+ * Matrices of several lemmas are merged by adding them.
+ * <p>
+ * The values and counts are doubles, so that the matrix also holds the judgments of an annotator paired with the mean
+ * judgments of all annotators, and the coincidences of all annotators for Krippendorff's &alpha;, which are weighted
+ * by the number of judgments of each pair of uses (see {@link JudgmentMatrix#toCoincidenceMatrix(int[])}).
+ */
+public final class ConfusionMatrix {
+
+    // The judgment values, in ascending order.
+    private double[] categories = new double[0];
+
+    private double[][] counts = new double[0][0];
+
+    /**
+     * Adds pairs of judgments.
+     *
+     * @param first  The judgment of the first annotator.
+     * @param second The judgment of the second annotator.
+     * @param count  The number of pairs of uses with these judgments.
+     */
+    public void add(double first, double second, double count) {
+        categoryIndex(first);
+        int column = categoryIndex(second);
+        // Adding the category of the second judgment may have moved the category of the first.
+        int row = categoryIndex(first);
+        counts[row][column] += count;
+    }
+
+    /**
+     * Adds all pairs of judgments of another matrix, e.g., of another lemma.
+     */
+    public void merge(ConfusionMatrix other) {
+        for (int row = 0; row < other.categories.length; row++) {
+            for (int column = 0; column < other.categories.length; column++) {
+                if (other.counts[row][column] != 0) {
+                    add(other.categories[row], other.categories[column], other.counts[row][column]);
+                }
+            }
+        }
+    }
+
+    private int categoryIndex(double category) {
+        int index = Arrays.binarySearch(categories, category);
+        if (index >= 0) {
+            return index;
+        }
+        index = -index - 1;
+        double[] newCategories = new double[categories.length + 1];
+        System.arraycopy(categories, 0, newCategories, 0, index);
+        newCategories[index] = category;
+        System.arraycopy(categories, index, newCategories, index + 1, categories.length - index);
+        double[][] newCounts = new double[newCategories.length][newCategories.length];
+        for (int row = 0; row < categories.length; row++) {
+            for (int column = 0; column < categories.length; column++) {
+                newCounts[row < index ? row : row + 1][column < index ? column : column + 1] = counts[row][column];
+            }
+        }
+        categories = newCategories;
+        counts = newCounts;
+        return index;
+    }
+
+    /**
+     * @return The number of pairs of uses judged by both annotators.
+     */
+    public double getPairCount() {
+        double pairCount = 0.0;
+        for (double[] row : counts) {
+            for (double count : row) {
+                pairCount += count;
+            }
+        }
+        return pairCount;
+    }
+
+    /**
+     * Krippendorff's &alpha; with the ordinal distance of the judgment values, as computed by DKPro Statistics for a
+     * study of the pairs judged by both annotators (with {@link OrdinalDistanceFunctionWithDoubles}).
+     *
+     * @return &alpha;, NaN if there are no pairs.
+     */
+    public double krippendorffAlpha() {
+        int k = categories.length;
+        // The coincidence matrix and its marginals, i.e., the number of values of each category.
+        double[][] coincidences = new double[k][k];
+        double[] marginals = new double[k];
+        double n = 0.0;
+        for (int c = 0; c < k; c++) {
+            for (int d = 0; d < k; d++) {
+                coincidences[c][d] = counts[c][d] + counts[d][c];
+                marginals[c] += coincidences[c][d];
+            }
+            n += marginals[c];
+        }
+        if (n == 0.0) {
+            return Double.NaN;
+        }
+        double observed = 0.0;
+        double expected = 0.0;
+        for (int c = 0; c < k; c++) {
+            for (int d = 0; d < k; d++) {
+                double distance = ordinalDistance(marginals, c, d);
+                observed += coincidences[c][d] * distance;
+                expected += marginals[c] * marginals[d] * distance;
+            }
+        }
+        observed /= n;
+        expected /= n * (n - 1.0);
+        if (observed == expected) {
+            return 0.0;
+        }
+        return 1.0 - observed / expected;
+    }
+
+    /**
+     * The squared ordinal distance of two categories: half of the values of both categories plus all values of the
+     * categories between them.
+     */
+    private static double ordinalDistance(double[] marginals, int c, int d) {
+        if (c == d) {
+            return 0.0;
+        }
+        double distance = (marginals[c] + marginals[d]) / 2.0;
+        for (int g = Math.min(c, d) + 1; g < Math.max(c, d); g++) {
+            distance += marginals[g];
+        }
+        return distance * distance;
+    }
+
+    /**
+     * Cohen's &kappa;, as computed by DKPro Statistics for a study of the pairs judged by both annotators.
+     *
+     * @return &kappa;, NaN if there are no pairs.
+     */
+    public double cohenKappa() {
+        double n = getPairCount();
+        if (n == 0.0) {
+            return Double.NaN;
+        }
+        double observed = 0.0;
+        double expected = 0.0;
+        for (int c = 0; c < categories.length; c++) {
+            double rowSum = 0.0;
+            double columnSum = 0.0;
+            for (int d = 0; d < categories.length; d++) {
+                rowSum += counts[c][d];
+                columnSum += counts[d][c];
+            }
+            observed += counts[c][c];
+            expected += rowSum * columnSum;
+        }
+        observed /= n;
+        expected /= n * n;
+        if (observed == expected) {
+            return 0.0;
+        }
+        return (observed - expected) / (1.0 - expected);
+    }
+
+    /**
+     * @return Pearson's correlation of the judgments, NaN if there are fewer than two pairs.
+     */
+    public double pearsonCorrelation() {
+        return correlation(categoryValues(), categoryValues());
+    }
+
+    /**
+     * @return Spearman's rank correlation of the judgments, with the mean rank for ties, NaN if there are fewer than
+     * two pairs.
+     */
+    public double spearmansRankCorrelation() {
+        int k = categories.length;
+        double[] rowSums = new double[k];
+        double[] columnSums = new double[k];
+        for (int c = 0; c < k; c++) {
+            for (int d = 0; d < k; d++) {
+                rowSums[c] += counts[c][d];
+                columnSums[d] += counts[c][d];
+            }
+        }
+        return correlation(midRanks(rowSums), midRanks(columnSums));
+    }
+
+    /**
+     * The (1-based) mean rank of the values of each category, given the number of values of each category.
+     */
+    private static double[] midRanks(double[] categoryCounts) {
+        double[] ranks = new double[categoryCounts.length];
+        double preceding = 0.0;
+        for (int c = 0; c < categoryCounts.length; c++) {
+            ranks[c] = preceding + (categoryCounts[c] + 1.0) / 2.0;
+            preceding += categoryCounts[c];
+        }
+        return ranks;
+    }
+
+    private double[] categoryValues() {
+        return categories;
+    }
+
+    /**
+     * Pearson's correlation of the pairs, with the first judgment of category c mapped to x[c] and the second to y[c].
+     */
+    private double correlation(double[] x, double[] y) {
+        int k = categories.length;
+        double n = 0.0;
+        double sumX = 0.0;
+        double sumY = 0.0;
+        for (int c = 0; c < k; c++) {
+            for (int d = 0; d < k; d++) {
+                n += counts[c][d];
+                sumX += counts[c][d] * x[c];
+                sumY += counts[c][d] * y[d];
+            }
+        }
+        if (n < 2) {
+            return Double.NaN;
+        }
+        double meanX = sumX / n;
+        double meanY = sumY / n;
+        double covariance = 0.0;
+        double varianceX = 0.0;
+        double varianceY = 0.0;
+        for (int c = 0; c < k; c++) {
+            for (int d = 0; d < k; d++) {
+                double dx = x[c] - meanX;
+                double dy = y[d] - meanY;
+                covariance += counts[c][d] * dx * dy;
+                varianceX += counts[c][d] * dx * dx;
+                varianceY += counts[c][d] * dy * dy;
+            }
+        }
+        return covariance / Math.sqrt(varianceX * varianceY);
+    }
+
+    /**
+     * @return The share of the pairs on which the annotators differ, NaN if there are no pairs.
+     */
+    public double hammingLoss() {
+        double differing = 0.0;
+        for (int c = 0; c < categories.length; c++) {
+            for (int d = 0; d < categories.length; d++) {
+                if (c != d) {
+                    differing += counts[c][d];
+                }
+            }
+        }
+        return differing / getPairCount();
+    }
+}
@@ -0,0 +1,207 @@
+package durel.utils;
+
+import javax.validation.constraints.NotNull;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Correlation clustering of a {@link UsageGraph}, as used by the WUG pipeline: an edge whose weight is above the
+ * threshold should connect uses of the same cluster, an edge below the threshold uses of different clusters. The loss
+ * of a clustering is the sum of the distances of the weights to the threshold of all edges that violate this.
+ * <p>
+ * Each restart starts from a random clustering and moves one node at a time to the cluster (or a new cluster) that
+ * reduces the loss most, in random order, until no move reduces the loss. The clustering with the smallest loss of
+ * all restarts is returned. The seed of a restart only depends on the seed and the number of the restart, so that
+ * the result does not depend on the scheduling of the restarts, which run as forked tasks on a fork-join pool.
+ */
+public final class CorrelationClustering {
+
+    // Spreads the seeds of consecutive restarts (the golden ratio increment of SplittableRandom).
+    private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+    // Moves that reduce the loss by less than this are not made, so that rounding errors do not cause endless moves.
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * A clustering and its loss.
+     *
+     * @param clusters The cluster of each node. The clusters are numbered by decreasing size, ties by their first node.
+     * @param loss     The loss of the clustering.
+     */
+    public record Result(int[] clusters, double loss) {
+    }
+
+    private CorrelationClustering() {
+    }
+
+    /**
+     * Clusters the graph. Has to be called on a fork-join pool.
+     *
+     * @param graph     The graph.
+     * @param threshold The judgment that separates attracting from repelling edges, e.g., 2.5.
+     * @param restarts  The number of restarts, at least 1.
+     * @param seed      The seed from which the seeds of the restarts are derived.
+     * @param maxPasses The maximum number of passes over all nodes of a restart.
+     * @param cancelled Whether the result is no longer needed, checked before each pass.
+     * @throws CancellationException If the clustering was cancelled.
+     */
+    public static Result cluster(@NotNull UsageGraph graph, double threshold, int restarts, long seed, int maxPasses,
+                                 @NotNull BooleanSupplier cancelled) throws CancellationException {
+        double[] shiftedWeights = new double[graph.getEdgeCount()];
+        for (int edge = 0; edge < shiftedWeights.length; edge++) {
+            shiftedWeights[edge] = graph.getEdgeWeight(edge) - threshold;
+        }
+        Result[] results = new Result[Math.max(1, restarts)];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int restart = 0; restart < results.length; restart++) {
+            int number = restart;
+            tasks.add(ForkJoinTask.adapt(() -> {
+                results[number] = search(graph, shiftedWeights, new SplittableRandom(seed + number * SEED_INCREMENT), maxPasses, cancelled);
+            }));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        Result best = results[0];
+        for (Result result : results) {
+            if (result.loss() < best.loss() - EPSILON) {
+                best = result;
+            }
+        }
+        return new Result(renumber(best.clusters()), best.loss());
+    }
+
+    private static Result search(UsageGraph graph, double[] shiftedWeights, SplittableRandom random, int maxPasses, BooleanSupplier cancelled) {
+        int nodeCount = graph.getNodeCount();
+        int[] clusters = new int[nodeCount];
+        int[] sizes = new int[nodeCount];
+        if (nodeCount == 0) {
+            return new Result(clusters, 0.0);
+        }
+        int initialClusterCount = 1 + random.nextInt(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            clusters[node] = random.nextInt(initialClusterCount);
+            sizes[clusters[node]]++;
+        }
+        // The unused cluster numbers, for moving a node into a new cluster.
+        Deque<Integer> unusedClusters = new ArrayDeque<>();
+        for (int cluster = nodeCount - 1; cluster >= 0; cluster--) {
+            if (sizes[cluster] == 0) {
+                unusedClusters.push(cluster);
+            }
+        }
+
+        // The sums of the positive and of the negated negative shifted weights of the edges of a node into each cluster.
+        double[] attraction = new double[nodeCount];
+        double[] repulsion = new double[nodeCount];
+        int[] touchedClusters = new int[nodeCount];
+        boolean[] touched = new boolean[nodeCount];
+        int[] order = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            order[node] = node;
+        }
+
+        boolean moved = true;
+        for (int pass = 0; pass < maxPasses && moved; pass++) {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+            moved = false;
+            shuffle(order, random);
+            for (int node : order) {
+                int touchedCount = 0;
+                for (int index = graph.getAdjacencyStart(node); index < graph.getAdjacencyEnd(node); index++) {
+                    int edge = graph.getAdjacentEdge(index);
+                    int cluster = clusters[graph.getNeighbour(node, edge)];
+                    if (!touched[cluster]) {
+                        touched[cluster] = true;
+                        touchedClusters[touchedCount++] = cluster;
+                    }
+                    if (shiftedWeights[edge] > 0.0) {
+                        attraction[cluster] += shiftedWeights[edge];
+                    } else {
+                        repulsion[cluster] -= shiftedWeights[edge];
+                    }
+                }
+                // The loss of the edges of the node in cluster c is repulsion[c] + (all attraction - attraction[c]),
+                // so the best cluster minimizes repulsion[c] - attraction[c]; a new cluster has 0.
+                int current = clusters[node];
+                int best = current;
+                double bestCost = repulsion[current] - attraction[current];
+                for (int i = 0; i < touchedCount; i++) {
+                    int cluster = touchedClusters[i];
+                    double cost = repulsion[cluster] - attraction[cluster];
+                    if (cost < bestCost - EPSILON) {
+                        best = cluster;
+                        bestCost = cost;
+                    }
+                }
+                if (bestCost > EPSILON && sizes[current] > 1) {
+                    best = unusedClusters.pop();
+                }
+                for (int i = 0; i < touchedCount; i++) {
+                    int cluster = touchedClusters[i];
+                    touched[cluster] = false;
+                    attraction[cluster] = 0.0;
+                    repulsion[cluster] = 0.0;
+                }
+                if (best != current) {
+                    sizes[current]--;
+                    if (sizes[current] == 0) {
+                        unusedClusters.push(current);
+                    }
+                    sizes[best]++;
+                    clusters[node] = best;
+                    moved = true;
+                }
+            }
+        }
+        return new Result(clusters, loss(graph, shiftedWeights, clusters));
+    }
+
+    private static double loss(UsageGraph graph, double[] shiftedWeights, int[] clusters) {
+        double loss = 0.0;
+        for (int edge = 0; edge < shiftedWeights.length; edge++) {
+            boolean sameCluster = clusters[graph.getEdgeSource(edge)] == clusters[graph.getEdgeTarget(edge)];
+            if (sameCluster && shiftedWeights[edge] < 0.0) {
+                loss -= shiftedWeights[edge];
+            } else if (!sameCluster && shiftedWeights[edge] > 0.0) {
+                loss += shiftedWeights[edge];
+            }
+        }
+        return loss;
+    }
+
+    private static void shuffle(int[] values, SplittableRandom random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    /**
+     * Numbers the clusters from 0 by decreasing size, ties by their first node.
+     */
+    private static int[] renumber(int[] clusters) {
+        Map<Integer, Integer> sizes = new HashMap<>();
+        Map<Integer, Integer> firstNodes = new HashMap<>();
+        for (int node = 0; node < clusters.length; node++) {
+            sizes.merge(clusters[node], 1, Integer::sum);
+            firstNodes.putIfAbsent(clusters[node], node);
+        }
+        List<Integer> order = new ArrayList<>(sizes.keySet());
+        order.sort(Comparator.<Integer>comparingInt(sizes::get).reversed().thenComparingInt(firstNodes::get));
+        Map<Integer, Integer> numbers = new HashMap<>();
+        for (int number = 0; number < order.size(); number++) {
+            numbers.put(order.get(number), number);
+        }
+        int[] renumbered = new int[clusters.length];
+        for (int node = 0; node < clusters.length; node++) {
+            renumbered[node] = numbers.get(clusters[node]);
+        }
+        return renumbered;
+    }
+}
@@ -1,5 +1,6 @@
 package durel.utils;
 
+import org.springframework.util.FileSystemUtils;
 import org.springframework.util.ResourceUtils;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -20,6 +21,19 @@ public class FileManager {
         System.setProperty("sun.jnu.encoding", "UTF-8");
     }
 
+    /**
+     * Deletes a directory with all its files, e.g., the temporary files of a job.
+     * @param pathString directory path.
+     */
+    public static void deleteDirectory(String pathString) {
+        try {
+            FileSystemUtils.deleteRecursively(Paths.get(pathString));
+        }
+        catch (IOException e) {
+            System.err.println("Failed to delete directory!" + e.getMessage());
+        }
+    }
+
     /**
      * Creates a directory in the given path.
      * @param pathString directory path.
@@ -0,0 +1,251 @@
+package durel.utils;
+
+import durel.domain.AnnotationRow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense item &times; rater matrix of judgments, the input of the agreement statistics.
+ * <p>
+ * An item is an unordered pair of uses, a rater is one of the selected annotators. The judgments are stored row by row
+ * in a single {@code double[]}, with {@link Double#NaN} for missing judgments. A cell that receives more than one
+ * annotation (i.e., a pair annotated in both orders) is NaN as well, the same rule as for the confusion matrices of
+ * {@link durel.services.statistics.AnnotatorPairStatisticsService}. All statistics skip the missing judgments: the
+ * metrics of two columns use the items judged in both, Krippendorff's &alpha; of all raters the items with at least two
+ * judgments. The matrix is filled in one pass over the annotation rows and grows as needed.
+ */
+public final class JudgmentMatrix {
+
+    /**
+     * @see Logger
+     * @see LoggerFactory
+     */
+    private static final Logger logger = LoggerFactory.getLogger(JudgmentMatrix.class);
+
+    private static final int INITIAL_ITEM_CAPACITY = 64;
+
+    private final int raterCount;
+
+    private final Map<String, Integer> raterIndexes = new HashMap<>();
+
+    // The item index of each pair of uses, keyed by the smaller and the larger use id.
+    private final Map<Long, Integer> itemIndexes = new HashMap<>();
+
+    private double[] judgments;
+
+    // The number of annotation rows of each item, including those of cells with several annotations.
+    private int[] annotationCounts;
+
+    private final BitSet cellsWithSeveralAnnotations = new BitSet();
+
+    private int itemCount;
+
+    /**
+     * Creates an empty matrix.
+     *
+     * @param raters The usernames of the raters, in the order of the columns.
+     */
+    public JudgmentMatrix(@NotNull List<String> raters) {
+        this.raterCount = raters.size();
+        for (int rater = 0; rater < raterCount; rater++) {
+            raterIndexes.put(raters.get(rater), rater);
+        }
+        this.judgments = new double[INITIAL_ITEM_CAPACITY * raterCount];
+        this.annotationCounts = new int[INITIAL_ITEM_CAPACITY];
+    }
+
+    /**
+     * Adds an annotation. Annotations of annotators that are not raters of the matrix are ignored.
+     *
+     * @param annotationRow The annotation.
+     */
+    public void add(@NotNull AnnotationRow annotationRow) {
+        Integer rater = raterIndexes.get(annotationRow.annotator());
+        if (rater == null) {
+            return;
+        }
+        int item = itemIndex(annotationRow.firstUseId(), annotationRow.secondUseId());
+        annotationCounts[item]++;
+        int cell = item * raterCount + rater;
+        if (!Double.isNaN(judgments[cell]) || cellsWithSeveralAnnotations.get(cell)) {
+            logger.warn("There were more than one annotation per annotator! Pair {}-{}, annotator {}.",
+                    annotationRow.firstUseId(), annotationRow.secondUseId(), annotationRow.annotator());
+            judgments[cell] = Double.NaN;
+            cellsWithSeveralAnnotations.set(cell);
+        } else {
+            judgments[cell] = annotationRow.judgment();
+        }
+    }
+
+    /**
+     * @return The key of the unordered pair of uses, the same for both orders of the uses.
+     */
+    public static long itemKey(int firstUseId, int secondUseId) {
+        return ((long) Math.min(firstUseId, secondUseId) << 32) | (Math.max(firstUseId, secondUseId) & 0xffffffffL);
+    }
+
+    private int itemIndex(int firstUseId, int secondUseId) {
+        long key = itemKey(firstUseId, secondUseId);
+        Integer item = itemIndexes.get(key);
+        if (item == null) {
+            item = itemCount++;
+            itemIndexes.put(key, item);
+            if (itemCount > annotationCounts.length) {
+                int capacity = annotationCounts.length * 2;
+                annotationCounts = Arrays.copyOf(annotationCounts, capacity);
+                judgments = Arrays.copyOf(judgments, capacity * raterCount);
+            }
+            Arrays.fill(judgments, item * raterCount, itemCount * raterCount, Double.NaN);
+        }
+        return item;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getRaterCount() {
+        return raterCount;
+    }
+
+    /**
+     * @return The judgment of the rater for the item, NaN if missing.
+     */
+    public double get(int item, int rater) {
+        return judgments[item * raterCount + rater];
+    }
+
+    /**
+     * @return The judgments of the rater for all items, NaN if missing.
+     */
+    public double[] column(int rater) {
+        double[] column = new double[itemCount];
+        for (int item = 0; item < itemCount; item++) {
+            column[item] = judgments[item * raterCount + rater];
+        }
+        return column;
+    }
+
+    /**
+     * @return The mean judgment of all raters for each item, 0 for items without judgments.
+     */
+    public double[] meanOfRaters() {
+        double[] means = new double[itemCount];
+        for (int item = 0; item < itemCount; item++) {
+            double sum = 0.0;
+            int count = 0;
+            for (int cell = item * raterCount; cell < (item + 1) * raterCount; cell++) {
+                if (!Double.isNaN(judgments[cell])) {
+                    sum += judgments[cell];
+                    count++;
+                }
+            }
+            means[item] = count == 0 ? 0.0 : sum / count;
+        }
+        return means;
+    }
+
+    /**
+     * @return The number of annotation rows of the raters, including those of cells with several annotations.
+     */
+    public long getAnnotationCount() {
+        long total = 0;
+        for (int item = 0; item < itemCount; item++) {
+            total += annotationCounts[item];
+        }
+        return total;
+    }
+
+    /**
+     * @return The average number of annotations per item, 0 if there are no items.
+     */
+    public double getAverageAnnotationNumber() {
+        if (itemCount == 0) {
+            return 0.0;
+        }
+        return getAnnotationCount() / (double) itemCount;
+    }
+
+    /**
+     * Creates the confusion matrix of two raters for a resample of the items. Only the items judged by both raters are
+     * counted.
+     *
+     * @param weights The number of times each item is drawn.
+     */
+    public ConfusionMatrix toConfusionMatrix(int first, int second, @NotNull int[] weights) {
+        ConfusionMatrix confusionMatrix = new ConfusionMatrix();
+        for (int item = 0; item < itemCount; item++) {
+            double firstJudgment = judgments[item * raterCount + first];
+            double secondJudgment = judgments[item * raterCount + second];
+            if (weights[item] != 0 && !Double.isNaN(firstJudgment) && !Double.isNaN(secondJudgment)) {
+                confusionMatrix.add(firstJudgment, secondJudgment, weights[item]);
+            }
+        }
+        return confusionMatrix;
+    }
+
+    /**
+     * Creates the confusion matrix of each rater and the mean of the raters (see {@link #meanOfRaters()}), over the
+     * items judged by the rater.
+     */
+    public ConfusionMatrix[] toMeanConfusionMatrices() {
+        double[] means = meanOfRaters();
+        ConfusionMatrix[] confusionMatrices = new ConfusionMatrix[raterCount];
+        for (int rater = 0; rater < raterCount; rater++) {
+            confusionMatrices[rater] = new ConfusionMatrix();
+            for (int item = 0; item < itemCount; item++) {
+                double judgment = judgments[item * raterCount + rater];
+                if (!Double.isNaN(judgment)) {
+                    confusionMatrices[rater].add(judgment, means[item], 1);
+                }
+            }
+        }
+        return confusionMatrices;
+    }
+
+    /**
+     * Creates the coincidence matrix of all raters for a resample of the items, from which
+     * {@link ConfusionMatrix#krippendorffAlpha()} is Krippendorff's &alpha; of all raters. Every pair of judgments of
+     * an item is added with the weight 1 / (m - 1), where m is the number of judgments of the item, so that missing
+     * judgments are skipped and items with a single judgment are not counted, as in Krippendorff's definition.
+     *
+     * @param weights The number of times each item is drawn.
+     */
+    public ConfusionMatrix toCoincidenceMatrix(@NotNull int[] weights) {
+        ConfusionMatrix coincidenceMatrix = new ConfusionMatrix();
+        for (int item = 0; item < itemCount; item++) {
+            if (weights[item] == 0) {
+                continue;
+            }
+            int offset = item * raterCount;
+            int judgmentCount = 0;
+            for (int rater = 0; rater < raterCount; rater++) {
+                if (!Double.isNaN(judgments[offset + rater])) {
+                    judgmentCount++;
+                }
+            }
+            if (judgmentCount < 2) {
+                continue;
+            }
+            double weight = weights[item] / (judgmentCount - 1.0);
+            for (int first = 0; first < raterCount; first++) {
+                if (Double.isNaN(judgments[offset + first])) {
+                    continue;
+                }
+                for (int second = first + 1; second < raterCount; second++) {
+                    if (!Double.isNaN(judgments[offset + second])) {
+                        coincidenceMatrix.add(judgments[offset + first], judgments[offset + second], weight);
+                    }
+                }
+            }
+        }
+        return coincidenceMatrix;
+    }
+}
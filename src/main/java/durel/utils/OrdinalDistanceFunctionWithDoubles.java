@@ -5,9 +5,33 @@ import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
 import org.dkpro.statistics.agreement.coding.ICodingAnnotationStudy;
 import org.dkpro.statistics.agreement.distance.IDistanceFunction;
 
+import java.util.HashMap;
 import java.util.Map;
 
-public class OrdinalDistanceFunctionWithDoubles implements IDistanceFunction{
+/**
+ * Ordinal distance function of Krippendorff's alpha for categories that are {@link Double}s: the squared sum of half
+ * of the values of both categories and of all values of the categories in between. Other categories have the nominal
+ * distance.
+ * <p>
+ * The number of values of each category is counted once per study, and the categories are sorted with the cumulative
+ * counts, so that each distance is answered from a lookup instead of counting the whole study again. An instance
+ * keeps the tables of the last study and is not thread-safe; Krippendorff's alpha uses one instance per study.
+ */
+public class OrdinalDistanceFunctionWithDoubles implements IDistanceFunction {
+
+    private IAnnotationStudy study;
+
+    private Map<Object, Integer> categoryCounts;
+
+    // The index of each Double category, apart from NaN, in the numerically sorted categories.
+    private Map<Double, Integer> categoryIndexes;
+
+    // The number of values of the sorted categories before each index.
+    private long[] cumulativeCounts;
+
+    // The range of the sorted categories that are numerically equal to the category at each index.
+    private int[] firstEqualIndexes;
+    private int[] lastEqualIndexes;
 
     public OrdinalDistanceFunctionWithDoubles() {
     }
@@ -17,24 +41,30 @@ public class OrdinalDistanceFunctionWithDoubles implements IDistanceFunction{
             if (category1.equals(category2)) {
                 return 0.0;
             } else {
-                Map<Object, Integer> nk = CodingAnnotationStudy.countTotalAnnotationsPerCategory((ICodingAnnotationStudy)study);
+                if (study != this.study) {
+                    prepare(study);
+                }
                 double result = 0.0;
-                Integer v = nk.get(category1);
+                Integer v = categoryCounts.get(category1);
                 if (v != null) {
                     result += v / 2.0;
                 }
 
-                v = nk.get(category2);
+                v = categoryCounts.get(category2);
                 if (v != null) {
                     result += v / 2.0;
                 }
 
-                double minCat = Math.min((Double) category1, (Double) category2);
-                double maxCat = Math.max((Double) category1, (Double) category2);
-
-                for (Map.Entry<Object, Integer> entry : nk.entrySet()) {
-                    if (minCat < (Double) entry.getKey() && (Double) entry.getKey() < maxCat) {
-                        result += entry.getValue();
+                // NaN is neither between nor around other categories.
+                Integer index1 = categoryIndexes.get(category1);
+                Integer index2 = categoryIndexes.get(category2);
+                if (index1 != null && index2 != null) {
+                    int min = Math.min(index1, index2);
+                    int max = Math.max(index1, index2);
+                    int from = lastEqualIndexes[min] + 1;
+                    int to = firstEqualIndexes[max];
+                    if (from < to) {
+                        result += cumulativeCounts[to] - cumulativeCounts[from];
                     }
                 }
 
@@ -44,4 +74,30 @@ public class OrdinalDistanceFunctionWithDoubles implements IDistanceFunction{
             return category1.equals(category2) ? 0.0 : 1.0;
         }
     }
+
+    /**
+     * Counts the values of each category of the study and computes the cumulative counts of the sorted categories.
+     */
+    private void prepare(IAnnotationStudy study) {
+        categoryCounts = CodingAnnotationStudy.countTotalAnnotationsPerCategory((ICodingAnnotationStudy) study);
+        Double[] categories = categoryCounts.keySet().stream()
+                .filter(category -> category instanceof Double && !((Double) category).isNaN())
+                .map(category -> (Double) category)
+                .sorted()
+                .toArray(Double[]::new);
+        categoryIndexes = new HashMap<>();
+        cumulativeCounts = new long[categories.length + 1];
+        firstEqualIndexes = new int[categories.length];
+        lastEqualIndexes = new int[categories.length];
+        for (int i = 0; i < categories.length; i++) {
+            categoryIndexes.put(categories[i], i);
+            cumulativeCounts[i + 1] = cumulativeCounts[i] + categoryCounts.get(categories[i]);
+            // Only -0.0 and 0.0 are numerically equal but different categories.
+            firstEqualIndexes[i] = i > 0 && categories[i - 1].doubleValue() == categories[i] ? firstEqualIndexes[i - 1] : i;
+        }
+        for (int i = categories.length - 1; i >= 0; i--) {
+            lastEqualIndexes[i] = i < categories.length - 1 && categories[i + 1].doubleValue() == categories[i] ? lastEqualIndexes[i + 1] : i;
+        }
+        this.study = study;
+    }
 }
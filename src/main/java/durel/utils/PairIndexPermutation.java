@@ -0,0 +1,132 @@
+package durel.utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * Seeded bijection over the index space {@code [0, n*(n-1)/2)} of all unordered pairs of {@code n} elements.
+ * <p>
+ * The permutation is computed on demand: {@link #pairAt(long)} returns the k-th pair of the shuffled sequence in
+ * constant time and without materializing the sequence. Internally, a balanced Feistel network over the smallest
+ * even power of two covering the index space is combined with cycle walking, so that every index is mapped back into
+ * the valid range. The same seed always yields the same order, which enables resuming the annotation process.
+ */
+public class PairIndexPermutation {
+
+    private static final int ROUNDS = 4;
+
+    private final long size;
+
+    private final int halfBits;
+
+    private final long halfMask;
+
+    private final long[] roundKeys = new long[ROUNDS];
+
+    /**
+     * Creates the permutation of all pairs of {@code n} elements.
+     *
+     * @param n    The number of elements, i.e., uses of the lemma.
+     * @param seed The seed defining the order of the pairs.
+     */
+    public PairIndexPermutation(int n, long seed) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Number of elements must not be negative.");
+        }
+        this.size = (long) n * (n - 1) / 2;
+        int bits = size <= 1 ? 2 : 64 - Long.numberOfLeadingZeros(size - 1);
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * @return The number of pairs, i.e., n*(n-1)/2.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the k-th pair of the permuted sequence.
+     *
+     * @param k The position in the sequence, {@code 0 <= k < size()}.
+     * @return The positions {i, j} (with i < j) of the two elements of the pair.
+     */
+    public int[] pairAt(long k) {
+        return unrank(pairIndexAt(k));
+    }
+
+    /**
+     * Returns the index of the k-th pair of the permuted sequence in the (unpermuted) colexicographic order of all
+     * pairs, see {@link #rank(int, int)}. The index does not depend on the seed.
+     *
+     * @param k The position in the sequence, {@code 0 <= k < size()}.
+     * @return The pair index.
+     */
+    public long pairIndexAt(long k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("Pair index " + k + " out of bounds for " + size + " pairs.");
+        }
+        return permute(k);
+    }
+
+    /**
+     * Returns the index of the pair {i, j} in colexicographic order, i.e., the inverse of {@link #unrank(long)}.
+     *
+     * @param i The position of the first element.
+     * @param j The position of the second element, {@code i < j}.
+     * @return The pair index.
+     */
+    public static long rank(int i, int j) {
+        return (long) j * (j - 1) / 2 + i;
+    }
+
+    /**
+     * Maps a position to a pair index. Applies the Feistel network until the result lies within the index space
+     * (cycle walking). As the network domain is less than four times the index space, this takes few iterations.
+     */
+    long permute(long k) {
+        long value = k;
+        do {
+            value = encrypt(value);
+        } while (value >= size);
+        return value;
+    }
+
+    /**
+     * Converts a pair index into the pair {i, j} with i < j, enumerating pairs in colexicographic order:
+     * (0,1), (0,2), (1,2), (0,3), ...
+     */
+    int[] unrank(long index) {
+        int j = (int) ((1 + Math.sqrt(1 + 8.0 * index)) / 2);
+        // Correct floating point errors for large indices.
+        while ((long) j * (j - 1) / 2 > index) {
+            j--;
+        }
+        while ((long) (j + 1) * j / 2 <= index) {
+            j++;
+        }
+        int i = (int) (index - (long) j * (j - 1) / 2);
+        return new int[]{i, j};
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (long roundKey : roundKeys) {
+            long newLeft = right;
+            right = (left ^ mix(right ^ roundKey)) & halfMask;
+            left = newLeft;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -1,6 +0,0 @@
-package durel.utils;
-
-@FunctionalInterface
-public interface TriFunction<T, U, V, R> {
-    void apply(T t, U u, V v);
-}
\ No newline at end of file
@@ -0,0 +1,188 @@
+package durel.utils;
+
+import durel.domain.AnnotationRow;
+
+import javax.validation.constraints.NotNull;
+import java.util.*;
+
+/**
+ * Weighted word usage graph of a lemma: the uses are the nodes, and each pair of uses with at least one valid judgment
+ * is an edge weighted with the aggregated judgments of the pair.
+ * <p>
+ * Judgments 0 (cannot decide) and -1 (internal) are not valid and are ignored, as by the WUG pipeline. A pair of uses
+ * is the same edge in either order. The edges are stored in arrays, and the edges of each node in a compressed
+ * adjacency list, so that the clustering iterates over the neighbours of a node without allocation.
+ */
+public final class UsageGraph {
+
+    /**
+     * How the judgments of an edge are aggregated to its weight.
+     */
+    public enum Aggregation {
+        /** The median of the judgments, the mean of the two middle ones for an even number of judgments. */
+        MEDIAN,
+        /** The mean of the judgments. */
+        MEAN
+    }
+
+    private final int[] useIds;
+
+    private final int[] edgeSources;
+
+    private final int[] edgeTargets;
+
+    private final double[] edgeWeights;
+
+    // The judgments of each edge, in ascending order.
+    private final float[][] edgeJudgments;
+
+    // The edges of node v are adjacentEdges[adjacencyOffsets[v]] to adjacentEdges[adjacencyOffsets[v+1]-1].
+    private final int[] adjacencyOffsets;
+
+    private final int[] adjacentEdges;
+
+    private UsageGraph(int[] useIds, int[] edgeSources, int[] edgeTargets, double[] edgeWeights, float[][] edgeJudgments) {
+        this.useIds = useIds;
+        this.edgeSources = edgeSources;
+        this.edgeTargets = edgeTargets;
+        this.edgeWeights = edgeWeights;
+        this.edgeJudgments = edgeJudgments;
+        this.adjacencyOffsets = new int[useIds.length + 1];
+        for (int edge = 0; edge < edgeSources.length; edge++) {
+            adjacencyOffsets[edgeSources[edge] + 1]++;
+            adjacencyOffsets[edgeTargets[edge] + 1]++;
+        }
+        for (int node = 0; node < useIds.length; node++) {
+            adjacencyOffsets[node + 1] += adjacencyOffsets[node];
+        }
+        this.adjacentEdges = new int[2 * edgeSources.length];
+        int[] next = Arrays.copyOf(adjacencyOffsets, useIds.length);
+        for (int edge = 0; edge < edgeSources.length; edge++) {
+            adjacentEdges[next[edgeSources[edge]]++] = edge;
+            adjacentEdges[next[edgeTargets[edge]]++] = edge;
+        }
+    }
+
+    /**
+     * Builds the graph of a lemma.
+     *
+     * @param useIds         The ids of all uses of the lemma, the nodes in this order. Uses without judgments are
+     *                       isolated nodes.
+     * @param annotationRows The annotations of the lemma. Annotations of other uses are ignored.
+     * @param aggregation    How the judgments of an edge are aggregated.
+     */
+    public static UsageGraph build(@NotNull List<Integer> useIds, @NotNull Collection<AnnotationRow> annotationRows,
+                                   @NotNull Aggregation aggregation) {
+        Map<Integer, Integer> nodeIndexes = new HashMap<>();
+        int[] nodes = new int[useIds.size()];
+        for (int node = 0; node < nodes.length; node++) {
+            nodes[node] = useIds.get(node);
+            nodeIndexes.put(nodes[node], node);
+        }
+        // The judgments of each pair of uses, in the order in which the pairs first occur.
+        Map<Long, List<Float>> judgmentsByPair = new LinkedHashMap<>();
+        for (AnnotationRow annotationRow : annotationRows) {
+            if (annotationRow.judgment() == null || annotationRow.judgment() <= 0.0F
+                    || !nodeIndexes.containsKey(annotationRow.firstUseId()) || !nodeIndexes.containsKey(annotationRow.secondUseId())
+                    || annotationRow.firstUseId().equals(annotationRow.secondUseId())) {
+                continue;
+            }
+            judgmentsByPair.computeIfAbsent(JudgmentMatrix.itemKey(annotationRow.firstUseId(), annotationRow.secondUseId()),
+                    key -> new ArrayList<>()).add(annotationRow.judgment());
+        }
+
+        int edgeCount = judgmentsByPair.size();
+        int[] edgeSources = new int[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        double[] edgeWeights = new double[edgeCount];
+        float[][] edgeJudgments = new float[edgeCount][];
+        int edge = 0;
+        for (Map.Entry<Long, List<Float>> pair : judgmentsByPair.entrySet()) {
+            edgeSources[edge] = nodeIndexes.get((int) (pair.getKey() >>> 32));
+            edgeTargets[edge] = nodeIndexes.get((int) (long) pair.getKey());
+            float[] judgments = new float[pair.getValue().size()];
+            for (int i = 0; i < judgments.length; i++) {
+                judgments[i] = pair.getValue().get(i);
+            }
+            Arrays.sort(judgments);
+            edgeJudgments[edge] = judgments;
+            edgeWeights[edge] = aggregate(judgments, aggregation);
+            edge++;
+        }
+        return new UsageGraph(nodes, edgeSources, edgeTargets, edgeWeights, edgeJudgments);
+    }
+
+    private static double aggregate(float[] sortedJudgments, Aggregation aggregation) {
+        int n = sortedJudgments.length;
+        if (aggregation == Aggregation.MEDIAN) {
+            return n % 2 == 1 ? sortedJudgments[n / 2] : (sortedJudgments[n / 2 - 1] + sortedJudgments[n / 2]) / 2.0;
+        }
+        double sum = 0.0;
+        for (float judgment : sortedJudgments) {
+            sum += judgment;
+        }
+        return sum / n;
+    }
+
+    public int getNodeCount() {
+        return useIds.length;
+    }
+
+    public int getEdgeCount() {
+        return edgeSources.length;
+    }
+
+    /**
+     * @return The id of the use of a node.
+     */
+    public int getUseId(int node) {
+        return useIds[node];
+    }
+
+    public int getEdgeSource(int edge) {
+        return edgeSources[edge];
+    }
+
+    public int getEdgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    /**
+     * @return The aggregated judgments of an edge.
+     */
+    public double getEdgeWeight(int edge) {
+        return edgeWeights[edge];
+    }
+
+    /**
+     * @return The judgments of an edge, in ascending order. Must not be modified.
+     */
+    public float[] getEdgeJudgments(int edge) {
+        return edgeJudgments[edge];
+    }
+
+    /**
+     * @return The node at the other end of an edge of a node.
+     */
+    public int getNeighbour(int node, int edge) {
+        return edgeSources[edge] == node ? edgeTargets[edge] : edgeSources[edge];
+    }
+
+    /**
+     * @return The index of the first edge of a node in {@link #getAdjacentEdge(int)}.
+     */
+    public int getAdjacencyStart(int node) {
+        return adjacencyOffsets[node];
+    }
+
+    /**
+     * @return The index after the last edge of a node in {@link #getAdjacentEdge(int)}.
+     */
+    public int getAdjacencyEnd(int node) {
+        return adjacencyOffsets[node + 1];
+    }
+
+    public int getAdjacentEdge(int index) {
+        return adjacentEdges[index];
+    }
+}
@@ -0,0 +1,164 @@
+-- Schema of the entities in durel.domain.model before versioned migrations were introduced. Databases that already
+-- contain this schema are baselined at version 1 (spring.flyway.baseline-on-migrate), so this script only runs on
+-- empty databases. The statements are valid for both PostgreSQL and H2.
+
+create table languages (
+    language_code varchar(2) not null,
+    language_name varchar(25) not null,
+    locale boolean not null,
+    constraint languages_pkey primary key (language_code),
+    constraint languages_name_key unique (language_name)
+);
+
+create table tutorial (
+    id integer generated by default as identity,
+    dt timestamp,
+    lang varchar(2),
+    constraint tutorial_pkey primary key (id),
+    constraint tutorial_lang_fkey foreign key (lang) references languages (language_code)
+);
+
+create table annotator (
+    username varchar(20) not null,
+    tutorial_id integer,
+    tutorial_agreement double precision,
+    passwd varchar(60) not null,
+    role varchar(255) not null,
+    email_address varchar(60) not null,
+    other varchar(255),
+    registration_dt timestamp,
+    constraint annotator_pkey primary key (username),
+    constraint annotator_tutorial_fkey foreign key (tutorial_id) references tutorial (id)
+);
+
+create table tutorial_sentence (
+    id integer generated by default as identity,
+    context varchar(5000) not null,
+    indexes_target_token varchar(1000) not null,
+    indexes_target_sentence varchar(1000) not null,
+    tutorial_id integer not null,
+    word varchar(40) not null,
+    pair_id integer not null,
+    constraint tutorial_sentence_pkey primary key (id),
+    constraint tutorial_sentence_tutorial_fkey foreign key (tutorial_id) references tutorial (id)
+);
+
+create table tutorial_annotation (
+    left_sentence_id integer not null,
+    right_sentence_id integer not null,
+    vote real not null,
+    observation varchar(255),
+    constraint tutorial_annotation_pkey primary key (left_sentence_id, right_sentence_id),
+    constraint tutorial_annotation_left_fkey foreign key (left_sentence_id) references tutorial_sentence (id),
+    constraint tutorial_annotation_right_fkey foreign key (right_sentence_id) references tutorial_sentence (id)
+);
+
+create table project (
+    projectname varchar(40) not null,
+    annotator_id varchar(20) not null,
+    dt timestamp,
+    random boolean not null,
+    visible boolean not null,
+    lang varchar(2),
+    constraint project_pkey primary key (projectname),
+    constraint project_annotator_fkey foreign key (annotator_id) references annotator (username),
+    constraint project_lang_fkey foreign key (lang) references languages (language_code)
+);
+
+create table project_visibility (
+    project_id varchar(40) not null,
+    annotator_id varchar(20) not null,
+    constraint project_visibility_pkey primary key (project_id, annotator_id),
+    constraint project_visibility_project_fkey foreign key (project_id) references project (projectname),
+    constraint project_visibility_annotator_fkey foreign key (annotator_id) references annotator (username)
+);
+
+create table word (
+    id integer generated by default as identity,
+    word varchar(40) not null,
+    project_id varchar(40) not null,
+    constraint word_pkey primary key (id),
+    constraint word_project_fkey foreign key (project_id) references project (projectname)
+);
+
+create table sentence (
+    id integer generated by default as identity,
+    context varchar(5000) not null,
+    indexes_target_token varchar(1000) not null,
+    indexes_target_sentence varchar(1000) not null,
+    word_id integer not null,
+    pos varchar(20) not null,
+    sentence_date varchar(20),
+    grouping varchar(1000),
+    csv_id varchar(1000) not null,
+    description varchar(200),
+    constraint sentence_pkey primary key (id),
+    constraint sentence_word_fkey foreign key (word_id) references word (id)
+);
+
+create table pair (
+    id integer generated by default as identity,
+    lemma varchar(255) not null,
+    left_sentence_id integer not null,
+    right_sentence_id integer not null,
+    projectname varchar(40) not null,
+    constraint pair_pkey primary key (id),
+    constraint pair_left_fkey foreign key (left_sentence_id) references sentence (id),
+    constraint pair_right_fkey foreign key (right_sentence_id) references sentence (id),
+    constraint pair_project_fkey foreign key (projectname) references project (projectname)
+);
+
+create table annotation (
+    annotator_id varchar(20) not null,
+    left_sentence_id integer not null,
+    right_sentence_id integer not null,
+    dt timestamp not null,
+    judgment real not null,
+    comment varchar(255),
+    constraint annotation_pkey primary key (annotator_id, left_sentence_id, right_sentence_id),
+    constraint annotation_annotator_fkey foreign key (annotator_id) references annotator (username),
+    constraint annotation_left_fkey foreign key (left_sentence_id) references sentence (id),
+    constraint annotation_right_fkey foreign key (right_sentence_id) references sentence (id)
+);
+
+create table seq (
+    word_id integer not null,
+    annotator_id varchar(20) not null,
+    dt timestamp,
+    seed bigint not null,
+    idx integer not null,
+    constraint seq_pkey primary key (word_id, annotator_id),
+    constraint seq_word_fkey foreign key (word_id) references word (id),
+    constraint seq_annotator_fkey foreign key (annotator_id) references annotator (username)
+);
+
+create table task (
+    id integer generated by default as identity,
+    status varchar(255) not null,
+    annotator_type varchar(255) not null,
+    project_name varchar(255) not null,
+    word varchar(255),
+    threshold_values varchar(255),
+    total_batches integer not null,
+    completed_batches integer not null,
+    username varchar(20) not null,
+    dt timestamp,
+    constraint task_pkey primary key (id),
+    constraint task_annotator_fkey foreign key (username) references annotator (username)
+);
+
+create table upload (
+    id integer generated by default as identity,
+    project_name varchar(255) not null,
+    progress varchar(255) not null,
+    creator varchar(255) not null,
+    constraint upload_pkey primary key (id)
+);
+
+create table deletion (
+    id integer generated by default as identity,
+    project varchar(255) not null,
+    progress varchar(255) not null,
+    creator varchar(255) not null,
+    constraint deletion_pkey primary key (id)
+);
@@ -0,0 +1,16 @@
+-- The lemma and project of each annotation (see UserAnnotation#lemma, #projectName), with the values of the existing
+-- rows, and the indexes of the filters on them (see AnnotationFilterQueryService).
+
+alter table annotation add column word_id integer;
+alter table annotation add column project_name varchar(40);
+alter table annotation add constraint annotation_word_fkey foreign key (word_id) references word (id);
+
+-- Both uses of an annotation belong to the same lemma, so the left one determines it.
+update annotation set
+    word_id = (select s.word_id from sentence s where s.id = annotation.left_sentence_id),
+    project_name = (select w.project_id from sentence s join word w on w.id = s.word_id where s.id = annotation.left_sentence_id);
+
+-- UserAnnotationDAO: findAnnotatedUsePairs, SequenceDAO: findIdsWithDeviatingIndex; filters on the lemma
+create index annotation_word_annotator_idx on annotation (word_id, annotator_id);
+-- UserAnnotationDAO: countGroupedByAnnotatorAndLemma(projectName); filters on the project and judgment
+create index annotation_project_judgment_idx on annotation (project_name, judgment);
@@ -0,0 +1,8 @@
+-- Denormalized counters of the lemmas (see Lemma#useCount, #pairCount), with the values of the existing rows.
+
+alter table word add column use_count integer default 0 not null;
+alter table word add column pair_count integer default 0 not null;
+
+update word set
+    use_count = (select count(*) from sentence s where s.word_id = word.id),
+    pair_count = (select count(*) from pair p where p.projectname = word.project_id and p.lemma = word.word);
@@ -0,0 +1,38 @@
+-- Indexes for the queries in durel.domain.repository and durel.services.annotation.AnnotationFilterQueryService.
+-- Lookups that are covered by a leading primary key column are not indexed again: annotation(annotator_id) by
+-- annotation_pkey, seq(word_id, annotator_id) by seq_pkey. DatabaseIndexCheck reports any of them that is missing.
+
+-- SentenceDAO: findByLemma_Id, findByLemma_IdAndCsvId, countByLemma, findIdsByLemma, findByLemmaOrderByIdAsc
+create index sentence_word_csv_idx on sentence (word_id, csv_id);
+
+-- LemmaDAO: findByProject_ProjectNameAndLemma, findByProject_ProjectNameOrderByLemmaAsc, deleteByProjectAndLemma
+create index word_project_word_idx on word (project_id, word);
+
+-- InstanceDAO: findByProjectAndLemma, countByProjectAndLemma, deleteByProjectAndLemma, findByProject_ProjectName
+create index pair_project_lemma_idx on pair (projectname, lemma);
+-- InstanceDAO: existsByUsePair
+create index pair_sentences_idx on pair (left_sentence_id, right_sentence_id);
+
+-- The indexes of annotation(word_id, annotator_id) and annotation(project_name, judgment) are created with their
+-- columns in V2_1.
+-- Foreign key checks when uses are deleted
+create index annotation_left_sentence_idx on annotation (left_sentence_id);
+create index annotation_right_sentence_idx on annotation (right_sentence_id);
+
+-- TaskDAO: findByStatus, countByStatus
+create index task_status_idx on task (status);
+-- TaskDAO: findByCreator_UsernameOrderByIdAsc
+create index task_username_idx on task (username);
+
+-- UploadProgressDAO: existsByProject, getByProject, deleteByProjectAndCreator
+create index upload_project_name_idx on upload (project_name);
+-- DeletionProgressDAO: existsByEntityName, getByEntityName
+create index deletion_project_idx on deletion (project);
+
+-- ProjectDAO: findByCreator_UsernameOrderByProjectNameAsc
+create index project_annotator_idx on project (annotator_id);
+-- ProjectDAO: findByCreator_UsernameOrAnnotators_UsernameOrIsPublicTrueOrderByProjectNameAsc
+create index project_visibility_annotator_idx on project_visibility (annotator_id);
+
+-- TutorialUseDAO: findByTutorial_LangAndPairIdOrderByIdAsc
+create index tutorial_sentence_tutorial_pair_idx on tutorial_sentence (tutorial_id, pair_id);
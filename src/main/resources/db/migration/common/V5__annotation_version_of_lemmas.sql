@@ -0,0 +1,4 @@
+-- Version of the annotations of each lemma (see Lemma#annotationVersion), which keys the cached results of annotation
+-- filter queries.
+
+alter table word add column annotation_version bigint default 0 not null;
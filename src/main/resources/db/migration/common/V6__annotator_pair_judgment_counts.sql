@@ -0,0 +1,31 @@
+-- Confusion matrices of the judgments of each pair of annotators on each lemma (see AnnotatorPairJudgmentCount), the
+-- sufficient statistics of the pairwise agreement, with the values of the existing annotations. The annotator with
+-- the smaller username is always the first one, and a pair of uses matches in either order. An annotator who judged a
+-- pair of uses in both orders has no judgment of the pair (as in JudgmentMatrix).
+
+create table annotator_pair_judgment_count (
+    word_id integer not null,
+    annotator1_id varchar(20) not null,
+    annotator2_id varchar(20) not null,
+    judgment1 real not null,
+    judgment2 real not null,
+    pair_count bigint not null,
+    constraint annotator_pair_judgment_count_pkey primary key (word_id, annotator1_id, annotator2_id, judgment1, judgment2),
+    constraint annotator_pair_judgment_count_word_fkey foreign key (word_id) references word (id) on delete cascade,
+    constraint annotator_pair_judgment_count_annotator1_fkey foreign key (annotator1_id) references annotator (username) on delete cascade,
+    constraint annotator_pair_judgment_count_annotator2_fkey foreign key (annotator2_id) references annotator (username) on delete cascade
+);
+
+insert into annotator_pair_judgment_count (word_id, annotator1_id, annotator2_id, judgment1, judgment2, pair_count)
+select a1.word_id, a1.annotator_id, a2.annotator_id, a1.judgment, a2.judgment, count(*)
+from annotation a1 join annotation a2 on a2.word_id = a1.word_id and a2.annotator_id > a1.annotator_id
+    and ((a2.left_sentence_id = a1.left_sentence_id and a2.right_sentence_id = a1.right_sentence_id)
+        or (a2.left_sentence_id = a1.right_sentence_id and a2.right_sentence_id = a1.left_sentence_id))
+where a1.word_id is not null
+    and not exists (select 1 from annotation r1 where r1.annotator_id = a1.annotator_id
+        and r1.left_sentence_id = a1.right_sentence_id and r1.right_sentence_id = a1.left_sentence_id
+        and r1.left_sentence_id <> r1.right_sentence_id)
+    and not exists (select 1 from annotation r2 where r2.annotator_id = a2.annotator_id
+        and r2.left_sentence_id = a2.right_sentence_id and r2.right_sentence_id = a2.left_sentence_id
+        and r2.left_sentence_id <> r2.right_sentence_id)
+group by a1.word_id, a1.annotator_id, a2.annotator_id, a1.judgment, a2.judgment;
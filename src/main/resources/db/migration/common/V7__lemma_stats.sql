@@ -0,0 +1,31 @@
+-- Statistics of the annotations of each lemma (see LemmaStats) and of each annotator of a lemma (see
+-- LemmaAnnotatorStats), maintained asynchronously after each write of annotations. The tables are filled by the
+-- consistency check of LemmaStatisticsService after the migration.
+
+create table lemma_stats (
+    word_id integer not null,
+    annotation_version bigint not null,
+    annotation_count bigint not null,
+    judged_annotation_count bigint not null,
+    judgment_sum double precision not null,
+    annotated_pair_count bigint not null,
+    shared_pair_count bigint not null,
+    constraint lemma_stats_pkey primary key (word_id),
+    constraint lemma_stats_word_fkey foreign key (word_id) references word (id) on delete cascade
+);
+
+create table lemma_annotator_stats (
+    word_id integer not null,
+    annotator_id varchar(20) not null,
+    judgment0_count bigint not null,
+    judgment1_count bigint not null,
+    judgment2_count bigint not null,
+    judgment3_count bigint not null,
+    judgment4_count bigint not null,
+    other_judgment_count bigint not null,
+    judgment_sum double precision not null,
+    shared_pair_count bigint not null,
+    constraint lemma_annotator_stats_pkey primary key (word_id, annotator_id),
+    constraint lemma_annotator_stats_word_fkey foreign key (word_id) references word (id) on delete cascade,
+    constraint lemma_annotator_stats_annotator_fkey foreign key (annotator_id) references annotator (username) on delete cascade
+);
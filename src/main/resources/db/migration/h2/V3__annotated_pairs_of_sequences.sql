@@ -0,0 +1,4 @@
+-- Serialized bitmap of the annotated pairs of a sequence (see AnnotationSequence#annotatedPairs). Existing sequences
+-- keep null and get it rebuilt from their annotations on first access.
+
+alter table seq add column annotated_pairs varbinary(16777216);
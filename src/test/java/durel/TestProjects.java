@@ -0,0 +1,97 @@
+package durel;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates small projects for the integration tests directly in the database, so that the tests do not depend on the
+ * upload of files. Names are unique, so that the tests of one application context do not see each other's rows.
+ */
+public final class TestProjects {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private TestProjects() {
+    }
+
+    /**
+     * @return A unique name with the given prefix, at most 20 characters long.
+     */
+    public static String uniqueName(String prefix) {
+        return prefix + COUNTER.incrementAndGet();
+    }
+
+    /**
+     * Creates an annotator.
+     *
+     * @return The username.
+     */
+    public static String createAnnotator(JdbcTemplate jdbcTemplate, String prefix) {
+        String username = uniqueName(prefix);
+        jdbcTemplate.update("insert into annotator (username, passwd, role, email_address) values (?, ?, ?, ?)",
+                username, "{noop}password", "ANNOTATOR", username + "@example.org");
+        return username;
+    }
+
+    /**
+     * Creates a project of all possible pairs with one lemma and its uses.
+     *
+     * @param creator  The username of the creator of the project.
+     * @param useCount The number of uses of the lemma.
+     * @return The lemma.
+     */
+    public static TestLemma createProjectWithLemma(JdbcTemplate jdbcTemplate, String creator, int useCount) {
+        String projectName = uniqueName("project");
+        String lemma = uniqueName("lemma");
+        jdbcTemplate.update("insert into project (projectname, annotator_id, random, visible) values (?, ?, true, true)",
+                projectName, creator);
+        jdbcTemplate.update("insert into word (word, project_id, use_count) values (?, ?, ?)", lemma, projectName, useCount);
+        int lemmaId = jdbcTemplate.queryForObject("select id from word where project_id = ? and word = ?", Integer.class,
+                projectName, lemma);
+        List<Integer> useIds = new ArrayList<>();
+        for (int use = 0; use < useCount; use++) {
+            jdbcTemplate.update("insert into sentence (context, indexes_target_token, indexes_target_sentence, word_id, pos, csv_id) " +
+                    "values (?, '0:4', '0:20', ?, 'NN', ?)", "use " + use + " of " + lemma, lemmaId, lemma + "-" + use);
+            useIds.add(jdbcTemplate.queryForObject("select id from sentence where word_id = ? and csv_id = ?", Integer.class,
+                    lemmaId, lemma + "-" + use));
+        }
+        return new TestLemma(projectName, lemma, lemmaId, useIds);
+    }
+
+    /**
+     * Creates an annotation of a pair of uses of the lemma.
+     */
+    public static void createAnnotation(JdbcTemplate jdbcTemplate, TestLemma lemma, String annotator, int firstUseId, int secondUseId,
+                                        float judgment) {
+        jdbcTemplate.update("insert into annotation (annotator_id, left_sentence_id, right_sentence_id, dt, judgment, comment, " +
+                        "word_id, project_name) values (?, ?, ?, current_timestamp, ?, '', ?, ?)",
+                annotator, firstUseId, secondUseId, judgment, lemma.lemmaId(), lemma.projectName());
+    }
+
+    /**
+     * Creates annotations of all pairs of uses of the lemma in one JDBC batch, with judgments from 1 to 4.
+     *
+     * @return The number of annotations.
+     */
+    public static int createAnnotationsOfAllPairs(JdbcTemplate jdbcTemplate, TestLemma lemma, String annotator) {
+        List<Object[]> annotations = new ArrayList<>();
+        for (int i = 0; i < lemma.useIds().size(); i++) {
+            for (int j = i + 1; j < lemma.useIds().size(); j++) {
+                annotations.add(new Object[]{annotator, lemma.useIds().get(i), lemma.useIds().get(j), (float) (1 + (i + j) % 4),
+                        lemma.lemmaId(), lemma.projectName()});
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into annotation (annotator_id, left_sentence_id, right_sentence_id, dt, judgment, comment, " +
+                "word_id, project_name) values (?, ?, ?, current_timestamp, ?, '', ?, ?)", annotations);
+        return annotations.size();
+    }
+
+    /**
+     * A lemma created by {@link #createProjectWithLemma(JdbcTemplate, String, int)}.
+     */
+    public record TestLemma(String projectName, String lemma, int lemmaId, List<Integer> useIds) {
+    }
+}
@@ -0,0 +1,211 @@
+package durel.interfaces;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import durel.Server;
+import durel.TestProjects;
+import durel.domain.AnnotationCursor;
+import durel.dto.requests.annotation.BatchJudgmentRequest;
+import durel.dto.requests.annotation.JudgmentRequest;
+import durel.services.user.UserDetailsService;
+import durel.utils.AnnotationCursorService;
+import durel.utils.JwtService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the annotation API on two application instances that share one H2 database, like two nodes behind a load
+ * balancer, and sends the requests of one annotator alternately to both of them.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class AnnotationApiControllerTest {
+
+    private static final int USE_COUNT = 6;
+
+    private static final int PAIR_COUNT = USE_COUNT * (USE_COUNT - 1) / 2;
+
+    // The default of annotation.max-batch-size.
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * The second instance, with its own caches and beans, on the database URL of application-test.properties.
+     */
+    private static ConfigurableApplicationContext otherInstance;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private AnnotationCursorService annotationCursorService;
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    private String annotator;
+
+    private TestProjects.TestLemma lemma;
+
+    private HttpHeaders headers;
+
+    @BeforeAll
+    static void startOtherInstance() {
+        otherInstance = new SpringApplicationBuilder(Server.class).profiles("test").run();
+    }
+
+    @AfterAll
+    static void stopOtherInstance() {
+        otherInstance.close();
+    }
+
+    @BeforeEach
+    void createProject() {
+        annotator = TestProjects.createAnnotator(jdbcTemplate, "annotator");
+        lemma = TestProjects.createProjectWithLemma(jdbcTemplate, annotator, USE_COUNT);
+        headers = new HttpHeaders();
+        headers.setBearerAuth(jwtService.generateToken(userDetailsService.loadUserByUsername(annotator)));
+    }
+
+    private String url(int instance, String path) {
+        int instancePort = instance == 0 ? port : ((ServletWebServerApplicationContext) otherInstance).getWebServer().getPort();
+        return "http://localhost:" + instancePort + "/api/annotation" + path;
+    }
+
+    private JsonNode start(int instance) {
+        return restTemplate.postForObject(url(instance, "/start?projectName={projectName}&lemma={lemma}"),
+                new HttpEntity<>(headers), JsonNode.class, lemma.projectName(), lemma.lemma());
+    }
+
+    private JsonNode judge(int instance, String cursor, int judgment) {
+        return restTemplate.postForObject(url(instance, "/judgment"),
+                new HttpEntity<>(new JudgmentRequest(cursor, judgment, ""), headers), JsonNode.class);
+    }
+
+    @Test
+    void requestsAlternateBetweenInstances() throws Exception {
+        JsonNode step = start(0);
+        assertEquals(PAIR_COUNT, step.get("sequenceLength").asInt());
+        Set<Set<Integer>> pairs = new HashSet<>();
+        for (int judged = 0; judged < PAIR_COUNT; judged++) {
+            assertFalse(step.get("finished").asBoolean());
+            AnnotationCursor cursor = annotationCursorService.parse(step.get("cursor").asText());
+            assertEquals(judged, cursor.index());
+            assertTrue(pairs.add(Set.of(cursor.firstUseId(), cursor.secondUseId())), "Pair handed out twice: " + cursor);
+            // The other instance continues at the same pair.
+            JsonNode restarted = start((judged + 1) % 2);
+            assertEquals(step.get("currentPair").asInt(), restarted.get("currentPair").asInt());
+            assertEquals(cursor, annotationCursorService.parse(restarted.get("cursor").asText()));
+            step = judge((judged + 1) % 2, step.get("cursor").asText(), 3);
+        }
+        assertTrue(step.get("finished").asBoolean());
+        assertEquals(PAIR_COUNT, step.get("currentPair").asInt());
+        assertEquals(PAIR_COUNT, countAnnotations());
+        assertEquals(PAIR_COUNT, jdbcTemplate.queryForObject("select idx from seq where annotator_id = ? and word_id = ?",
+                Integer.class, annotator, lemma.lemmaId()));
+    }
+
+    @Test
+    void cursorOfAJudgedPairOnlyModifiesItsAnnotation() {
+        String cursor = start(0).get("cursor").asText();
+        JsonNode next = judge(0, cursor, 3);
+        // A retried request that ends up at the other instance.
+        JsonNode retried = judge(1, cursor, 2);
+        assertEquals(next.get("currentPair").asInt(), retried.get("currentPair").asInt());
+        assertEquals(1, countAnnotations());
+        assertEquals(List.of(2.0f), jdbcTemplate.queryForList("select judgment from annotation where annotator_id = ?",
+                Float.class, annotator));
+
+        HttpClientErrorException rejected = assertThrows(HttpClientErrorException.class, () -> judge(1, cursor + "x", 2));
+        assertEquals(400, rejected.getRawStatusCode());
+    }
+
+    @Test
+    void concurrentJudgmentsOfANewPairSaveItOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 5; round++) {
+                lemma = TestProjects.createProjectWithLemma(jdbcTemplate, annotator, USE_COUNT);
+                String cursor = start(0).get("cursor").asText();
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                List<Future<HttpStatus>> statuses = new ArrayList<>();
+                for (int instance = 0; instance < 2; instance++) {
+                    int judgingInstance = instance;
+                    statuses.add(executor.submit(() -> {
+                        barrier.await();
+                        try {
+                            judge(judgingInstance, cursor, 3);
+                            return HttpStatus.OK;
+                        } catch (HttpClientErrorException e) {
+                            return e.getStatusCode();
+                        }
+                    }));
+                }
+                assertTrue(statuses.get(0).get() == HttpStatus.OK || statuses.get(1).get() == HttpStatus.OK);
+                for (Future<HttpStatus> status : statuses) {
+                    assertTrue(status.get() == HttpStatus.OK || status.get() == HttpStatus.CONFLICT, status.get().toString());
+                }
+                assertEquals(1, jdbcTemplate.queryForObject("select count(*) from annotation where annotator_id = ? and word_id = ?",
+                        Integer.class, annotator, lemma.lemmaId()));
+                assertEquals(1, jdbcTemplate.queryForObject("select idx from seq where annotator_id = ? and word_id = ?",
+                        Integer.class, annotator, lemma.lemmaId()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void malformedBatchesAreRejected() {
+        String cursor = start(0).get("cursor").asText();
+        HttpHeaders jsonHeaders = new HttpHeaders();
+        jsonHeaders.addAll(headers);
+        jsonHeaders.setContentType(MediaType.APPLICATION_JSON);
+        List<JudgmentRequest> tooManyJudgments = Collections.nCopies(MAX_BATCH_SIZE + 1, new JudgmentRequest(cursor, 3, ""));
+        for (Object body : List.of("{\"pageSize\": 4}", "{\"judgments\": null}", "{\"judgments\": [null]}",
+                new BatchJudgmentRequest(tooManyJudgments, 4))) {
+            HttpClientErrorException rejected = assertThrows(HttpClientErrorException.class, () -> restTemplate.postForObject(
+                    url(1, "/judgments"), new HttpEntity<>(body, jsonHeaders), JsonNode.class), body.toString());
+            assertEquals(400, rejected.getRawStatusCode());
+        }
+        assertEquals(0, countAnnotations());
+    }
+
+    private int countAnnotations() {
+        return jdbcTemplate.queryForObject("select count(*) from annotation where annotator_id = ?", Integer.class, annotator);
+    }
+}
@@ -0,0 +1,233 @@
+package durel.services;
+
+import durel.TestProjects;
+import durel.domain.model.AnnotationSequence;
+import durel.domain.model.Lemma;
+import durel.domain.model.User;
+import durel.services.user.UserService;
+import durel.session.RandomAnnotationSequence;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the bitmap of annotated pairs of the sequences on an in-memory H2 database: its rebuild from the annotations,
+ * its keys across an upload of pairs, and its updates by concurrent sessions of one annotator.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SequenceServiceTest {
+
+    private static final int USE_COUNT = 6;
+
+    private static final int PAIR_COUNT = USE_COUNT * (USE_COUNT - 1) / 2;
+
+    @Autowired
+    private SequenceService sequenceService;
+
+    @Autowired
+    private WordService wordService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private String annotator;
+
+    private TestProjects.TestLemma lemma;
+
+    @BeforeEach
+    void createProject() {
+        annotator = TestProjects.createAnnotator(jdbcTemplate, "annotator");
+        lemma = TestProjects.createProjectWithLemma(jdbcTemplate, annotator, USE_COUNT);
+    }
+
+    @Test
+    void missingBitmapIsRebuiltFromTheAnnotations() {
+        List<Integer> useIds = lemma.useIds();
+        TestProjects.createAnnotation(jdbcTemplate, lemma, annotator, useIds.get(0), useIds.get(1), 3);
+        TestProjects.createAnnotation(jdbcTemplate, lemma, annotator, useIds.get(4), useIds.get(2), 1);
+        // As after an annotation upload, which sets the index and leaves the bitmap to be rebuilt.
+        sequenceService.createNewSeq(user(), lemma(), 2);
+        assertNull(storedBitmap());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            AnnotationSequence annotationSequence = sequenceService.getSeq(user(), lemma());
+            RandomAnnotationSequence randomAnnotationSequence = sequenceService.getRandomAnnotationSequence(lemma(), annotationSequence);
+            List<Integer> positions = sequenceService.findNextUnannotatedPositions(randomAnnotationSequence, annotationSequence, PAIR_COUNT);
+
+            assertEquals(PAIR_COUNT - 2, positions.size());
+            assertEquals(Set.of(Set.of(useIds.get(0), useIds.get(1)), Set.of(useIds.get(2), useIds.get(4))),
+                    pairsNotAt(randomAnnotationSequence, positions));
+            assertTrue(sequenceService.isAnnotated(randomAnnotationSequence, annotationSequence, useIds.get(1), useIds.get(0)));
+            assertFalse(sequenceService.isAnnotated(randomAnnotationSequence, annotationSequence, useIds.get(1), useIds.get(2)));
+        });
+        // The rebuilt bitmap is stored, and the index is kept.
+        assertNotNull(storedBitmap());
+        assertEquals(2, jdbcTemplate.queryForObject("select idx from seq where word_id = ? and annotator_id = ?", Integer.class,
+                lemma.lemmaId(), annotator));
+    }
+
+    @Test
+    void keysAreStableAcrossAnUploadOfPairs() {
+        List<Integer> useIds = lemma.useIds();
+        jdbcTemplate.update("update project set random = false where projectname = ?", lemma.projectName());
+        for (int use = 1; use < USE_COUNT; use++) {
+            insertPair(useIds.get(0), useIds.get(use));
+        }
+        List<int[]> annotatedPairs = List.of(new int[]{useIds.get(0), useIds.get(1)}, new int[]{useIds.get(3), useIds.get(0)});
+        RandomAnnotationSequence before = transactionTemplate.execute(status -> {
+            AnnotationSequence annotationSequence = sequenceService.createNewSeq(user(), lemma(), 0);
+            for (int[] pair : annotatedPairs) {
+                TestProjects.createAnnotation(jdbcTemplate, lemma, annotator, pair[0], pair[1], 4);
+            }
+            sequenceService.recordNewAnnotations(lemma(), annotationSequence, annotatedPairs);
+            return sequenceService.getRandomAnnotationSequence(lemma(), annotationSequence);
+        });
+        assertEquals(USE_COUNT - 1, before.size());
+        byte[] bitmapBeforeUpload = storedBitmap();
+
+        // An upload of further pairs changes the number of pairs, and thereby the cache key and the order of the sequence.
+        for (int use = 2; use < USE_COUNT; use++) {
+            insertPair(useIds.get(1), useIds.get(use));
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            AnnotationSequence annotationSequence = sequenceService.getSeq(user(), lemma());
+            RandomAnnotationSequence after = sequenceService.getRandomAnnotationSequence(lemma(), annotationSequence);
+            assertNotSame(before, after);
+            assertEquals(2 * USE_COUNT - 3, after.size());
+
+            for (int[] pair : annotatedPairs) {
+                assertEquals(before.keyOf(pair[0], pair[1]), after.keyOf(pair[0], pair[1]));
+                assertTrue(sequenceService.isAnnotated(after, annotationSequence, pair[0], pair[1]));
+            }
+            List<Integer> positions = sequenceService.findNextUnannotatedPositions(after, annotationSequence, after.size());
+            assertEquals(after.size() - annotatedPairs.size(), positions.size());
+            assertEquals(Set.of(Set.of(useIds.get(0), useIds.get(1)), Set.of(useIds.get(0), useIds.get(3))), pairsNotAt(after, positions));
+        });
+        assertArrayEquals(bitmapBeforeUpload, storedBitmap());
+    }
+
+    @Test
+    void concurrentSessionsDoNotLoseAnnotatedPairs() throws Exception {
+        List<Integer> useIds = lemma.useIds();
+        List<int[]> pairs = new ArrayList<>();
+        for (int first = 0; first < USE_COUNT; first++) {
+            for (int second = first + 1; second < USE_COUNT; second++) {
+                pairs.add(new int[]{useIds.get(first), useIds.get(second)});
+            }
+        }
+        sequenceService.createNewSeq(user(), lemma(), 0);
+        // Without a stored bitmap, the reading sessions rebuild it while the others write.
+        jdbcTemplate.update("update seq set annotated_pairs = null where word_id = ? and annotator_id = ?", lemma.lemmaId(), annotator);
+
+        int writers = 3;
+        int readers = 2;
+        CyclicBarrier barrier = new CyclicBarrier(writers + readers);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+        try {
+            List<Future<?>> sessions = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                int firstPair = writer;
+                sessions.add(executor.submit(() -> {
+                    barrier.await();
+                    for (int pair = firstPair; pair < pairs.size(); pair += writers) {
+                        int[] usePair = pairs.get(pair);
+                        // One transaction per judgment, as a request of the session.
+                        transactionTemplate.executeWithoutResult(status -> {
+                            TestProjects.createAnnotation(jdbcTemplate, lemma, annotator, usePair[0], usePair[1], 2);
+                            sequenceService.recordNewAnnotations(lemma(), sequenceService.getSeq(user(), lemma()), List.of(usePair));
+                        });
+                    }
+                    return null;
+                }));
+            }
+            for (int reader = 0; reader < readers; reader++) {
+                sessions.add(executor.submit(() -> {
+                    barrier.await();
+                    for (int request = 0; request < PAIR_COUNT; request++) {
+                        transactionTemplate.executeWithoutResult(status -> {
+                            AnnotationSequence annotationSequence = sequenceService.getSeq(user(), lemma());
+                            sequenceService.findNextUnannotatedPositions(sequenceService.getRandomAnnotationSequence(lemma(),
+                                    annotationSequence), annotationSequence, 3);
+                        });
+                        // Drops the bitmap again now and then, as the reconciliation of the index does.
+                        if (request % 5 == 0) {
+                            jdbcTemplate.update("update seq set annotated_pairs = null where word_id = ? and annotator_id = ?",
+                                    lemma.lemmaId(), annotator);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> session : sessions) {
+                session.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            AnnotationSequence annotationSequence = sequenceService.getSeq(user(), lemma());
+            assertEquals(PAIR_COUNT, annotationSequence.getIndex());
+            RandomAnnotationSequence randomAnnotationSequence = sequenceService.getRandomAnnotationSequence(lemma(), annotationSequence);
+            for (int[] pair : pairs) {
+                assertTrue(sequenceService.isAnnotated(randomAnnotationSequence, annotationSequence, pair[0], pair[1]),
+                        "Pair lost: " + pair[0] + ", " + pair[1]);
+            }
+            assertTrue(sequenceService.findNextUnannotatedPositions(randomAnnotationSequence, annotationSequence, 1).isEmpty());
+        });
+    }
+
+    private User user() {
+        return userService.getUserByUsername(annotator);
+    }
+
+    private Lemma lemma() {
+        return wordService.getLemmaById(lemma.lemmaId());
+    }
+
+    private byte[] storedBitmap() {
+        return jdbcTemplate.queryForObject("select annotated_pairs from seq where word_id = ? and annotator_id = ?", byte[].class,
+                lemma.lemmaId(), annotator);
+    }
+
+    private void insertPair(int firstUseId, int secondUseId) {
+        jdbcTemplate.update("insert into pair (lemma, left_sentence_id, right_sentence_id, projectname) values (?, ?, ?, ?)",
+                lemma.lemma(), firstUseId, secondUseId, lemma.projectName());
+        jdbcTemplate.update("update word set pair_count = pair_count + 1 where id = ?", lemma.lemmaId());
+    }
+
+    /**
+     * @return The pairs of the sequence that are not at the given positions, as sets of their use ids.
+     */
+    private static Set<Set<Integer>> pairsNotAt(RandomAnnotationSequence randomAnnotationSequence, List<Integer> positions) {
+        Set<Set<Integer>> pairs = new HashSet<>();
+        for (int position = 0; position < randomAnnotationSequence.size(); position++) {
+            if (!positions.contains(position)) {
+                pairs.add(Set.of(randomAnnotationSequence.next(position)));
+            }
+        }
+        return pairs;
+    }
+}
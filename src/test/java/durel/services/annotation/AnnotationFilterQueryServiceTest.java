@@ -0,0 +1,131 @@
+package durel.services.annotation;
+
+import durel.TestProjects;
+import durel.domain.AnnotationFilterCriteria;
+import durel.domain.AnnotationRow;
+import durel.domain.model.annotation.UserAnnotation;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the keyset pagination of streamed annotations on an in-memory H2 database, with a chunk size that splits the
+ * annotations of one annotator across chunks.
+ */
+@SpringBootTest(properties = "annotation.stream-chunk-size=" + AnnotationFilterQueryServiceTest.CHUNK_SIZE)
+@ActiveProfiles("test")
+class AnnotationFilterQueryServiceTest {
+
+    static final int CHUNK_SIZE = 7;
+
+    @Autowired
+    private AnnotationQueryService annotationQueryService;
+
+    @Autowired
+    private AnnotationFilterQueryService annotationFilterQueryService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void streamReturnsEveryAnnotationOnceInKeyOrder() {
+        String creator = TestProjects.createAnnotator(jdbcTemplate, "creator");
+        TestProjects.TestLemma lemma = TestProjects.createProjectWithLemma(jdbcTemplate, creator, 7);
+        TestProjects.TestLemma otherLemma = TestProjects.createProjectWithLemma(jdbcTemplate, creator, 3);
+        List<String> annotators = List.of(TestProjects.createAnnotator(jdbcTemplate, "a"), TestProjects.createAnnotator(jdbcTemplate, "b"),
+                TestProjects.createAnnotator(jdbcTemplate, "c"));
+        int expected = 0;
+        for (String annotator : annotators) {
+            for (int i = 0; i < lemma.useIds().size(); i++) {
+                for (int j = i + 1; j < lemma.useIds().size(); j++) {
+                    // Both orders of the uses occur, so that the order is by the first and then the second use.
+                    int first = (i + j) % 2 == 0 ? lemma.useIds().get(i) : lemma.useIds().get(j);
+                    int second = (i + j) % 2 == 0 ? lemma.useIds().get(j) : lemma.useIds().get(i);
+                    TestProjects.createAnnotation(jdbcTemplate, lemma, annotator, first, second, (i + j) % 5);
+                    expected++;
+                }
+            }
+            // Annotations of another project are not streamed.
+            TestProjects.createAnnotation(jdbcTemplate, otherLemma, annotator, otherLemma.useIds().get(0), otherLemma.useIds().get(1), 1);
+        }
+
+        AnnotationFilterCriteria annotationFilterCriteria = new AnnotationFilterCriteria(null, List.of(lemma.projectName()), null, null,
+                null, null, null, null);
+        List<AnnotationRow> streamed;
+        try (Stream<AnnotationRow> annotationRows = annotationQueryService.streamAnnotationRowsWithFilterOptions(annotationFilterCriteria)) {
+            streamed = annotationRows.toList();
+        }
+
+        assertEquals(expected, streamed.size());
+        List<AnnotationRow> sorted = new ArrayList<>(streamed);
+        sorted.sort(Comparator.comparing(AnnotationRow::annotator).thenComparing(AnnotationRow::firstUseId)
+                .thenComparing(AnnotationRow::secondUseId));
+        assertEquals(sorted, streamed);
+        assertEquals(expected, streamed.stream().map(row -> List.of(row.annotator(), row.firstUseId(), row.secondUseId())).distinct().count());
+        // The stream returns the same annotations as the query that reads them at once.
+        assertEquals(sorted.size(), annotationQueryService.getAnnotationRowsWithFilterOptions(annotationFilterCriteria).size());
+    }
+
+    /**
+     * Streams the entities of a larger project within a transaction, as a download does, and checks that the
+     * persistence context never holds more than one chunk of annotations, and that the annotations of the previous
+     * chunks can be garbage collected, i.e., the heap does not grow with the size of the project.
+     */
+    @Test
+    void streamedEntitiesAreReleasedChunkByChunk() {
+        String creator = TestProjects.createAnnotator(jdbcTemplate, "creator");
+        TestProjects.TestLemma lemma = TestProjects.createProjectWithLemma(jdbcTemplate, creator, 60);
+        int expected = 0;
+        for (int annotator = 0; annotator < 3; annotator++) {
+            expected += TestProjects.createAnnotationsOfAllPairs(jdbcTemplate, lemma, TestProjects.createAnnotator(jdbcTemplate, "a"));
+        }
+        AnnotationFilterCriteria annotationFilterCriteria = new AnnotationFilterCriteria(null, List.of(lemma.projectName()), null, null,
+                null, null, null, null);
+
+        List<WeakReference<UserAnnotation>> streamed = new ArrayList<>();
+        int maxManagedAnnotations = transactionTemplate.execute(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            int maxManaged = 0;
+            try (Stream<UserAnnotation> annotations = annotationFilterQueryService.stream(AnnotationFilterQueryService.Selection.ENTITIES,
+                    annotationFilterCriteria)) {
+                for (Iterator<UserAnnotation> iterator = annotations.iterator(); iterator.hasNext(); ) {
+                    streamed.add(new WeakReference<>(iterator.next()));
+                    maxManaged = Math.max(maxManaged, (int) session.getStatistics().getEntityKeys().stream()
+                            .filter(key -> ((EntityKey) key).getEntityName().equals(UserAnnotation.class.getName()))
+                            .count());
+                }
+            }
+            return maxManaged;
+        });
+
+        assertEquals(expected, streamed.size());
+        assertEquals(CHUNK_SIZE, maxManagedAnnotations);
+        // Only the references of this test keep the streamed annotations reachable, and they are weak.
+        System.gc();
+        long retained = streamed.stream().filter(reference -> reference.get() != null).count();
+        assertTrue(retained <= CHUNK_SIZE, retained + " of " + expected + " streamed annotations are still reachable");
+    }
+}
@@ -0,0 +1,227 @@
+package durel.services.annotationProcess;
+
+import durel.TestProjects;
+import durel.domain.AnnotationCursor;
+import durel.dto.requests.annotation.JudgmentRequest;
+import durel.dto.responses.AnnotationStepDTO;
+import durel.exceptions.UserErrorException;
+import durel.utils.AnnotationCursorService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the annotation API on an in-memory H2 database: the cursors carry the whole state of the annotation, so that
+ * each request can be served by another node, and resubmitted batches of judgments are idempotent.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class StatelessAnnotationProcessServiceTest {
+
+    private static final int USE_COUNT = 6;
+
+    private static final int PAIR_COUNT = USE_COUNT * (USE_COUNT - 1) / 2;
+
+    private static final int THROUGHPUT_USE_COUNT = 20;
+
+    private static final int THROUGHPUT_PAIR_COUNT = 120;
+
+    private static final int THROUGHPUT_BATCH_SIZE = 20;
+
+    private static final Logger logger = LoggerFactory.getLogger(StatelessAnnotationProcessServiceTest.class);
+
+    @Autowired
+    private StatelessAnnotationProcessService statelessAnnotationProcessService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${jwt.secret-key}")
+    private String secretKey;
+
+    private String annotator;
+
+    private TestProjects.TestLemma lemma;
+
+    @BeforeEach
+    void createProject() {
+        annotator = TestProjects.createAnnotator(jdbcTemplate, "annotator");
+        lemma = TestProjects.createProjectWithLemma(jdbcTemplate, annotator, USE_COUNT);
+    }
+
+    /**
+     * A second node, which shares nothing with the application context but the key.
+     */
+    private AnnotationCursorService otherNode() {
+        AnnotationCursorService annotationCursorService = new AnnotationCursorService();
+        ReflectionTestUtils.setField(annotationCursorService, "SECRET_KEY", secretKey);
+        ReflectionTestUtils.setField(annotationCursorService, "validityMs", 60000L);
+        return annotationCursorService;
+    }
+
+    @Test
+    void cursorsAreAcceptedByAnotherNode() throws Exception {
+        AnnotationStepDTO step = statelessAnnotationProcessService.startAnnotation(annotator, lemma.projectName(), lemma.lemma());
+        assertFalse(step.isFinished());
+        assertEquals(PAIR_COUNT, step.getSequenceLength());
+
+        // The other node decodes the cursor of this node without any session.
+        AnnotationCursor cursor = otherNode().parse(step.getCursor());
+        assertEquals(lemma.lemmaId(), cursor.lemmaId());
+        assertEquals(annotator, cursor.annotator());
+        assertEquals(0, cursor.index());
+
+        // A cursor signed by the other node is accepted by this one, and every pair is handed out once.
+        Set<Set<Integer>> pairs = new HashSet<>();
+        for (int judged = 0; judged < PAIR_COUNT; judged++) {
+            AnnotationCursor current = otherNode().parse(step.getCursor());
+            assertTrue(pairs.add(Set.of(current.firstUseId(), current.secondUseId())), "Pair handed out twice: " + current);
+            String resigned = otherNode().sign(current);
+            step = statelessAnnotationProcessService.saveJudgment(annotator, resigned, 3, null);
+        }
+        assertTrue(step.isFinished());
+        assertEquals(PAIR_COUNT, countAnnotations());
+        assertEquals(PAIR_COUNT, sequenceIndex());
+    }
+
+    @Test
+    void tamperedAndForeignCursorsAreRejected() throws Exception {
+        AnnotationStepDTO step = statelessAnnotationProcessService.startAnnotation(annotator, lemma.projectName(), lemma.lemma());
+        String tampered = step.getCursor().substring(0, step.getCursor().length() - 2) + "xx";
+        assertThrows(UserErrorException.class, () -> statelessAnnotationProcessService.saveJudgment(annotator, tampered, 3, null));
+
+        String otherAnnotator = TestProjects.createAnnotator(jdbcTemplate, "other");
+        assertThrows(UserErrorException.class,
+                () -> statelessAnnotationProcessService.saveJudgment(otherAnnotator, step.getCursor(), 3, null));
+        assertEquals(0, countAnnotations());
+    }
+
+    @Test
+    void cursorsOfAnotherIndexAreRejected() throws Exception {
+        AnnotationStepDTO first = statelessAnnotationProcessService.startAnnotation(annotator, lemma.projectName(), lemma.lemma());
+        AnnotationStepDTO second = statelessAnnotationProcessService.saveJudgment(annotator, first.getCursor(), 3, null);
+        AnnotationCursor current = otherNode().parse(second.getCursor());
+        assertEquals(1, current.index());
+
+        // The pair of the current position with a signed cursor of another position.
+        for (int index : new int[]{0, 2}) {
+            String outdated = otherNode().sign(new AnnotationCursor(current.lemmaId(), current.annotator(), current.seed(), index,
+                    current.firstUseId(), current.secondUseId()));
+            assertThrows(UserErrorException.class, () -> statelessAnnotationProcessService.saveJudgment(annotator, outdated, 3, null));
+            assertThrows(UserErrorException.class, () -> statelessAnnotationProcessService.saveJudgments(annotator,
+                    List.of(new JudgmentRequest(outdated, 3, "")), 1));
+        }
+        assertEquals(1, countAnnotations());
+        assertEquals(1, sequenceIndex());
+
+        // The cursor of a judged pair only modifies its annotation.
+        AnnotationStepDTO repeated = statelessAnnotationProcessService.saveJudgment(annotator, first.getCursor(), 1, null);
+        assertEquals(1, countAnnotations());
+        assertEquals(1, sequenceIndex());
+        assertEquals(second.getCurrentPair(), repeated.getCurrentPair());
+    }
+
+    @Test
+    void resubmittedBatchIsIdempotent() throws Exception {
+        AnnotationStepDTO first = statelessAnnotationProcessService.startAnnotation(annotator, lemma.projectName(), lemma.lemma());
+        List<AnnotationStepDTO> page = statelessAnnotationProcessService.saveJudgments(annotator,
+                List.of(new JudgmentRequest(first.getCursor(), 4, "")), 4);
+        assertEquals(4, page.size());
+
+        List<JudgmentRequest> batch = page.stream().map(step -> new JudgmentRequest(step.getCursor(), 2, "")).toList();
+        List<AnnotationStepDTO> next = statelessAnnotationProcessService.saveJudgments(annotator, batch, 4);
+        assertEquals(5, countAnnotations());
+        assertEquals(5, sequenceIndex());
+
+        // A retried request (e.g., after a timeout) modifies the annotations instead of adding them again.
+        List<JudgmentRequest> changedBatch = page.stream().map(step -> new JudgmentRequest(step.getCursor(), 1, "")).toList();
+        List<AnnotationStepDTO> retried = statelessAnnotationProcessService.saveJudgments(annotator, changedBatch, 4);
+        assertEquals(5, countAnnotations());
+        assertEquals(5, sequenceIndex());
+        assertEquals(4, jdbcTemplate.queryForObject("select count(*) from annotation where annotator_id = ? and judgment = 1",
+                Integer.class, annotator));
+        assertEquals(next.stream().map(AnnotationStepDTO::getCurrentPair).toList(),
+                retried.stream().map(AnnotationStepDTO::getCurrentPair).toList());
+    }
+
+    @Test
+    void tooLargeBatchIsRejected() throws Exception {
+        AnnotationStepDTO first = statelessAnnotationProcessService.startAnnotation(annotator, lemma.projectName(), lemma.lemma());
+        List<JudgmentRequest> batch = Collections.nCopies(101, new JudgmentRequest(first.getCursor(), 3, ""));
+        assertThrows(UserErrorException.class, () -> statelessAnnotationProcessService.saveJudgments(annotator, batch, 4));
+        assertEquals(0, countAnnotations());
+    }
+
+    /**
+     * Judges the same number of pairs one by one and in batches, and compares the JDBC statements and the throughput.
+     * The statement counts are compared, since the times depend on the machine; the throughputs are logged.
+     */
+    @Test
+    void batchesNeedFewerStatementsThanSingleJudgments() throws Exception {
+        TestProjects.TestLemma singleLemma = TestProjects.createProjectWithLemma(jdbcTemplate, annotator, THROUGHPUT_USE_COUNT);
+        TestProjects.TestLemma batchLemma = TestProjects.createProjectWithLemma(jdbcTemplate, annotator, THROUGHPUT_USE_COUNT);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            statistics.clear();
+            long start = System.nanoTime();
+            AnnotationStepDTO step = statelessAnnotationProcessService.startAnnotation(annotator, singleLemma.projectName(), singleLemma.lemma());
+            for (int judged = 0; judged < THROUGHPUT_PAIR_COUNT; judged++) {
+                step = statelessAnnotationProcessService.saveJudgment(annotator, step.getCursor(), 3, null);
+            }
+            long singleTime = System.nanoTime() - start;
+            long singleStatements = statistics.getPrepareStatementCount();
+
+            statistics.clear();
+            start = System.nanoTime();
+            List<AnnotationStepDTO> page = List.of(statelessAnnotationProcessService.startAnnotation(annotator, batchLemma.projectName(),
+                    batchLemma.lemma()));
+            int judged = 0;
+            while (judged < THROUGHPUT_PAIR_COUNT) {
+                List<JudgmentRequest> batch = page.stream().map(batchStep -> new JudgmentRequest(batchStep.getCursor(), 3, "")).toList();
+                judged += batch.size();
+                page = statelessAnnotationProcessService.saveJudgments(annotator, batch, THROUGHPUT_BATCH_SIZE);
+            }
+            long batchTime = System.nanoTime() - start;
+            long batchStatements = statistics.getPrepareStatementCount();
+
+            logger.info("Single judgments: {} pairs/s, {} statements. Batches of {}: {} pairs/s, {} statements.",
+                    Math.round(THROUGHPUT_PAIR_COUNT / (singleTime / 1e9)), singleStatements, THROUGHPUT_BATCH_SIZE,
+                    Math.round(judged / (batchTime / 1e9)), batchStatements);
+            assertEquals(THROUGHPUT_PAIR_COUNT + 1, judged);
+            assertTrue(batchStatements * 3 < singleStatements, batchStatements + " statements in batches, " + singleStatements + " one by one");
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+        assertEquals(2 * THROUGHPUT_PAIR_COUNT + 1, countAnnotations());
+    }
+
+    private int countAnnotations() {
+        return jdbcTemplate.queryForObject("select count(*) from annotation where annotator_id = ?", Integer.class, annotator);
+    }
+
+    private int sequenceIndex() {
+        return jdbcTemplate.queryForObject("select idx from seq where annotator_id = ? and word_id = ?", Integer.class,
+                annotator, lemma.lemmaId());
+    }
+}
@@ -0,0 +1,134 @@
+package durel.services.statistics;
+
+import durel.domain.AnnotationRow;
+import durel.dto.responses.statistics.AgreementStatisticsData;
+import durel.utils.ConfusionMatrix;
+import durel.utils.JudgmentMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the bootstrap confidence intervals on fixed judgment matrices, without a database.
+ */
+class AgreementBootstrapServiceTest {
+
+    private static final List<String> RATERS = List.of("a", "b", "c");
+
+    private static final double CONFIDENCE_LEVEL = 0.95;
+
+    private final AgreementBootstrapService agreementBootstrapService = new AgreementBootstrapService(500, 3);
+
+    @Test
+    void sameSeedGivesTheSameBoundsOnAnyPool() {
+        JudgmentMatrix judgmentMatrix = judgmentMatrix(new Random(1), 200, 0.6);
+        ForkJoinPool sequentialPool = new ForkJoinPool(1);
+        ForkJoinPool parallelPool = new ForkJoinPool(4);
+        try {
+            AgreementStatisticsData expected = bootstrap(judgmentMatrix, sequentialPool, () -> false);
+            for (int run = 0; run < 3; run++) {
+                AgreementStatisticsData data = bootstrap(judgmentMatrix, parallelPool, () -> false);
+                assertBoundsEqual(expected.getLowerBounds(), data.getLowerBounds());
+                assertBoundsEqual(expected.getUpperBounds(), data.getUpperBounds());
+            }
+        } finally {
+            sequentialPool.shutdownNow();
+            parallelPool.shutdownNow();
+        }
+    }
+
+    @Test
+    void perfectAgreementHasTheIntervalOne() {
+        JudgmentMatrix judgmentMatrix = judgmentMatrix(new Random(2), 100, 1.0);
+        AgreementStatisticsData data = bootstrap(judgmentMatrix, ForkJoinPool.commonPool(), () -> false);
+
+        for (String metric : List.of("KrippendorffAlphaAgreement", "CohenKappaAgreement", "PearsonCorrelation", "SpearmansRankCorrelation")) {
+            for (int i = 0; i < RATERS.size(); i++) {
+                for (int j = i + 1; j < RATERS.size(); j++) {
+                    assertEquals(1.0, data.getLowerBounds().get(metric)[i][j], 1e-9, metric);
+                    assertEquals(1.0, data.getUpperBounds().get(metric)[i][j], 1e-9, metric);
+                }
+            }
+        }
+        assertEquals(0.0, data.getLowerBounds().get("HammingLoss")[0][1]);
+        assertEquals(0.0, data.getUpperBounds().get("HammingLoss")[0][1]);
+        assertEquals(1.0, data.getLowerBounds().get(AgreementStatisticsService.KRIPPENDORFF_FULL)[0][0], 1e-9);
+        assertEquals(1.0, data.getUpperBounds().get(AgreementStatisticsService.KRIPPENDORFF_FULL)[0][0], 1e-9);
+    }
+
+    @Test
+    void boundsEncloseThePointEstimates() {
+        JudgmentMatrix judgmentMatrix = judgmentMatrix(new Random(3), 300, 0.6);
+        AgreementStatisticsData data = bootstrap(judgmentMatrix, ForkJoinPool.commonPool(), () -> false);
+
+        int[] weights = new int[judgmentMatrix.getItemCount()];
+        Arrays.fill(weights, 1);
+        for (int metric = 0; metric < AgreementStatisticsService.METRICS.length; metric++) {
+            String name = AgreementStatisticsService.METRICS[metric];
+            for (int i = 0; i < RATERS.size(); i++) {
+                for (int j = i + 1; j < RATERS.size(); j++) {
+                    ConfusionMatrix confusionMatrix = judgmentMatrix.toConfusionMatrix(i, j, weights);
+                    double estimate = AgreementStatisticsService.PAIR_METRICS.get(metric).applyAsDouble(confusionMatrix);
+                    double lower = data.getLowerBounds().get(name)[i][j];
+                    double upper = data.getUpperBounds().get(name)[i][j];
+                    assertTrue(lower <= estimate && estimate <= upper, name + " " + lower + " <= " + estimate + " <= " + upper);
+                    assertTrue(lower < upper, name);
+                }
+            }
+        }
+        double estimate = judgmentMatrix.toCoincidenceMatrix(weights).krippendorffAlpha();
+        double lower = data.getLowerBounds().get(AgreementStatisticsService.KRIPPENDORFF_FULL)[0][0];
+        double upper = data.getUpperBounds().get(AgreementStatisticsService.KRIPPENDORFF_FULL)[0][0];
+        assertTrue(lower <= estimate && estimate <= upper, lower + " <= " + estimate + " <= " + upper);
+        assertEquals(CONFIDENCE_LEVEL, (double) data.getConfidenceLevel());
+    }
+
+    @Test
+    void cancelledResamplingThrows() {
+        JudgmentMatrix judgmentMatrix = judgmentMatrix(new Random(4), 100, 0.6);
+        assertThrows(CancellationException.class, () -> bootstrap(judgmentMatrix, ForkJoinPool.commonPool(), () -> true));
+    }
+
+    private AgreementStatisticsData bootstrap(JudgmentMatrix judgmentMatrix, ForkJoinPool pool, BooleanSupplier cancelled) {
+        AgreementStatisticsData data = new AgreementStatisticsData("lemma", AgreementStatisticsService.METRICS, RATERS.size(), 0.0);
+        pool.invoke(ForkJoinTask.adapt(() -> agreementBootstrapService.addConfidenceIntervals(judgmentMatrix, data, CONFIDENCE_LEVEL, cancelled)));
+        return data;
+    }
+
+    /**
+     * @return The judgments of all raters on the given number of pairs of uses, each of which is the judgment of the
+     * pair with the given probability and a random judgment otherwise.
+     */
+    private static JudgmentMatrix judgmentMatrix(Random random, int itemCount, double agreement) {
+        JudgmentMatrix judgmentMatrix = new JudgmentMatrix(RATERS);
+        for (int item = 0; item < itemCount; item++) {
+            int trueJudgment = 1 + random.nextInt(4);
+            for (String rater : RATERS) {
+                int judgment = random.nextDouble() < agreement ? trueJudgment : 1 + random.nextInt(4);
+                judgmentMatrix.add(new AnnotationRow(1, 2 * item, 2 * item + 1, rater, (float) judgment, null));
+            }
+        }
+        return judgmentMatrix;
+    }
+
+    private static void assertBoundsEqual(Map<String, double[][]> expected, Map<String, double[][]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String metric : expected.keySet()) {
+            for (int i = 0; i < expected.get(metric).length; i++) {
+                assertArrayEquals(expected.get(metric)[i], actual.get(metric)[i], metric);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package durel.services.statistics;
+
+import durel.TestProjects;
+import durel.domain.JudgmentChange;
+import durel.domain.model.Lemma;
+import durel.domain.repository.LemmaDAO;
+import durel.services.ProjectService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests on an in-memory H2 database that the incremental updates of the confusion matrices of annotator pairs give
+ * the same cells as the recount from the annotations, also for annotators who judged a pair in both orders.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class AnnotatorPairStatisticsServiceTest {
+
+    @Autowired
+    private AnnotatorPairStatisticsService annotatorPairStatisticsService;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private LemmaDAO lemmaDAO;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void incrementalUpdatesMatchTheRecount() throws Exception {
+        String creator = TestProjects.createAnnotator(jdbcTemplate, "creator");
+        TestProjects.TestLemma testLemma = TestProjects.createProjectWithLemma(jdbcTemplate, creator, 3);
+        int u0 = testLemma.useIds().get(0);
+        int u1 = testLemma.useIds().get(1);
+        int u2 = testLemma.useIds().get(2);
+        String annotator = TestProjects.createAnnotator(jdbcTemplate, "a");
+        String other = TestProjects.createAnnotator(jdbcTemplate, "b");
+        String duplicating = TestProjects.createAnnotator(jdbcTemplate, "c");
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, other, u0, u1, 3);
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, other, u1, u2, 2);
+        // This annotator judged the pair u0-u1 in both orders, so it has no judgment of the pair.
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, duplicating, u0, u1, 3);
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, duplicating, u1, u0, 1);
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, duplicating, u1, u2, 2);
+        annotatorPairStatisticsService.rebuild(projectService.getProject(testLemma.projectName()));
+
+        Lemma lemma = lemmaDAO.findById(testLemma.lemmaId()).orElseThrow();
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, annotator, u1, u0, 2);
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, annotator, u1, u2, 4);
+        annotatorPairStatisticsService.recordJudgmentChanges(lemma, annotator,
+                List.of(new JudgmentChange(u1, u0, null, 2), new JudgmentChange(u1, u2, null, 4)));
+        // A modified judgment, submitted with the uses in the other order.
+        jdbcTemplate.update("update annotation set judgment = 1 where annotator_id = ? and left_sentence_id = ? and right_sentence_id = ?",
+                annotator, u1, u2);
+        annotatorPairStatisticsService.recordJudgmentChanges(lemma, annotator, List.of(new JudgmentChange(u2, u1, 4f, 1)));
+        // The duplicating annotator modifies one of its annotations of u0-u1, which still has no judgment.
+        jdbcTemplate.update("update annotation set judgment = 4 where annotator_id = ? and left_sentence_id = ? and right_sentence_id = ?",
+                duplicating, u1, u0);
+        annotatorPairStatisticsService.recordJudgmentChanges(lemma, duplicating, List.of(new JudgmentChange(u1, u0, 1f, 4)));
+        Map<String, Long> incremental = cells(testLemma.lemmaId());
+
+        annotatorPairStatisticsService.rebuild(projectService.getProject(testLemma.projectName()));
+        Map<String, Long> recounted = cells(testLemma.lemmaId());
+
+        assertEquals(recounted, incremental);
+        assertEquals(Map.of(
+                        cell(annotator, 2, other, 3), 1L,
+                        cell(annotator, 1, other, 2), 1L,
+                        cell(annotator, 1, duplicating, 2), 1L,
+                        cell(other, 2, duplicating, 2), 1L),
+                recounted);
+    }
+
+    /**
+     * @return The counts of the non-empty cells of the lemma, see {@link #cell(String, float, String, float)}.
+     */
+    private Map<String, Long> cells(int lemmaId) {
+        Map<String, Long> cells = new HashMap<>();
+        jdbcTemplate.query("select annotator1_id, judgment1, annotator2_id, judgment2, pair_count from annotator_pair_judgment_count " +
+                "where word_id = ? and pair_count <> 0", resultSet -> {
+            cells.put(cell(resultSet.getString(1), resultSet.getFloat(2), resultSet.getString(3), resultSet.getFloat(4)),
+                    resultSet.getLong(5));
+        }, lemmaId);
+        return cells;
+    }
+
+    private static String cell(String annotator, float judgment, String otherAnnotator, float otherJudgment) {
+        if (annotator.compareTo(otherAnnotator) < 0) {
+            return annotator + "=" + judgment + "," + otherAnnotator + "=" + otherJudgment;
+        }
+        return otherAnnotator + "=" + otherJudgment + "," + annotator + "=" + judgment;
+    }
+}
@@ -0,0 +1,138 @@
+package durel.services.statistics;
+
+import durel.TestProjects;
+import durel.domain.AnnotationsChangedEvent;
+import durel.domain.JudgmentChange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests on an in-memory H2 database that the changed judgments applied to the statistics of a lemma give the same
+ * statistics as the recomputation from the annotations.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LemmaStatisticsServiceTest {
+
+    @Autowired
+    private LemmaStatisticsService lemmaStatisticsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void appliedChangesMatchTheRecomputation() {
+        String creator = TestProjects.createAnnotator(jdbcTemplate, "creator");
+        TestProjects.TestLemma testLemma = TestProjects.createProjectWithLemma(jdbcTemplate, creator, 3);
+        int lemmaId = testLemma.lemmaId();
+        int u0 = testLemma.useIds().get(0);
+        int u1 = testLemma.useIds().get(1);
+        int u2 = testLemma.useIds().get(2);
+        String annotator = TestProjects.createAnnotator(jdbcTemplate, "a");
+        String other = TestProjects.createAnnotator(jdbcTemplate, "b");
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, other, u0, u1, 3);
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, other, u1, u2, 2);
+        lemmaStatisticsService.update(new AnnotationsChangedEvent(List.of(lemmaId)));
+        // A recomputation replaces the statistics of all annotators of the lemma, so that this row only remains if the
+        // changes are applied.
+        String marker = TestProjects.createAnnotator(jdbcTemplate, "marker");
+        jdbcTemplate.update("insert into lemma_annotator_stats values (?, ?, 0, 0, 0, 0, 0, 0, 0, 0)", lemmaId, marker);
+
+        // A pair shared with the other annotator and a new pair.
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, annotator, u1, u0, 2);
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, annotator, u0, u2, 4);
+        write(lemmaId, annotator, new JudgmentChange(u1, u0, null, 2), new JudgmentChange(u0, u2, null, 4));
+        // A modified judgment.
+        jdbcTemplate.update("update annotation set judgment = 0 where annotator_id = ? and left_sentence_id = ? and right_sentence_id = ?",
+                annotator, u0, u2);
+        write(lemmaId, annotator, new JudgmentChange(u0, u2, 4f, 0));
+        // The same pair in the other order, which counts as a second annotation of the pair.
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, annotator, u2, u0, 1.5f);
+        write(lemmaId, annotator, new JudgmentChange(u2, u0, null, 1.5f));
+
+        Map<String, List<Object>> applied = statistics(lemmaId);
+        assertTrue(applied.containsKey(marker));
+        applied.remove(marker);
+
+        jdbcTemplate.update("delete from lemma_stats where word_id = ?", lemmaId);
+        lemmaStatisticsService.update(new AnnotationsChangedEvent(List.of(lemmaId)));
+        Map<String, List<Object>> recomputed = statistics(lemmaId);
+        assertFalse(recomputed.containsKey(marker));
+
+        assertEquals(recomputed, applied);
+        // 5 annotations of which 4 are judged, 3 annotated pairs, of which 2 are shared.
+        assertEquals(List.of(3L, 5L, 4L, 8.5, 3L, 2L), recomputed.get(""));
+        // Judgments 0 to 4, other judgments, sum and annotations of shared pairs.
+        assertEquals(List.of(1L, 0L, 1L, 0L, 0L, 1L, 3.5, 3L), recomputed.get(annotator));
+        assertEquals(List.of(0L, 0L, 1L, 1L, 0L, 0L, 5.0, 1L), recomputed.get(other));
+    }
+
+    @Test
+    void changesOfAnOutdatedVersionAreRecomputed() {
+        String creator = TestProjects.createAnnotator(jdbcTemplate, "creator");
+        TestProjects.TestLemma testLemma = TestProjects.createProjectWithLemma(jdbcTemplate, creator, 2);
+        int lemmaId = testLemma.lemmaId();
+        int u0 = testLemma.useIds().get(0);
+        int u1 = testLemma.useIds().get(1);
+        String annotator = TestProjects.createAnnotator(jdbcTemplate, "a");
+        lemmaStatisticsService.update(new AnnotationsChangedEvent(List.of(lemmaId)));
+
+        // Two writes, of which the event of the second one is handled first.
+        TestProjects.createAnnotation(jdbcTemplate, testLemma, annotator, u0, u1, 4);
+        long firstVersion = incrementAnnotationVersion(lemmaId);
+        jdbcTemplate.update("update annotation set judgment = 1 where annotator_id = ?", annotator);
+        long annotationVersion = incrementAnnotationVersion(lemmaId);
+        lemmaStatisticsService.update(new AnnotationsChangedEvent(List.of(lemmaId), annotationVersion, annotator,
+                List.of(new JudgmentChange(u0, u1, 4f, 1))));
+        lemmaStatisticsService.update(new AnnotationsChangedEvent(List.of(lemmaId), firstVersion, annotator,
+                List.of(new JudgmentChange(u0, u1, null, 4))));
+
+        assertEquals(List.of(annotationVersion, 1L, 1L, 1.0, 1L, 0L), statistics(lemmaId).get(""));
+    }
+
+    /**
+     * Increments the annotation version of the lemma, as the writes of annotations do, and handles the event of the
+     * write.
+     */
+    private void write(int lemmaId, String annotator, JudgmentChange... judgmentChanges) {
+        long annotationVersion = incrementAnnotationVersion(lemmaId);
+        lemmaStatisticsService.update(new AnnotationsChangedEvent(List.of(lemmaId), annotationVersion, annotator, List.of(judgmentChanges)));
+    }
+
+    /**
+     * @return The incremented annotation version of the lemma.
+     */
+    private long incrementAnnotationVersion(int lemmaId) {
+        jdbcTemplate.update("update word set annotation_version = annotation_version + 1 where id = ?", lemmaId);
+        return jdbcTemplate.queryForObject("select annotation_version from word where id = ?", Long.class, lemmaId);
+    }
+
+    /**
+     * @return The stored statistics of the lemma under "" and of its annotators by username.
+     */
+    private Map<String, List<Object>> statistics(int lemmaId) {
+        Map<String, List<Object>> statistics = new HashMap<>();
+        jdbcTemplate.query("select annotation_version, annotation_count, judged_annotation_count, judgment_sum, annotated_pair_count, " +
+                "shared_pair_count from lemma_stats where word_id = ?", resultSet -> {
+            statistics.put("", List.of(resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3), resultSet.getDouble(4),
+                    resultSet.getLong(5), resultSet.getLong(6)));
+        }, lemmaId);
+        jdbcTemplate.query("select annotator_id, judgment0_count, judgment1_count, judgment2_count, judgment3_count, judgment4_count, " +
+                "other_judgment_count, judgment_sum, shared_pair_count from lemma_annotator_stats where word_id = ?", resultSet -> {
+            statistics.put(resultSet.getString(1), List.of(resultSet.getLong(2), resultSet.getLong(3), resultSet.getLong(4),
+                    resultSet.getLong(5), resultSet.getLong(6), resultSet.getLong(7), resultSet.getDouble(8), resultSet.getLong(9)));
+        }, lemmaId);
+        return statistics;
+    }
+}
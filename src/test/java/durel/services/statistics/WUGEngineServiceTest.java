@@ -0,0 +1,168 @@
+package durel.services.statistics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import durel.domain.AnnotationRow;
+import durel.domain.UseNodeRow;
+import durel.utils.CorrelationClustering;
+import durel.utils.UsageGraph;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the nodes and edges written by the engine have the JSON shape of the files of the WUG pipeline, and that
+ * the engine clusters a graph of the pipeline ({@code src/test/resources/wugs}) as the pipeline did.
+ */
+class WUGEngineServiceTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    void nodesHaveTheFieldsOfThePipeline() throws IOException {
+        List<UseNodeRow> uses = List.of(
+                new UseNodeRow(1, "use_1", "A \"quoted\" context\nover two lines.", "1"),
+                new UseNodeRow(2, "use_2", "Ein Kontext mit Umlauten: äöü.", null));
+        StringWriter writer = new StringWriter();
+        WUGEngineService.writeNodes(uses, new int[]{1, 0}, writer);
+
+        JsonNode nodes = OBJECT_MAPPER.readTree(writer.toString());
+        assertTrue(nodes.isArray());
+        assertEquals(2, nodes.size());
+        for (JsonNode node : nodes) {
+            assertEquals(Set.of("id", "label", "group", "grouping", "title"), fieldNames(node));
+            assertTrue(node.get("group").isInt());
+        }
+        assertEquals("use_1", nodes.get(0).get("id").asText());
+        assertEquals("use_1", nodes.get(0).get("label").asText());
+        assertEquals(1, nodes.get(0).get("group").asInt());
+        assertEquals("1", nodes.get(0).get("grouping").asText());
+        assertEquals("A \"quoted\" context\nover two lines.", nodes.get(0).get("title").asText());
+        assertEquals(0, nodes.get(1).get("group").asInt());
+        assertTrue(nodes.get(1).get("grouping").isNull());
+        assertEquals("Ein Kontext mit Umlauten: äöü.", nodes.get(1).get("title").asText());
+    }
+
+    @Test
+    void edgesHaveTheFieldsOfThePipeline() throws IOException {
+        List<UseNodeRow> uses = List.of(new UseNodeRow(1, "use_1", "", null), new UseNodeRow(2, "use_2", "", null));
+        UsageGraph graph = UsageGraph.build(List.of(1, 2), List.of(annotation(2, 1, "a", 4), annotation(1, 2, "b", 1),
+                annotation(1, 2, "c", 3)), UsageGraph.Aggregation.MEDIAN);
+        StringWriter writer = new StringWriter();
+        WUGEngineService.writeEdges(graph, uses, writer);
+
+        JsonNode edges = OBJECT_MAPPER.readTree(writer.toString());
+        assertTrue(edges.isArray());
+        assertEquals(1, edges.size());
+        JsonNode edge = edges.get(0);
+        assertEquals(Set.of("from", "to", "weight", "judgments"), fieldNames(edge));
+        assertEquals(Set.of("use_1", "use_2"), Set.of(edge.get("from").asText(), edge.get("to").asText()));
+        assertEquals(3.0, edge.get("weight").asDouble());
+        assertEquals(List.of(1.0, 3.0, 4.0), judgments(edge));
+    }
+
+    @Test
+    void graphOfThePipelineIsReproduced() throws IOException {
+        JsonNode pipelineNodes = readResource("/wugs/plane_nodes.txt");
+        JsonNode pipelineEdges = readResource("/wugs/plane_edges.txt");
+        List<UseNodeRow> uses = new ArrayList<>();
+        Map<String, Integer> useIds = new HashMap<>();
+        for (JsonNode node : pipelineNodes) {
+            useIds.put(node.get("id").asText(), uses.size());
+            uses.add(new UseNodeRow(uses.size(), node.get("id").asText(), node.get("title").asText(), node.get("grouping").asText()));
+        }
+        // One annotation of a different annotator for each judgment of an edge.
+        List<AnnotationRow> annotationRows = new ArrayList<>();
+        for (JsonNode edge : pipelineEdges) {
+            List<Double> judgments = judgments(edge);
+            for (int annotator = 0; annotator < judgments.size(); annotator++) {
+                annotationRows.add(annotation(useIds.get(edge.get("from").asText()), useIds.get(edge.get("to").asText()),
+                        "a" + annotator, judgments.get(annotator)));
+            }
+        }
+        UsageGraph graph = UsageGraph.build(uses.stream().map(UseNodeRow::id).toList(), annotationRows, UsageGraph.Aggregation.MEDIAN);
+        CorrelationClustering.Result clustering = ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(
+                () -> CorrelationClustering.cluster(graph, 2.5, 16, 0, 100, () -> false)));
+        StringWriter nodesWriter = new StringWriter();
+        WUGEngineService.writeNodes(uses, clustering.clusters(), nodesWriter);
+        StringWriter edgesWriter = new StringWriter();
+        WUGEngineService.writeEdges(graph, uses, edgesWriter);
+        JsonNode nodes = OBJECT_MAPPER.readTree(nodesWriter.toString());
+        JsonNode edges = OBJECT_MAPPER.readTree(edgesWriter.toString());
+
+        assertEquals(0.0, clustering.loss());
+        assertEquals(pipelineNodes.size(), nodes.size());
+        for (int node = 0; node < nodes.size(); node++) {
+            assertEquals(fieldNames(pipelineNodes.get(node)), fieldNames(nodes.get(node)));
+            for (String field : List.of("id", "label", "grouping", "title")) {
+                assertEquals(pipelineNodes.get(node).get(field), nodes.get(node).get(field));
+            }
+        }
+        assertEquals(partition(pipelineNodes), partition(nodes));
+        assertEquals(edgesByPair(pipelineEdges), edgesByPair(edges));
+        for (JsonNode edge : edges) {
+            assertEquals(fieldNames(pipelineEdges.get(0)), fieldNames(edge));
+        }
+    }
+
+    private JsonNode readResource(String name) throws IOException {
+        try (InputStream inputStream = getClass().getResourceAsStream(name)) {
+            return OBJECT_MAPPER.readTree(inputStream);
+        }
+    }
+
+    private static AnnotationRow annotation(int firstUseId, int secondUseId, String annotator, double judgment) {
+        return new AnnotationRow(1, firstUseId, secondUseId, annotator, (float) judgment, null);
+    }
+
+    private static Set<String> fieldNames(JsonNode object) {
+        Set<String> fieldNames = new HashSet<>();
+        object.fieldNames().forEachRemaining(fieldNames::add);
+        return fieldNames;
+    }
+
+    private static List<Double> judgments(JsonNode edge) {
+        List<Double> judgments = new ArrayList<>();
+        for (Iterator<JsonNode> iterator = edge.get("judgments").elements(); iterator.hasNext(); ) {
+            judgments.add(iterator.next().asDouble());
+        }
+        return judgments;
+    }
+
+    /**
+     * @return The clusters of the nodes as sets of their ids, independent of the numbering of the groups.
+     */
+    private static Set<Set<String>> partition(JsonNode nodes) {
+        Map<Integer, Set<String>> clusters = new HashMap<>();
+        for (JsonNode node : nodes) {
+            clusters.computeIfAbsent(node.get("group").asInt(), group -> new HashSet<>()).add(node.get("id").asText());
+        }
+        return new HashSet<>(clusters.values());
+    }
+
+    /**
+     * @return The weight and judgments of the edges by the ids of their uses, independent of the direction of the edges.
+     */
+    private static Map<Set<String>, List<Object>> edgesByPair(JsonNode edges) {
+        Map<Set<String>, List<Object>> edgesByPair = new HashMap<>();
+        for (JsonNode edge : edges) {
+            edgesByPair.put(Set.of(edge.get("from").asText(), edge.get("to").asText()),
+                    List.of(edge.get("weight").asDouble(), judgments(edge)));
+        }
+        return edgesByPair;
+    }
+}
@@ -0,0 +1,134 @@
+package durel.utils;
+
+import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
+import org.dkpro.statistics.agreement.coding.CohenKappaAgreement;
+import org.dkpro.statistics.agreement.coding.KrippendorffAlphaAgreement;
+import org.dkpro.statistics.correlation.PearsonCorrelation;
+import org.dkpro.statistics.correlation.SpearmansRankCorrelation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the agreement statistics on random studies, compared with the computations they replaced:
+ * <ul>
+ *     <li>Krippendorff's &alpha; of a rater and the mean of the raters with {@link OrdinalDistanceFunctionWithDoubles}
+ *     and with {@link PreviousOrdinalDistanceFunction}, which counts the whole study on every distance, and from the
+ *     confusion matrices of the raters and the mean, which are kept in the summary of a lemma.</li>
+ *     <li>Krippendorff's &alpha; of all raters from the coincidence matrix of the judgment matrix.</li>
+ *     <li>The metrics of a pair of raters from the {@link ConfusionMatrix} of a {@link JudgmentMatrix}, and from
+ *     boxed lists and a DKPro study, as before the judgment matrix.</li>
+ * </ul>
+ * Run it with JMH after {@code mvn test-compile}, which generates the benchmarks, with the test classpath, e.g.:
+ * <pre>
+ * mvn dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/classpath.txt) org.openjdk.jmh.Main AgreementBenchmark -p itemCount=100000
+ * </pre>
+ * The parameter is the number of items (pairs of uses), 100,000 by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AgreementBenchmark {
+
+    @Param("100000")
+    private int itemCount;
+
+    private JudgmentMatrix judgmentMatrix;
+
+    private CodingAnnotationStudy meanStudy;
+
+    private int[] weights;
+
+    @Setup
+    public void createStudies() {
+        judgmentMatrix = JudgmentMatrixTest.randomJudgmentMatrix(new Random(42), itemCount);
+        meanStudy = new CodingAnnotationStudy(2);
+        double[] firstColumn = judgmentMatrix.column(0);
+        double[] means = judgmentMatrix.meanOfRaters();
+        for (int item = 0; item < firstColumn.length; item++) {
+            if (!Double.isNaN(firstColumn[item])) {
+                meanStudy.addItem(firstColumn[item], means[item]);
+            }
+        }
+        weights = new int[judgmentMatrix.getItemCount()];
+        Arrays.fill(weights, 1);
+    }
+
+    @Benchmark
+    public double alphaWithTheMeanPrecomputedDistances() {
+        return new KrippendorffAlphaAgreement(meanStudy, new OrdinalDistanceFunctionWithDoubles()).calculateAgreement();
+    }
+
+    @Benchmark
+    public double alphaWithTheMeanPreviousDistances() {
+        return new KrippendorffAlphaAgreement(meanStudy, new PreviousOrdinalDistanceFunction()).calculateAgreement();
+    }
+
+    @Benchmark
+    public double alphaWithTheMeanConfusionMatrices() {
+        return judgmentMatrix.toMeanConfusionMatrices()[0].krippendorffAlpha();
+    }
+
+    @Benchmark
+    public double alphaOfAllRatersCoincidenceMatrix() {
+        return judgmentMatrix.toCoincidenceMatrix(weights).krippendorffAlpha();
+    }
+
+    @Benchmark
+    public double pairMetricsConfusionMatrix() {
+        ConfusionMatrix confusionMatrix = judgmentMatrix.toConfusionMatrix(0, 1, weights);
+        return confusionMatrix.krippendorffAlpha() + confusionMatrix.cohenKappa() + confusionMatrix.pearsonCorrelation()
+                + confusionMatrix.spearmansRankCorrelation() + confusionMatrix.hammingLoss();
+    }
+
+    @Benchmark
+    public double pairMetricsBoxedListsAndDkpro() {
+        return boxedPairMetrics(judgmentMatrix.column(0), judgmentMatrix.column(1));
+    }
+
+    /**
+     * The metrics of a pair of raters as computed before the judgment matrix: a DKPro study and boxed lists of the
+     * items judged by both.
+     */
+    private static double boxedPairMetrics(double[] firstColumn, double[] secondColumn) {
+        CodingAnnotationStudy study = new CodingAnnotationStudy(2);
+        List<Double> first = new ArrayList<>();
+        List<Double> second = new ArrayList<>();
+        for (int item = 0; item < firstColumn.length; item++) {
+            if (!Double.isNaN(firstColumn[item]) && !Double.isNaN(secondColumn[item])) {
+                study.addItem(firstColumn[item], secondColumn[item]);
+                first.add(firstColumn[item]);
+                second.add(secondColumn[item]);
+            }
+        }
+        int differing = 0;
+        for (int item = 0; item < first.size(); item++) {
+            if (!first.get(item).equals(second.get(item))) {
+                differing++;
+            }
+        }
+        return new KrippendorffAlphaAgreement(study, new PreviousOrdinalDistanceFunction()).calculateAgreement()
+                + new CohenKappaAgreement(study).calculateAgreement()
+                + PearsonCorrelation.computeCorrelation(first, second)
+                + SpearmansRankCorrelation.computeCorrelation(first, second)
+                + differing / (double) first.size();
+    }
+}
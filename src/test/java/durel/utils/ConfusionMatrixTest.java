@@ -0,0 +1,113 @@
+package durel.utils;
+
+import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
+import org.dkpro.statistics.agreement.coding.CohenKappaAgreement;
+import org.dkpro.statistics.agreement.coding.KrippendorffAlphaAgreement;
+import org.dkpro.statistics.agreement.distance.OrdinalDistanceFunction;
+import org.dkpro.statistics.correlation.PearsonCorrelation;
+import org.dkpro.statistics.correlation.SpearmansRankCorrelation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfusionMatrixTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void metricsMatchDkpro() {
+        Random random = new Random(19);
+        for (int round = 0; round < 50; round++) {
+            ConfusionMatrix confusionMatrix = new ConfusionMatrix();
+            CodingAnnotationStudy doubleStudy = new CodingAnnotationStudy(2);
+            CodingAnnotationStudy integerStudy = new CodingAnnotationStudy(2);
+            List<Double> first = new ArrayList<>();
+            List<Double> second = new ArrayList<>();
+            int pairCount = 20 + random.nextInt(300);
+            for (int pair = 0; pair < pairCount; pair++) {
+                int firstJudgment = random.nextInt(5);
+                int secondJudgment = random.nextDouble() < 0.6 ? firstJudgment : random.nextInt(5);
+                confusionMatrix.add(firstJudgment, secondJudgment, 1);
+                doubleStudy.addItem((double) firstJudgment, (double) secondJudgment);
+                integerStudy.addItem(firstJudgment, secondJudgment);
+                first.add((double) firstJudgment);
+                second.add((double) secondJudgment);
+            }
+            assertEquals(pairCount, confusionMatrix.getPairCount());
+            assertMetricsMatch(confusionMatrix, doubleStudy, first, second);
+            assertEquals(new KrippendorffAlphaAgreement(integerStudy, new OrdinalDistanceFunction()).calculateAgreement(),
+                    confusionMatrix.krippendorffAlpha(), DELTA);
+        }
+    }
+
+    @Test
+    void mergedMatricesMatchTheMatrixOfAllPairs() {
+        Random random = new Random(8);
+        ConfusionMatrix all = new ConfusionMatrix();
+        ConfusionMatrix merged = new ConfusionMatrix();
+        CodingAnnotationStudy study = new CodingAnnotationStudy(2);
+        List<Double> first = new ArrayList<>();
+        List<Double> second = new ArrayList<>();
+        for (int lemma = 0; lemma < 10; lemma++) {
+            // The lemmas do not use all judgments, so that merging adds categories.
+            ConfusionMatrix lemmaMatrix = new ConfusionMatrix();
+            int lowest = random.nextInt(3);
+            for (int pair = 0; pair < 30; pair++) {
+                int firstJudgment = lowest + random.nextInt(3);
+                int secondJudgment = random.nextDouble() < 0.5 ? firstJudgment : lowest + random.nextInt(3);
+                lemmaMatrix.add(firstJudgment, secondJudgment, 1);
+                all.add(firstJudgment, secondJudgment, 1);
+                study.addItem((double) firstJudgment, (double) secondJudgment);
+                first.add((double) firstJudgment);
+                second.add((double) secondJudgment);
+            }
+            merged.merge(lemmaMatrix);
+        }
+        assertEquals(all.getPairCount(), merged.getPairCount());
+        assertMetricsMatch(merged, study, first, second);
+        assertEquals(all.krippendorffAlpha(), merged.krippendorffAlpha(), DELTA);
+    }
+
+    @Test
+    void addingASmallerSecondCategoryKeepsTheFirst() {
+        ConfusionMatrix confusionMatrix = new ConfusionMatrix();
+        confusionMatrix.add(3, 1, 1);
+        confusionMatrix.add(2.5, 0.5, 1);
+        assertEquals(1.0, confusionMatrix.hammingLoss());
+        assertEquals(1.0, confusionMatrix.pearsonCorrelation(), DELTA);
+    }
+
+    @Test
+    void emptyMatrixHasNoAgreement() {
+        ConfusionMatrix confusionMatrix = new ConfusionMatrix();
+        assertEquals(0, confusionMatrix.getPairCount());
+        assertTrue(Double.isNaN(confusionMatrix.krippendorffAlpha()));
+        assertTrue(Double.isNaN(confusionMatrix.cohenKappa()));
+        assertTrue(Double.isNaN(confusionMatrix.pearsonCorrelation()));
+        assertTrue(Double.isNaN(confusionMatrix.spearmansRankCorrelation()));
+        assertTrue(Double.isNaN(confusionMatrix.hammingLoss()));
+    }
+
+    /**
+     * Asserts that the metrics of the matrix are those of DKPro for the same pairs of judgments.
+     */
+    static void assertMetricsMatch(ConfusionMatrix confusionMatrix, CodingAnnotationStudy study, List<Double> first, List<Double> second) {
+        assertEquals(new KrippendorffAlphaAgreement(study, new OrdinalDistanceFunctionWithDoubles()).calculateAgreement(),
+                confusionMatrix.krippendorffAlpha(), DELTA);
+        assertEquals(new CohenKappaAgreement(study).calculateAgreement(), confusionMatrix.cohenKappa(), DELTA);
+        assertEquals(PearsonCorrelation.computeCorrelation(first, second), confusionMatrix.pearsonCorrelation(), DELTA);
+        assertEquals(SpearmansRankCorrelation.computeCorrelation(first, second), confusionMatrix.spearmansRankCorrelation(), DELTA);
+        int differing = 0;
+        for (int pair = 0; pair < first.size(); pair++) {
+            if (!first.get(pair).equals(second.get(pair))) {
+                differing++;
+            }
+        }
+        assertEquals(differing / (double) first.size(), confusionMatrix.hammingLoss(), DELTA);
+    }
+}
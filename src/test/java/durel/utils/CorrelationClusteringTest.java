@@ -0,0 +1,152 @@
+package durel.utils;
+
+import durel.domain.AnnotationRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CorrelationClusteringTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static final double THRESHOLD = 2.5;
+
+    @Test
+    void plantedClustersAreFoundWithoutLoss() {
+        // Three senses of five uses each; uses of the same sense are judged 4 or 3, of different senses 1 or 2.
+        Random random = new Random(1);
+        List<AnnotationRow> annotationRows = new ArrayList<>();
+        for (int first = 0; first < 15; first++) {
+            for (int second = first + 1; second < 15; second++) {
+                boolean sameSense = first / 5 == second / 5;
+                annotationRows.add(UsageGraphTest.annotation(first, second, "a", sameSense ? 3 + random.nextInt(2) : 1 + random.nextInt(2)));
+            }
+        }
+        UsageGraph graph = UsageGraph.build(useIds(15), annotationRows, UsageGraph.Aggregation.MEDIAN);
+
+        CorrelationClustering.Result result = cluster(graph, ForkJoinPool.commonPool(), 8, 0);
+
+        assertEquals(0.0, result.loss(), DELTA);
+        assertArrayEquals(new int[]{0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 2, 2, 2, 2, 2}, result.clusters());
+    }
+
+    @Test
+    void lossIsTheSumOfTheViolatedDistancesToTheThreshold() {
+        Random random = new Random(5);
+        for (int round = 0; round < 20; round++) {
+            UsageGraph graph = randomGraph(random, 10 + random.nextInt(40), 0.3);
+            CorrelationClustering.Result result = cluster(graph, ForkJoinPool.commonPool(), 4, round);
+            assertEquals(loss(graph, result.clusters()), result.loss(), DELTA);
+        }
+    }
+
+    @Test
+    void lossIsMinimalOnSmallGraphs() {
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            UsageGraph graph = randomGraph(random, 7, 0.7);
+            CorrelationClustering.Result result = cluster(graph, ForkJoinPool.commonPool(), 32, round);
+            assertEquals(minimalLoss(graph, new int[graph.getNodeCount()], 0, 0), result.loss(), DELTA);
+        }
+    }
+
+    @Test
+    void sameSeedGivesTheSameClusteringOnAnyPool() {
+        UsageGraph graph = randomGraph(new Random(7), 200, 0.1);
+        ForkJoinPool sequentialPool = new ForkJoinPool(1);
+        ForkJoinPool parallelPool = new ForkJoinPool(4);
+        try {
+            CorrelationClustering.Result expected = cluster(graph, sequentialPool, 16, 42);
+            for (int run = 0; run < 3; run++) {
+                CorrelationClustering.Result result = cluster(graph, parallelPool, 16, 42);
+                assertArrayEquals(expected.clusters(), result.clusters());
+                assertEquals(expected.loss(), result.loss());
+            }
+        } finally {
+            sequentialPool.shutdownNow();
+            parallelPool.shutdownNow();
+        }
+    }
+
+    @Test
+    void cancelledClusteringThrows() {
+        UsageGraph graph = randomGraph(new Random(9), 50, 0.2);
+        assertThrows(CancellationException.class, () -> ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(
+                () -> CorrelationClustering.cluster(graph, THRESHOLD, 4, 0, 100, () -> true))));
+    }
+
+    @Test
+    void emptyGraphHasOneEmptyClustering() {
+        UsageGraph graph = UsageGraph.build(List.of(), List.of(), UsageGraph.Aggregation.MEDIAN);
+        CorrelationClustering.Result result = cluster(graph, ForkJoinPool.commonPool(), 4, 0);
+        assertEquals(0, result.clusters().length);
+        assertEquals(0.0, result.loss());
+    }
+
+    private static CorrelationClustering.Result cluster(UsageGraph graph, ForkJoinPool pool, int restarts, long seed) {
+        return pool.invoke(ForkJoinTask.adapt(() -> CorrelationClustering.cluster(graph, THRESHOLD, restarts, seed, 100, () -> false)));
+    }
+
+    /**
+     * @return A graph in which each pair of uses is judged by one to three annotators with the given probability.
+     */
+    static UsageGraph randomGraph(Random random, int nodeCount, double density) {
+        List<AnnotationRow> annotationRows = new ArrayList<>();
+        for (int first = 0; first < nodeCount; first++) {
+            for (int second = first + 1; second < nodeCount; second++) {
+                if (random.nextDouble() < density) {
+                    int annotatorCount = 1 + random.nextInt(3);
+                    for (int annotator = 0; annotator < annotatorCount; annotator++) {
+                        annotationRows.add(UsageGraphTest.annotation(first, second, "a" + annotator, 1 + random.nextInt(4)));
+                    }
+                }
+            }
+        }
+        return UsageGraph.build(useIds(nodeCount), annotationRows, UsageGraph.Aggregation.MEDIAN);
+    }
+
+    private static List<Integer> useIds(int count) {
+        List<Integer> useIds = new ArrayList<>();
+        for (int use = 0; use < count; use++) {
+            useIds.add(use);
+        }
+        return useIds;
+    }
+
+    private static double loss(UsageGraph graph, int[] clusters) {
+        double loss = 0.0;
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            double distance = graph.getEdgeWeight(edge) - THRESHOLD;
+            boolean sameCluster = clusters[graph.getEdgeSource(edge)] == clusters[graph.getEdgeTarget(edge)];
+            if (sameCluster ? distance < 0.0 : distance > 0.0) {
+                loss += Math.abs(distance);
+            }
+        }
+        return loss;
+    }
+
+    /**
+     * @return The minimal loss of all clusterings of the nodes from the given node on, enumerated as restricted growth
+     * strings.
+     */
+    private static double minimalLoss(UsageGraph graph, int[] clusters, int node, int clusterCount) {
+        if (node == clusters.length) {
+            return loss(graph, clusters);
+        }
+        double minimalLoss = Double.MAX_VALUE;
+        for (int cluster = 0; cluster <= clusterCount; cluster++) {
+            clusters[node] = cluster;
+            minimalLoss = Math.min(minimalLoss, minimalLoss(graph, clusters, node + 1, Math.max(clusterCount, cluster + 1)));
+        }
+        return minimalLoss;
+    }
+}
@@ -0,0 +1,169 @@
+package durel.utils;
+
+import durel.domain.AnnotationRow;
+import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
+import org.dkpro.statistics.agreement.coding.KrippendorffAlphaAgreement;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JudgmentMatrixTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static final List<String> RATERS = List.of("a", "b", "c");
+
+    @Test
+    void pairsAreUnorderedAndSeveralAnnotationsOfACellAreMissing() {
+        JudgmentMatrix judgmentMatrix = new JudgmentMatrix(RATERS);
+        judgmentMatrix.add(row(1, 2, "a", 3));
+        judgmentMatrix.add(row(2, 1, "b", 4));
+        // The pair is annotated by c in both orders.
+        judgmentMatrix.add(row(1, 2, "c", 1));
+        judgmentMatrix.add(row(2, 1, "c", 2));
+        // Annotators that are not raters are ignored.
+        judgmentMatrix.add(row(1, 3, "d", 2));
+
+        assertEquals(1, judgmentMatrix.getItemCount());
+        assertEquals(3.0, judgmentMatrix.get(0, 0));
+        assertEquals(4.0, judgmentMatrix.get(0, 1));
+        assertTrue(Double.isNaN(judgmentMatrix.get(0, 2)));
+        assertEquals(4.0, judgmentMatrix.getAverageAnnotationNumber());
+        assertEquals(3.5, judgmentMatrix.meanOfRaters()[0], DELTA);
+    }
+
+    @Test
+    void confusionMatricesMatchDkproOnTheItemsJudgedByBoth() {
+        JudgmentMatrix judgmentMatrix = randomJudgmentMatrix(new Random(17), 400);
+        int[] weights = new int[judgmentMatrix.getItemCount()];
+        Arrays.fill(weights, 1);
+        for (int first = 0; first < RATERS.size(); first++) {
+            for (int second = first + 1; second < RATERS.size(); second++) {
+                CodingAnnotationStudy study = new CodingAnnotationStudy(2);
+                List<Double> firstJudgments = new ArrayList<>();
+                List<Double> secondJudgments = new ArrayList<>();
+                double[] firstColumn = judgmentMatrix.column(first);
+                double[] secondColumn = judgmentMatrix.column(second);
+                for (int item = 0; item < judgmentMatrix.getItemCount(); item++) {
+                    if (!Double.isNaN(firstColumn[item]) && !Double.isNaN(secondColumn[item])) {
+                        study.addItem(firstColumn[item], secondColumn[item]);
+                        firstJudgments.add(firstColumn[item]);
+                        secondJudgments.add(secondColumn[item]);
+                    }
+                }
+                ConfusionMatrix confusionMatrix = judgmentMatrix.toConfusionMatrix(first, second, weights);
+                assertEquals(firstJudgments.size(), confusionMatrix.getPairCount());
+                ConfusionMatrixTest.assertMetricsMatch(confusionMatrix, study, firstJudgments, secondJudgments);
+            }
+        }
+    }
+
+    @Test
+    void meanOfRatersAveragesTheJudgmentsOfEachItem() {
+        JudgmentMatrix judgmentMatrix = randomJudgmentMatrix(new Random(5), 100);
+        double[] means = judgmentMatrix.meanOfRaters();
+        for (int item = 0; item < judgmentMatrix.getItemCount(); item++) {
+            int finalItem = item;
+            double expected = Arrays.stream(new int[]{0, 1, 2})
+                    .mapToDouble(rater -> judgmentMatrix.get(finalItem, rater))
+                    .filter(judgment -> !Double.isNaN(judgment))
+                    .average().orElse(0.0);
+            assertEquals(expected, means[item], DELTA);
+        }
+    }
+
+    @Test
+    void meanConfusionMatricesMatchDkproOnTheItemsJudgedByTheRater() {
+        JudgmentMatrix judgmentMatrix = randomJudgmentMatrix(new Random(23), 300);
+        double[] means = judgmentMatrix.meanOfRaters();
+        ConfusionMatrix[] meanMatrices = judgmentMatrix.toMeanConfusionMatrices();
+        for (int rater = 0; rater < RATERS.size(); rater++) {
+            CodingAnnotationStudy study = new CodingAnnotationStudy(2);
+            List<Double> judgments = new ArrayList<>();
+            List<Double> meanJudgments = new ArrayList<>();
+            for (int item = 0; item < judgmentMatrix.getItemCount(); item++) {
+                double judgment = judgmentMatrix.get(item, rater);
+                if (!Double.isNaN(judgment)) {
+                    study.addItem(judgment, means[item]);
+                    judgments.add(judgment);
+                    meanJudgments.add(means[item]);
+                }
+            }
+            assertEquals(judgments.size(), meanMatrices[rater].getPairCount());
+            ConfusionMatrixTest.assertMetricsMatch(meanMatrices[rater], study, judgments, meanJudgments);
+        }
+    }
+
+    @Test
+    void coincidenceMatrixMatchesDkproWithMissingJudgments() {
+        JudgmentMatrix judgmentMatrix = randomJudgmentMatrix(new Random(29), 400);
+        // DKPro counts the values of items with a single judgment for the distances, Krippendorff does not, so the
+        // study only has the items with at least two judgments. The other items must not change the coincidences.
+        CodingAnnotationStudy study = new CodingAnnotationStudy(RATERS.size());
+        for (int item = 0; item < judgmentMatrix.getItemCount(); item++) {
+            Object[] annotations = new Object[RATERS.size()];
+            int judgmentCount = 0;
+            for (int rater = 0; rater < RATERS.size(); rater++) {
+                double judgment = judgmentMatrix.get(item, rater);
+                if (!Double.isNaN(judgment)) {
+                    annotations[rater] = judgment;
+                    judgmentCount++;
+                }
+            }
+            if (judgmentCount >= 2) {
+                study.addItemAsArray(annotations);
+            }
+        }
+        int[] weights = new int[judgmentMatrix.getItemCount()];
+        Arrays.fill(weights, 1);
+        assertEquals(new KrippendorffAlphaAgreement(study, new OrdinalDistanceFunctionWithDoubles()).calculateAgreement(),
+                judgmentMatrix.toCoincidenceMatrix(weights).krippendorffAlpha(), DELTA);
+    }
+
+    @Test
+    void coincidenceMatrixWeightsEachItemByItsNumberOfJudgments() {
+        JudgmentMatrix judgmentMatrix = new JudgmentMatrix(RATERS);
+        judgmentMatrix.add(row(1, 2, "a", 1));
+        judgmentMatrix.add(row(1, 2, "b", 2));
+        judgmentMatrix.add(row(1, 2, "c", 2));
+        judgmentMatrix.add(row(3, 4, "a", 4));
+        judgmentMatrix.add(row(3, 4, "b", 4));
+        // A single judgment is not pairable.
+        judgmentMatrix.add(row(5, 6, "c", 3));
+
+        // The three pairs of the first item have the weight 1/2 and the pair of the second item 1, so that the matrix
+        // plus its transpose has one coincidence per pairable value.
+        assertEquals(2.5, judgmentMatrix.toCoincidenceMatrix(new int[]{1, 1, 1}).getPairCount(), DELTA);
+        // The second item is drawn twice.
+        assertEquals(2.0, judgmentMatrix.toCoincidenceMatrix(new int[]{0, 2, 1}).getPairCount(), DELTA);
+    }
+
+    /**
+     * A matrix of the raters with random whole-number judgments, of which about a quarter are missing.
+     */
+    static JudgmentMatrix randomJudgmentMatrix(Random random, int itemCount) {
+        JudgmentMatrix judgmentMatrix = new JudgmentMatrix(RATERS);
+        for (int item = 0; item < itemCount; item++) {
+            int trueJudgment = 1 + random.nextInt(4);
+            for (String rater : RATERS) {
+                if (random.nextDouble() < 0.75) {
+                    int judgment = random.nextDouble() < 0.6 ? trueJudgment : 1 + random.nextInt(4);
+                    // The uses of the pair are in either order.
+                    judgmentMatrix.add(random.nextBoolean() ? row(2 * item, 2 * item + 1, rater, judgment)
+                            : row(2 * item + 1, 2 * item, rater, judgment));
+                }
+            }
+        }
+        return judgmentMatrix;
+    }
+
+    private static AnnotationRow row(int firstUseId, int secondUseId, String annotator, float judgment) {
+        return new AnnotationRow(1, firstUseId, secondUseId, annotator, judgment, null);
+    }
+}
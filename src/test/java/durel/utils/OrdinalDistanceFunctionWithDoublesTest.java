@@ -0,0 +1,67 @@
+package durel.utils;
+
+import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
+import org.dkpro.statistics.agreement.coding.KrippendorffAlphaAgreement;
+import org.dkpro.statistics.agreement.distance.OrdinalDistanceFunction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrdinalDistanceFunctionWithDoublesTest {
+
+    private static final double DELTA = 1e-9;
+
+    // Whole-number judgments, the mean values of the agreement with the mean, and the special categories.
+    private static final double[] VALUES = {0.0, 1.0, 2.0, 3.0, 4.0, 1.5, 2.5, 3.5, 4.0 / 3.0, 8.0 / 3.0, -0.0, -1.0, Double.NaN};
+
+    @Test
+    void distancesMatchThePreviousImplementation() {
+        Random random = new Random(20);
+        for (int round = 0; round < 20; round++) {
+            CodingAnnotationStudy study = new CodingAnnotationStudy(3);
+            int itemCount = 10 + random.nextInt(200);
+            for (int item = 0; item < itemCount; item++) {
+                study.addItem(randomValue(random), randomValue(random), randomValue(random));
+            }
+            List<Object> categories = new ArrayList<>(CodingAnnotationStudy.countTotalAnnotationsPerCategory(study).keySet());
+            OrdinalDistanceFunctionWithDoubles distanceFunction = new OrdinalDistanceFunctionWithDoubles();
+            PreviousOrdinalDistanceFunction previousDistanceFunction = new PreviousOrdinalDistanceFunction();
+            for (Object category1 : categories) {
+                for (Object category2 : categories) {
+                    assertEquals(previousDistanceFunction.measureDistance(study, category1, category2),
+                            distanceFunction.measureDistance(study, category1, category2), DELTA,
+                            "Distance of " + category1 + " and " + category2);
+                }
+            }
+            assertEquals(new KrippendorffAlphaAgreement(study, previousDistanceFunction).calculateAgreement(),
+                    new KrippendorffAlphaAgreement(study, distanceFunction).calculateAgreement(), DELTA);
+        }
+    }
+
+    @Test
+    void alphaMatchesTheOrdinalDistanceOfDkproForWholeNumbers() {
+        Random random = new Random(17);
+        for (int round = 0; round < 20; round++) {
+            // DKPro's ordinal distance is defined for Integer categories, so the same judgments are added as both.
+            CodingAnnotationStudy integerStudy = new CodingAnnotationStudy(2);
+            CodingAnnotationStudy doubleStudy = new CodingAnnotationStudy(2);
+            int itemCount = 10 + random.nextInt(200);
+            for (int item = 0; item < itemCount; item++) {
+                int first = random.nextInt(5);
+                int second = random.nextDouble() < 0.5 ? first : random.nextInt(5);
+                integerStudy.addItem(first, second);
+                doubleStudy.addItem((double) first, (double) second);
+            }
+            assertEquals(new KrippendorffAlphaAgreement(integerStudy, new OrdinalDistanceFunction()).calculateAgreement(),
+                    new KrippendorffAlphaAgreement(doubleStudy, new OrdinalDistanceFunctionWithDoubles()).calculateAgreement(), DELTA);
+        }
+    }
+
+    private static Double randomValue(Random random) {
+        return VALUES[random.nextInt(VALUES.length)];
+    }
+}
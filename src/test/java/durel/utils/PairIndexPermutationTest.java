@@ -0,0 +1,88 @@
+package durel.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PairIndexPermutationTest {
+
+    @Test
+    void permutationIsABijectionOfAllPairIndexes() {
+        for (int n = 0; n <= 40; n++) {
+            for (long seed = 0; seed < 5; seed++) {
+                PairIndexPermutation permutation = new PairIndexPermutation(n, seed);
+                assertEquals((long) n * (n - 1) / 2, permutation.size());
+                BitSet seen = new BitSet();
+                for (long k = 0; k < permutation.size(); k++) {
+                    long pairIndex = permutation.pairIndexAt(k);
+                    assertTrue(pairIndex >= 0 && pairIndex < permutation.size(), "n=" + n + ", k=" + k);
+                    assertFalse(seen.get((int) pairIndex), "n=" + n + ", k=" + k);
+                    seen.set((int) pairIndex);
+                }
+                assertEquals(permutation.size(), seen.cardinality());
+            }
+        }
+    }
+
+    @Test
+    void everyPairIsHandedOutOnce() {
+        // An odd number of uses, whose index space is not a power of two.
+        int n = 7;
+        PairIndexPermutation permutation = new PairIndexPermutation(n, 42);
+        boolean[][] seen = new boolean[n][n];
+        for (long k = 0; k < permutation.size(); k++) {
+            int[] pair = permutation.pairAt(k);
+            assertTrue(0 <= pair[0] && pair[0] < pair[1] && pair[1] < n);
+            assertFalse(seen[pair[0]][pair[1]]);
+            seen[pair[0]][pair[1]] = true;
+        }
+    }
+
+    @Test
+    void sameSeedGivesTheSameOrder() {
+        PairIndexPermutation permutation = new PairIndexPermutation(101, 7);
+        PairIndexPermutation resumed = new PairIndexPermutation(101, 7);
+        PairIndexPermutation other = new PairIndexPermutation(101, 8);
+        boolean differs = false;
+        for (long k = 0; k < permutation.size(); k++) {
+            assertEquals(permutation.pairIndexAt(k), resumed.pairIndexAt(k));
+            differs |= permutation.pairIndexAt(k) != other.pairIndexAt(k);
+        }
+        assertTrue(differs);
+        // A position can be read without the positions before it, as when a sequence is resumed.
+        assertEquals(permutation.pairIndexAt(4000), new PairIndexPermutation(101, 7).pairIndexAt(4000));
+    }
+
+    @Test
+    void rankAndUnrankAreInverse() {
+        PairIndexPermutation permutation = new PairIndexPermutation(2, 0);
+        long index = 0;
+        for (int j = 1; j < 300; j++) {
+            for (int i = 0; i < j; i++) {
+                assertEquals(index, PairIndexPermutation.rank(i, j));
+                assertArrayEquals(new int[]{i, j}, permutation.unrank(index));
+                index++;
+            }
+        }
+        // Indexes beyond the exact range of the square root in double precision.
+        int j = 3_000_000;
+        int i = 2_999_998;
+        assertArrayEquals(new int[]{i, j}, permutation.unrank(PairIndexPermutation.rank(i, j)));
+        assertArrayEquals(new int[]{0, j}, permutation.unrank(PairIndexPermutation.rank(0, j)));
+    }
+
+    @Test
+    void positionsOutsideTheSequenceAreRejected() {
+        PairIndexPermutation permutation = new PairIndexPermutation(3, 0);
+        assertThrows(IndexOutOfBoundsException.class, () -> permutation.pairIndexAt(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> permutation.pairIndexAt(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> new PairIndexPermutation(1, 0).pairAt(0));
+        assertThrows(IllegalArgumentException.class, () -> new PairIndexPermutation(-1, 0));
+    }
+}
@@ -0,0 +1,95 @@
+package durel.utils;
+
+import durel.domain.AnnotationRow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a {@link UsageGraph} and clustering it with {@link CorrelationClustering}, with the defaults of
+ * the engine (64 restarts, at most 100 passes), on random graphs of growing size. The uses belong to planted senses,
+ * and each use is judged against a fixed number of random other uses by one to three annotators, as in a project with
+ * sampled pairs. The clustering runs on the common pool.
+ * Run it with JMH after {@code mvn test-compile}, which generates the benchmarks, with the test classpath, e.g.:
+ * <pre>
+ * mvn dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/classpath.txt) org.openjdk.jmh.Main UsageGraphBenchmark -p useCount=100,1000,10000
+ * </pre>
+ * The parameter is the number of uses, 100, 1,000 and 10,000 by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UsageGraphBenchmark {
+
+    // The number of other uses each use is judged against.
+    private static final int PAIRS_PER_USE = 10;
+
+    private static final int SENSES = 5;
+
+    @Param({"100", "1000", "10000"})
+    private int useCount;
+
+    private List<Integer> useIds;
+
+    private List<AnnotationRow> annotationRows;
+
+    private UsageGraph graph;
+
+    @Setup
+    public void createGraph() {
+        useIds = new ArrayList<>();
+        for (int use = 0; use < useCount; use++) {
+            useIds.add(use);
+        }
+        annotationRows = randomAnnotations(new Random(42), useCount);
+        graph = UsageGraph.build(useIds, annotationRows, UsageGraph.Aggregation.MEDIAN);
+    }
+
+    @Benchmark
+    public UsageGraph buildTheGraph() {
+        return UsageGraph.build(useIds, annotationRows, UsageGraph.Aggregation.MEDIAN);
+    }
+
+    @Benchmark
+    public double clusterTheGraph() {
+        return ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(
+                () -> CorrelationClustering.cluster(graph, 2.5, 64, 0, 100, () -> false))).loss();
+    }
+
+    private static List<AnnotationRow> randomAnnotations(Random random, int useCount) {
+        List<AnnotationRow> annotationRows = new ArrayList<>();
+        for (int use = 0; use < useCount; use++) {
+            for (int pair = 0; pair < PAIRS_PER_USE; pair++) {
+                int other = random.nextInt(useCount);
+                boolean sameSense = use % SENSES == other % SENSES;
+                int annotatorCount = 1 + random.nextInt(3);
+                for (int annotator = 0; annotator < annotatorCount; annotator++) {
+                    // Mostly 3 or 4 for uses of the same sense and 1 or 2 otherwise, with some noise.
+                    int judgment = random.nextDouble() < 0.1 ? 1 + random.nextInt(4) : (sameSense ? 3 : 1) + random.nextInt(2);
+                    annotationRows.add(new AnnotationRow(1, use, other, "a" + annotator, (float) judgment, null));
+                }
+            }
+        }
+        return annotationRows;
+    }
+}
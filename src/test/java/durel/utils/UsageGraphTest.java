@@ -0,0 +1,112 @@
+package durel.utils;
+
+import durel.domain.AnnotationRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UsageGraphTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void judgmentsOfAPairInEitherOrderAreOneEdge() {
+        List<AnnotationRow> annotationRows = List.of(
+                annotation(10, 11, "a", 4),
+                annotation(11, 10, "b", 2),
+                annotation(10, 11, "c", 3),
+                annotation(11, 12, "a", 1));
+        UsageGraph graph = UsageGraph.build(List.of(10, 11, 12), annotationRows, UsageGraph.Aggregation.MEDIAN);
+
+        assertEquals(3, graph.getNodeCount());
+        assertEquals(2, graph.getEdgeCount());
+        assertEquals(Set.of(0, 1), Set.of(graph.getEdgeSource(0), graph.getEdgeTarget(0)));
+        assertArrayEquals(new float[]{2, 3, 4}, graph.getEdgeJudgments(0));
+        assertEquals(3.0, graph.getEdgeWeight(0), DELTA);
+        assertEquals(Set.of(1, 2), Set.of(graph.getEdgeSource(1), graph.getEdgeTarget(1)));
+        assertEquals(1.0, graph.getEdgeWeight(1), DELTA);
+    }
+
+    @Test
+    void edgesAreAggregatedByMedianOrMean() {
+        List<AnnotationRow> annotationRows = List.of(
+                annotation(1, 2, "a", 1),
+                annotation(1, 2, "b", 4),
+                annotation(1, 2, "c", 4),
+                annotation(1, 2, "d", 2));
+        // The median of an even number of judgments is the mean of the two middle ones.
+        assertEquals(3.0, UsageGraph.build(List.of(1, 2), annotationRows, UsageGraph.Aggregation.MEDIAN).getEdgeWeight(0), DELTA);
+        assertEquals(2.75, UsageGraph.build(List.of(1, 2), annotationRows, UsageGraph.Aggregation.MEAN).getEdgeWeight(0), DELTA);
+    }
+
+    @Test
+    void invalidJudgmentsAndOtherUsesAreIgnored() {
+        List<AnnotationRow> annotationRows = List.of(
+                annotation(1, 2, "a", 0),
+                annotation(1, 2, "b", -1),
+                annotation(1, 2, "c", null),
+                annotation(1, 3, "a", 4),
+                annotation(2, 2, "a", 4),
+                annotation(1, 99, "a", 4));
+        UsageGraph graph = UsageGraph.build(List.of(1, 2, 3), annotationRows, UsageGraph.Aggregation.MEDIAN);
+
+        assertEquals(3, graph.getNodeCount());
+        assertEquals(1, graph.getEdgeCount());
+        assertEquals(Set.of(0, 2), Set.of(graph.getEdgeSource(0), graph.getEdgeTarget(0)));
+        // The use without valid judgments is an isolated node.
+        assertEquals(graph.getAdjacencyStart(1), graph.getAdjacencyEnd(1));
+    }
+
+    @Test
+    void adjacencyListsContainTheEdgesOfEachNode() {
+        Random random = new Random(3);
+        List<Integer> useIds = new ArrayList<>();
+        for (int use = 0; use < 30; use++) {
+            useIds.add(100 + use);
+        }
+        List<AnnotationRow> annotationRows = new ArrayList<>();
+        for (int annotation = 0; annotation < 200; annotation++) {
+            annotationRows.add(annotation(100 + random.nextInt(30), 100 + random.nextInt(30), "a", 1 + random.nextInt(4)));
+        }
+        UsageGraph graph = UsageGraph.build(useIds, annotationRows, UsageGraph.Aggregation.MEDIAN);
+
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            assertEquals(100 + node, graph.getUseId(node));
+            Set<Integer> expected = new HashSet<>();
+            for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+                if (graph.getEdgeSource(edge) == node || graph.getEdgeTarget(edge) == node) {
+                    expected.add(edge);
+                }
+            }
+            Set<Integer> adjacent = new HashSet<>();
+            for (int index = graph.getAdjacencyStart(node); index < graph.getAdjacencyEnd(node); index++) {
+                int edge = graph.getAdjacentEdge(index);
+                adjacent.add(edge);
+                int neighbour = graph.getNeighbour(node, edge);
+                assertEquals(Set.of(node, neighbour), Set.of(graph.getEdgeSource(edge), graph.getEdgeTarget(edge)));
+            }
+            assertEquals(expected, adjacent);
+        }
+        int judgmentCount = 0;
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            float[] judgments = graph.getEdgeJudgments(edge);
+            float[] sorted = judgments.clone();
+            Arrays.sort(sorted);
+            assertArrayEquals(sorted, judgments);
+            judgmentCount += judgments.length;
+        }
+        assertEquals(annotationRows.stream().filter(row -> !row.firstUseId().equals(row.secondUseId())).count(), judgmentCount);
+    }
+
+    static AnnotationRow annotation(int firstUseId, int secondUseId, String annotator, Integer judgment) {
+        return new AnnotationRow(1, firstUseId, secondUseId, annotator, judgment == null ? null : judgment.floatValue(), null);
+    }
+}